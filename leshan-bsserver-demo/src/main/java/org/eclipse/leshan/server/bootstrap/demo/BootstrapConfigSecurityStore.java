@@ -28,6 +28,7 @@ import org.eclipse.leshan.server.bootstrap.BootstrapConfig;
 import org.eclipse.leshan.server.bootstrap.BootstrapConfig.ServerSecurity;
 import org.eclipse.leshan.server.bootstrap.BootstrapConfigStore;
 import org.eclipse.leshan.server.bootstrap.EditableBootstrapConfigStore;
+import org.eclipse.leshan.server.bootstrap.InMemoryBootstrapConfigStore;
 import org.eclipse.leshan.server.security.BootstrapSecurityStore;
 import org.eclipse.leshan.server.security.SecurityInfo;
 import org.slf4j.Logger;
@@ -42,8 +43,10 @@ import org.slf4j.LoggerFactory;
  * <p>
  * This {@link BootstrapSecurityStore} will search in {@link BootstrapConfigStore} to find security info.
  * <p>
- * {@link #getByIdentity(String)} could have some performance issue and strange behavior if you have several config with
- * same identity. (which is possible if you are using same identity for several bootstrap server)
+ * {@link #getByIdentity(String)} uses the PSK identity index of {@link InMemoryBootstrapConfigStore}, with other
+ * {@link EditableBootstrapConfigStore} it iterates over all configurations and could have some performance issue. It
+ * could have strange behavior if you have several config with same identity. (which is possible if you are using same
+ * identity for several bootstrap server)
  * <p>
  * <strong>WARNING : This store is not production ready.</strong>
  */
@@ -64,19 +67,41 @@ public class BootstrapConfigSecurityStore implements BootstrapSecurityStore {
     public SecurityInfo getByIdentity(String identity) {
         byte[] identityBytes = identity.getBytes(StandardCharsets.UTF_8);
 
+        if (bootstrapConfigStore instanceof InMemoryBootstrapConfigStore) {
+            // This could behave strangely if there is several config using same identity but with different
+            // bootstrap server: the first one still using it is returned.
+            for (String endpoint : ((InMemoryBootstrapConfigStore) bootstrapConfigStore)
+                    .getEndpointsByBootstrapPskIdentity(identity)) {
+                BootstrapConfig bsConfig = bootstrapConfigStore.get(endpoint, null, null);
+                // config could have been removed or modified since index lookup
+                ServerSecurity serverSecurity = bsConfig == null ? null : getBootstrapPsk(bsConfig, identityBytes);
+                if (serverSecurity != null) {
+                    return SecurityInfo.newPreSharedKeyInfo(endpoint, identity, serverSecurity.secretKey);
+                }
+            }
+            return null;
+        }
+
         // Acceptable for a demo but iterate over all the store to get PSK is not really acceptable for a production
         // server.
         // This could behave strangely if there is several config using same identity but with different bootstrap
         // server.
         for (Map.Entry<String, BootstrapConfig> e : bootstrapConfigStore.getAll().entrySet()) {
-            BootstrapConfig bsConfig = e.getValue();
-            if (bsConfig.security != null) {
-                for (Map.Entry<Integer, BootstrapConfig.ServerSecurity> ec : bsConfig.security.entrySet()) {
-                    ServerSecurity serverSecurity = ec.getValue();
-                    if (serverSecurity.bootstrapServer && serverSecurity.securityMode == SecurityMode.PSK
-                            && Arrays.equals(serverSecurity.publicKeyOrId, identityBytes)) {
-                        return SecurityInfo.newPreSharedKeyInfo(e.getKey(), identity, serverSecurity.secretKey);
-                    }
+            ServerSecurity serverSecurity = getBootstrapPsk(e.getValue(), identityBytes);
+            if (serverSecurity != null) {
+                return SecurityInfo.newPreSharedKeyInfo(e.getKey(), identity, serverSecurity.secretKey);
+            }
+        }
+        return null;
+    }
+
+    private ServerSecurity getBootstrapPsk(BootstrapConfig bsConfig, byte[] identityBytes) {
+        if (bsConfig.security != null) {
+            for (Map.Entry<Integer, BootstrapConfig.ServerSecurity> ec : bsConfig.security.entrySet()) {
+                ServerSecurity serverSecurity = ec.getValue();
+                if (serverSecurity.bootstrapServer && serverSecurity.securityMode == SecurityMode.PSK
+                        && Arrays.equals(serverSecurity.publicKeyOrId, identityBytes)) {
+                    return serverSecurity;
                 }
             }
         }
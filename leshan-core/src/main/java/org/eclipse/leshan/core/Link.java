@@ -17,13 +17,11 @@ package org.eclipse.leshan.core;
 
 import java.io.Serializable;
 import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.eclipse.leshan.core.util.StringUtils;
 import org.eclipse.leshan.core.util.Validate;
 
 /**
@@ -74,6 +72,25 @@ public class Link implements Serializable {
         }
     }
 
+    /**
+     * Creates a new link, attributes are copied only if requested.
+     * 
+     * @param url the link URL
+     * @param attributes the object link attributes, must be unmodifiable if not copied.
+     * @param copy <code>true</code> to copy the attributes map.
+     */
+    Link(String url, Map<String, String> attributes, boolean copy) {
+        Validate.notNull(url);
+        this.url = url;
+        if (attributes == null) {
+            this.attributes = Collections.emptyMap();
+        } else if (copy) {
+            this.attributes = Collections.unmodifiableMap(new HashMap<>(attributes));
+        } else {
+            this.attributes = attributes;
+        }
+    }
+
     /**
      * Creates a new link and with its attributes.
      * 
@@ -173,37 +190,7 @@ public class Link implements Serializable {
         if (content == null) {
             return new Link[] {};
         }
-        String s = new String(content, StandardCharsets.UTF_8);
-        String[] links = s.split(",");
-        Link[] linksResult = new Link[links.length];
-        int index = 0;
-        for (String link : links) {
-            String[] linkParts = link.split(";");
-
-            // clean URL
-            String url = StringUtils.trim(linkParts[0]);
-            url = StringUtils.removeStart(StringUtils.removeEnd(url, ">"), "<");
-
-            // parse attributes
-            Map<String, String> attributes = new HashMap<>();
-
-            if (linkParts.length > 1) {
-                for (int i = 1; i < linkParts.length; i++) {
-                    String[] attParts = linkParts[i].split("=");
-                    if (attParts.length > 0) {
-                        String key = attParts[0];
-                        String value = null;
-                        if (attParts.length > 1) {
-                            value = attParts[1];
-                        }
-                        attributes.put(key, value);
-                    }
-                }
-            }
-            linksResult[index] = new Link(url, attributes);
-            index++;
-        }
-        return linksResult;
+        return new LinkParser(content).parse();
     }
 
     private static final String TRAILER = ",";
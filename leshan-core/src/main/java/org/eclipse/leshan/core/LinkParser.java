@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single pass CoRE link format parser working directly on UTF-8 bytes (see {@link Link#parse(byte[])}).
+ * <p>
+ * Delimiters are ASCII characters, so they can not be part of a multi-byte UTF-8 sequence and the payload can be
+ * scanned byte per byte. Only urls, attribute names and attribute values are decoded to {@link String}.
+ * <p>
+ * A value starting with a double quote is a quoted-string : it ends at the first double quote followed by a delimiter
+ * (or by the end of payload), so it can contain ',', ';' or '='. Backslash escapes the next character. An unterminated
+ * quoted-string is handled as a token.
+ * <p>
+ * As with the previous <code>String.split()</code> based implementation, a token value ends at the next '=' and the
+ * rest of the attribute is ignored (e.g. <code>a=b=c</code> is parsed as <code>a</code> with value <code>b</code>).
+ */
+class LinkParser {
+
+    // most used attribute names, returned without allocation
+    private static final String[] KNOWN_ATTRIBUTES = { "ver", "rt", "ct", "obs", "if", "pmin", "pmax", "gt", "lt",
+            "st", "epmin", "epmax", "dim", "title", "sz" };
+
+    private final byte[] content;
+    private final int end;
+    private int pos;
+
+    public LinkParser(byte[] content) {
+        this.content = content;
+        this.end = content.length;
+    }
+
+    public Link[] parse() {
+        if (end == 0) {
+            // same result as "".split(",")
+            return new Link[] { new Link("") };
+        }
+
+        List<Link> links = new ArrayList<>();
+        int nbLinks = 0;
+        while (true) {
+            int linkStart = pos;
+            links.add(parseLink());
+            // like String.split(), trailing empty links are dropped
+            if (pos > linkStart) {
+                nbLinks = links.size();
+            }
+            if (pos >= end) {
+                break;
+            }
+            pos++; // skip ','
+        }
+        return links.subList(0, nbLinks).toArray(new Link[nbLinks]);
+    }
+
+    private Link parseLink() {
+        // url
+        int urlStart = pos;
+        while (pos < end && content[pos] != ',' && content[pos] != ';') {
+            pos++;
+        }
+        String url = parseUrl(urlStart, pos);
+
+        // attributes
+        Map<String, String> attributes = null;
+        while (pos < end && content[pos] == ';') {
+            pos++;
+            int keyStart = pos;
+            while (pos < end && content[pos] != '=' && content[pos] != ';' && content[pos] != ',') {
+                pos++;
+            }
+            int keyEnd = pos;
+            String value = null;
+            if (pos < end && content[pos] == '=') {
+                pos++;
+                value = parseValue();
+            }
+            if (keyStart == keyEnd && value == null) {
+                // empty attribute
+                continue;
+            }
+            if (attributes == null) {
+                attributes = new HashMap<>();
+            }
+            attributes.put(attributeName(keyStart, keyEnd), value);
+        }
+
+        if (attributes == null) {
+            return new Link(url, Collections.<String, String> emptyMap(), false);
+        }
+        return new Link(url, Collections.unmodifiableMap(attributes), false);
+    }
+
+    private String parseUrl(int start, int stop) {
+        // trim
+        while (start < stop && content[start] <= ' ') {
+            start++;
+        }
+        while (stop > start && content[stop - 1] <= ' ') {
+            stop--;
+        }
+        // remove < >
+        if (stop > start && content[stop - 1] == '>') {
+            stop--;
+        }
+        if (stop > start && content[start] == '<') {
+            start++;
+        }
+        return new String(content, start, stop - start, StandardCharsets.UTF_8);
+    }
+
+    private String parseValue() {
+        int start = pos;
+        if (pos < end && content[pos] == '"') {
+            for (int i = pos + 1; i < end; i++) {
+                byte b = content[i];
+                if (b == '\\') {
+                    i++;
+                } else if (b == '"' && (i + 1 == end || content[i + 1] == ';' || content[i + 1] == ',')) {
+                    pos = i + 1;
+                    return new String(content, start, pos - start, StandardCharsets.UTF_8);
+                }
+            }
+            // unterminated quoted-string
+        }
+        while (pos < end && content[pos] != '=' && content[pos] != ';' && content[pos] != ',') {
+            pos++;
+        }
+        int valueEnd = pos;
+        // ignore the rest of the attribute
+        boolean remaining = false;
+        while (pos < end && content[pos] != ';' && content[pos] != ',') {
+            remaining |= content[pos] != '=';
+            pos++;
+        }
+        if (valueEnd == start && !remaining) {
+            // like String.split(), trailing empty values are dropped
+            return null;
+        }
+        return new String(content, start, valueEnd - start, StandardCharsets.UTF_8);
+    }
+
+    private String attributeName(int start, int stop) {
+        int length = stop - start;
+        for (String known : KNOWN_ATTRIBUTES) {
+            if (known.length() == length && matches(known, start)) {
+                return known;
+            }
+        }
+        return new String(content, start, length, StandardCharsets.UTF_8);
+    }
+
+    private boolean matches(String ascii, int start) {
+        for (int i = 0; i < ascii.length(); i++) {
+            if (content[start + i] != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -18,6 +18,7 @@ package org.eclipse.leshan.core.node.codec;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import org.eclipse.leshan.core.model.LwM2mModel;
@@ -29,6 +30,7 @@ import org.eclipse.leshan.core.node.LwM2mResource;
 import org.eclipse.leshan.core.node.TimestampedLwM2mNode;
 import org.eclipse.leshan.core.node.codec.json.LwM2mNodeJsonDecoder;
 import org.eclipse.leshan.core.node.codec.opaque.LwM2mNodeOpaqueDecoder;
+import org.eclipse.leshan.core.node.codec.senml.LwM2mNodeSenMLCborDecoder;
 import org.eclipse.leshan.core.node.codec.text.LwM2mNodeTextDecoder;
 import org.eclipse.leshan.core.node.codec.tlv.LwM2mNodeTlvDecoder;
 import org.eclipse.leshan.core.request.ContentFormat;
@@ -43,9 +45,10 @@ import org.slf4j.LoggerFactory;
  * <li>{@link ContentFormat#JSON}</li>
  * <li>{@link ContentFormat#TEXT}</li>
  * <li>{@link ContentFormat#OPAQUE}</li>
+ * <li>{@link ContentFormat#SENML_CBOR}</li>
  * </ul>
  */
-public class DefaultLwM2mNodeDecoder implements LwM2mNodeDecoder {
+public class DefaultLwM2mNodeDecoder implements IncrementalLwM2mNodeDecoder {
 
     private static final Logger LOG = LoggerFactory.getLogger(DefaultLwM2mNodeDecoder.class);
 
@@ -104,6 +107,8 @@ public class DefaultLwM2mNodeDecoder implements LwM2mNodeDecoder {
         case ContentFormat.JSON_CODE:
         case ContentFormat.OLD_JSON_CODE:
             return LwM2mNodeJsonDecoder.decode(content, path, model, nodeClass);
+        case ContentFormat.SENML_CBOR_CODE:
+            return LwM2mNodeSenMLCborDecoder.decode(content, path, model, nodeClass);
         default:
             throw new CodecException("Content format %s is not supported [%s]", format, path);
         }
@@ -135,11 +140,28 @@ public class DefaultLwM2mNodeDecoder implements LwM2mNodeDecoder {
         case ContentFormat.JSON_CODE:
         case ContentFormat.OLD_JSON_CODE:
             return LwM2mNodeJsonDecoder.decodeTimestamped(content, path, model, nodeClassFromPath(path));
+        case ContentFormat.SENML_CBOR_CODE:
+            return LwM2mNodeSenMLCborDecoder.decodeTimestamped(content, path, model, nodeClassFromPath(path));
         default:
             throw new CodecException("Content format %s is not supported [%s]", format, path);
         }
     }
 
+    @Override
+    public Iterator<TimestampedLwM2mNode> iterateTimestampedData(byte[] content, ContentFormat format, LwM2mPath path,
+            LwM2mModel model) throws CodecException {
+        Validate.notNull(path);
+
+        if (format != null && (format.getCode() == ContentFormat.JSON_CODE
+                || format.getCode() == ContentFormat.OLD_JSON_CODE) && isSupported(format)) {
+            LOG.debug("Decoding value incrementally for path {} and format {}: {}", path, format, content);
+            return LwM2mNodeJsonDecoder.iterateTimestamped(content, path, model, nodeClassFromPath(path));
+        }
+
+        // other formats are decoded at once, TEXT, TLV and OPAQUE contain only one node without time-stamp
+        return decodeTimestampedData(content, format, path, model).iterator();
+    }
+
     private static List<TimestampedLwM2mNode> toTimestampedNodes(LwM2mNode node) {
         if (node == null)
             return Collections.emptyList();
@@ -167,6 +189,7 @@ public class DefaultLwM2mNodeDecoder implements LwM2mNodeDecoder {
         case ContentFormat.TLV_CODE:
         case ContentFormat.OPAQUE_CODE:
         case ContentFormat.JSON_CODE:
+        case ContentFormat.SENML_CBOR_CODE:
             return true;
         case ContentFormat.OLD_TLV_CODE:
         case ContentFormat.OLD_JSON_CODE:
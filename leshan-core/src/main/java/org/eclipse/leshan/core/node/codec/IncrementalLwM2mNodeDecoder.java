@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.node.codec;
+
+import java.util.Iterator;
+
+import org.eclipse.leshan.core.model.LwM2mModel;
+import org.eclipse.leshan.core.node.LwM2mNode;
+import org.eclipse.leshan.core.node.LwM2mPath;
+import org.eclipse.leshan.core.node.TimestampedLwM2mNode;
+import org.eclipse.leshan.core.request.ContentFormat;
+
+/**
+ * A {@link LwM2mNodeDecoder} which is able to decode time-stamped {@link LwM2mNode}s one at a time.
+ * <p>
+ * This allows to handle large payloads of historical values without building all nodes before using the first one.
+ */
+public interface IncrementalLwM2mNodeDecoder extends LwM2mNodeDecoder {
+
+    /**
+     * Deserializes a binary content into time-stamped {@link LwM2mNode}s, decoded one at a time while iterating.
+     * <p>
+     * Nodes are returned in payload order. Content formats which does not support it are decoded at once.
+     *
+     * @param content the content
+     * @param format the content format
+     * @param path the path of the node to build
+     * @param model the collection of supported object models
+     * @return an iterator over the time-stamped {@link LwM2mNode}, which can raise {@link CodecException} if the
+     *         payload is malformed.
+     * @exception CodecException if there payload is malformed.
+     */
+    Iterator<TimestampedLwM2mNode> iterateTimestampedData(byte[] content, ContentFormat format, LwM2mPath path,
+            LwM2mModel model) throws CodecException;
+}
@@ -0,0 +1,419 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.node.codec.json;
+
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.leshan.core.json.LwM2mJsonException;
+
+/**
+ * A minimal JSON pull parser working directly on UTF-8 bytes, without building any tree.
+ * <p>
+ * Structural characters are ASCII, so they can not be part of a multi-byte UTF-8 sequence and the content can be
+ * scanned byte per byte. Only strings are decoded, known member names are returned without allocation.
+ * <p>
+ * Objects and arrays can not be nested more than {@link #MAX_NESTING_DEPTH} levels deep.
+ */
+class JsonPullParser {
+
+    /** Maximum nesting of objects and arrays, LWM2M JSON itself only uses 3 levels */
+    public static final int MAX_NESTING_DEPTH = 16;
+
+    enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, STRING, NUMBER, BOOLEAN, NULL
+    }
+
+    // member names of the LWM2M JSON format, returned without allocation
+    private static final String[] KNOWN_NAMES = { "bn", "bt", "e", "n", "v", "sv", "bv", "ov", "t" };
+
+    private final byte[] content;
+    private final int end;
+    private int pos;
+
+    // true if a value was read in the current object or array, so next one must be preceded by a comma
+    private final boolean[] hasValue = new boolean[MAX_NESTING_DEPTH];
+    private int depth;
+
+    public JsonPullParser(byte[] content) {
+        this.content = content;
+        this.end = content.length;
+    }
+
+    public void beginObject() throws LwM2mJsonException {
+        expect('{', "object");
+        push();
+    }
+
+    public void endObject() throws LwM2mJsonException {
+        skipWhitespaces();
+        expect('}', "end of object");
+        depth--;
+    }
+
+    public void beginArray() throws LwM2mJsonException {
+        expect('[', "array");
+        push();
+    }
+
+    public void endArray() throws LwM2mJsonException {
+        skipWhitespaces();
+        expect(']', "end of array");
+        depth--;
+    }
+
+    /**
+     * @return <code>true</code> if the current object or array has another member or element. The separating comma is
+     *         consumed.
+     */
+    public boolean hasNext() throws LwM2mJsonException {
+        skipWhitespaces();
+        if (pos >= end) {
+            throw error("Unexpected end of content");
+        }
+        byte b = content[pos];
+        if (b == '}' || b == ']') {
+            return false;
+        }
+        if (hasValue[depth - 1]) {
+            expect(',', "','");
+        }
+        hasValue[depth - 1] = true;
+        return true;
+    }
+
+    /**
+     * @return the name of the next object member, the following ':' is consumed.
+     */
+    public String nextName() throws LwM2mJsonException {
+        skipWhitespaces();
+        if (pos >= end || content[pos] != '"') {
+            throw error("Member name expected");
+        }
+        int start = pos + 1;
+        String known = knownName(start);
+        String name = known != null ? known : nextString();
+        if (known != null) {
+            pos = start + known.length() + 1;
+        }
+        skipWhitespaces();
+        expect(':', "':'");
+        return name;
+    }
+
+    private String knownName(int start) {
+        for (String known : KNOWN_NAMES) {
+            int length = known.length();
+            if (start + length < end && content[start + length] == '"' && matches(known, start)) {
+                return known;
+            }
+        }
+        return null;
+    }
+
+    private boolean matches(String ascii, int start) {
+        for (int i = 0; i < ascii.length(); i++) {
+            if (content[start + i] != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Token peek() throws LwM2mJsonException {
+        skipWhitespaces();
+        if (pos >= end) {
+            throw error("Unexpected end of content");
+        }
+        switch (content[pos]) {
+        case '{':
+            return Token.BEGIN_OBJECT;
+        case '}':
+            return Token.END_OBJECT;
+        case '[':
+            return Token.BEGIN_ARRAY;
+        case ']':
+            return Token.END_ARRAY;
+        case '"':
+            return Token.STRING;
+        case 't':
+        case 'f':
+            return Token.BOOLEAN;
+        case 'n':
+            return Token.NULL;
+        default:
+            return Token.NUMBER;
+        }
+    }
+
+    public String nextString() throws LwM2mJsonException {
+        skipWhitespaces();
+        expect('"', "string");
+        int start = pos;
+        while (pos < end) {
+            byte b = content[pos];
+            if (b == '"') {
+                String value = new String(content, start, pos - start, StandardCharsets.UTF_8);
+                pos++;
+                return value;
+            } else if (b == '\\') {
+                return nextEscapedString(start);
+            } else if (b >= 0 && b < 0x20) {
+                throw error("Invalid control character in string");
+            }
+            pos++;
+        }
+        throw error("Unterminated string");
+    }
+
+    private String nextEscapedString(int start) throws LwM2mJsonException {
+        StringBuilder value = new StringBuilder(new String(content, start, pos - start, StandardCharsets.UTF_8));
+        int chunkStart = pos;
+        while (pos < end) {
+            byte b = content[pos];
+            if (b == '"' || b == '\\') {
+                value.append(new String(content, chunkStart, pos - chunkStart, StandardCharsets.UTF_8));
+                pos++;
+                if (b == '"') {
+                    return value.toString();
+                }
+                value.append(readEscape());
+                chunkStart = pos;
+            } else if (b >= 0 && b < 0x20) {
+                throw error("Invalid control character in string");
+            } else {
+                pos++;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private char readEscape() throws LwM2mJsonException {
+        if (pos >= end) {
+            throw error("Unterminated string");
+        }
+        byte b = content[pos++];
+        switch (b) {
+        case '"':
+        case '\\':
+        case '/':
+            return (char) b;
+        case 'b':
+            return '\b';
+        case 'f':
+            return '\f';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 't':
+            return '\t';
+        case 'u':
+            if (pos + 4 > end) {
+                throw error("Invalid unicode escape");
+            }
+            int c = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(content[pos++], 16);
+                if (digit < 0) {
+                    throw error("Invalid unicode escape");
+                }
+                c = (c << 4) | digit;
+            }
+            return (char) c;
+        default:
+            throw error("Invalid escape sequence");
+        }
+    }
+
+    public double nextDouble() throws LwM2mJsonException {
+        int start = pos;
+        boolean integral = scanNumber();
+        int length = pos - start;
+        if (integral && length <= 18) {
+            return parseLong(start, pos);
+        }
+        return Double.parseDouble(new String(content, start, length, StandardCharsets.US_ASCII));
+    }
+
+    public long nextLong() throws LwM2mJsonException {
+        int start = pos;
+        if (!scanNumber()) {
+            throw error("Integer expected");
+        }
+        if (pos - start <= 18) {
+            return parseLong(start, pos);
+        }
+        try {
+            return Long.parseLong(new String(content, start, pos - start, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new LwM2mJsonException(e, "Invalid integer at offset %d", start);
+        }
+    }
+
+    private long parseLong(int start, int stop) {
+        boolean negative = content[start] == '-';
+        long value = 0;
+        for (int i = negative ? start + 1 : start; i < stop; i++) {
+            value = value * 10 + (content[i] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    // move to the end of a number, return true if it has no fraction and no exponent
+    private boolean scanNumber() throws LwM2mJsonException {
+        skipWhitespaces();
+        int start = pos;
+        boolean integral = true;
+        if (pos < end && content[pos] == '-') {
+            pos++;
+        }
+        if (pos < end && content[pos] == '0') {
+            pos++;
+        } else if (scanDigits() == 0) {
+            throw error("Number expected");
+        }
+        if (pos < end && content[pos] == '.') {
+            pos++;
+            integral = false;
+            if (scanDigits() == 0) {
+                throw error("Invalid number");
+            }
+        }
+        if (pos < end && (content[pos] == 'e' || content[pos] == 'E')) {
+            pos++;
+            integral = false;
+            if (pos < end && (content[pos] == '+' || content[pos] == '-')) {
+                pos++;
+            }
+            if (scanDigits() == 0) {
+                throw error("Invalid number");
+            }
+        }
+        if (pos == start) {
+            throw error("Number expected");
+        }
+        return integral;
+    }
+
+    private int scanDigits() {
+        int start = pos;
+        while (pos < end && content[pos] >= '0' && content[pos] <= '9') {
+            pos++;
+        }
+        return pos - start;
+    }
+
+    public boolean nextBoolean() throws LwM2mJsonException {
+        skipWhitespaces();
+        if (matchesLiteral("true")) {
+            return true;
+        } else if (matchesLiteral("false")) {
+            return false;
+        }
+        throw error("Boolean expected");
+    }
+
+    public void nextNull() throws LwM2mJsonException {
+        skipWhitespaces();
+        if (!matchesLiteral("null")) {
+            throw error("null expected");
+        }
+    }
+
+    private boolean matchesLiteral(String literal) {
+        if (pos + literal.length() <= end && matches(literal, pos)) {
+            pos += literal.length();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Skip the next value, including nested ones.
+     */
+    public void skipValue() throws LwM2mJsonException {
+        switch (peek()) {
+        case BEGIN_OBJECT:
+            beginObject();
+            while (hasNext()) {
+                nextName();
+                skipValue();
+            }
+            endObject();
+            break;
+        case BEGIN_ARRAY:
+            beginArray();
+            while (hasNext()) {
+                skipValue();
+            }
+            endArray();
+            break;
+        case STRING:
+            nextString();
+            break;
+        case BOOLEAN:
+            nextBoolean();
+            break;
+        case NULL:
+            nextNull();
+            break;
+        case NUMBER:
+            nextDouble();
+            break;
+        default:
+            throw error("Value expected");
+        }
+    }
+
+    /**
+     * Check there is nothing but whitespaces after the parsed value.
+     */
+    public void endDocument() throws LwM2mJsonException {
+        skipWhitespaces();
+        if (pos < end) {
+            throw error("Unexpected content after JSON value");
+        }
+    }
+
+    private void push() throws LwM2mJsonException {
+        if (depth == MAX_NESTING_DEPTH) {
+            throw error("JSON nesting exceeds " + MAX_NESTING_DEPTH + " levels");
+        }
+        hasValue[depth++] = false;
+    }
+
+    private void expect(char c, String expected) throws LwM2mJsonException {
+        skipWhitespaces();
+        if (pos >= end || content[pos] != c) {
+            throw error(expected + " expected");
+        }
+        pos++;
+    }
+
+    private void skipWhitespaces() {
+        while (pos < end) {
+            byte b = content[pos];
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private LwM2mJsonException error(String message) {
+        return new LwM2mJsonException("%s at offset %d", message, pos);
+    }
+}
@@ -21,15 +21,14 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.NoSuchElementException;
 
 import org.eclipse.leshan.core.json.JsonArrayEntry;
-import org.eclipse.leshan.core.json.JsonRootObject;
-import org.eclipse.leshan.core.json.LwM2mJson;
 import org.eclipse.leshan.core.json.LwM2mJsonException;
 import org.eclipse.leshan.core.model.LwM2mModel;
 import org.eclipse.leshan.core.model.ResourceModel;
@@ -45,10 +44,17 @@ import org.eclipse.leshan.core.node.LwM2mSingleResource;
 import org.eclipse.leshan.core.node.ObjectLink;
 import org.eclipse.leshan.core.node.TimestampedLwM2mNode;
 import org.eclipse.leshan.core.node.codec.CodecException;
+import org.eclipse.leshan.core.node.codec.json.JsonPullParser.Token;
 import org.eclipse.leshan.core.util.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * JSON decoder for {@link LwM2mNode}.
+ * <p>
+ * The payload is parsed in a single pass with a {@link JsonPullParser} : each entry is added to the node of its
+ * time-stamp as soon as it is read, no JSON tree is built.
+ */
 public class LwM2mNodeJsonDecoder {
 
     private static final Logger LOG = LoggerFactory.getLogger(LwM2mNodeJsonDecoder.class);
@@ -57,9 +63,7 @@ public class LwM2mNodeJsonDecoder {
     public static <T extends LwM2mNode> T decode(byte[] content, LwM2mPath path, LwM2mModel model, Class<T> nodeClass)
             throws CodecException {
         try {
-            String jsonStrValue = content != null ? new String(content) : "";
-            JsonRootObject json = LwM2mJson.fromJsonLwM2m(jsonStrValue);
-            List<TimestampedLwM2mNode> timestampedNodes = parseJSON(json, path, model, nodeClass);
+            List<TimestampedLwM2mNode> timestampedNodes = parseJSON(content, path, model, nodeClass);
             if (timestampedNodes.size() == 0) {
                 return null;
             } else {
@@ -74,316 +78,638 @@ public class LwM2mNodeJsonDecoder {
     public static List<TimestampedLwM2mNode> decodeTimestamped(byte[] content, LwM2mPath path, LwM2mModel model,
             Class<? extends LwM2mNode> nodeClass) throws CodecException {
         try {
-            String jsonStrValue = new String(content);
-            JsonRootObject json = LwM2mJson.fromJsonLwM2m(jsonStrValue);
-            return parseJSON(json, path, model, nodeClass);
-        } catch (LwM2mJsonException e) {
+            return parseJSON(content, path, model, nodeClass);
+        } catch (LwM2mJsonException | LwM2mNodeException e) {
             throw new CodecException(e, "Unable to deserialize json [path:%s]", path);
         }
     }
 
-    private static List<TimestampedLwM2mNode> parseJSON(JsonRootObject jsonObject, LwM2mPath requestPath,
-            LwM2mModel model, Class<? extends LwM2mNode> nodeClass) throws CodecException {
-
-        LOG.trace("Parsing JSON content for path {}: {}", requestPath, jsonObject);
-
-        // Group JSON entry by time-stamp
-        Map<Long, Collection<JsonArrayEntry>> jsonEntryByTimestamp = groupJsonEntryByTimestamp(jsonObject);
-
-        // Extract baseName
-        String baseName = jsonObject.getBaseName() == null ? "" : jsonObject.getBaseName();
+    /**
+     * Decodes time-stamped nodes one at a time, while iterating.
+     * <p>
+     * Unlike {@link #decodeTimestamped(byte[], LwM2mPath, LwM2mModel, Class)}, nodes are not sorted : a node is built
+     * for each sequence of consecutive entries with the same time-stamp, in payload order. Memory used does not depend
+     * on the number of time-stamps in the payload.
+     * <p>
+     * The root object is validated when the iterator is created, errors in entries are raised as {@link CodecException}
+     * by {@link Iterator#hasNext()} or {@link Iterator#next()}.
+     */
+    public static Iterator<TimestampedLwM2mNode> iterateTimestamped(byte[] content, LwM2mPath path, LwM2mModel model,
+            Class<? extends LwM2mNode> nodeClass) throws CodecException {
+        try {
+            return new TimestampedNodeIterator(content != null ? content : new byte[0], path, model, nodeClass);
+        } catch (LwM2mJsonException | LwM2mNodeException e) {
+            throw new CodecException(e, "Unable to deserialize json [path:%s]", path);
+        }
+    }
 
-        // fill time-stamped nodes collection
-        List<TimestampedLwM2mNode> timestampedNodes = new ArrayList<>();
-        for (Entry<Long, Collection<JsonArrayEntry>> entryByTimestamp : jsonEntryByTimestamp.entrySet()) {
+    private static List<TimestampedLwM2mNode> parseJSON(byte[] content, LwM2mPath requestPath, LwM2mModel model,
+            Class<? extends LwM2mNode> nodeClass) throws LwM2mJsonException, CodecException {
 
-            // Group JSON entry by instance
-            Map<Integer, Collection<JsonArrayEntry>> jsonEntryByInstanceId = groupJsonEntryByInstanceId(
-                    entryByTimestamp.getValue(), baseName, requestPath);
+        LOG.trace("Parsing JSON content for path {}", requestPath);
 
-            // Create lwm2m node
-            LwM2mNode node;
-            if (nodeClass == LwM2mObject.class) {
-                Collection<LwM2mObjectInstance> instances = new ArrayList<>();
-                for (Entry<Integer, Collection<JsonArrayEntry>> entryByInstanceId : jsonEntryByInstanceId.entrySet()) {
-                    Map<Integer, LwM2mResource> resourcesMap = extractLwM2mResources(entryByInstanceId.getValue(),
-                            baseName, model, requestPath);
+        JsonPullParser parser = new JsonPullParser(content != null ? content : new byte[0]);
+        NodesBuilder builder = new NodesBuilder(requestPath, model);
+        Long baseTime = parseRootObject(parser, builder, false);
+        return builder.build(baseTime, nodeClass);
+    }
 
-                    instances.add(new LwM2mObjectInstance(entryByInstanceId.getKey(), resourcesMap.values()));
+    /**
+     * Parse the root object and returns its base time. Entries are added to the given builder unless
+     * <code>skipEntries</code> is true.
+     */
+    private static Long parseRootObject(JsonPullParser parser, NodesBuilder builder, boolean skipEntries)
+            throws LwM2mJsonException, CodecException {
+        boolean hasEntries = false;
+        Long baseTime = null;
+
+        parser.beginObject();
+        while (parser.hasNext()) {
+            String name = parser.nextName();
+            switch (name) {
+            case "bn":
+                if (parser.peek() == Token.STRING) {
+                    builder.setBaseName(parser.nextString());
+                } else {
+                    parser.skipValue();
                 }
+                break;
+            case "bt":
+                if (parser.peek() == Token.NUMBER) {
+                    baseTime = parser.nextLong();
+                } else {
+                    parser.skipValue();
+                }
+                break;
+            case "e":
+                if (hasEntries) {
+                    throw new LwM2mJsonException("Duplicate 'e' field");
+                }
+                hasEntries = true;
+                if (parser.peek() != Token.BEGIN_ARRAY) {
+                    throw new LwM2mJsonException("'e' field must be an array");
+                }
+                if (skipEntries) {
+                    parser.skipValue();
+                } else {
+                    parser.beginArray();
+                    while (parser.hasNext()) {
+                        builder.add(parseEntry(parser));
+                    }
+                    parser.endArray();
+                }
+                break;
+            default:
+                parser.skipValue();
+            }
+        }
+        parser.endObject();
+        parser.endDocument();
 
-                node = new LwM2mObject(requestPath.getObjectId(), instances);
-            } else if (nodeClass == LwM2mObjectInstance.class) {
-                // validate we have resources for only 1 instance
-                if (jsonEntryByInstanceId.size() != 1)
-                    throw new CodecException("One instance expected in the payload [path:%s]", requestPath);
+        if (!hasEntries) {
+            throw new LwM2mJsonException("'e' field is missing");
+        }
+        return baseTime;
+    }
 
-                // Extract resources
-                Entry<Integer, Collection<JsonArrayEntry>> instanceEntry = jsonEntryByInstanceId.entrySet().iterator()
-                        .next();
-                Map<Integer, LwM2mResource> resourcesMap = extractLwM2mResources(instanceEntry.getValue(), baseName,
-                        model, requestPath);
+    /**
+     * Iterates over nodes of consecutive entries with the same time-stamp.
+     * <p>
+     * A first pass reads base name and base time, which could be after entries, then entries are parsed on demand.
+     */
+    private static class TimestampedNodeIterator implements Iterator<TimestampedLwM2mNode> {
+
+        private final LwM2mPath requestPath;
+        private final Class<? extends LwM2mNode> nodeClass;
+        private final NodesBuilder builder;
+        private final JsonPullParser parser;
+        private final Long baseTime;
+
+        // first entry of the next node
+        private JsonArrayEntry nextEntry;
+        private boolean entriesEnded;
+        private boolean hasNodes;
+
+        private TimestampedLwM2mNode next;
+        private boolean nextFetched;
+
+        private TimestampedNodeIterator(byte[] content, LwM2mPath requestPath, LwM2mModel model,
+                Class<? extends LwM2mNode> nodeClass) throws LwM2mJsonException, CodecException {
+            LOG.trace("Iterating over JSON content for path {}", requestPath);
+
+            this.requestPath = requestPath;
+            this.nodeClass = nodeClass;
+            this.builder = new NodesBuilder(requestPath, model);
+            this.baseTime = parseRootObject(new JsonPullParser(content), builder, true);
+
+            // move to the first entry
+            parser = new JsonPullParser(content);
+            parser.beginObject();
+            while (parser.hasNext()) {
+                if ("e".equals(parser.nextName())) {
+                    break;
+                }
+                parser.skipValue();
+            }
+            parser.beginArray();
+        }
 
-                // Create instance
-                node = new LwM2mObjectInstance(instanceEntry.getKey(), resourcesMap.values());
-            } else if (nodeClass == LwM2mResource.class) {
-                // validate we have resources for only 1 instance
-                if (jsonEntryByInstanceId.size() > 1)
-                    throw new CodecException("Only one instance expected in the payload [path:%s]", requestPath);
+        @Override
+        public boolean hasNext() {
+            if (!nextFetched) {
+                try {
+                    next = fetchNext();
+                } catch (LwM2mJsonException | LwM2mNodeException e) {
+                    throw new CodecException(e, "Unable to deserialize json [path:%s]", requestPath);
+                }
+                nextFetched = true;
+            }
+            return next != null;
+        }
 
-                // Extract resources
-                Map<Integer, LwM2mResource> resourcesMap = extractLwM2mResources(
-                        jsonEntryByInstanceId.values().iterator().next(), baseName, model, requestPath);
+        @Override
+        public TimestampedLwM2mNode next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            nextFetched = false;
+            return next;
+        }
 
-                // validate there is only 1 resource
-                if (resourcesMap.size() != 1)
-                    throw new CodecException("One resource should be present in the payload [path:%s]", requestPath);
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
 
-                node = resourcesMap.values().iterator().next();
-            } else {
-                throw new IllegalArgumentException("invalid node class: " + nodeClass);
+        private TimestampedLwM2mNode fetchNext() throws LwM2mJsonException, CodecException {
+            if (nextEntry == null && (entriesEnded || !parser.hasNext())) {
+                // members after entries were already read by the first pass
+                entriesEnded = true;
+                if (!hasNodes) {
+                    // like decodeTimestamped(), an empty payload gives one empty node
+                    hasNodes = true;
+                    return builder.toTimestampedNode(new NodeContent(0, null), baseTime, nodeClass);
+                }
+                return null;
             }
 
-            // compute time-stamp
-            Long timestamp = computeTimestamp(jsonObject.getBaseTime(), entryByTimestamp.getKey());
-
-            // add time-stamped node
-            timestampedNodes.add(new TimestampedLwM2mNode(timestamp, node));
+            JsonArrayEntry entry = nextEntry != null ? nextEntry : parseEntry(parser);
+            nextEntry = null;
+            NodeContent content = new NodeContent(timeKey(entry), entry.getTime());
+            content.add(builder.entryPath(entry), entry, builder.model);
+            while (parser.hasNext()) {
+                entry = parseEntry(parser);
+                if (timeKey(entry) != content.key) {
+                    nextEntry = entry;
+                    break;
+                }
+                content.add(builder.entryPath(entry), entry, builder.model);
+            }
+            hasNodes = true;
+            return builder.toTimestampedNode(content, baseTime, nodeClass);
         }
 
-        return timestampedNodes;
-
+        private static long timeKey(JsonArrayEntry entry) {
+            // time null means 0 if there is a base time
+            return entry.getTime() == null ? 0 : entry.getTime();
+        }
     }
 
-    private static Long computeTimestamp(Long baseTime, Long time) {
-        Long timestamp;
-        if (baseTime != null) {
-            if (time != null) {
-                timestamp = baseTime + time;
-            } else {
-                timestamp = baseTime;
-            }
-        } else {
-            if (time != null) {
-                timestamp = time;
-            } else {
-                timestamp = null;
+    private static JsonArrayEntry parseEntry(JsonPullParser parser) throws LwM2mJsonException {
+        JsonArrayEntry entry = new JsonArrayEntry();
+        if (parser.peek() != Token.BEGIN_OBJECT) {
+            throw new LwM2mJsonException("Entries of 'e' field must be objects");
+        }
+        parser.beginObject();
+        while (parser.hasNext()) {
+            String name = parser.nextName();
+            Token token = parser.peek();
+            switch (name) {
+            case "n":
+                if (token != Token.STRING) {
+                    throw new LwM2mJsonException("'n' field must be a string");
+                }
+                entry.setName(parser.nextString());
+                break;
+            case "t":
+                if (token == Token.NUMBER) {
+                    entry.setTime(parser.nextLong());
+                } else {
+                    parser.skipValue();
+                }
+                break;
+            case "v":
+                if (token == Token.NUMBER) {
+                    entry.setFloatValue(parser.nextDouble());
+                } else {
+                    parser.skipValue();
+                }
+                break;
+            case "bv":
+                if (token == Token.BOOLEAN) {
+                    entry.setBooleanValue(parser.nextBoolean());
+                } else {
+                    parser.skipValue();
+                }
+                break;
+            case "sv":
+                if (token == Token.STRING) {
+                    entry.setStringValue(parser.nextString());
+                } else {
+                    parser.skipValue();
+                }
+                break;
+            case "ov":
+                if (token == Token.STRING) {
+                    entry.setObjectLinkValue(parser.nextString());
+                } else {
+                    parser.skipValue();
+                }
+                break;
+            default:
+                parser.skipValue();
             }
         }
-        return timestamp;
+        parser.endObject();
+
+        if (entry.getType() == null) {
+            throw new LwM2mJsonException("Missing value(v,bv,ov,sv) field for entry %s", entry);
+        }
+        return entry;
     }
 
     /**
-     * Group all JsonArrayEntry by time-stamp
-     * 
-     * @return a map (relativeTimestamp => collection of JsonArrayEntry)
+     * Builds the nodes of each time-stamp while entries are read.
+     * <p>
+     * Entries are resolved as soon as the base name is known, they are only kept aside when the "e" field comes before
+     * the "bn" one.
      */
-    private static SortedMap<Long, Collection<JsonArrayEntry>> groupJsonEntryByTimestamp(JsonRootObject jsonObject) {
-        SortedMap<Long, Collection<JsonArrayEntry>> result = new TreeMap<>(new Comparator<Long>() {
-            @Override
-            public int compare(Long o1, Long o2) {
-                // comparator which
-                // - supports null (time null means 0 if there is a base time)
-                // - reverses natural order (most recent value in first)
-                return Long.compare(o2 == null ? 0 : o2, o1 == null ? 0 : o1);
-            }
-        });
+    private static class NodesBuilder {
 
-        for (JsonArrayEntry e : jsonObject.getResourceList()) {
-            // Get time for this entry
-            Long time = e.getTime();
+        private final LwM2mPath requestPath;
+        private final LwM2mModel model;
 
-            // Get jsonArray for this time-stamp
-            Collection<JsonArrayEntry> jsonArray = result.get(time);
-            if (jsonArray == null) {
-                jsonArray = new ArrayList<>();
-                result.put(time, jsonArray);
-            }
+        private String baseName = "";
+        private boolean baseNameKnown = false;
+        private List<JsonArrayEntry> pendingEntries;
 
-            // Add it to the list
-            jsonArray.add(e);
-        }
+        // nodes content by relative time-stamp
+        private final Map<Long, NodeContent> contentByTime = new HashMap<>();
+        private final List<NodeContent> contents = new ArrayList<>();
+        private NodeContent lastContent;
+        private LwM2mPath basePath;
 
-        // Ensure there is at least one entry for null timestamp
-        if (result.isEmpty()) {
-            result.put((Long) null, new ArrayList<JsonArrayEntry>());
+        private NodesBuilder(LwM2mPath requestPath, LwM2mModel model) {
+            this.requestPath = requestPath;
+            this.model = model;
         }
 
-        return result;
-    }
+        private void setBaseName(String baseName) {
+            this.baseName = baseName;
+            this.baseNameKnown = true;
+        }
 
-    /**
-     * Group all JsonArrayEntry by instanceId
-     * 
-     * @param jsonEntries
-     * @param baseName
-     *
-     * @return a map (instanceId => collection of JsonArrayEntry)
-     */
-    private static Map<Integer, Collection<JsonArrayEntry>> groupJsonEntryByInstanceId(
-            Collection<JsonArrayEntry> jsonEntries, String baseName, LwM2mPath requestPath) throws CodecException {
-        Map<Integer, Collection<JsonArrayEntry>> result = new HashMap<>();
+        private void add(JsonArrayEntry entry) throws CodecException {
+            if (!baseNameKnown) {
+                if (pendingEntries == null) {
+                    pendingEntries = new ArrayList<>();
+                }
+                pendingEntries.add(entry);
+            } else {
+                addResolved(entry);
+            }
+        }
 
-        for (JsonArrayEntry e : jsonEntries) {
-            // Build resource path
-            LwM2mPath nodePath = extractAndValidatePath(baseName, e.getName() == null ? "" : e.getName(), requestPath);
+        private void addResolved(JsonArrayEntry entry) throws CodecException {
+            contentFor(entry.getTime()).add(entryPath(entry), entry, model);
+        }
 
-            // Validate path
+        private LwM2mPath entryPath(JsonArrayEntry entry) throws CodecException {
+            LwM2mPath nodePath = resolvePath(entry.getName() == null ? "" : entry.getName());
             if (!nodePath.isResourceInstance() && !nodePath.isResource()) {
                 throw new CodecException(
                         "Invalid path [%s] for resource, it should be a resource or a resource instance path",
                         nodePath);
             }
+            return nodePath;
+        }
 
-            // Get jsonArray for this instance
-            Collection<JsonArrayEntry> jsonArray = result.get(nodePath.getObjectInstanceId());
-            if (jsonArray == null) {
-                jsonArray = new ArrayList<>();
-                result.put(nodePath.getObjectInstanceId(), jsonArray);
+        private NodeContent contentFor(Long time) {
+            // time null means 0 if there is a base time
+            long key = time == null ? 0 : time;
+            if (lastContent != null && lastContent.key == key) {
+                return lastContent;
             }
-
-            // Add it to the list
-            jsonArray.add(e);
+            NodeContent content = contentByTime.get(key);
+            if (content == null) {
+                content = new NodeContent(key, time);
+                contentByTime.put(key, content);
+                contents.add(content);
+            }
+            lastContent = content;
+            return content;
         }
 
-        // Create an entry for an empty instance if possible
-        if (result.isEmpty()) {
-            if (baseName.isEmpty()) {
-                // search object instance id in request path
-                if (requestPath.getObjectInstanceId() != null) {
-                    result.put(requestPath.getObjectInstanceId(), new ArrayList<JsonArrayEntry>());
+        /**
+         * Resolve the path of the concatenation of base name and given name, without building the concatenated string.
+         * Like {@link LwM2mPath#LwM2mPath(String)}, a leading and a trailing '/' are ignored.
+         */
+        private LwM2mPath resolvePath(String name) throws CodecException {
+            int[] ids = new int[4];
+            int nbIds = 0;
+            long current = -1;
+            boolean emptySegment = false;
+
+            int length = baseName.length() + name.length();
+            int first = length > 0 && charAt(name, 0) == '/' ? 1 : 0;
+            int last = length > first && charAt(name, length - 1) == '/' ? length - 1 : length;
+            for (int i = first; i < last; i++) {
+                char c = charAt(name, i);
+                if (c == '/') {
+                    if (current < 0) {
+                        emptySegment = true;
+                    } else {
+                        if (nbIds == 4) {
+                            throw invalidPath(name, "Invalid length for path");
+                        }
+                        ids[nbIds++] = (int) current;
+                        current = -1;
+                    }
+                } else if (c >= '0' && c <= '9' && !emptySegment) {
+                    current = (current < 0 ? 0 : current * 10) + (c - '0');
+                    if (current > Integer.MAX_VALUE) {
+                        throw invalidPath(name, "Invalid elements in path");
+                    }
+                } else {
+                    throw invalidPath(name, "Invalid elements in path");
                 }
-            } else {
-                // search object instance id in basename
-                LwM2mPath basePath = extractAndValidatePath(baseName, "", requestPath);
-                if (basePath.getObjectInstanceId() != null)
-                    result.put(basePath.getObjectInstanceId(), new ArrayList<JsonArrayEntry>());
             }
+            if (current >= 0) {
+                if (nbIds == 4) {
+                    throw invalidPath(name, "Invalid length for path");
+                }
+                ids[nbIds++] = (int) current;
+            } else if (nbIds == 0 && last > first) {
+                // only empty segments
+                throw invalidPath(name, "Invalid elements in path");
+            }
+
+            LwM2mPath path;
+            switch (nbIds) {
+            case 0:
+                path = LwM2mPath.ROOTPATH;
+                break;
+            case 1:
+                path = new LwM2mPath(ids[0]);
+                break;
+            case 2:
+                path = new LwM2mPath(ids[0], ids[1]);
+                break;
+            case 3:
+                path = new LwM2mPath(ids[0], ids[1], ids[2]);
+                break;
+            default:
+                path = new LwM2mPath(ids[0], ids[1], ids[2], ids[3]);
+                break;
+            }
+            validatePath(path);
+            return path;
         }
-        return result;
-    }
 
-    private static LwM2mPath extractAndValidatePath(String baseName, String name, LwM2mPath requestPath)
-            throws CodecException {
-        LwM2mPath path = new LwM2mPath(baseName + name);
+        private char charAt(String name, int index) {
+            return index < baseName.length() ? baseName.charAt(index) : name.charAt(index - baseName.length());
+        }
 
-        // check returned path is under requested path
-        if (requestPath.getObjectId() != null && path.getObjectId() != null) {
-            if (!path.getObjectId().equals(requestPath.getObjectId())) {
-                throw new CodecException("resource path [%s] does not match requested path [%s].", path, requestPath);
-            }
-            if (requestPath.getObjectInstanceId() != null && path.getObjectInstanceId() != null) {
-                if (!path.getObjectInstanceId().equals(requestPath.getObjectInstanceId())) {
-                    throw new CodecException("Basename path [%s] does not match requested path [%s].", path,
+        private IllegalArgumentException invalidPath(String name, String message) {
+            return new IllegalArgumentException(message + ": " + baseName + name);
+        }
+
+        // check path is under requested path
+        private void validatePath(LwM2mPath path) throws CodecException {
+            if (requestPath.getObjectId() != null && path.getObjectId() != null) {
+                if (!path.getObjectId().equals(requestPath.getObjectId())) {
+                    throw new CodecException("resource path [%s] does not match requested path [%s].", path,
                             requestPath);
                 }
-                if (requestPath.getResourceId() != null && path.getResourceId() != null) {
-                    if (!path.getResourceId().equals(requestPath.getResourceId())) {
+                if (requestPath.getObjectInstanceId() != null && path.getObjectInstanceId() != null) {
+                    if (!path.getObjectInstanceId().equals(requestPath.getObjectInstanceId())) {
                         throw new CodecException("Basename path [%s] does not match requested path [%s].", path,
                                 requestPath);
                     }
+                    if (requestPath.getResourceId() != null && path.getResourceId() != null) {
+                        if (!path.getResourceId().equals(requestPath.getResourceId())) {
+                            throw new CodecException("Basename path [%s] does not match requested path [%s].", path,
+                                    requestPath);
+                        }
+                    }
                 }
             }
         }
-        return path;
-    }
 
-    private static Map<Integer, LwM2mResource> extractLwM2mResources(Collection<JsonArrayEntry> jsonArrayEntries,
-            String baseName, LwM2mModel model, LwM2mPath requestPath) throws CodecException {
-        if (jsonArrayEntries == null)
-            return Collections.emptyMap();
+        // path used for empty nodes, only resolved when needed as base name could be cut in the middle of an id
+        private LwM2mPath basePath() throws CodecException {
+            if (basePath == null) {
+                basePath = baseName.isEmpty() ? requestPath : resolvePath("");
+            }
+            return basePath;
+        }
 
-        // Extract LWM2M resources from JSON resource list
-        Map<Integer, LwM2mResource> lwM2mResourceMap = new HashMap<>();
-        Map<LwM2mPath, Map<Integer, JsonArrayEntry>> multiResourceMap = new HashMap<>();
-        for (JsonArrayEntry resourceElt : jsonArrayEntries) {
+        private List<TimestampedLwM2mNode> build(Long baseTime, Class<? extends LwM2mNode> nodeClass)
+                throws CodecException {
+            if (pendingEntries != null) {
+                for (JsonArrayEntry entry : pendingEntries) {
+                    addResolved(entry);
+                }
+            }
 
-            // Build resource path (path validation was already done in groupJsonEntryByInstanceId
-            LwM2mPath nodePath;
-            if (resourceElt.getName() == null) {
-                nodePath = new LwM2mPath(baseName);
-            } else {
-                nodePath = new LwM2mPath(baseName + resourceElt.getName());
+            // Ensure there is at least one entry for null timestamp
+            if (contents.isEmpty()) {
+                contents.add(new NodeContent(0, null));
             }
 
-            // handle LWM2M resources
-            if (nodePath.isResourceInstance()) {
-                // Multi-instance resource
-                // Store multi-instance resource values in a map
-                // we will deal with it later
-                LwM2mPath resourcePath = new LwM2mPath(nodePath.getObjectId(), nodePath.getObjectInstanceId(),
-                        nodePath.getResourceId());
-                Map<Integer, JsonArrayEntry> multiResource = multiResourceMap.get(resourcePath);
-                if (multiResource == null) {
-                    multiResource = new HashMap<>();
-                    multiResourceMap.put(resourcePath, multiResource);
-                }
-                JsonArrayEntry previousResInstance = multiResource.put(nodePath.getResourceInstanceId(), resourceElt);
-                if (previousResInstance != null) {
-                    throw new CodecException(
-                            "2 RESOURCE_INSTANCE nodes (%s,%s) with the same identifier %d for path %s",
-                            previousResInstance, resourceElt, nodePath.getResourceInstanceId(), nodePath);
+            // most recent value in first
+            Collections.sort(contents, new Comparator<NodeContent>() {
+                @Override
+                public int compare(NodeContent c1, NodeContent c2) {
+                    return Long.compare(c2.key, c1.key);
                 }
-            } else if (nodePath.isResource()) {
-                // Single resource
-                Type expectedType = getResourceType(nodePath, model, resourceElt);
-                LwM2mResource res = LwM2mSingleResource.newResource(nodePath.getResourceId(),
-                        parseJsonValue(resourceElt.getResourceValue(), expectedType, nodePath), expectedType);
-                LwM2mResource previousRes = lwM2mResourceMap.put(nodePath.getResourceId(), res);
-                if (previousRes != null) {
-                    throw new CodecException("2 RESOURCE nodes (%s,%s) with the same identifier %d for path %s",
-                            previousRes, res, res.getId(), nodePath);
+            });
+
+            List<TimestampedLwM2mNode> timestampedNodes = new ArrayList<>(contents.size());
+            for (NodeContent content : contents) {
+                timestampedNodes.add(toTimestampedNode(content, baseTime, nodeClass));
+            }
+            return timestampedNodes;
+        }
+
+        private TimestampedLwM2mNode toTimestampedNode(NodeContent content, Long baseTime,
+                Class<? extends LwM2mNode> nodeClass) throws CodecException {
+            Map<Integer, InstanceContent> instances = content.instances;
+
+            // Create an entry for an empty instance if possible
+            if (instances.isEmpty() && basePath().getObjectInstanceId() != null) {
+                instances.put(basePath().getObjectInstanceId(), new InstanceContent());
+            }
+
+            // Create lwm2m node
+            LwM2mNode node;
+            if (nodeClass == LwM2mObject.class) {
+                Collection<LwM2mObjectInstance> objectInstances = new ArrayList<>(instances.size());
+                for (Entry<Integer, InstanceContent> instance : instances.entrySet()) {
+                    objectInstances.add(new LwM2mObjectInstance(instance.getKey(),
+                            instance.getValue().toResources(this).values()));
                 }
+                node = new LwM2mObject(requestPath.getObjectId(), objectInstances);
+            } else if (nodeClass == LwM2mObjectInstance.class) {
+                // validate we have resources for only 1 instance
+                if (instances.size() != 1)
+                    throw new CodecException("One instance expected in the payload [path:%s]", requestPath);
+
+                Entry<Integer, InstanceContent> instance = instances.entrySet().iterator().next();
+                node = new LwM2mObjectInstance(instance.getKey(),
+                        instance.getValue().toResources(this).values());
+            } else if (nodeClass == LwM2mResource.class) {
+                // validate we have resources for only 1 instance
+                if (instances.size() > 1)
+                    throw new CodecException("Only one instance expected in the payload [path:%s]", requestPath);
+
+                InstanceContent instance = instances.isEmpty() ? new InstanceContent()
+                        : instances.values().iterator().next();
+                Map<Integer, LwM2mResource> resourcesMap = instance.toResources(this);
+
+                // validate there is only 1 resource
+                if (resourcesMap.size() != 1)
+                    throw new CodecException("One resource should be present in the payload [path:%s]",
+                            requestPath);
+
+                node = resourcesMap.values().iterator().next();
             } else {
-                throw new CodecException(
-                        "Invalid path [%s] for resource, it should be a resource or a resource instance path",
-                        nodePath);
+                throw new IllegalArgumentException("invalid node class: " + nodeClass);
+            }
+
+            return new TimestampedLwM2mNode(computeTimestamp(baseTime, content.time), node);
+        }
+    }
+
+    // content of the node of one time-stamp
+    private static class NodeContent {
+        private final long key;
+        private final Long time;
+        private final Map<Integer, InstanceContent> instances = new LinkedHashMap<>();
+
+        private NodeContent(long key, Long time) {
+            this.key = key;
+            this.time = time;
+        }
+
+        private void add(LwM2mPath path, JsonArrayEntry entry, LwM2mModel model) throws CodecException {
+            InstanceContent instance = instances.get(path.getObjectInstanceId());
+            if (instance == null) {
+                instance = new InstanceContent();
+                instances.put(path.getObjectInstanceId(), instance);
             }
+            instance.add(path, entry, model);
         }
+    }
 
-        // Handle multi-instance resource.
-        for (Map.Entry<LwM2mPath, Map<Integer, JsonArrayEntry>> entry : multiResourceMap.entrySet()) {
-            LwM2mPath resourcePath = entry.getKey();
-            Map<Integer, JsonArrayEntry> jsonEntries = entry.getValue();
+    private static class InstanceContent {
+        private final Map<Integer, LwM2mResource> resources = new HashMap<>();
+        private Map<Integer, MultipleResourceContent> multipleResources;
 
-            if (jsonEntries != null && !jsonEntries.isEmpty()) {
-                Type expectedType = getResourceType(resourcePath, model, jsonEntries.values().iterator().next());
-                Map<Integer, Object> values = new HashMap<>();
-                for (Entry<Integer, JsonArrayEntry> e : jsonEntries.entrySet()) {
-                    Integer resourceInstanceId = e.getKey();
-                    values.put(resourceInstanceId,
-                            parseJsonValue(e.getValue().getResourceValue(), expectedType, resourcePath));
+        private void add(LwM2mPath path, JsonArrayEntry entry, LwM2mModel model) throws CodecException {
+            if (path.isResourceInstance()) {
+                // Multi-instance resource, values are gathered and the resource is created at the end
+                if (multipleResources == null) {
+                    multipleResources = new LinkedHashMap<>();
                 }
-                LwM2mResource resource = LwM2mMultipleResource.newResource(resourcePath.getResourceId(), values,
-                        expectedType);
-                LwM2mResource previousRes = lwM2mResourceMap.put(resourcePath.getResourceId(), resource);
+                MultipleResourceContent multipleResource = multipleResources.get(path.getResourceId());
+                if (multipleResource == null) {
+                    LwM2mPath resourcePath = new LwM2mPath(path.getObjectId(), path.getObjectInstanceId(),
+                            path.getResourceId());
+                    multipleResource = new MultipleResourceContent(resourcePath,
+                            getResourceType(resourcePath, model, entry));
+                    multipleResources.put(path.getResourceId(), multipleResource);
+                }
+                Object value = parseJsonValue(entry.getResourceValue(), multipleResource.type, multipleResource.path);
+                if (multipleResource.values.put(path.getResourceInstanceId(), value) != null) {
+                    throw new CodecException("2 RESOURCE_INSTANCE nodes with the same identifier %d for path %s",
+                            path.getResourceInstanceId(), path);
+                }
+            } else {
+                // Single resource
+                Type expectedType = getResourceType(path, model, entry);
+                LwM2mResource res = LwM2mSingleResource.newResource(path.getResourceId(),
+                        parseJsonValue(entry.getResourceValue(), expectedType, path), expectedType);
+                LwM2mResource previousRes = resources.put(path.getResourceId(), res);
                 if (previousRes != null) {
                     throw new CodecException("2 RESOURCE nodes (%s,%s) with the same identifier %d for path %s",
-                            previousRes, resource, resource.getId(), resourcePath);
+                            previousRes, res, res.getId(), path);
                 }
             }
         }
 
-        // If we found nothing, we try to create an empty multi-instance resource
-        if (lwM2mResourceMap.isEmpty()) {
-            LwM2mPath path;
-            if (baseName.isEmpty()) {
-                path = requestPath;
-            } else {
-                path = extractAndValidatePath(baseName, "", requestPath);
+        private Map<Integer, LwM2mResource> toResources(NodesBuilder builder) throws CodecException {
+            // Handle multi-instance resource.
+            if (multipleResources != null) {
+                for (MultipleResourceContent multipleResource : multipleResources.values()) {
+                    LwM2mResource resource = LwM2mMultipleResource.newResource(
+                            multipleResource.path.getResourceId(), multipleResource.values, multipleResource.type);
+                    LwM2mResource previousRes = resources.put(resource.getId(), resource);
+                    if (previousRes != null) {
+                        throw new CodecException("2 RESOURCE nodes (%s,%s) with the same identifier %d for path %s",
+                                previousRes, resource, resource.getId(), multipleResource.path);
+                    }
+                }
+            }
+
+            // If we found nothing, we try to create an empty multi-instance resource
+            if (resources.isEmpty()) {
+                createEmptyMultipleResource(builder.basePath(), builder.model);
             }
-            if (path.getObjectId() != null && path.getResourceId() != null) {
-                ResourceModel resourceModel = model.getResourceModel(path.getObjectId(), path.getResourceId());
+            return resources;
+        }
+
+        private void createEmptyMultipleResource(LwM2mPath basePath, LwM2mModel model) {
+            if (basePath.getObjectId() != null && basePath.getResourceId() != null) {
+                ResourceModel resourceModel = model.getResourceModel(basePath.getObjectId(),
+                        basePath.getResourceId());
                 // We create it only if this respect the model
                 if (resourceModel == null || resourceModel.multiple) {
-                    Type resourceType = getResourceType(path, model, null);
-                    lwM2mResourceMap.put(path.getResourceId(), LwM2mMultipleResource.newResource(path.getResourceId(),
-                            new HashMap<Integer, Object>(), resourceType));
+                    Type resourceType = getResourceType(basePath, model, null);
+                    resources.put(basePath.getResourceId(), LwM2mMultipleResource
+                            .newResource(basePath.getResourceId(), new HashMap<Integer, Object>(), resourceType));
                 }
             }
         }
+    }
+
+    private static class MultipleResourceContent {
+        private final LwM2mPath path;
+        private final Type type;
+        private final Map<Integer, Object> values = new HashMap<>();
+
+        private MultipleResourceContent(LwM2mPath path, Type type) {
+            this.path = path;
+            this.type = type;
+        }
+    }
 
-        return lwM2mResourceMap;
+    private static Long computeTimestamp(Long baseTime, Long time) {
+        Long timestamp;
+        if (baseTime != null) {
+            if (time != null) {
+                timestamp = baseTime + time;
+            } else {
+                timestamp = baseTime;
+            }
+        } else {
+            if (time != null) {
+                timestamp = time;
+            } else {
+                timestamp = null;
+            }
+        }
+        return timestamp;
     }
 
     private static Object parseJsonValue(Object value, Type expectedType, LwM2mPath path) throws CodecException {
@@ -435,4 +761,4 @@ public class LwM2mNodeJsonDecoder {
         LOG.trace("unknown type for resource use string as default: {}", rscPath);
         return Type.STRING;
     }
-}
\ No newline at end of file
+}
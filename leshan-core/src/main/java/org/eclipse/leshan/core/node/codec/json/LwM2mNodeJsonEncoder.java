@@ -15,15 +15,11 @@
  *******************************************************************************/
 package org.eclipse.leshan.core.node.codec.json;
 
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.List;
 import java.util.Map.Entry;
 
-import org.eclipse.leshan.core.json.JsonArrayEntry;
-import org.eclipse.leshan.core.json.JsonRootObject;
-import org.eclipse.leshan.core.json.LwM2mJson;
-import org.eclipse.leshan.core.json.LwM2mJsonException;
 import org.eclipse.leshan.core.model.LwM2mModel;
 import org.eclipse.leshan.core.model.ResourceModel;
 import org.eclipse.leshan.core.model.ResourceModel.Type;
@@ -42,10 +38,17 @@ import org.eclipse.leshan.core.util.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * JSON encoder for {@link LwM2mNode}.
+ * <p>
+ * Entries are written straight into a {@link StringBuilder} while visiting the node, no JSON tree is built.
+ */
 public class LwM2mNodeJsonEncoder {
 
     private static final Logger LOG = LoggerFactory.getLogger(LwM2mNodeJsonEncoder.class);
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     public static byte[] encode(LwM2mNode node, LwM2mPath path, LwM2mModel model, LwM2mValueConverter converter)
             throws CodecException {
         Validate.notNull(node);
@@ -58,14 +61,7 @@ public class LwM2mNodeJsonEncoder {
         internalEncoder.requestPath = path;
         internalEncoder.converter = converter;
         node.accept(internalEncoder);
-        JsonRootObject jsonObject = new JsonRootObject();
-        jsonObject.setResourceList(internalEncoder.resourceList);
-        jsonObject.setBaseName(internalEncoder.baseName);
-        try {
-            return LwM2mJson.toJsonLwM2m(jsonObject).getBytes();
-        } catch (LwM2mJsonException e) {
-            throw new CodecException(e, "Unable to encode node[path:%s] : %s", path, node);
-        }
+        return toJson(internalEncoder.baseName, internalEncoder.entries);
     }
 
     public static byte[] encodeTimestampedData(List<TimestampedLwM2mNode> timestampedNodes, LwM2mPath path,
@@ -75,17 +71,14 @@ public class LwM2mNodeJsonEncoder {
         Validate.notNull(model);
 
         InternalEncoder internalEncoder = new InternalEncoder();
-        ArrayList<JsonArrayEntry> entries = new ArrayList<>();
+        internalEncoder.objectId = path.getObjectId();
+        internalEncoder.model = model;
+        internalEncoder.requestPath = path;
+        internalEncoder.converter = converter;
         String baseName = null;
         for (TimestampedLwM2mNode timestampedLwM2mNode : timestampedNodes) {
-            internalEncoder.objectId = path.getObjectId();
-            internalEncoder.model = model;
-            internalEncoder.requestPath = path;
-            internalEncoder.converter = converter;
-            internalEncoder.resourceList = null;
             internalEncoder.timestamp = timestampedLwM2mNode.getTimestamp();
             timestampedLwM2mNode.getNode().accept(internalEncoder);
-            entries.addAll(internalEncoder.resourceList);
             if (baseName != null) {
                 if (!baseName.equals(internalEncoder.baseName)) {
                     throw new CodecException(
@@ -96,15 +89,19 @@ public class LwM2mNodeJsonEncoder {
                 baseName = internalEncoder.baseName;
             }
         }
-        JsonRootObject jsonObject = new JsonRootObject();
-        jsonObject.setResourceList(entries);
-        jsonObject.setBaseName(internalEncoder.baseName);
-        try {
-            return LwM2mJson.toJsonLwM2m(jsonObject).getBytes();
-        } catch (LwM2mJsonException e) {
-            throw new CodecException(e, "Unable to encode timestamped nodes[path:%s] : %s", path, timestampedNodes);
-        }
+        return toJson(internalEncoder.baseName, internalEncoder.entries);
+    }
 
+    private static byte[] toJson(String baseName, StringBuilder entries) {
+        StringBuilder json = new StringBuilder(entries.length() + 32);
+        json.append('{');
+        if (baseName != null) {
+            json.append("\"bn\":");
+            appendString(json, baseName);
+            json.append(',');
+        }
+        json.append("\"e\":[").append(entries).append("]}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
     }
 
     private static class InternalEncoder implements LwM2mNodeVisitor {
@@ -116,7 +113,7 @@ public class LwM2mNodeJsonEncoder {
         private LwM2mValueConverter converter;
 
         // visitor output
-        private ArrayList<JsonArrayEntry> resourceList = null;
+        private final StringBuilder entries = new StringBuilder(256);
         private String baseName = null;
 
         @Override
@@ -129,11 +126,9 @@ public class LwM2mNodeJsonEncoder {
             baseName = requestPath.toString() + "/";
 
             // Create resources
-            resourceList = new ArrayList<>();
             for (LwM2mObjectInstance instance : object.getInstances().values()) {
                 for (LwM2mResource resource : instance.getResources().values()) {
-                    String prefixPath = Integer.toString(instance.getId()) + "/" + Integer.toString(resource.getId());
-                    resourceList.addAll(lwM2mResourceToJsonArrayEntry(prefixPath, timestamp, resource));
+                    writeResource(instance.getId(), true, resource);
                 }
             }
         }
@@ -141,23 +136,22 @@ public class LwM2mNodeJsonEncoder {
         @Override
         public void visit(LwM2mObjectInstance instance) {
             LOG.trace("Encoding object instance {} into JSON", instance);
-            resourceList = new ArrayList<>();
             if (instance.getId() == LwM2mObjectInstance.UNDEFINED) {
                 throw new CodecException("Unable to use JSON format without to give the object instance Id");
             }
             for (LwM2mResource resource : instance.getResources().values()) {
                 // Validate request path & compute resource path
-                String prefixPath;
+                boolean withInstanceId;
                 if (requestPath.isObject()) {
-                    prefixPath = instance.getId() + "/" + resource.getId();
+                    withInstanceId = true;
                 } else if (requestPath.isObjectInstance()) {
-                    prefixPath = Integer.toString(resource.getId());
+                    withInstanceId = false;
                 } else {
                     throw new CodecException("Invalid request path %s for JSON instance encoding", requestPath);
                 }
                 baseName = requestPath + "/";
                 // Create resources
-                resourceList.addAll(lwM2mResourceToJsonArrayEntry(prefixPath, timestamp, resource));
+                writeResource(instance.getId(), withInstanceId, resource);
             }
         }
 
@@ -172,89 +166,111 @@ public class LwM2mNodeJsonEncoder {
             } else {
                 baseName = requestPath.toString();
             }
-            resourceList = lwM2mResourceToJsonArrayEntry(null, timestamp, resource);
+            writeResource(requestPath.getObjectInstanceId(), false, resource);
         }
 
-        private ArrayList<JsonArrayEntry> lwM2mResourceToJsonArrayEntry(String resourcePath, Long timestamp,
-                LwM2mResource resource) {
+        /**
+         * Write the entries of a resource, names are relative to the base name : "instanceId/resourceId" if
+         * <code>withInstanceId</code> is true, "resourceId" if the resource is under the requested path.
+         */
+        private void writeResource(int instanceId, boolean withInstanceId, LwM2mResource resource) {
             // get type for this resource
             ResourceModel rSpec = model.getResourceModel(objectId, resource.getId());
             Type expectedType = rSpec != null ? rSpec.type : resource.getType();
-            ArrayList<JsonArrayEntry> resourcesList = new ArrayList<>();
+            boolean named = withInstanceId || !requestPath.isResource();
 
             // create JSON resource element
             if (resource.isMultiInstances()) {
                 for (Entry<Integer, ?> entry : resource.getValues().entrySet()) {
-                    // compute resource instance path
-                    String resourceInstancePath;
-                    if (resourcePath == null || resourcePath.isEmpty()) {
-                        resourceInstancePath = Integer.toString(entry.getKey());
-                    } else {
-                        resourceInstancePath = resourcePath + "/" + entry.getKey();
+                    startEntry();
+                    entries.append("\"n\":\"");
+                    if (withInstanceId) {
+                        entries.append(instanceId).append('/');
                     }
-
-                    // Create resource element
-                    JsonArrayEntry jsonResourceElt = new JsonArrayEntry();
-                    jsonResourceElt.setName(resourceInstancePath);
-                    jsonResourceElt.setTime(timestamp);
+                    if (named) {
+                        entries.append(resource.getId()).append('/');
+                    }
+                    entries.append(entry.getKey()).append("\",");
 
                     // Convert value using expected type
-                    LwM2mPath lwM2mResourceInstancePath = new LwM2mPath(resourceInstancePath);
+                    LwM2mPath resourceInstancePath = new LwM2mPath(objectId, instanceId, resource.getId(),
+                            entry.getKey());
                     Object convertedValue = converter.convertValue(entry.getValue(), resource.getType(), expectedType,
-                            lwM2mResourceInstancePath);
-                    this.setResourceValue(convertedValue, expectedType, jsonResourceElt, lwM2mResourceInstancePath);
-
-                    // Add it to the List
-                    resourcesList.add(jsonResourceElt);
+                            resourceInstancePath);
+                    writeValue(convertedValue, expectedType, resourceInstancePath);
+                    endEntry();
                 }
             } else {
-                // Create resource element
-                JsonArrayEntry jsonResourceElt = new JsonArrayEntry();
-                jsonResourceElt.setName(resourcePath);
-                jsonResourceElt.setTime(timestamp);
+                startEntry();
+                if (named) {
+                    entries.append("\"n\":\"");
+                    if (withInstanceId) {
+                        entries.append(instanceId).append('/');
+                    }
+                    entries.append(resource.getId()).append("\",");
+                }
 
                 // Convert value using expected type
-                LwM2mPath lwM2mResourcePath = resourcePath != null ? new LwM2mPath(resourcePath) : null;
-                this.setResourceValue(converter.convertValue(resource.getValue(), resource.getType(), expectedType,
-                        lwM2mResourcePath), expectedType, jsonResourceElt, lwM2mResourcePath);
+                LwM2mPath resourcePath = new LwM2mPath(objectId, instanceId, resource.getId());
+                writeValue(converter.convertValue(resource.getValue(), resource.getType(), expectedType, resourcePath),
+                        expectedType, resourcePath);
+                endEntry();
+            }
+        }
+
+        private void startEntry() {
+            if (entries.length() > 0) {
+                entries.append(',');
+            }
+            entries.append('{');
+        }
 
-                // Add it to the List
-                resourcesList.add(jsonResourceElt);
+        private void endEntry() {
+            if (timestamp != null) {
+                entries.append(",\"t\":").append(timestamp.longValue());
             }
-            return resourcesList;
+            entries.append('}');
         }
 
-        private void setResourceValue(Object value, Type type, JsonArrayEntry jsonResource, LwM2mPath resourcePath) {
+        private void writeValue(Object value, Type type, LwM2mPath resourcePath) {
             LOG.trace("Encoding value {} in JSON", value);
 
             if (type == null) {
                 throw new CodecException(
                         "Unable to encode value for resource {} without type(probably a executable one)", resourcePath);
             }
+            if (value == null) {
+                throw new CodecException("Unable to encode null value for resource %s", resourcePath);
+            }
 
             // Following table 20 in the Specs
             switch (type) {
             case STRING:
-                jsonResource.setStringValue((String) value);
+                entries.append("\"sv\":");
+                appendString(entries, (String) value);
                 break;
             case INTEGER:
             case FLOAT:
-                jsonResource.setFloatValue((Number) value);
+                entries.append("\"v\":");
+                appendNumber(((Number) value).doubleValue(), resourcePath);
                 break;
             case BOOLEAN:
-                jsonResource.setBooleanValue((Boolean) value);
+                entries.append("\"bv\":").append(((Boolean) value).booleanValue());
                 break;
             case TIME:
                 // Specs device object example page 44, rec 13 is Time
                 // represented as float?
-                jsonResource.setFloatValue((((Date) value).getTime() / 1000L));
+                entries.append("\"v\":");
+                appendNumber(((Date) value).getTime() / 1000L, resourcePath);
                 break;
             case OPAQUE:
-                jsonResource.setStringValue(Base64.encodeBase64String((byte[]) value));
+                entries.append("\"sv\":");
+                appendString(entries, Base64.encodeBase64String((byte[]) value));
                 break;
             case OBJLNK:
                 try {
-                    jsonResource.setStringValue(((ObjectLink) value).encodeToString());
+                    entries.append("\"sv\":");
+                    appendString(entries, ((ObjectLink) value).encodeToString());
                 } catch (IllegalArgumentException e) {
                     throw new CodecException(e, "Invalid value [%s] for objectLink resource [%s] ", value,
                             resourcePath);
@@ -264,5 +280,61 @@ public class LwM2mNodeJsonEncoder {
                 throw new CodecException("Invalid value type %s for %s", type, resourcePath);
             }
         }
+
+        // numbers are written as JSON double, without useless ".0"
+        private void appendNumber(double value, LwM2mPath resourcePath) {
+            if (Double.isInfinite(value) || Double.isNaN(value)) {
+                throw new CodecException("Infinite and NaN values are not allowed in JSON [%s] for resource %s", value,
+                        resourcePath);
+            }
+            if (value == (long) value && Math.abs(value) < 1e7 && (value != 0 || 1 / value > 0)) {
+                // fast path, same output as Double.toString() without ".0"
+                entries.append((long) value);
+            } else {
+                String s = Double.toString(value);
+                if (s.endsWith(".0")) {
+                    entries.append(s, 0, s.length() - 2);
+                } else {
+                    entries.append(s);
+                }
+            }
+        }
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            json.append(value, start, i);
+            start = i + 1;
+            switch (c) {
+            case '"':
+                json.append("\\\"");
+                break;
+            case '\\':
+                json.append("\\\\");
+                break;
+            case '\n':
+                json.append("\\n");
+                break;
+            case '\r':
+                json.append("\\r");
+                break;
+            case '\t':
+                json.append("\\t");
+                break;
+            default:
+                // other control characters, and line/paragraph separators which are invalid in javascript strings
+                json.append("\\u").append(HEX_DIGITS[(c >> 12) & 0xF]).append(HEX_DIGITS[(c >> 8) & 0xF])
+                        .append(HEX_DIGITS[(c >> 4) & 0xF]).append(HEX_DIGITS[c & 0xF]);
+            }
+        }
+        json.append(value, start, length);
+        json.append('"');
     }
-}
\ No newline at end of file
+}
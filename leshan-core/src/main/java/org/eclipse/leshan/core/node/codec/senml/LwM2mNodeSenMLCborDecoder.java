@@ -0,0 +1,367 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.node.codec.senml;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.eclipse.leshan.core.model.LwM2mModel;
+import org.eclipse.leshan.core.model.ResourceModel;
+import org.eclipse.leshan.core.model.ResourceModel.Type;
+import org.eclipse.leshan.core.node.LwM2mMultipleResource;
+import org.eclipse.leshan.core.node.LwM2mNode;
+import org.eclipse.leshan.core.node.LwM2mNodeException;
+import org.eclipse.leshan.core.node.LwM2mObject;
+import org.eclipse.leshan.core.node.LwM2mObjectInstance;
+import org.eclipse.leshan.core.node.LwM2mPath;
+import org.eclipse.leshan.core.node.LwM2mResource;
+import org.eclipse.leshan.core.node.LwM2mSingleResource;
+import org.eclipse.leshan.core.node.ObjectLink;
+import org.eclipse.leshan.core.node.TimestampedLwM2mNode;
+import org.eclipse.leshan.core.node.codec.CodecException;
+import org.eclipse.leshan.core.senml.SenMLCbor;
+import org.eclipse.leshan.core.senml.SenMLException;
+import org.eclipse.leshan.core.senml.SenMLPack;
+import org.eclipse.leshan.core.senml.SenMLRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SenML-CBOR decoder for {@link LwM2mNode}.
+ * <p>
+ * Base name and base time of a record apply to all following records, as defined in RFC 8428. A record without value
+ * only carries base fields, it is used to encode empty nodes.
+ */
+public class LwM2mNodeSenMLCborDecoder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LwM2mNodeSenMLCborDecoder.class);
+
+    @SuppressWarnings("unchecked")
+    public static <T extends LwM2mNode> T decode(byte[] content, LwM2mPath path, LwM2mModel model, Class<T> nodeClass)
+            throws CodecException {
+        List<TimestampedLwM2mNode> timestampedNodes = decodeTimestamped(content, path, model, nodeClass);
+        if (timestampedNodes.size() == 0) {
+            return null;
+        } else {
+            // return the most recent value
+            return (T) timestampedNodes.get(0).getNode();
+        }
+    }
+
+    public static List<TimestampedLwM2mNode> decodeTimestamped(byte[] content, LwM2mPath path, LwM2mModel model,
+            Class<? extends LwM2mNode> nodeClass) throws CodecException {
+        try {
+            SenMLPack pack = SenMLCbor.fromCbor(content != null ? content : new byte[0]);
+            return parseSenMLPack(pack, path, model, nodeClass);
+        } catch (SenMLException | LwM2mNodeException e) {
+            throw new CodecException(e, "Unable to deserialize SenML-CBOR [path:%s]", path);
+        }
+    }
+
+    // a record with its resolved path
+    private static class ResolvedRecord {
+        private final LwM2mPath path;
+        private final SenMLRecord record;
+
+        private ResolvedRecord(LwM2mPath path, SenMLRecord record) {
+            this.path = path;
+            this.record = record;
+        }
+    }
+
+    private static List<TimestampedLwM2mNode> parseSenMLPack(SenMLPack pack, LwM2mPath requestPath,
+            LwM2mModel model, Class<? extends LwM2mNode> nodeClass) throws CodecException {
+
+        LOG.trace("Parsing SenML-CBOR content for path {}: {}", requestPath, pack);
+
+        // Resolve records and group them by time-stamp
+        SortedMap<Long, Collection<ResolvedRecord>> recordsByTimestamp = new TreeMap<>(new Comparator<Long>() {
+            @Override
+            public int compare(Long o1, Long o2) {
+                // comparator which
+                // - supports null (time null means 0 if there is a base time)
+                // - reverses natural order (most recent value in first)
+                return Long.compare(o2 == null ? 0 : o2, o1 == null ? 0 : o1);
+            }
+        });
+        String baseName = "";
+        Long baseTime = null;
+        LwM2mPath basePath = requestPath;
+        for (SenMLRecord record : pack.getRecords()) {
+            if (record.getBaseName() != null) {
+                baseName = record.getBaseName();
+                basePath = extractAndValidatePath(baseName, "", requestPath);
+            }
+            if (record.getBaseTime() != null) {
+                baseTime = record.getBaseTime();
+            }
+            if (record.getResourceValue() == null) {
+                // only base fields
+                continue;
+            }
+
+            LwM2mPath nodePath = extractAndValidatePath(baseName, record.getName() == null ? "" : record.getName(),
+                    requestPath);
+            if (!nodePath.isResourceInstance() && !nodePath.isResource()) {
+                throw new CodecException(
+                        "Invalid path [%s] for resource, it should be a resource or a resource instance path",
+                        nodePath);
+            }
+
+            Long timestamp = computeTimestamp(baseTime, record.getTime());
+            Collection<ResolvedRecord> records = recordsByTimestamp.get(timestamp);
+            if (records == null) {
+                records = new ArrayList<>();
+                recordsByTimestamp.put(timestamp, records);
+            }
+            records.add(new ResolvedRecord(nodePath, record));
+        }
+
+        // Ensure there is at least one entry for null timestamp
+        if (recordsByTimestamp.isEmpty()) {
+            recordsByTimestamp.put(baseTime, new ArrayList<ResolvedRecord>());
+        }
+
+        // fill time-stamped nodes collection
+        List<TimestampedLwM2mNode> timestampedNodes = new ArrayList<>();
+        for (Entry<Long, Collection<ResolvedRecord>> entryByTimestamp : recordsByTimestamp.entrySet()) {
+
+            // Group records by instance
+            Map<Integer, Collection<ResolvedRecord>> recordsByInstanceId = groupRecordsByInstanceId(
+                    entryByTimestamp.getValue(), basePath);
+
+            // Create lwm2m node
+            LwM2mNode node;
+            if (nodeClass == LwM2mObject.class) {
+                Collection<LwM2mObjectInstance> instances = new ArrayList<>();
+                for (Entry<Integer, Collection<ResolvedRecord>> entryByInstanceId : recordsByInstanceId.entrySet()) {
+                    Map<Integer, LwM2mResource> resourcesMap = extractLwM2mResources(entryByInstanceId.getValue(),
+                            basePath, model);
+                    instances.add(new LwM2mObjectInstance(entryByInstanceId.getKey(), resourcesMap.values()));
+                }
+                node = new LwM2mObject(requestPath.getObjectId(), instances);
+            } else if (nodeClass == LwM2mObjectInstance.class) {
+                // validate we have resources for only 1 instance
+                if (recordsByInstanceId.size() != 1)
+                    throw new CodecException("One instance expected in the payload [path:%s]", requestPath);
+
+                // Extract resources
+                Entry<Integer, Collection<ResolvedRecord>> instanceEntry = recordsByInstanceId.entrySet().iterator()
+                        .next();
+                Map<Integer, LwM2mResource> resourcesMap = extractLwM2mResources(instanceEntry.getValue(), basePath,
+                        model);
+
+                // Create instance
+                node = new LwM2mObjectInstance(instanceEntry.getKey(), resourcesMap.values());
+            } else if (nodeClass == LwM2mResource.class) {
+                // validate we have resources for only 1 instance
+                if (recordsByInstanceId.size() > 1)
+                    throw new CodecException("Only one instance expected in the payload [path:%s]", requestPath);
+
+                // Extract resources
+                Collection<ResolvedRecord> records = recordsByInstanceId.isEmpty() ? new ArrayList<ResolvedRecord>()
+                        : recordsByInstanceId.values().iterator().next();
+                Map<Integer, LwM2mResource> resourcesMap = extractLwM2mResources(records, basePath, model);
+
+                // validate there is only 1 resource
+                if (resourcesMap.size() != 1)
+                    throw new CodecException("One resource should be present in the payload [path:%s]", requestPath);
+
+                node = resourcesMap.values().iterator().next();
+            } else {
+                throw new IllegalArgumentException("invalid node class: " + nodeClass);
+            }
+
+            // add time-stamped node
+            timestampedNodes.add(new TimestampedLwM2mNode(entryByTimestamp.getKey(), node));
+        }
+
+        return timestampedNodes;
+    }
+
+    private static Long computeTimestamp(Long baseTime, Long time) {
+        if (baseTime != null) {
+            return time != null ? baseTime + time : baseTime;
+        }
+        return time;
+    }
+
+    /**
+     * Group records by instanceId
+     *
+     * @return a map (instanceId => collection of records)
+     */
+    private static Map<Integer, Collection<ResolvedRecord>> groupRecordsByInstanceId(Collection<ResolvedRecord> records,
+            LwM2mPath basePath) {
+        Map<Integer, Collection<ResolvedRecord>> result = new LinkedHashMap<>();
+        for (ResolvedRecord record : records) {
+            Collection<ResolvedRecord> instanceRecords = result.get(record.path.getObjectInstanceId());
+            if (instanceRecords == null) {
+                instanceRecords = new ArrayList<>();
+                result.put(record.path.getObjectInstanceId(), instanceRecords);
+            }
+            instanceRecords.add(record);
+        }
+
+        // Create an entry for an empty instance if possible
+        if (result.isEmpty() && basePath.getObjectInstanceId() != null) {
+            result.put(basePath.getObjectInstanceId(), new ArrayList<ResolvedRecord>());
+        }
+        return result;
+    }
+
+    private static LwM2mPath extractAndValidatePath(String baseName, String name, LwM2mPath requestPath)
+            throws CodecException {
+        LwM2mPath path = new LwM2mPath(baseName + name);
+
+        // check returned path is under requested path
+        if (requestPath.getObjectId() != null && path.getObjectId() != null) {
+            if (!path.getObjectId().equals(requestPath.getObjectId())) {
+                throw new CodecException("resource path [%s] does not match requested path [%s].", path, requestPath);
+            }
+            if (requestPath.getObjectInstanceId() != null && path.getObjectInstanceId() != null) {
+                if (!path.getObjectInstanceId().equals(requestPath.getObjectInstanceId())) {
+                    throw new CodecException("Basename path [%s] does not match requested path [%s].", path,
+                            requestPath);
+                }
+                if (requestPath.getResourceId() != null && path.getResourceId() != null) {
+                    if (!path.getResourceId().equals(requestPath.getResourceId())) {
+                        throw new CodecException("Basename path [%s] does not match requested path [%s].", path,
+                                requestPath);
+                    }
+                }
+            }
+        }
+        return path;
+    }
+
+    private static Map<Integer, LwM2mResource> extractLwM2mResources(Collection<ResolvedRecord> records,
+            LwM2mPath basePath, LwM2mModel model) throws CodecException {
+        Map<Integer, LwM2mResource> lwM2mResourceMap = new HashMap<>();
+        Map<LwM2mPath, Map<Integer, Object>> multiResourceMap = new LinkedHashMap<>();
+        Map<LwM2mPath, Type> multiResourceTypes = new HashMap<>();
+        for (ResolvedRecord resolved : records) {
+            LwM2mPath nodePath = resolved.path;
+            if (nodePath.isResourceInstance()) {
+                // Multi-instance resource, values are gathered and resources are created later
+                LwM2mPath resourcePath = new LwM2mPath(nodePath.getObjectId(), nodePath.getObjectInstanceId(),
+                        nodePath.getResourceId());
+                Map<Integer, Object> values = multiResourceMap.get(resourcePath);
+                if (values == null) {
+                    values = new HashMap<>();
+                    multiResourceMap.put(resourcePath, values);
+                    multiResourceTypes.put(resourcePath, getResourceType(resourcePath, model, resolved.record));
+                }
+                Object value = parseSenMLValue(resolved.record, multiResourceTypes.get(resourcePath), nodePath);
+                if (values.put(nodePath.getResourceInstanceId(), value) != null) {
+                    throw new CodecException("2 RESOURCE_INSTANCE nodes with the same identifier %d for path %s",
+                            nodePath.getResourceInstanceId(), nodePath);
+                }
+            } else {
+                // Single resource
+                Type expectedType = getResourceType(nodePath, model, resolved.record);
+                LwM2mResource res = LwM2mSingleResource.newResource(nodePath.getResourceId(),
+                        parseSenMLValue(resolved.record, expectedType, nodePath), expectedType);
+                LwM2mResource previousRes = lwM2mResourceMap.put(nodePath.getResourceId(), res);
+                if (previousRes != null) {
+                    throw new CodecException("2 RESOURCE nodes (%s,%s) with the same identifier %d for path %s",
+                            previousRes, res, res.getId(), nodePath);
+                }
+            }
+        }
+
+        // Handle multi-instance resource.
+        for (Entry<LwM2mPath, Map<Integer, Object>> entry : multiResourceMap.entrySet()) {
+            LwM2mPath resourcePath = entry.getKey();
+            LwM2mResource resource = LwM2mMultipleResource.newResource(resourcePath.getResourceId(), entry.getValue(),
+                    multiResourceTypes.get(resourcePath));
+            LwM2mResource previousRes = lwM2mResourceMap.put(resourcePath.getResourceId(), resource);
+            if (previousRes != null) {
+                throw new CodecException("2 RESOURCE nodes (%s,%s) with the same identifier %d for path %s",
+                        previousRes, resource, resource.getId(), resourcePath);
+            }
+        }
+
+        // If we found nothing, we try to create an empty multi-instance resource
+        if (lwM2mResourceMap.isEmpty() && basePath.getObjectId() != null && basePath.getResourceId() != null) {
+            ResourceModel resourceModel = model.getResourceModel(basePath.getObjectId(), basePath.getResourceId());
+            // We create it only if this respect the model
+            if (resourceModel == null || resourceModel.multiple) {
+                Type resourceType = getResourceType(basePath, model, null);
+                lwM2mResourceMap.put(basePath.getResourceId(), LwM2mMultipleResource
+                        .newResource(basePath.getResourceId(), new HashMap<Integer, Object>(), resourceType));
+            }
+        }
+
+        return lwM2mResourceMap;
+    }
+
+    private static Object parseSenMLValue(SenMLRecord record, Type expectedType, LwM2mPath path)
+            throws CodecException {
+        Object value = record.getResourceValue();
+        LOG.trace("SenML-CBOR value for path {} and expected type {}: {}", path, expectedType, value);
+
+        try {
+            switch (expectedType) {
+            case INTEGER:
+                return ((Number) value).longValue();
+            case BOOLEAN:
+                return (Boolean) value;
+            case FLOAT:
+                return ((Number) value).doubleValue();
+            case TIME:
+                return new Date(((Number) value).longValue() * 1000L);
+            case OPAQUE:
+                return (byte[]) value;
+            case STRING:
+                return (String) value;
+            case OBJLNK:
+                return ObjectLink.decodeFromString((String) value);
+            default:
+                throw new CodecException("Unsupported type %s for path %s", expectedType, path);
+            }
+        } catch (Exception e) {
+            throw new CodecException(e, "Invalid content [%s] for type %s for path %s", value, expectedType, path);
+        }
+    }
+
+    private static Type getResourceType(LwM2mPath rscPath, LwM2mModel model, SenMLRecord record) {
+        // Use model type in priority
+        ResourceModel rscDesc = model.getResourceModel(rscPath.getObjectId(), rscPath.getResourceId());
+        if (rscDesc != null && rscDesc.type != null)
+            return rscDesc.type;
+
+        // Then SenML type
+        if (record != null) {
+            Type type = record.getType();
+            if (type != null)
+                return type;
+        }
+
+        // Else use String as default
+        LOG.trace("unknown type for resource use string as default: {}", rscPath);
+        return Type.STRING;
+    }
+}
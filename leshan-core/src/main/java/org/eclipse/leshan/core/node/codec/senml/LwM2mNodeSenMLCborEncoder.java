@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.node.codec.senml;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.eclipse.leshan.core.model.LwM2mModel;
+import org.eclipse.leshan.core.model.ResourceModel;
+import org.eclipse.leshan.core.model.ResourceModel.Type;
+import org.eclipse.leshan.core.node.LwM2mNode;
+import org.eclipse.leshan.core.node.LwM2mNodeVisitor;
+import org.eclipse.leshan.core.node.LwM2mObject;
+import org.eclipse.leshan.core.node.LwM2mObjectInstance;
+import org.eclipse.leshan.core.node.LwM2mPath;
+import org.eclipse.leshan.core.node.LwM2mResource;
+import org.eclipse.leshan.core.node.ObjectLink;
+import org.eclipse.leshan.core.node.TimestampedLwM2mNode;
+import org.eclipse.leshan.core.node.codec.CodecException;
+import org.eclipse.leshan.core.node.codec.LwM2mValueConverter;
+import org.eclipse.leshan.core.senml.SenMLCbor;
+import org.eclipse.leshan.core.senml.SenMLException;
+import org.eclipse.leshan.core.senml.SenMLPack;
+import org.eclipse.leshan.core.senml.SenMLRecord;
+import org.eclipse.leshan.core.util.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SenML-CBOR encoder for {@link LwM2mNode}.
+ * <p>
+ * The base name is only set on the first record. For time-stamped nodes, the base time is set on the first record of
+ * each node, so records of a same node do not repeat the time.
+ */
+public class LwM2mNodeSenMLCborEncoder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LwM2mNodeSenMLCborEncoder.class);
+
+    public static byte[] encode(LwM2mNode node, LwM2mPath path, LwM2mModel model, LwM2mValueConverter converter)
+            throws CodecException {
+        Validate.notNull(node);
+        Validate.notNull(path);
+        Validate.notNull(model);
+
+        InternalEncoder internalEncoder = new InternalEncoder();
+        internalEncoder.objectId = path.getObjectId();
+        internalEncoder.model = model;
+        internalEncoder.requestPath = path;
+        internalEncoder.converter = converter;
+        node.accept(internalEncoder);
+
+        List<SenMLRecord> records = internalEncoder.records;
+        firstRecord(records).setBaseName(internalEncoder.baseName);
+        try {
+            return SenMLCbor.toCbor(new SenMLPack(records));
+        } catch (SenMLException e) {
+            throw new CodecException(e, "Unable to encode node[path:%s] : %s", path, node);
+        }
+    }
+
+    public static byte[] encodeTimestampedData(List<TimestampedLwM2mNode> timestampedNodes, LwM2mPath path,
+            LwM2mModel model, LwM2mValueConverter converter) throws CodecException {
+        Validate.notNull(timestampedNodes);
+        Validate.notNull(path);
+        Validate.notNull(model);
+
+        InternalEncoder internalEncoder = new InternalEncoder();
+        List<SenMLRecord> records = new ArrayList<>();
+        String baseName = null;
+        Long baseTime = null;
+        for (TimestampedLwM2mNode timestampedLwM2mNode : timestampedNodes) {
+            internalEncoder.objectId = path.getObjectId();
+            internalEncoder.model = model;
+            internalEncoder.requestPath = path;
+            internalEncoder.converter = converter;
+            internalEncoder.records = null;
+            timestampedLwM2mNode.getNode().accept(internalEncoder);
+
+            // base time applies to all following records
+            Long timestamp = timestampedLwM2mNode.getTimestamp();
+            if (timestamp == null && baseTime != null) {
+                throw new CodecException("Unable to encode not time-stamped node after time-stamped ones for request %s",
+                        path);
+            }
+            if (timestamp != null && !timestamp.equals(baseTime)) {
+                firstRecord(internalEncoder.records).setBaseTime(timestamp);
+                baseTime = timestamp;
+            }
+            records.addAll(internalEncoder.records);
+
+            if (baseName != null) {
+                if (!baseName.equals(internalEncoder.baseName)) {
+                    throw new CodecException(
+                            "Unexpected baseName %s (%s expected) when encoding timestamped nodes for request %s",
+                            internalEncoder.baseName, baseName, path);
+                }
+            } else {
+                baseName = internalEncoder.baseName;
+            }
+        }
+        firstRecord(records).setBaseName(baseName);
+        try {
+            return SenMLCbor.toCbor(new SenMLPack(records));
+        } catch (SenMLException e) {
+            throw new CodecException(e, "Unable to encode timestamped nodes[path:%s] : %s", path, timestampedNodes);
+        }
+    }
+
+    private static SenMLRecord firstRecord(List<SenMLRecord> records) {
+        // an empty node is encoded as a record without value, which only carries base fields
+        if (records.isEmpty()) {
+            records.add(new SenMLRecord());
+        }
+        return records.get(0);
+    }
+
+    private static class InternalEncoder implements LwM2mNodeVisitor {
+        // visitor inputs
+        private int objectId;
+        private LwM2mModel model;
+        private LwM2mPath requestPath;
+        private LwM2mValueConverter converter;
+
+        // visitor output
+        private List<SenMLRecord> records = null;
+        private String baseName = null;
+
+        @Override
+        public void visit(LwM2mObject object) {
+            LOG.trace("Encoding Object {} into SenML-CBOR", object);
+            // Validate request path
+            if (!requestPath.isObject()) {
+                throw new CodecException("Invalid request path %s for SenML-CBOR object encoding", requestPath);
+            }
+            baseName = requestPath.toString() + "/";
+
+            // Create records
+            records = new ArrayList<>();
+            for (LwM2mObjectInstance instance : object.getInstances().values()) {
+                for (LwM2mResource resource : instance.getResources().values()) {
+                    String prefixPath = Integer.toString(instance.getId()) + "/" + Integer.toString(resource.getId());
+                    addRecords(prefixPath, resource);
+                }
+            }
+        }
+
+        @Override
+        public void visit(LwM2mObjectInstance instance) {
+            LOG.trace("Encoding object instance {} into SenML-CBOR", instance);
+            records = new ArrayList<>();
+            if (instance.getId() == LwM2mObjectInstance.UNDEFINED) {
+                throw new CodecException("Unable to use SenML-CBOR format without to give the object instance Id");
+            }
+            // Validate request path & compute base name
+            String prefix;
+            if (requestPath.isObject()) {
+                prefix = instance.getId() + "/";
+            } else if (requestPath.isObjectInstance()) {
+                prefix = "";
+            } else {
+                throw new CodecException("Invalid request path %s for SenML-CBOR instance encoding", requestPath);
+            }
+            baseName = requestPath + "/";
+
+            // Create records
+            for (LwM2mResource resource : instance.getResources().values()) {
+                addRecords(prefix + resource.getId(), resource);
+            }
+        }
+
+        @Override
+        public void visit(LwM2mResource resource) {
+            LOG.trace("Encoding resource {} into SenML-CBOR", resource);
+            if (!requestPath.isResource()) {
+                throw new CodecException("Invalid request path %s for SenML-CBOR resource encoding", requestPath);
+            }
+            if (resource.isMultiInstances()) {
+                baseName = requestPath.toString() + "/";
+            } else {
+                baseName = requestPath.toString();
+            }
+            records = new ArrayList<>();
+            addRecords(null, resource);
+        }
+
+        private void addRecords(String resourcePath, LwM2mResource resource) {
+            // get type for this resource
+            ResourceModel rSpec = model.getResourceModel(objectId, resource.getId());
+            Type expectedType = rSpec != null ? rSpec.type : resource.getType();
+
+            if (resource.isMultiInstances()) {
+                for (Entry<Integer, ?> entry : resource.getValues().entrySet()) {
+                    // compute resource instance path
+                    String resourceInstancePath;
+                    if (resourcePath == null || resourcePath.isEmpty()) {
+                        resourceInstancePath = Integer.toString(entry.getKey());
+                    } else {
+                        resourceInstancePath = resourcePath + "/" + entry.getKey();
+                    }
+
+                    SenMLRecord record = new SenMLRecord();
+                    record.setName(resourceInstancePath);
+
+                    // Convert value using expected type
+                    LwM2mPath lwM2mResourceInstancePath = new LwM2mPath(resourceInstancePath);
+                    Object convertedValue = converter.convertValue(entry.getValue(), resource.getType(), expectedType,
+                            lwM2mResourceInstancePath);
+                    setResourceValue(convertedValue, expectedType, record, lwM2mResourceInstancePath);
+                    records.add(record);
+                }
+            } else {
+                SenMLRecord record = new SenMLRecord();
+                record.setName(resourcePath);
+
+                // Convert value using expected type
+                LwM2mPath lwM2mResourcePath = resourcePath != null ? new LwM2mPath(resourcePath) : null;
+                setResourceValue(converter.convertValue(resource.getValue(), resource.getType(), expectedType,
+                        lwM2mResourcePath), expectedType, record, lwM2mResourcePath);
+                records.add(record);
+            }
+        }
+
+        private void setResourceValue(Object value, Type type, SenMLRecord record, LwM2mPath resourcePath) {
+            LOG.trace("Encoding value {} in SenML-CBOR", value);
+
+            if (type == null) {
+                throw new CodecException(
+                        "Unable to encode value for resource {} without type(probably a executable one)", resourcePath);
+            }
+
+            switch (type) {
+            case STRING:
+                record.setStringValue((String) value);
+                break;
+            case INTEGER:
+            case FLOAT:
+                record.setNumberValue((Number) value);
+                break;
+            case BOOLEAN:
+                record.setBooleanValue((Boolean) value);
+                break;
+            case TIME:
+                record.setNumberValue(((Date) value).getTime() / 1000L);
+                break;
+            case OPAQUE:
+                record.setOpaqueValue((byte[]) value);
+                break;
+            case OBJLNK:
+                try {
+                    record.setObjectLinkValue(((ObjectLink) value).encodeToString());
+                } catch (IllegalArgumentException e) {
+                    throw new CodecException(e, "Invalid value [%s] for objectLink resource [%s] ", value,
+                            resourcePath);
+                }
+                break;
+            default:
+                throw new CodecException("Invalid value type %s for %s", type, resourcePath);
+            }
+        }
+    }
+}
@@ -15,8 +15,6 @@
  *******************************************************************************/
 package org.eclipse.leshan.core.node.codec.tlv;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Map.Entry;
@@ -34,32 +32,62 @@ import org.eclipse.leshan.core.node.LwM2mResource;
 import org.eclipse.leshan.core.node.ObjectLink;
 import org.eclipse.leshan.core.node.codec.CodecException;
 import org.eclipse.leshan.core.node.codec.LwM2mValueConverter;
-import org.eclipse.leshan.core.tlv.Tlv;
 import org.eclipse.leshan.core.tlv.Tlv.TlvType;
-import org.eclipse.leshan.core.tlv.TlvEncoder;
+import org.eclipse.leshan.core.tlv.TlvWriter;
 import org.eclipse.leshan.core.util.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * TLV encoder for {@link LwM2mNode}.
+ * <p>
+ * Nodes are written in a single pass into a {@link TlvWriter}. By default a writer is pooled per thread, so encoding
+ * only allocates the returned byte array.
  */
 public class LwM2mNodeTlvEncoder {
 
     private static final Logger LOG = LoggerFactory.getLogger(LwM2mNodeTlvEncoder.class);
 
+    // pooled writers bigger than this are released, to not keep large buffers for each thread
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<TlvWriter> WRITERS = new ThreadLocal<TlvWriter>() {
+        @Override
+        protected TlvWriter initialValue() {
+            return new TlvWriter(1024);
+        }
+    };
+
     public static byte[] encode(LwM2mNode node, LwM2mPath path, LwM2mModel model, LwM2mValueConverter converter)
             throws CodecException {
+        TlvWriter writer = WRITERS.get();
+        writer.reset();
+        try {
+            encode(node, path, model, converter, writer);
+            return writer.toByteArray();
+        } finally {
+            if (writer.capacity() > MAX_POOLED_CAPACITY) {
+                WRITERS.remove();
+            }
+        }
+    }
+
+    /**
+     * Encode the node into the given writer, which can be reused by the caller for several encodings.
+     */
+    public static void encode(LwM2mNode node, LwM2mPath path, LwM2mModel model, LwM2mValueConverter converter,
+            TlvWriter writer) throws CodecException {
         Validate.notNull(node);
         Validate.notNull(path);
         Validate.notNull(model);
+        Validate.notNull(writer);
 
         InternalEncoder internalEncoder = new InternalEncoder();
         internalEncoder.path = path;
         internalEncoder.model = model;
         internalEncoder.converter = converter;
+        internalEncoder.writer = writer;
         node.accept(internalEncoder);
-        return internalEncoder.out.toByteArray();
     }
 
     private static class InternalEncoder implements LwM2mNodeVisitor {
@@ -70,28 +98,18 @@ public class LwM2mNodeTlvEncoder {
         private LwM2mValueConverter converter;
 
         // visitor output
-        private ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private TlvWriter writer;
 
         @Override
         public void visit(LwM2mObject object) {
             LOG.trace("Encoding object {} into TLV", object);
 
-            Tlv[] tlvs;
-
             // encoded as an array of instances
-            tlvs = new Tlv[object.getInstances().size()];
-            int i = 0;
             for (Entry<Integer, LwM2mObjectInstance> instance : object.getInstances().entrySet()) {
-                Tlv[] resources = encodeResources(instance.getValue().getResources().values(),
+                writer.startContainer(TlvType.OBJECT_INSTANCE, instance.getKey());
+                encodeResources(instance.getValue().getResources().values(),
                         new LwM2mPath(object.getId(), instance.getKey()));
-                tlvs[i] = new Tlv(TlvType.OBJECT_INSTANCE, resources, null, instance.getKey());
-                i++;
-            }
-
-            try {
-                out.write(TlvEncoder.encode(tlvs).array());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+                writer.endContainer();
             }
         }
 
@@ -99,23 +117,16 @@ public class LwM2mNodeTlvEncoder {
         public void visit(LwM2mObjectInstance instance) {
             LOG.trace("Encoding object instance {} into TLV", instance);
 
-            Tlv[] tlvs;
             if (path.isObjectInstance() || instance.getId() == LwM2mObjectInstance.UNDEFINED) {
                 // the instanceId is part of the request path or is undefined
                 // so the instance TLV layer is not needed.
                 // encoded as an array of resource TLVs
-                tlvs = encodeResources(instance.getResources().values(), new LwM2mIncompletePath(path.getObjectId()));
+                encodeResources(instance.getResources().values(), new LwM2mIncompletePath(path.getObjectId()));
             } else {
                 // encoded as an instance TLV
-                Tlv[] resources = encodeResources(instance.getResources().values(),
-                        new LwM2mPath(path.getObjectId(), instance.getId()));
-                tlvs = new Tlv[] { new Tlv(TlvType.OBJECT_INSTANCE, resources, null, instance.getId()) };
-            }
-
-            try {
-                out.write(TlvEncoder.encode(tlvs).array());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+                writer.startContainer(TlvType.OBJECT_INSTANCE, instance.getId());
+                encodeResources(instance.getResources().values(), new LwM2mPath(path.getObjectId(), instance.getId()));
+                writer.endContainer();
             }
         }
 
@@ -123,52 +134,38 @@ public class LwM2mNodeTlvEncoder {
         public void visit(LwM2mResource resource) {
             LOG.trace("Encoding resource {} into TLV", resource);
 
-            Tlv rTlv = encodeResource(resource, path);
-
-            try {
-                out.write(TlvEncoder.encode(new Tlv[] { rTlv }).array());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            encodeResource(resource, path);
         }
 
-        private Tlv[] encodeResources(Collection<LwM2mResource> resources, LwM2mPath instancePath) {
-            Tlv[] rTlvs = new Tlv[resources.size()];
-            int i = 0;
+        private void encodeResources(Collection<LwM2mResource> resources, LwM2mPath instancePath) {
             for (LwM2mResource resource : resources) {
-                rTlvs[i] = encodeResource(resource, instancePath.append(resource.getId()));
-                i++;
+                encodeResource(resource, instancePath.append(resource.getId()));
             }
-            return rTlvs;
         }
 
-        private Tlv encodeResource(LwM2mResource resource, LwM2mPath resourcePath) {
+        private void encodeResource(LwM2mResource resource, LwM2mPath resourcePath) {
             ResourceModel rSpec = model.getResourceModel(path.getObjectId(), resource.getId());
             Type expectedType = rSpec != null ? rSpec.type : resource.getType();
 
-            Tlv rTlv;
             if (resource.isMultiInstances()) {
-                Tlv[] instances = new Tlv[resource.getValues().size()];
-                int i = 0;
+                writer.startContainer(TlvType.MULTIPLE_RESOURCE, resource.getId());
                 for (Entry<Integer, ?> entry : resource.getValues().entrySet()) {
                     LwM2mPath resourceInstancePath = resourcePath.append(entry.getKey());
                     Object convertedValue = converter.convertValue(entry.getValue(), resource.getType(), expectedType,
                             resourceInstancePath);
-                    instances[i] = new Tlv(TlvType.RESOURCE_INSTANCE, null,
-                            this.encodeTlvValue(convertedValue, expectedType, resourceInstancePath), entry.getKey());
-                    i++;
+                    this.encodeTlvValue(TlvType.RESOURCE_INSTANCE, entry.getKey(), convertedValue, expectedType,
+                            resourceInstancePath);
                 }
-                rTlv = new Tlv(TlvType.MULTIPLE_RESOURCE, instances, null, resource.getId());
+                writer.endContainer();
             } else {
                 Object convertedValue = converter.convertValue(resource.getValue(), resource.getType(), expectedType,
                         resourcePath);
-                rTlv = new Tlv(TlvType.RESOURCE_VALUE, null,
-                        this.encodeTlvValue(convertedValue, expectedType, resourcePath), resource.getId());
+                this.encodeTlvValue(TlvType.RESOURCE_VALUE, resource.getId(), convertedValue, expectedType,
+                        resourcePath);
             }
-            return rTlv;
         }
 
-        private byte[] encodeTlvValue(Object value, Type type, LwM2mPath path) {
+        private void encodeTlvValue(TlvType tlvType, int id, Object value, Type type, LwM2mPath path) {
             LOG.trace("Encoding value {} in TLV", value);
             if (type == null) {
                 throw new CodecException(
@@ -178,19 +175,30 @@ public class LwM2mNodeTlvEncoder {
             try {
                 switch (type) {
                 case STRING:
-                    return TlvEncoder.encodeString((String) value);
+                    writer.writeString(tlvType, id, (String) value);
+                    break;
                 case INTEGER:
-                    return TlvEncoder.encodeInteger((Number) value);
+                    writer.writeInteger(tlvType, id, ((Number) value).longValue());
+                    break;
                 case FLOAT:
-                    return TlvEncoder.encodeFloat((Number) value);
+                    if (value instanceof Float) {
+                        writer.writeFloat(tlvType, id, (Float) value);
+                    } else {
+                        writer.writeDouble(tlvType, id, ((Number) value).doubleValue());
+                    }
+                    break;
                 case BOOLEAN:
-                    return TlvEncoder.encodeBoolean((Boolean) value);
+                    writer.writeBoolean(tlvType, id, (Boolean) value);
+                    break;
                 case TIME:
-                    return TlvEncoder.encodeDate((Date) value);
+                    writer.writeDate(tlvType, id, (Date) value);
+                    break;
                 case OPAQUE:
-                    return (byte[]) value;
+                    writer.writeOpaque(tlvType, id, (byte[]) value);
+                    break;
                 case OBJLNK:
-                    return TlvEncoder.encodeObjlnk((ObjectLink) value);
+                    writer.writeObjlnk(tlvType, id, (ObjectLink) value);
+                    break;
                 default:
                     throw new CodecException("Invalid value %s for type %s of %s", value, type, path);
                 }
@@ -199,4 +207,4 @@ public class LwM2mNodeTlvEncoder {
             }
         }
     }
-}
\ No newline at end of file
+}
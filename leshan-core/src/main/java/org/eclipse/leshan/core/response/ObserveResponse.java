@@ -15,6 +15,8 @@
  *******************************************************************************/
 package org.eclipse.leshan.core.response;
 
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import org.eclipse.leshan.core.ResponseCode;
@@ -33,6 +35,12 @@ public class ObserveResponse extends ReadResponse {
     protected final Observation observation;
     protected final List<TimestampedLwM2mNode> timestampedValues;
 
+    // content decoded on demand
+    private final ContentDecoder contentDecoder;
+    private boolean decoded;
+    private LwM2mNode decodedContent;
+    private List<TimestampedLwM2mNode> decodedTimestampedValues;
+
     public ObserveResponse(ResponseCode code, LwM2mNode content, List<TimestampedLwM2mNode> timestampedValues,
             Observation observation, String errorMessage) {
         this(code, content, timestampedValues, observation, errorMessage, null);
@@ -51,10 +59,106 @@ public class ObserveResponse extends ReadResponse {
 
         this.observation = observation;
         this.timestampedValues = timestampedValues;
+        this.contentDecoder = null;
+    }
+
+    /**
+     * Create a successful response which content is decoded from the payload on first access, then cached.
+     * <p>
+     * If the payload is malformed, {@link #getContent()} and {@link #getTimestampedLwM2mNode()} raise an
+     * {@link InvalidResponseException}.
+     *
+     * @param code the response code, {@link ResponseCode#CONTENT} or {@link ResponseCode#CHANGED}
+     * @param observation the observation concerned by this response
+     * @param contentDecoder used to decode the content on demand
+     * @param coapResponse the underlying CoAP response
+     *
+     * @since 1.4
+     */
+    public ObserveResponse(ResponseCode code, Observation observation, ContentDecoder contentDecoder,
+            Object coapResponse) {
+        super(code, coapResponse);
+
+        if (!ResponseCode.CONTENT.equals(code) && !ResponseCode.CHANGED.equals(code))
+            throw new InvalidResponseException("Only successful response could have content decoded on demand");
+        if (contentDecoder == null)
+            throw new InvalidResponseException("Content decoder is mandatory");
+
+        this.observation = observation;
+        this.timestampedValues = null;
+        this.contentDecoder = contentDecoder;
+    }
+
+    @Override
+    public LwM2mNode getContent() {
+        if (contentDecoder == null) {
+            return content;
+        }
+        decode();
+        return decodedContent;
     }
 
     public List<TimestampedLwM2mNode> getTimestampedLwM2mNode() {
-        return timestampedValues;
+        if (contentDecoder == null) {
+            return timestampedValues;
+        }
+        decode();
+        return decodedTimestampedValues;
+    }
+
+    /**
+     * Iterate over the time-stamped nodes of this response, or over the content as a node without time-stamp.
+     * <p>
+     * If the content is decoded on demand and was not accessed yet, nodes are decoded one at a time while iterating
+     * and are not cached. This allows to handle large payloads of historical values without building all nodes.
+     *
+     * @return an iterator which can raise an {@link InvalidResponseException} if the payload is malformed.
+     *
+     * @since 1.4
+     */
+    public Iterator<TimestampedLwM2mNode> iterateTimestampedLwM2mNode() {
+        if (contentDecoder != null) {
+            synchronized (this) {
+                if (!decoded) {
+                    return contentDecoder.iterate();
+                }
+            }
+        }
+        List<TimestampedLwM2mNode> values = getTimestampedLwM2mNode();
+        if (values != null) {
+            return values.iterator();
+        }
+        LwM2mNode node = getContent();
+        if (node == null) {
+            return Collections.<TimestampedLwM2mNode> emptyIterator();
+        }
+        return Collections.singletonList(new TimestampedLwM2mNode(null, node)).iterator();
+    }
+
+    /**
+     * @return <code>false</code> if the content is decoded on demand and was not accessed yet.
+     *
+     * @since 1.4
+     */
+    public synchronized boolean isContentDecoded() {
+        return contentDecoder == null || decoded;
+    }
+
+    private synchronized void decode() {
+        if (decoded) {
+            return;
+        }
+        List<TimestampedLwM2mNode> nodes = contentDecoder.decode();
+        if (nodes == null || nodes.isEmpty())
+            throw new InvalidResponseException("Content is mandatory for successful response");
+
+        if (nodes.size() == 1 && !nodes.get(0).isTimestamped()) {
+            decodedContent = nodes.get(0).getNode();
+        } else {
+            decodedContent = nodes.get(0).getNode();
+            decodedTimestampedValues = nodes;
+        }
+        decoded = true;
     }
 
     @Override
@@ -67,17 +171,42 @@ public class ObserveResponse extends ReadResponse {
     public String toString() {
         if (errorMessage != null)
             return String.format("ObserveResponse [code=%s, errormessage=%s]", code, errorMessage);
-        else if (timestampedValues != null)
+        else if (!isContentDecoded())
+            return String.format("ObserveResponse [code=%s, content=<not decoded>, observation=%s]", code,
+                    observation);
+        else if (getTimestampedLwM2mNode() != null)
             return String.format("ObserveResponse [code=%s, content=%s, observation=%s, timestampedValues= %d nodes]",
-                    code, content, observation, timestampedValues.size());
+                    code, getContent(), observation, getTimestampedLwM2mNode().size());
         else
-            return String.format("ObserveResponse [code=%s, content=%s, observation=%s]", code, content, observation);
+            return String.format("ObserveResponse [code=%s, content=%s, observation=%s]", code, getContent(),
+                    observation);
     }
 
     public Observation getObservation() {
         return observation;
     }
 
+    /**
+     * Decodes the content of an {@link ObserveResponse} on demand.
+     *
+     * @since 1.4
+     */
+    public interface ContentDecoder {
+
+        /**
+         * @return the time-stamped nodes of the payload, ordered by time-stamp.
+         * @throws InvalidResponseException if the payload is malformed.
+         */
+        List<TimestampedLwM2mNode> decode() throws InvalidResponseException;
+
+        /**
+         * @return an iterator which decodes time-stamped nodes of the payload one at a time, and can raise an
+         *         {@link InvalidResponseException} if the payload is malformed.
+         * @throws InvalidResponseException if the payload is malformed.
+         */
+        Iterator<TimestampedLwM2mNode> iterate() throws InvalidResponseException;
+    }
+
     // Syntactic sugar static constructors :
 
     public static ObserveResponse success(LwM2mNode content) {
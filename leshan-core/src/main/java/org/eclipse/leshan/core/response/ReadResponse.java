@@ -44,6 +44,17 @@ public class ReadResponse extends AbstractLwM2mResponse {
         this.content = content;
     }
 
+    /**
+     * Create a response which content is not available at creation, subclasses must override {@link #getContent()} to
+     * provide it.
+     *
+     * @since 1.4
+     */
+    protected ReadResponse(ResponseCode code, Object coapResponse) {
+        super(code, null, coapResponse);
+        this.content = null;
+    }
+
     @Override
     public boolean isSuccess() {
         return getCode() == ResponseCode.CONTENT;
@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.senml;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A minimal CBOR reader (RFC 7049) supporting the data items used by SenML.
+ * <p>
+ * Tags are ignored, definite and indefinite length arrays and maps are supported but strings must have a definite
+ * length. Skipped containers can not be nested more than {@link #MAX_NESTING_DEPTH} levels deep.
+ */
+class CborReader {
+
+    /** Length returned for indefinite length arrays or maps */
+    public static final int INDEFINITE = -1;
+
+    /** Maximum nesting of skipped arrays and maps, SenML itself only uses 2 levels */
+    public static final int MAX_NESTING_DEPTH = 16;
+
+    private static final int BREAK = 0xFF;
+
+    private final byte[] content;
+    private int pos;
+
+    public CborReader(byte[] content) {
+        this.content = content;
+    }
+
+    public boolean hasMore() {
+        return pos < content.length;
+    }
+
+    /**
+     * @return the number of items of the array or {@link #INDEFINITE}.
+     */
+    public int readArrayHeader() throws SenMLException {
+        return readContainerHeader(4, "array");
+    }
+
+    /**
+     * @return the number of pairs of the map or {@link #INDEFINITE}.
+     */
+    public int readMapHeader() throws SenMLException {
+        return readContainerHeader(5, "map");
+    }
+
+    /**
+     * Consume the "break" ending an indefinite length container if it is the next byte.
+     *
+     * @return <code>true</code> if a break was consumed.
+     */
+    public boolean readBreak() throws SenMLException {
+        checkAvailable(1);
+        if ((content[pos] & 0xFF) == BREAK) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Read a simple data item.
+     *
+     * @return a {@link Long}, a {@link Double}, a {@link Boolean}, a {@link String}, a byte array or <code>null</code>.
+     */
+    public Object readValue() throws SenMLException {
+        int initialByte = readByte();
+        int majorType = initialByte >>> 5;
+        // ignore tags
+        while (majorType == 6) {
+            readArgument(initialByte & 0x1F);
+            initialByte = readByte();
+            majorType = initialByte >>> 5;
+        }
+        int additionalInfo = initialByte & 0x1F;
+        switch (majorType) {
+        case 0:
+            return readPositiveLong(additionalInfo);
+        case 1:
+            return -1 - readPositiveLong(additionalInfo);
+        case 2:
+            return readRaw(readLength(additionalInfo));
+        case 3:
+            return new String(readRaw(readLength(additionalInfo)), StandardCharsets.UTF_8);
+        case 7:
+            return readSimpleValue(additionalInfo);
+        default:
+            throw new SenMLException("Unexpected CBOR major type %d at offset %d", majorType, pos - 1);
+        }
+    }
+
+    /**
+     * Skip the next data item, including nested ones.
+     */
+    public void skip() throws SenMLException {
+        skip(0);
+    }
+
+    private void skip(int depth) throws SenMLException {
+        checkAvailable(1);
+        int majorType = (content[pos] & 0xFF) >>> 5;
+        if (majorType == 4 || majorType == 5) {
+            if (depth >= MAX_NESTING_DEPTH) {
+                throw new SenMLException("CBOR nesting exceeds %d levels at offset %d", MAX_NESTING_DEPTH, pos);
+            }
+            int length = majorType == 4 ? readArrayHeader() : readMapHeader();
+            int nbItems = majorType == 4 ? length : length * 2;
+            if (length == INDEFINITE) {
+                while (!readBreak()) {
+                    skip(depth + 1);
+                }
+            } else {
+                for (int i = 0; i < nbItems; i++) {
+                    skip(depth + 1);
+                }
+            }
+        } else {
+            readValue();
+        }
+    }
+
+    private int readContainerHeader(int expectedMajorType, String name) throws SenMLException {
+        int initialByte = readByte();
+        if (initialByte >>> 5 != expectedMajorType) {
+            throw new SenMLException("CBOR %s expected at offset %d", name, pos - 1);
+        }
+        int additionalInfo = initialByte & 0x1F;
+        if (additionalInfo == 31) {
+            return INDEFINITE;
+        }
+        return readLength(additionalInfo);
+    }
+
+    private Object readSimpleValue(int additionalInfo) throws SenMLException {
+        switch (additionalInfo) {
+        case 20:
+            return Boolean.FALSE;
+        case 21:
+            return Boolean.TRUE;
+        case 22: // null
+        case 23: // undefined
+            return null;
+        case 25:
+            return halfToDouble((int) readBigEndian(2));
+        case 26:
+            return (double) Float.intBitsToFloat((int) readBigEndian(4));
+        case 27:
+            return Double.longBitsToDouble(readBigEndian(8));
+        default:
+            throw new SenMLException("Unsupported CBOR simple value %d at offset %d", additionalInfo, pos - 1);
+        }
+    }
+
+    private static double halfToDouble(int half) {
+        int exponent = (half >> 10) & 0x1F;
+        int mantissa = half & 0x3FF;
+        double value;
+        if (exponent == 0) {
+            value = mantissa * Math.pow(2, -24);
+        } else if (exponent != 31) {
+            value = (mantissa + 1024) * Math.pow(2, exponent - 25);
+        } else {
+            value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+        }
+        return (half & 0x8000) != 0 ? -value : value;
+    }
+
+    private long readPositiveLong(int additionalInfo) throws SenMLException {
+        long value = readArgument(additionalInfo);
+        if (value < 0) {
+            throw new SenMLException("CBOR integer at offset %d does not fit in a long", pos);
+        }
+        return value;
+    }
+
+    private int readLength(int additionalInfo) throws SenMLException {
+        long length = readArgument(additionalInfo);
+        if (length < 0 || length > content.length - pos) {
+            throw new SenMLException("Invalid CBOR length %d at offset %d", length, pos);
+        }
+        return (int) length;
+    }
+
+    private long readArgument(int additionalInfo) throws SenMLException {
+        if (additionalInfo < 24) {
+            return additionalInfo;
+        }
+        switch (additionalInfo) {
+        case 24:
+            return readBigEndian(1);
+        case 25:
+            return readBigEndian(2);
+        case 26:
+            return readBigEndian(4);
+        case 27:
+            return readBigEndian(8);
+        default:
+            throw new SenMLException("Unsupported CBOR additional information %d at offset %d", additionalInfo, pos);
+        }
+    }
+
+    private long readBigEndian(int length) throws SenMLException {
+        checkAvailable(length);
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (content[pos++] & 0xFF);
+        }
+        return value;
+    }
+
+    private byte[] readRaw(int length) throws SenMLException {
+        checkAvailable(length);
+        byte[] bytes = new byte[length];
+        System.arraycopy(content, pos, bytes, 0, length);
+        pos += length;
+        return bytes;
+    }
+
+    private int readByte() throws SenMLException {
+        checkAvailable(1);
+        return content[pos++] & 0xFF;
+    }
+
+    private void checkAvailable(int length) throws SenMLException {
+        if (pos + length > content.length) {
+            throw new SenMLException("Unexpected end of CBOR content at offset %d", pos);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.senml;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A minimal CBOR writer (RFC 7049) supporting the data items used by SenML.
+ * <p>
+ * Floating point values are written in single precision when it is lossless, in double precision otherwise.
+ */
+class CborWriter {
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTES = 2;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+
+    private byte[] buffer;
+    private int size;
+
+    public CborWriter(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    public void writeArrayHeader(int length) {
+        writeHeader(MAJOR_ARRAY, length);
+    }
+
+    public void writeMapHeader(int length) {
+        writeHeader(MAJOR_MAP, length);
+    }
+
+    public void writeLong(long value) {
+        if (value >= 0) {
+            writeHeader(MAJOR_UNSIGNED, value);
+        } else {
+            writeHeader(MAJOR_NEGATIVE, -1 - value);
+        }
+    }
+
+    public void writeDouble(double value) {
+        float f = (float) value;
+        if (f == value || Double.isNaN(value)) {
+            ensureCapacity(5);
+            buffer[size++] = (byte) 0xFA;
+            writeBigEndian(Float.floatToIntBits(f), 4);
+        } else {
+            ensureCapacity(9);
+            buffer[size++] = (byte) 0xFB;
+            writeBigEndian(Double.doubleToLongBits(value), 8);
+        }
+    }
+
+    public void writeBoolean(boolean value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) (value ? 0xF5 : 0xF4);
+    }
+
+    public void writeText(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeHeader(MAJOR_TEXT, bytes.length);
+        writeRaw(bytes);
+    }
+
+    public void writeBytes(byte[] value) {
+        writeHeader(MAJOR_BYTES, value.length);
+        writeRaw(value);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void writeHeader(int majorType, long argument) {
+        int initialByte = majorType << 5;
+        ensureCapacity(9);
+        if (argument < 24) {
+            buffer[size++] = (byte) (initialByte | argument);
+        } else if (argument < 0x100) {
+            buffer[size++] = (byte) (initialByte | 24);
+            writeBigEndian(argument, 1);
+        } else if (argument < 0x1_0000) {
+            buffer[size++] = (byte) (initialByte | 25);
+            writeBigEndian(argument, 2);
+        } else if (argument < 0x1_0000_0000L) {
+            buffer[size++] = (byte) (initialByte | 26);
+            writeBigEndian(argument, 4);
+        } else {
+            buffer[size++] = (byte) (initialByte | 27);
+            writeBigEndian(argument, 8);
+        }
+    }
+
+    private void writeRaw(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void writeBigEndian(long value, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            buffer[size++] = (byte) (value >> (8 * i));
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (size + needed > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + needed));
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.senml;
+
+import java.util.List;
+
+/**
+ * Helper for encoding/decoding SenML packs in CBOR representation (see RFC 8428 section 6).
+ * <p>
+ * Fields are identified by the integer labels defined by the RFC, except the LWM2M object link value which uses the
+ * <code>"vlo"</code> text label.
+ */
+public class SenMLCbor {
+
+    private static final int BASE_NAME = -2;
+    private static final int BASE_TIME = -3;
+    private static final int NAME = 0;
+    private static final int VALUE = 2;
+    private static final int STRING_VALUE = 3;
+    private static final int BOOLEAN_VALUE = 4;
+    private static final int TIME = 6;
+    private static final int DATA_VALUE = 8;
+    private static final String OBJECT_LINK_VALUE = "vlo";
+
+    public static byte[] toCbor(SenMLPack pack) throws SenMLException {
+        List<SenMLRecord> records = pack.getRecords();
+        CborWriter writer = new CborWriter(16 + records.size() * 16);
+        writer.writeArrayHeader(records.size());
+        for (SenMLRecord record : records) {
+            writer.writeMapHeader(countFields(record));
+            if (record.getBaseName() != null) {
+                writer.writeLong(BASE_NAME);
+                writer.writeText(record.getBaseName());
+            }
+            if (record.getBaseTime() != null) {
+                writer.writeLong(BASE_TIME);
+                writer.writeLong(record.getBaseTime());
+            }
+            if (record.getName() != null) {
+                writer.writeLong(NAME);
+                writer.writeText(record.getName());
+            }
+            if (record.getTime() != null) {
+                writer.writeLong(TIME);
+                writer.writeLong(record.getTime());
+            }
+            if (record.getNumberValue() != null) {
+                writer.writeLong(VALUE);
+                writeNumber(writer, record.getNumberValue());
+            }
+            if (record.getStringValue() != null) {
+                writer.writeLong(STRING_VALUE);
+                writer.writeText(record.getStringValue());
+            }
+            if (record.getBooleanValue() != null) {
+                writer.writeLong(BOOLEAN_VALUE);
+                writer.writeBoolean(record.getBooleanValue());
+            }
+            if (record.getOpaqueValue() != null) {
+                writer.writeLong(DATA_VALUE);
+                writer.writeBytes(record.getOpaqueValue());
+            }
+            if (record.getObjectLinkValue() != null) {
+                writer.writeText(OBJECT_LINK_VALUE);
+                writer.writeText(record.getObjectLinkValue());
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    private static int countFields(SenMLRecord record) {
+        int count = 0;
+        count += record.getBaseName() != null ? 1 : 0;
+        count += record.getBaseTime() != null ? 1 : 0;
+        count += record.getName() != null ? 1 : 0;
+        count += record.getTime() != null ? 1 : 0;
+        count += record.getNumberValue() != null ? 1 : 0;
+        count += record.getStringValue() != null ? 1 : 0;
+        count += record.getBooleanValue() != null ? 1 : 0;
+        count += record.getOpaqueValue() != null ? 1 : 0;
+        count += record.getObjectLinkValue() != null ? 1 : 0;
+        return count;
+    }
+
+    private static void writeNumber(CborWriter writer, Number value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writer.writeLong(value.longValue());
+        } else {
+            writer.writeDouble(value.doubleValue());
+        }
+    }
+
+    public static SenMLPack fromCbor(byte[] content) throws SenMLException {
+        CborReader reader = new CborReader(content);
+        SenMLPack pack = new SenMLPack();
+        int nbRecords = reader.readArrayHeader();
+        for (int i = 0; nbRecords == CborReader.INDEFINITE ? !reader.readBreak() : i < nbRecords; i++) {
+            pack.addRecord(readRecord(reader));
+        }
+        if (reader.hasMore()) {
+            throw new SenMLException("Unexpected content after SenML pack");
+        }
+        return pack;
+    }
+
+    private static SenMLRecord readRecord(CborReader reader) throws SenMLException {
+        SenMLRecord record = new SenMLRecord();
+        int nbFields = reader.readMapHeader();
+        for (int i = 0; nbFields == CborReader.INDEFINITE ? !reader.readBreak() : i < nbFields; i++) {
+            Object label = reader.readValue();
+            if (label instanceof Long && !isIntLabel((Long) label)) {
+                // unknown field, label out of int range must not be wrapped on a known one
+                reader.skip();
+            } else if (label instanceof Long) {
+                switch (((Long) label).intValue()) {
+                case BASE_NAME:
+                    record.setBaseName(read(reader, String.class, label));
+                    break;
+                case BASE_TIME:
+                    record.setBaseTime(readTime(reader, label));
+                    break;
+                case NAME:
+                    record.setName(read(reader, String.class, label));
+                    break;
+                case TIME:
+                    record.setTime(readTime(reader, label));
+                    break;
+                case VALUE:
+                    record.setNumberValue(read(reader, Number.class, label));
+                    break;
+                case STRING_VALUE:
+                    record.setStringValue(read(reader, String.class, label));
+                    break;
+                case BOOLEAN_VALUE:
+                    record.setBooleanValue(read(reader, Boolean.class, label));
+                    break;
+                case DATA_VALUE:
+                    record.setOpaqueValue(read(reader, byte[].class, label));
+                    break;
+                default:
+                    // unknown field
+                    reader.skip();
+                    break;
+                }
+            } else if (OBJECT_LINK_VALUE.equals(label)) {
+                record.setObjectLinkValue(read(reader, String.class, label));
+            } else {
+                // unknown field
+                reader.skip();
+            }
+        }
+        return record;
+    }
+
+    private static boolean isIntLabel(long label) {
+        return label >= Integer.MIN_VALUE && label <= Integer.MAX_VALUE;
+    }
+
+    private static long readTime(CborReader reader, Object label) throws SenMLException {
+        Number time = read(reader, Number.class, label);
+        if (time instanceof Long) {
+            return time.longValue();
+        }
+        // a float is accepted only if it holds an integer value which fits in a long
+        double value = time.doubleValue();
+        if (value != Math.rint(value) || value < Long.MIN_VALUE || value >= Long.MAX_VALUE) {
+            throw new SenMLException("Invalid value %s for SenML label %s, Integer expected", time, label);
+        }
+        return (long) value;
+    }
+
+    private static <T> T read(CborReader reader, Class<T> type, Object label) throws SenMLException {
+        Object value = reader.readValue();
+        if (!type.isInstance(value)) {
+            throw new SenMLException("Invalid value %s for SenML label %s, %s expected", value, label,
+                    type.getSimpleName());
+        }
+        return type.cast(value);
+    }
+}
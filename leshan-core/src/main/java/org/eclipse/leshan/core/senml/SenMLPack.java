@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.senml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A SenML pack : an ordered list of {@link SenMLRecord} (see RFC 8428).
+ */
+public class SenMLPack {
+
+    private final List<SenMLRecord> records;
+
+    public SenMLPack() {
+        this.records = new ArrayList<>();
+    }
+
+    public SenMLPack(List<SenMLRecord> records) {
+        this.records = records;
+    }
+
+    public void addRecord(SenMLRecord record) {
+        records.add(record);
+    }
+
+    public List<SenMLRecord> getRecords() {
+        return records;
+    }
+
+    @Override
+    public int hashCode() {
+        return records.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        SenMLPack other = (SenMLPack) obj;
+        return records.equals(other.records);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SenMLPack [records=%s]", records);
+    }
+}
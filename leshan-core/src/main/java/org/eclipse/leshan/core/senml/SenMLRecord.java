@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.senml;
+
+import java.util.Arrays;
+
+import org.eclipse.leshan.core.model.ResourceModel.Type;
+import org.eclipse.leshan.core.util.Hex;
+
+/**
+ * A SenML record (see RFC 8428).
+ * <p>
+ * Base name and base time apply to this record and to all the following ones of the pack, until they are redefined.
+ * The value is stored in one of the number, boolean, string, opaque or object link fields.
+ */
+public class SenMLRecord {
+
+    private String baseName;
+
+    private Long baseTime;
+
+    private String name;
+
+    private Long time;
+
+    private Number numberValue;
+
+    private Boolean booleanValue;
+
+    private String stringValue;
+
+    private byte[] opaqueValue;
+
+    private String objectLinkValue;
+
+    public Type getType() {
+        if (booleanValue != null) {
+            return Type.BOOLEAN;
+        }
+        if (numberValue != null) {
+            return Type.FLOAT;
+        }
+        if (objectLinkValue != null) {
+            return Type.OBJLNK;
+        }
+        if (opaqueValue != null) {
+            return Type.OPAQUE;
+        }
+        if (stringValue != null) {
+            return Type.STRING;
+        }
+        return null;
+    }
+
+    public Object getResourceValue() {
+        if (booleanValue != null) {
+            return booleanValue;
+        }
+        if (numberValue != null) {
+            return numberValue;
+        }
+        if (objectLinkValue != null) {
+            return objectLinkValue;
+        }
+        if (opaqueValue != null) {
+            return opaqueValue;
+        }
+        if (stringValue != null) {
+            return stringValue;
+        }
+        return null;
+    }
+
+    public String getBaseName() {
+        return baseName;
+    }
+
+    public void setBaseName(String baseName) {
+        this.baseName = baseName;
+    }
+
+    public Long getBaseTime() {
+        return baseTime;
+    }
+
+    public void setBaseTime(Long baseTime) {
+        this.baseTime = baseTime;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Long getTime() {
+        return time;
+    }
+
+    public void setTime(Long time) {
+        this.time = time;
+    }
+
+    public Number getNumberValue() {
+        return numberValue;
+    }
+
+    public void setNumberValue(Number numberValue) {
+        this.numberValue = numberValue;
+    }
+
+    public Boolean getBooleanValue() {
+        return booleanValue;
+    }
+
+    public void setBooleanValue(Boolean booleanValue) {
+        this.booleanValue = booleanValue;
+    }
+
+    public String getStringValue() {
+        return stringValue;
+    }
+
+    public void setStringValue(String stringValue) {
+        this.stringValue = stringValue;
+    }
+
+    public byte[] getOpaqueValue() {
+        return opaqueValue;
+    }
+
+    public void setOpaqueValue(byte[] opaqueValue) {
+        this.opaqueValue = opaqueValue;
+    }
+
+    public String getObjectLinkValue() {
+        return objectLinkValue;
+    }
+
+    public void setObjectLinkValue(String objectLinkValue) {
+        this.objectLinkValue = objectLinkValue;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((baseName == null) ? 0 : baseName.hashCode());
+        result = prime * result + ((baseTime == null) ? 0 : baseTime.hashCode());
+        result = prime * result + ((booleanValue == null) ? 0 : booleanValue.hashCode());
+        result = prime * result + ((name == null) ? 0 : name.hashCode());
+        result = prime * result + ((numberValue == null) ? 0 : numberValue.hashCode());
+        result = prime * result + ((objectLinkValue == null) ? 0 : objectLinkValue.hashCode());
+        result = prime * result + Arrays.hashCode(opaqueValue);
+        result = prime * result + ((stringValue == null) ? 0 : stringValue.hashCode());
+        result = prime * result + ((time == null) ? 0 : time.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        SenMLRecord other = (SenMLRecord) obj;
+        return equals(baseName, other.baseName) && equals(baseTime, other.baseTime)
+                && equals(booleanValue, other.booleanValue) && equals(name, other.name)
+                && equals(numberValue, other.numberValue) && equals(objectLinkValue, other.objectLinkValue)
+                && Arrays.equals(opaqueValue, other.opaqueValue) && equals(stringValue, other.stringValue)
+                && equals(time, other.time);
+    }
+
+    private static boolean equals(Object o1, Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "SenMLRecord [baseName=%s, baseTime=%s, name=%s, time=%s, numberValue=%s, booleanValue=%s, stringValue=%s, opaqueValue=%s, objectLinkValue=%s]",
+                baseName, baseTime, name, time, numberValue, booleanValue, stringValue,
+                opaqueValue == null ? null : Hex.encodeHexString(opaqueValue), objectLinkValue);
+    }
+}
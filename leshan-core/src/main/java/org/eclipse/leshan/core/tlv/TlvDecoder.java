@@ -15,10 +15,7 @@
  *******************************************************************************/
 package org.eclipse.leshan.core.tlv;
 
-import java.math.BigInteger;
 import java.nio.Buffer;
-import java.nio.BufferOverflowException;
-import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
@@ -37,114 +34,12 @@ public class TlvDecoder {
     private static final Logger LOG = LoggerFactory.getLogger(TlvDecoder.class);
 
     public static Tlv[] decode(ByteBuffer input) throws TlvException {
-
         try {
-            List<Tlv> tlvs = new ArrayList<>();
-
-            while (input.remaining() > 0) {
-                input.order(ByteOrder.BIG_ENDIAN);
-
-                // decode type
-                int typeByte = input.get() & 0xFF;
-                TlvType type;
-                switch (typeByte & 0b1100_0000) {
-                case 0b0000_0000:
-                    type = TlvType.OBJECT_INSTANCE;
-                    break;
-                case 0b0100_0000:
-                    type = TlvType.RESOURCE_INSTANCE;
-                    break;
-                case 0b1000_0000:
-                    type = TlvType.MULTIPLE_RESOURCE;
-                    break;
-                case 0b1100_0000:
-                    type = TlvType.RESOURCE_VALUE;
-                    break;
-                default:
-                    throw new TlvException("unknown type: " + (typeByte & 0b1100_0000));
-                }
-
-                // decode identifier
-                int identifier;
-                try {
-                    if ((typeByte & 0b0010_0000) == 0) {
-                        identifier = input.get() & 0xFF;
-                    } else {
-                        identifier = input.getShort() & 0xFFFF;
-                    }
-                } catch (BufferUnderflowException e) {
-                    throw new TlvException("Invalid 'identifier' length", e);
-                }
-                LOG.trace("decoding {} {}", type, identifier);
-
-                // decode length
-                int length;
-                int lengthType = typeByte & 0b0001_1000;
-                try {
-                    switch (lengthType) {
-                    case 0b0000_0000:
-                        // 2 bit length
-                        length = typeByte & 0b0000_0111;
-                        break;
-                    case 0b0000_1000:
-                        // 8 bit length
-                        length = input.get() & 0xFF;
-                        break;
-                    case 0b0001_0000:
-                        // 16 bit length
-                        length = input.getShort() & 0xFFFF;
-                        break;
-                    case 0b0001_1000:
-                        // 24 bit length
-                        int b = input.get() & 0x000000FF;
-                        int s = input.getShort() & 0x0000FFFF;
-                        length = (b << 16) | s;
-                        break;
-                    default:
-                        throw new TlvException("unknown length type: " + (typeByte & 0b0001_1000));
-                    }
-                } catch (BufferUnderflowException e) {
-                    throw new TlvException("Invalid 'length' length", e);
-                }
-                LOG.trace("length: {} (length type: {})", length, lengthType);
-
-                // decode value
-                if (type == TlvType.RESOURCE_VALUE || type == TlvType.RESOURCE_INSTANCE) {
-                    try {
-                        byte[] payload = new byte[length];
-                        input.get(payload);
-                        tlvs.add(new Tlv(type, null, payload, identifier));
-
-                        if (LOG.isTraceEnabled()) {
-                            LOG.trace("payload value: {}", Hex.encodeHexString(payload));
-                        }
-                    } catch (BufferOverflowException e) {
-                        throw new TlvException("Invalid 'value' length", e);
-                    }
-                } else {
-                    try {
-                        // create a view of the contained TLVs
-                        ByteBuffer slice = input.slice();
-                        // HACK the cast is necessary for binary backward compatibility bug introduce in Java 9
-                        // https://github.com/apache/felix/pull/114
-                        ((Buffer) slice).limit(length);
-
-                        Tlv[] children = decode(slice);
-
-                        // skip the children, it will be decoded by the view
-                        // HACK the cast is necessary for binary backward compatibility bug introduce in Java 9
-                        // https://github.com/apache/felix/pull/114
-                        ((Buffer) input).position(((Buffer) input).position() + length);
-
-                        Tlv tlv = new Tlv(type, children, null, identifier);
-                        tlvs.add(tlv);
-                    } catch (IllegalArgumentException e) {
-                        throw new TlvException("Invalid 'value' length", e);
-                    }
-                }
-            }
-
-            return tlvs.toArray(new Tlv[] {});
+            Tlv[] tlvs = decode(new TlvReader(input));
+            // HACK the cast is necessary for binary backward compatibility bug introduce in Java 9
+            // https://github.com/apache/felix/pull/114
+            ((Buffer) input).position(((Buffer) input).limit());
+            return tlvs;
         } catch (TlvException ex) {
             String printHexBinary = Hex.encodeHexString(input.array());
             throw new TlvException("Impossible to parse TLV: \n" + printHexBinary, ex);
@@ -154,6 +49,24 @@ public class TlvDecoder {
         }
     }
 
+    private static Tlv[] decode(TlvReader reader) throws TlvException {
+        List<Tlv> tlvs = new ArrayList<>();
+        while (reader.next()) {
+            LOG.trace("decoding {} {} (length {})", reader.getType(), reader.getIdentifier(), reader.getValueLength());
+            if (reader.isContainer()) {
+                tlvs.add(new Tlv(reader.getType(), decode(reader.children()), null, reader.getIdentifier()));
+            } else {
+                byte[] payload = reader.readOpaque();
+                tlvs.add(new Tlv(reader.getType(), null, payload, reader.getIdentifier()));
+
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("payload value: {}", Hex.encodeHexString(payload));
+                }
+            }
+        }
+        return tlvs.toArray(new Tlv[tlvs.size()]);
+    }
+
     /**
      * Decodes a byte array into string value.
      */
@@ -166,25 +79,28 @@ public class TlvDecoder {
      */
     public static boolean decodeBoolean(byte[] value) throws TlvException {
         if (value.length == 1) {
-            if (value[0] == 0) {
-                return false;
-            } else if (value[0] == 1) {
-                return true;
-            } else {
-                LOG.warn("Boolean value should be encoded as integer with value 0 or 1, not {}", value[0]);
-                return false;
-            }
+            return decodeBoolean(value[0]);
         }
         throw new TlvException("Invalid length for a boolean value: " + value.length);
     }
 
+    static boolean decodeBoolean(byte value) {
+        if (value == 0) {
+            return false;
+        } else if (value == 1) {
+            return true;
+        } else {
+            LOG.warn("Boolean value should be encoded as integer with value 0 or 1, not {}", value);
+            return false;
+        }
+    }
+
     /**
      * Decodes a byte array into a date value.
      */
     public static Date decodeDate(byte[] value) throws TlvException {
-        BigInteger bi = new BigInteger(value);
-        if (value.length <= 8) {
-            return new Date(bi.longValue() * 1000L);
+        if (value.length > 0 && value.length <= 8) {
+            return new Date(decodeLong(ByteBuffer.wrap(value), 0, value.length) * 1000L);
         } else {
             throw new TlvException("Invalid length for a time value: " + value.length);
         }
@@ -205,15 +121,15 @@ public class TlvDecoder {
      * Decodes a byte array into an integer value.
      */
     public static Number decodeInteger(byte[] value) throws TlvException {
-        BigInteger bi = new BigInteger(value);
+        long l = value.length > 0 && value.length <= 8 ? decodeLong(ByteBuffer.wrap(value), 0, value.length) : 0;
         if (value.length == 1) {
-            return bi.byteValue();
-        } else if (value.length <= 2) {
-            return bi.shortValue();
-        } else if (value.length <= 4) {
-            return bi.intValue();
-        } else if (value.length <= 8) {
-            return bi.longValue();
+            return (byte) l;
+        } else if (value.length == 2) {
+            return (short) l;
+        } else if (value.length > 2 && value.length <= 4) {
+            return (int) l;
+        } else if (value.length > 4 && value.length <= 8) {
+            return l;
         } else {
             throw new TlvException("Invalid length for an integer value: " + value.length);
         }
@@ -232,4 +148,16 @@ public class TlvDecoder {
             throw new TlvException("Invalid length for a float value: " + value.length);
         }
     }
+
+    /**
+     * Decodes a big endian signed integer of 1 to 8 bytes, without copying it.
+     */
+    static long decodeLong(ByteBuffer buffer, int offset, int length) {
+        // first byte is signed
+        long value = buffer.get(offset);
+        for (int i = 1; i < length; i++) {
+            value = (value << 8) | (buffer.get(offset + i) & 0xFF);
+        }
+        return value;
+    }
 }
@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.tlv;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import org.eclipse.leshan.core.node.ObjectLink;
+import org.eclipse.leshan.core.tlv.Tlv.TlvType;
+import org.eclipse.leshan.core.util.Hex;
+
+/**
+ * A cursor over TLV entries of a {@link ByteBuffer}, which does not copy any data.
+ * <p>
+ * The reader iterates over the TLV entries of one nesting level : {@link #next()} moves to the next entry, then its
+ * type, identifier and value position can be read. Values are decoded straight from the buffer and the entries
+ * contained in an {@link TlvType#OBJECT_INSTANCE} or a {@link TlvType#MULTIPLE_RESOURCE} are read using
+ * {@link #children()}.
+ * <p>
+ * Only absolute accessors of the buffer are used, so its position and limit are never modified.
+ *
+ * <pre>
+ * TlvReader reader = new TlvReader(buffer);
+ * while (reader.next()) {
+ *     if (reader.getType() == TlvType.RESOURCE_VALUE) {
+ *         long value = reader.readInteger();
+ *     }
+ * }
+ * </pre>
+ */
+public class TlvReader {
+
+    private final ByteBuffer buffer;
+    private final int limit;
+
+    // position of the next entry
+    private int position;
+
+    // current entry
+    private TlvType type;
+    private int identifier;
+    private int valueOffset;
+    private int valueLength;
+
+    /**
+     * Create a reader of the TLV entries between the position and the limit of the given buffer.
+     */
+    public TlvReader(ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.limit());
+    }
+
+    /**
+     * Create a reader of the TLV entries between <code>offset</code> (inclusive) and <code>limit</code> (exclusive) of
+     * the given buffer.
+     */
+    public TlvReader(ByteBuffer buffer, int offset, int limit) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * @return a new reader at the same position, which can be used to look ahead without moving this one.
+     */
+    public TlvReader duplicate() {
+        TlvReader copy = new TlvReader(buffer, position, limit);
+        copy.type = type;
+        copy.identifier = identifier;
+        copy.valueOffset = valueOffset;
+        copy.valueLength = valueLength;
+        return copy;
+    }
+
+    /**
+     * Move to the next TLV entry.
+     *
+     * @return <code>false</code> if there is no more entry at this level.
+     * @throws TlvException if the entry header is malformed or if its value overflows the current level.
+     */
+    public boolean next() throws TlvException {
+        if (position >= limit) {
+            type = null;
+            return false;
+        }
+        int pos = position;
+
+        // decode type
+        int typeByte = buffer.get(pos++) & 0xFF;
+        switch (typeByte & 0b1100_0000) {
+        case 0b0000_0000:
+            type = TlvType.OBJECT_INSTANCE;
+            break;
+        case 0b0100_0000:
+            type = TlvType.RESOURCE_INSTANCE;
+            break;
+        case 0b1000_0000:
+            type = TlvType.MULTIPLE_RESOURCE;
+            break;
+        default:
+            type = TlvType.RESOURCE_VALUE;
+            break;
+        }
+
+        // decode identifier
+        if ((typeByte & 0b0010_0000) == 0) {
+            checkAvailable(pos, 1, "Invalid 'identifier' length");
+            identifier = buffer.get(pos) & 0xFF;
+            pos += 1;
+        } else {
+            checkAvailable(pos, 2, "Invalid 'identifier' length");
+            identifier = readUnsignedShort(pos);
+            pos += 2;
+        }
+
+        // decode length
+        switch (typeByte & 0b0001_1000) {
+        case 0b0000_0000:
+            // 2 bit length
+            valueLength = typeByte & 0b0000_0111;
+            break;
+        case 0b0000_1000:
+            // 8 bit length
+            checkAvailable(pos, 1, "Invalid 'length' length");
+            valueLength = buffer.get(pos) & 0xFF;
+            pos += 1;
+            break;
+        case 0b0001_0000:
+            // 16 bit length
+            checkAvailable(pos, 2, "Invalid 'length' length");
+            valueLength = readUnsignedShort(pos);
+            pos += 2;
+            break;
+        default:
+            // 24 bit length
+            checkAvailable(pos, 3, "Invalid 'length' length");
+            valueLength = ((buffer.get(pos) & 0xFF) << 16) | readUnsignedShort(pos + 1);
+            pos += 3;
+            break;
+        }
+
+        // value
+        checkAvailable(pos, valueLength, "Invalid 'value' length");
+        valueOffset = pos;
+        position = pos + valueLength;
+        return true;
+    }
+
+    // big endian, whatever the buffer order is
+    private int readUnsignedShort(int pos) {
+        return ((buffer.get(pos) & 0xFF) << 8) | (buffer.get(pos + 1) & 0xFF);
+    }
+
+    private void checkAvailable(int pos, int length, String message) throws TlvException {
+        if (pos + length > limit) {
+            throw new TlvException(message);
+        }
+    }
+
+    public TlvType getType() {
+        return type;
+    }
+
+    public int getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return the absolute offset of the current entry value in the buffer.
+     */
+    public int getValueOffset() {
+        return valueOffset;
+    }
+
+    public int getValueLength() {
+        return valueLength;
+    }
+
+    /**
+     * @return <code>true</code> if the current entry contains other entries rather than a value.
+     */
+    public boolean isContainer() {
+        return type == TlvType.OBJECT_INSTANCE || type == TlvType.MULTIPLE_RESOURCE;
+    }
+
+    /**
+     * @return a reader of the entries contained in the current entry.
+     */
+    public TlvReader children() {
+        if (!isContainer()) {
+            throw new IllegalStateException("a " + type + " can't have children");
+        }
+        return new TlvReader(buffer, valueOffset, valueOffset + valueLength);
+    }
+
+    /**
+     * @return a read-only view of the current entry value, the buffer content is not copied.
+     */
+    public ByteBuffer getValue() {
+        ByteBuffer view = buffer.asReadOnlyBuffer();
+        // HACK the cast is necessary for binary backward compatibility bug introduce in Java 9
+        // https://github.com/apache/felix/pull/114
+        ((Buffer) view).limit(valueOffset + valueLength);
+        ((Buffer) view).position(valueOffset);
+        return view.slice();
+    }
+
+    /**
+     * @return a copy of the current entry value.
+     */
+    public byte[] readOpaque() {
+        byte[] value = new byte[valueLength];
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + valueOffset, value, 0, valueLength);
+        } else {
+            for (int i = 0; i < valueLength; i++) {
+                value[i] = buffer.get(valueOffset + i);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Decodes the current entry value as an UTF-8 string.
+     */
+    public String readString() {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + valueOffset, valueLength, StandardCharsets.UTF_8);
+        }
+        return new String(readOpaque(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes the current entry value as a signed integer of 1 to 8 bytes.
+     */
+    public long readInteger() throws TlvException {
+        if (valueLength == 0 || valueLength > 8) {
+            throw new TlvException("Invalid length for an integer value: " + valueLength);
+        }
+        return TlvDecoder.decodeLong(buffer, valueOffset, valueLength);
+    }
+
+    /**
+     * Decodes the current entry value as a 4 or 8 bytes float.
+     */
+    public double readFloat() throws TlvException {
+        if (valueLength == 4) {
+            return Float.intBitsToFloat((int) TlvDecoder.decodeLong(buffer, valueOffset, 4));
+        } else if (valueLength == 8) {
+            return Double.longBitsToDouble(TlvDecoder.decodeLong(buffer, valueOffset, 8));
+        } else {
+            throw new TlvException("Invalid length for a float value: " + valueLength);
+        }
+    }
+
+    /**
+     * Decodes the current entry value as a boolean.
+     */
+    public boolean readBoolean() throws TlvException {
+        if (valueLength != 1) {
+            throw new TlvException("Invalid length for a boolean value: " + valueLength);
+        }
+        return TlvDecoder.decodeBoolean(buffer.get(valueOffset));
+    }
+
+    /**
+     * Decodes the current entry value as a date (number of seconds since epoch).
+     */
+    public Date readDate() throws TlvException {
+        if (valueLength == 0 || valueLength > 8) {
+            throw new TlvException("Invalid length for a time value: " + valueLength);
+        }
+        return new Date(TlvDecoder.decodeLong(buffer, valueOffset, valueLength) * 1000L);
+    }
+
+    /**
+     * Decodes the current entry value as an object link.
+     */
+    public ObjectLink readObjlnk() throws TlvException {
+        if (valueLength != 4) {
+            throw new TlvException("Invalid length for an objlnk value: " + valueLength);
+        }
+        return new ObjectLink(readUnsignedShort(valueOffset), readUnsignedShort(valueOffset + 2));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TlvReader [type=%s, identifier=%d, value=%s]", type, identifier,
+                type == null || isContainer() ? "" : Hex.encodeHexString(readOpaque()));
+    }
+}
@@ -0,0 +1,337 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.tlv;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.eclipse.leshan.core.node.ObjectLink;
+import org.eclipse.leshan.core.tlv.Tlv.TlvType;
+
+/**
+ * Writes TLV entries in a single pass into a growable buffer, without building {@link Tlv} objects.
+ * <p>
+ * Values are encoded straight into the buffer. The length of a container ({@link TlvType#OBJECT_INSTANCE} or
+ * {@link TlvType#MULTIPLE_RESOURCE}) is not known when it is started, so 3 bytes are reserved for it and the content
+ * is shifted back when the container is ended if a shorter length field is enough.
+ * <p>
+ * A writer can be reused for several payloads using {@link #reset()}, the internal buffer is kept.
+ *
+ * <pre>
+ * TlvWriter writer = new TlvWriter();
+ * writer.startContainer(TlvType.OBJECT_INSTANCE, 0);
+ * writer.writeString(TlvType.RESOURCE_VALUE, 0, "Leshan");
+ * writer.writeInteger(TlvType.RESOURCE_VALUE, 1, 42);
+ * writer.endContainer();
+ * byte[] payload = writer.toByteArray();
+ * </pre>
+ */
+public class TlvWriter {
+
+    private static final int MAX_LENGTH_8BIT = 256;
+    private static final int MAX_LENGTH_16BIT = 65_536;
+    private static final int MAX_LENGTH_24BIT = 16_777_216;
+
+    // number of bytes reserved for the length of a container
+    private static final int RESERVED_LENGTH = 3;
+
+    private byte[] buffer;
+    private int size;
+
+    // offsets of the type byte and of the content of opened containers
+    private int[] containers = new int[8];
+    private int depth;
+
+    public TlvWriter() {
+        this(256);
+    }
+
+    /**
+     * @param initialCapacity the initial size of the buffer, it grows when needed.
+     */
+    public TlvWriter(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    /**
+     * Start a container entry, its children must be written before calling {@link #endContainer()}.
+     */
+    public void startContainer(TlvType type, int identifier) {
+        int typeByte;
+        switch (type) {
+        case OBJECT_INSTANCE:
+            typeByte = 0b00_000000;
+            break;
+        case MULTIPLE_RESOURCE:
+            typeByte = 0b10_000000;
+            break;
+        default:
+            throw new IllegalArgumentException("a " + type + " can not contain other TLVs");
+        }
+        if (depth * 2 == containers.length) {
+            containers = Arrays.copyOf(containers, containers.length * 2);
+        }
+        int typeOffset = size;
+        writeHeader(typeByte, identifier);
+        ensureCapacity(RESERVED_LENGTH);
+        size += RESERVED_LENGTH;
+
+        containers[depth * 2] = typeOffset;
+        containers[depth * 2 + 1] = size;
+        depth++;
+    }
+
+    /**
+     * End the last started container.
+     */
+    public void endContainer() {
+        if (depth == 0) {
+            throw new IllegalStateException("no container to end");
+        }
+        depth--;
+        int typeOffset = containers[depth * 2];
+        int contentOffset = containers[depth * 2 + 1];
+        int length = size - contentOffset;
+        int lengthOffset = contentOffset - RESERVED_LENGTH;
+
+        int lengthSize = lengthSize(length);
+        buffer[typeOffset] |= lengthType(length);
+        writeLength(lengthOffset, length, lengthSize);
+
+        int shift = RESERVED_LENGTH - lengthSize;
+        if (shift > 0) {
+            System.arraycopy(buffer, contentOffset, buffer, contentOffset - shift, length);
+            size -= shift;
+        }
+    }
+
+    /**
+     * Write an entry with an opaque value.
+     */
+    public void writeOpaque(TlvType type, int identifier, byte[] value) {
+        writeValueHeader(type, identifier, value.length);
+        System.arraycopy(value, 0, buffer, size, value.length);
+        size += value.length;
+    }
+
+    /**
+     * Write an entry with an UTF-8 string value.
+     */
+    public void writeString(TlvType type, int identifier, String value) {
+        writeOpaque(type, identifier, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write an entry with an integer value, using the smallest of 1, 2, 4 or 8 bytes.
+     */
+    public void writeInteger(TlvType type, int identifier, long value) {
+        int length;
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            length = 1;
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            length = 2;
+        } else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            length = 4;
+        } else {
+            length = 8;
+        }
+        writeValueHeader(type, identifier, length);
+        writeLong(value, length);
+    }
+
+    /**
+     * Write an entry with a 4 bytes float value.
+     */
+    public void writeFloat(TlvType type, int identifier, float value) {
+        writeValueHeader(type, identifier, 4);
+        writeLong(Float.floatToIntBits(value), 4);
+    }
+
+    /**
+     * Write an entry with a 8 bytes float value.
+     */
+    public void writeDouble(TlvType type, int identifier, double value) {
+        writeValueHeader(type, identifier, 8);
+        writeLong(Double.doubleToLongBits(value), 8);
+    }
+
+    /**
+     * Write an entry with a boolean value.
+     */
+    public void writeBoolean(TlvType type, int identifier, boolean value) {
+        writeValueHeader(type, identifier, 1);
+        buffer[size++] = (byte) (value ? 1 : 0);
+    }
+
+    /**
+     * Write an entry with a date value, encoded as a 4 bytes number of seconds since epoch.
+     */
+    public void writeDate(TlvType type, int identifier, Date value) {
+        writeValueHeader(type, identifier, 4);
+        writeLong((int) (value.getTime() / 1000L), 4);
+    }
+
+    /**
+     * Write an entry with an object link value.
+     */
+    public void writeObjlnk(TlvType type, int identifier, ObjectLink value) {
+        writeValueHeader(type, identifier, 4);
+        writeLong(value.getObjectId(), 2);
+        writeLong(value.getObjectInstanceId(), 2);
+    }
+
+    /**
+     * Write a {@link Tlv} and its children.
+     */
+    public void write(Tlv tlv) {
+        switch (tlv.getType()) {
+        case RESOURCE_VALUE:
+        case RESOURCE_INSTANCE:
+            writeOpaque(tlv.getType(), tlv.getIdentifier(), tlv.getValue());
+            break;
+        default:
+            startContainer(tlv.getType(), tlv.getIdentifier());
+            for (Tlv child : tlv.getChildren()) {
+                write(child);
+            }
+            endContainer();
+        }
+    }
+
+    /**
+     * @return the number of bytes written.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the size of the internal buffer.
+     */
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Discard written content, the internal buffer is kept to be reused.
+     */
+    public void reset() {
+        size = 0;
+        depth = 0;
+    }
+
+    /**
+     * @return a copy of the written content.
+     */
+    public byte[] toByteArray() {
+        checkNoOpenedContainer();
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Copy the written content into the given buffer, starting at its position.
+     */
+    public void writeTo(ByteBuffer dst) {
+        checkNoOpenedContainer();
+        dst.put(buffer, 0, size);
+    }
+
+    private void checkNoOpenedContainer() {
+        if (depth != 0) {
+            throw new IllegalStateException(depth + " container(s) not ended");
+        }
+    }
+
+    private void writeValueHeader(TlvType type, int identifier, int length) {
+        int typeByte;
+        switch (type) {
+        case RESOURCE_VALUE:
+            typeByte = 0b11_000000;
+            break;
+        case RESOURCE_INSTANCE:
+            typeByte = 0b01_000000;
+            break;
+        default:
+            throw new IllegalArgumentException("a " + type + " can not have a value");
+        }
+        int lengthSize = lengthSize(length);
+        writeHeader(typeByte | lengthType(length), identifier);
+        // reserve room for the value too
+        ensureCapacity(lengthSize + length);
+        writeLength(size, length, lengthSize);
+        size += lengthSize;
+    }
+
+    private void writeHeader(int typeByte, int identifier) {
+        ensureCapacity(3);
+        if (identifier < MAX_LENGTH_8BIT) {
+            buffer[size++] = (byte) typeByte;
+            buffer[size++] = (byte) identifier;
+        } else {
+            buffer[size++] = (byte) (typeByte | 0b0010_0000);
+            buffer[size++] = (byte) (identifier >> 8);
+            buffer[size++] = (byte) identifier;
+        }
+    }
+
+    private void writeLength(int offset, int length, int lengthSize) {
+        for (int i = lengthSize - 1; i >= 0; i--) {
+            buffer[offset++] = (byte) (length >> (8 * i));
+        }
+    }
+
+    // big endian
+    private void writeLong(long value, int length) {
+        ensureCapacity(length);
+        for (int i = length - 1; i >= 0; i--) {
+            buffer[size++] = (byte) (value >> (8 * i));
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (size + needed > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + needed));
+        }
+    }
+
+    private static int lengthSize(int length) {
+        if (length < 8) {
+            return 0;
+        } else if (length < MAX_LENGTH_8BIT) {
+            return 1;
+        } else if (length < MAX_LENGTH_16BIT) {
+            return 2;
+        } else if (length < MAX_LENGTH_24BIT) {
+            return 3;
+        } else {
+            throw new IllegalArgumentException("length should fit in max 24bits");
+        }
+    }
+
+    private static int lengthType(int length) {
+        if (length < 8) {
+            return length;
+        } else if (length < MAX_LENGTH_8BIT) {
+            return 0b0000_1000;
+        } else if (length < MAX_LENGTH_16BIT) {
+            return 0b0001_0000;
+        } else {
+            return 0b0001_1000;
+        }
+    }
+}
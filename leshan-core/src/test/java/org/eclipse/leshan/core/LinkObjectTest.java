@@ -17,6 +17,7 @@ package org.eclipse.leshan.core;
 
 import static org.junit.Assert.assertEquals;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -154,4 +155,57 @@ public class LinkObjectTest {
         Link link = new Link("/1", att);
         assertEquals("</1>;ver=2.2", Link.serialize(link));
     }
+
+    @Test
+    public void parse_quoted_value_containing_delimiters() {
+        Link[] objs = Link.parse("</1>;title=\"a,b;c=d\";ct=0,</2>".getBytes());
+        assertEquals(2, objs.length);
+        assertEquals("\"a,b;c=d\"", objs[0].getAttributes().get("title"));
+        assertEquals("0", objs[0].getAttributes().get("ct"));
+        assertEquals("/2", objs[1].getUrl());
+    }
+
+    @Test
+    public void parse_quoted_value_with_escaped_quote() {
+        Link[] objs = Link.parse("</1>;title=\"a\\\",b\"".getBytes());
+        assertEquals(1, objs.length);
+        assertEquals("\"a\\\",b\"", objs[0].getAttributes().get("title"));
+    }
+
+    @Test
+    public void parse_empty_payload_and_trailing_delimiters() {
+        Link[] objs = Link.parse("".getBytes());
+        assertEquals(1, objs.length);
+        assertEquals("", objs[0].getUrl());
+
+        objs = Link.parse("</1>;obs;,</2>,,".getBytes());
+        assertEquals(2, objs.length);
+        assertEquals(Collections.singletonMap("obs", null), objs[0].getAttributes());
+        assertEquals(Collections.EMPTY_MAP, objs[1].getAttributes());
+    }
+
+    @Test
+    public void parse_utf8_attribute_value() {
+        Link[] objs = Link.parse("</1>;title=\"caf\u00e9\"".getBytes(StandardCharsets.UTF_8));
+        assertEquals("\"caf\u00e9\"", objs[0].getAttributes().get("title"));
+    }
+
+    @Test
+    public void parse_unquoted_value_stops_at_equals_sign() {
+        Link[] objs = Link.parse("</1>;a=b=c;d==e;f==;g=".getBytes());
+        Map<String, String> attributes = objs[0].getAttributes();
+        assertEquals(4, attributes.size());
+        assertEquals("b", attributes.get("a"));
+        assertEquals("", attributes.get("d"));
+        Assert.assertTrue(attributes.containsKey("f"));
+        Assert.assertNull(attributes.get("f"));
+        Assert.assertTrue(attributes.containsKey("g"));
+        Assert.assertNull(attributes.get("g"));
+    }
+
+    @Test
+    public void parse_ignores_empty_attributes() {
+        Link[] objs = Link.parse("</1>;;ct=0;".getBytes());
+        assertEquals(Collections.singletonMap("ct", "0"), objs[0].getAttributes());
+    }
 }
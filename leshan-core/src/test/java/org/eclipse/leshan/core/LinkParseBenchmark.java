@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.leshan.core.util.StringUtils;
+
+/**
+ * Compare throughput of {@link Link#parse(byte[])} with the previous implementation based on {@link String#split}.
+ * <p>
+ * Payloads are realistic registration object links with 30 to 50 objects.
+ * <p>
+ * This is not a unit test, launch it manually with :
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=org.eclipse.leshan.core.LinkParseBenchmark -Dexec.args="[nbIterations]"
+ * </pre>
+ */
+public class LinkParseBenchmark {
+
+    public static void main(String[] args) {
+        int nbIterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        byte[][] payloads = { createPayload(30), createPayload(40), createPayload(50) };
+        for (byte[] payload : payloads) {
+            if (!Arrays.equals(legacyParse(payload), Link.parse(payload))) {
+                throw new IllegalStateException("Parsers do not produce same links");
+            }
+        }
+
+        // first round is used as warm-up
+        for (int round = 0; round < 3; round++) {
+            long legacy = run(payloads, nbIterations, true);
+            long current = run(payloads, nbIterations, false);
+            System.out.println(String.format("split based : %,10d parse/s, single pass : %,10d parse/s (x%.1f)", legacy,
+                    current, (double) current / legacy));
+        }
+    }
+
+    private static long run(byte[][] payloads, int nbIterations, boolean legacy) {
+        long count = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < nbIterations; i++) {
+            byte[] payload = payloads[i % payloads.length];
+            Link[] links = legacy ? legacyParse(payload) : Link.parse(payload);
+            count += links.length;
+        }
+        long duration = System.nanoTime() - begin;
+        if (count == 0) {
+            throw new IllegalStateException();
+        }
+        return nbIterations * 1_000_000_000L / duration;
+    }
+
+    private static byte[] createPayload(int nbObjects) {
+        StringBuilder payload = new StringBuilder("</>;rt=\"oma.lwm2m\";ct=11543");
+        for (int i = 0; i < nbObjects; i++) {
+            int objectId = i < 10 ? i : 3300 + i;
+            if (i % 5 == 0) {
+                payload.append(",</").append(objectId).append(">;ver=\"1.1\"");
+            }
+            payload.append(",</").append(objectId).append("/0>");
+            if (i % 3 == 0) {
+                payload.append(",</").append(objectId).append("/1>");
+            }
+        }
+        return payload.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // previous implementation of Link.parse()
+    private static Link[] legacyParse(byte[] content) {
+        String s = new String(content, StandardCharsets.UTF_8);
+        String[] links = s.split(",");
+        Link[] linksResult = new Link[links.length];
+        int index = 0;
+        for (String link : links) {
+            String[] linkParts = link.split(";");
+
+            // clean URL
+            String url = StringUtils.trim(linkParts[0]);
+            url = StringUtils.removeStart(StringUtils.removeEnd(url, ">"), "<");
+
+            // parse attributes
+            Map<String, String> attributes = new HashMap<>();
+
+            if (linkParts.length > 1) {
+                for (int i = 1; i < linkParts.length; i++) {
+                    String[] attParts = linkParts[i].split("=");
+                    if (attParts.length > 0) {
+                        String key = attParts[0];
+                        String value = null;
+                        if (attParts.length > 1) {
+                            value = attParts[1];
+                        }
+                        attributes.put(key, value);
+                    }
+                }
+            }
+            linksResult[index] = new Link(url, attributes);
+            index++;
+        }
+        return linksResult;
+    }
+}
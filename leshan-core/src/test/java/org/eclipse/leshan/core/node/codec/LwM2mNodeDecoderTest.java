@@ -21,6 +21,7 @@ import static org.junit.Assert.*;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
 import org.eclipse.leshan.core.json.LwM2mJsonException;
@@ -40,6 +41,9 @@ import org.eclipse.leshan.core.node.LwM2mSingleResource;
 import org.eclipse.leshan.core.node.ObjectLink;
 import org.eclipse.leshan.core.node.TimestampedLwM2mNode;
 import org.eclipse.leshan.core.request.ContentFormat;
+import org.eclipse.leshan.core.senml.SenMLCbor;
+import org.eclipse.leshan.core.senml.SenMLPack;
+import org.eclipse.leshan.core.senml.SenMLRecord;
 import org.eclipse.leshan.core.tlv.Tlv;
 import org.eclipse.leshan.core.tlv.TlvEncoder;
 import org.eclipse.leshan.core.tlv.Tlv.TlvType;
@@ -53,7 +57,7 @@ import org.junit.Test;
 public class LwM2mNodeDecoderTest {
 
     private static LwM2mModel model;
-    private static LwM2mNodeDecoder decoder;
+    private static IncrementalLwM2mNodeDecoder decoder;
 
     @BeforeClass
     public static void loadModel() {
@@ -613,6 +617,68 @@ public class LwM2mNodeDecoderTest {
         assertEquals(24.1d, ((LwM2mObjectInstance) timestampedResources.get(2).getNode()).getResource(1).getValue());
     }
 
+    @Test
+    public void json_iterate_timestamped_instances() throws CodecException {
+        // base time after entries, entries of the same time-stamp are consecutive
+        StringBuilder b = new StringBuilder();
+        b.append("{\"bn\":\"/1024/0/\",\"e\":[");
+        b.append("{\"n\":\"1\",\"v\":22.9,\"t\":-30},");
+        b.append("{\"n\":\"1\",\"v\":22.4,\"t\":-5},");
+        b.append("{\"n\":\"0\",\"sv\":\"a string\",\"t\":-5},");
+        b.append("{\"n\":\"1\",\"v\":24.1,\"t\":-50}],");
+        b.append("\"bt\":25462634}");
+
+        Iterator<TimestampedLwM2mNode> iterator = decoder.iterateTimestampedData(b.toString().getBytes(),
+                ContentFormat.JSON, new LwM2mPath(1024, 0), model);
+
+        // nodes are returned in payload order
+        TimestampedLwM2mNode node = iterator.next();
+        assertEquals(Long.valueOf(25462634L - 30), node.getTimestamp());
+        assertEquals(22.9d, ((LwM2mObjectInstance) node.getNode()).getResource(1).getValue());
+
+        node = iterator.next();
+        assertEquals(Long.valueOf(25462634L - 5), node.getTimestamp());
+        assertEquals("a string", ((LwM2mObjectInstance) node.getNode()).getResource(0).getValue());
+        assertEquals(22.4d, ((LwM2mObjectInstance) node.getNode()).getResource(1).getValue());
+
+        node = iterator.next();
+        assertEquals(Long.valueOf(25462634 - 50), node.getTimestamp());
+        assertEquals(24.1d, ((LwM2mObjectInstance) node.getNode()).getResource(1).getValue());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void json_iterate_invalid_entry_fails_while_iterating() throws CodecException {
+        StringBuilder b = new StringBuilder();
+        b.append("{\"bn\":\"/1024/0/1\",\"e\":[");
+        b.append("{\"v\":22.9,\"t\":-30},");
+        b.append("{\"v\":22.4,\"t\":-5},");
+        b.append("{\"t\":-50}]}");
+
+        Iterator<TimestampedLwM2mNode> iterator = decoder.iterateTimestampedData(b.toString().getBytes(),
+                ContentFormat.JSON, new LwM2mPath(1024, 0, 1), model);
+
+        // first entry of the next node is read to know the end of the current one
+        assertEquals(22.9d, ((LwM2mResource) iterator.next().getNode()).getValue());
+        try {
+            iterator.hasNext();
+            fail("CodecException expected for entry without value");
+        } catch (CodecException e) {
+            assertTrue(e.getCause() instanceof LwM2mJsonException);
+        }
+    }
+
+    @Test
+    public void tlv_iterate_single_node_without_timestamp() throws CodecException {
+        Iterator<TimestampedLwM2mNode> iterator = decoder.iterateTimestampedData(ENCODED_DEVICE_WITHOUT_INSTANCE,
+                ContentFormat.TLV, new LwM2mPath(3, 0), model);
+
+        TimestampedLwM2mNode node = iterator.next();
+        assertFalse(node.isTimestamped());
+        assertDeviceInstance((LwM2mObjectInstance) node.getNode());
+        assertFalse(iterator.hasNext());
+    }
+
     @Test
     public void json_timestamped_Object() throws CodecException {
         // json content for instance 0 of device object
@@ -808,4 +874,133 @@ public class LwM2mNodeDecoderTest {
         assertEquals(11, resource.getId());
         assertTrue(resource.getValues().size() == 2);
     }
+
+    @Test
+    public void json_basename_after_entries() throws CodecException {
+        StringBuilder b = new StringBuilder();
+        b.append("{\"e\":[");
+        b.append("{\"n\":\"0\",\"sv\":\"Open Mobile Alliance\"},");
+        b.append("{\"n\":\"6/0\",\"v\":1},");
+        b.append("{\"n\":\"6/1\",\"v\":5}],");
+        b.append("\"bn\":\"/3/0/\"}");
+
+        LwM2mObjectInstance instance = (LwM2mObjectInstance) decoder.decode(b.toString().getBytes(),
+                ContentFormat.JSON, new LwM2mPath(3, 0), model);
+
+        assertEquals(0, instance.getId());
+        assertEquals("Open Mobile Alliance", instance.getResource(0).getValue());
+        assertEquals(5L, instance.getResource(6).getValue(1));
+    }
+
+    @Test
+    public void json_escaped_string_and_unknown_fields() throws CodecException {
+        StringBuilder b = new StringBuilder();
+        b.append("{\"bn\":\"/3/0/\",\"ext\":{\"a\":[1,{\"b\":null}]},\"e\":[");
+        b.append("{\"n\":\"0\",\"x\":[true,false],\"sv\":\"\\\"Open\\\"\\n\\u00e9\\ud83d\\ude00 \u00e9\"}");
+        b.append("]}");
+
+        LwM2mObjectInstance instance = (LwM2mObjectInstance) decoder.decode(
+                b.toString().getBytes(StandardCharsets.UTF_8), ContentFormat.JSON, new LwM2mPath(3, 0), model);
+
+        assertEquals("\"Open\"\n\u00e9\ud83d\ude00 \u00e9", instance.getResource(0).getValue());
+    }
+
+    @Test
+    public void json_deeply_nested_unknown_field() {
+        // {"x":[[[[...]]]],"e":[]} with 10 000 nested arrays
+        StringBuilder b = new StringBuilder("{\"x\":");
+        for (int i = 0; i < 10_000; i++) {
+            b.append('[');
+        }
+        for (int i = 0; i < 10_000; i++) {
+            b.append(']');
+        }
+        b.append(",\"e\":[]}");
+        boolean failedWithCodecException = false;
+        try {
+            decoder.decode(b.toString().getBytes(), ContentFormat.JSON, new LwM2mPath(3, 0), model);
+        } catch (CodecException e) {
+            assertTrue(e.getCause() instanceof LwM2mJsonException);
+            failedWithCodecException = true;
+        }
+        assertTrue("Should failed with codec exception", failedWithCodecException);
+
+        // nested unknown field within limit is skipped
+        LwM2mObjectInstance instance = (LwM2mObjectInstance) decoder.decode(
+                "{\"bn\":\"/3/0/\",\"x\":[[[[{}]]]],\"e\":[{\"n\":\"0\",\"sv\":\"a\"}]}".getBytes(),
+                ContentFormat.JSON, new LwM2mPath(3, 0), model);
+        assertEquals("a", instance.getResource(0).getValue());
+    }
+
+    @Test
+    public void senml_cbor_timestamped_resources() throws Exception {
+        // base time on the first record, time of other records relative to it
+        SenMLPack pack = new SenMLPack();
+        pack.addRecord(senMLRecord("/1024/0/1", 25462634L, null, -30L, 22.9));
+        pack.addRecord(senMLRecord(null, null, null, -5L, 22.4));
+        pack.addRecord(senMLRecord(null, null, null, -50L, 24.1));
+
+        List<TimestampedLwM2mNode> timestampedResources = decoder.decodeTimestampedData(SenMLCbor.toCbor(pack),
+                ContentFormat.SENML_CBOR, new LwM2mPath(1024, 0, 1), model);
+
+        assertEquals(3, timestampedResources.size());
+        assertEquals(Long.valueOf(25462634L - 5), timestampedResources.get(0).getTimestamp());
+        assertEquals(22.4d, ((LwM2mResource) timestampedResources.get(0).getNode()).getValue());
+        assertEquals(Long.valueOf(25462634L - 30), timestampedResources.get(1).getTimestamp());
+        assertEquals(22.9d, ((LwM2mResource) timestampedResources.get(1).getNode()).getValue());
+        assertEquals(Long.valueOf(25462634 - 50), timestampedResources.get(2).getTimestamp());
+        assertEquals(24.1d, ((LwM2mResource) timestampedResources.get(2).getNode()).getValue());
+    }
+
+    @Test
+    public void senml_cbor_device_object_instance0() throws Exception {
+        SenMLPack pack = new SenMLPack();
+        pack.addRecord(senMLRecord("/3/0/", null, "0", null, "Open Mobile Alliance"));
+        pack.addRecord(senMLRecord(null, null, "6/0", null, 1));
+        pack.addRecord(senMLRecord(null, null, "6/1", null, 5));
+        pack.addRecord(senMLRecord(null, null, "9", null, 100));
+        pack.addRecord(senMLRecord(null, null, "13", null, 1367491215));
+
+        LwM2mObjectInstance oInstance = (LwM2mObjectInstance) decoder.decode(SenMLCbor.toCbor(pack),
+                ContentFormat.SENML_CBOR, new LwM2mPath(3, 0), model);
+
+        assertEquals(0, oInstance.getId());
+        assertEquals("Open Mobile Alliance", oInstance.getResource(0).getValue());
+        assertEquals(1L, oInstance.getResource(6).getValue(0));
+        assertEquals(5L, oInstance.getResource(6).getValue(1));
+        assertEquals(100L, oInstance.getResource(9).getValue());
+        assertEquals(new Date(1367491215000L), oInstance.getResource(13).getValue());
+    }
+
+    @Test
+    public void senml_cbor_empty_instance() throws Exception {
+        // a record without value only carries the base name
+        SenMLPack pack = new SenMLPack();
+        pack.addRecord(senMLRecord("/3/0/", null, null, null, null));
+
+        LwM2mObjectInstance oInstance = (LwM2mObjectInstance) decoder.decode(SenMLCbor.toCbor(pack),
+                ContentFormat.SENML_CBOR, new LwM2mPath(3, 0), model);
+
+        assertEquals(0, oInstance.getId());
+        assertTrue(oInstance.getResources().isEmpty());
+    }
+
+    @Test(expected = CodecException.class)
+    public void senml_cbor_invalid_content() {
+        decoder.decode(Hex.decodeHex("82a1".toCharArray()), ContentFormat.SENML_CBOR, new LwM2mPath(3, 0), model);
+    }
+
+    private SenMLRecord senMLRecord(String baseName, Long baseTime, String name, Long time, Object value) {
+        SenMLRecord record = new SenMLRecord();
+        record.setBaseName(baseName);
+        record.setBaseTime(baseTime);
+        record.setName(name);
+        record.setTime(time);
+        if (value instanceof Number) {
+            record.setNumberValue((Number) value);
+        } else if (value instanceof String) {
+            record.setStringValue((String) value);
+        }
+        return record;
+    }
 }
@@ -28,6 +28,7 @@ import org.eclipse.leshan.core.model.LwM2mModel;
 import org.eclipse.leshan.core.model.ObjectLoader;
 import org.eclipse.leshan.core.model.StaticModel;
 import org.eclipse.leshan.core.node.LwM2mMultipleResource;
+import org.eclipse.leshan.core.node.LwM2mNode;
 import org.eclipse.leshan.core.node.LwM2mObject;
 import org.eclipse.leshan.core.node.LwM2mObjectInstance;
 import org.eclipse.leshan.core.node.LwM2mPath;
@@ -35,6 +36,8 @@ import org.eclipse.leshan.core.node.LwM2mResource;
 import org.eclipse.leshan.core.node.LwM2mSingleResource;
 import org.eclipse.leshan.core.node.TimestampedLwM2mNode;
 import org.eclipse.leshan.core.request.ContentFormat;
+import org.eclipse.leshan.core.senml.SenMLCbor;
+import org.eclipse.leshan.core.senml.SenMLPack;
 import org.eclipse.leshan.core.util.Hex;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -279,4 +282,54 @@ public class LwM2mNodeEncoderTest {
         String expected = b.toString();
         Assert.assertEquals(expected, new String(encoded));
     }
+
+    @Test
+    public void senml_cbor_encode_single_resource() {
+        byte[] encoded = encoder.encode(LwM2mSingleResource.newStringResource(0, "abc"), ContentFormat.SENML_CBOR,
+                new LwM2mPath("/3/0/0"), model);
+
+        // [{-2: "/3/0/0", 3: "abc"}]
+        Assert.assertEquals("81a221662f332f302f300363616263", Hex.encodeHexString(encoded));
+    }
+
+    @Test
+    public void senml_cbor_encode_device_object_instance() {
+        LwM2mObjectInstance oInstance = new LwM2mObjectInstance(0, getDeviceResources());
+        byte[] encoded = encoder.encode(oInstance, ContentFormat.SENML_CBOR, new LwM2mPath("/3/0"), model);
+
+        LwM2mNode decoded = new DefaultLwM2mNodeDecoder().decode(encoded, ContentFormat.SENML_CBOR,
+                new LwM2mPath("/3/0"), model);
+        Assert.assertEquals(oInstance, decoded);
+        // smaller than the JSON representation
+        byte[] json = encoder.encode(oInstance, ContentFormat.JSON, new LwM2mPath("/3/0"), model);
+        Assert.assertTrue(encoded.length < json.length);
+    }
+
+    @Test
+    public void senml_cbor_encode_timestamped_instances() throws Exception {
+        List<TimestampedLwM2mNode> data = new ArrayList<>();
+
+        LwM2mObjectInstance instanceAt110 = new LwM2mObjectInstance(0, LwM2mSingleResource.newFloatResource(1, 22.9));
+        LwM2mObjectInstance instanceAt120 = new LwM2mObjectInstance(0, LwM2mSingleResource.newFloatResource(1, 22.4),
+                LwM2mSingleResource.newStringResource(0, "a string"));
+
+        data.add(new TimestampedLwM2mNode(110L, instanceAt110));
+        data.add(new TimestampedLwM2mNode(120L, instanceAt120));
+
+        byte[] encoded = encoder.encodeTimestampedData(data, ContentFormat.SENML_CBOR, new LwM2mPath(1024, 0),
+                model);
+
+        SenMLPack pack = SenMLCbor.fromCbor(encoded);
+        Assert.assertEquals(3, pack.getRecords().size());
+        Assert.assertEquals("/1024/0/", pack.getRecords().get(0).getBaseName());
+        Assert.assertEquals(Long.valueOf(110), pack.getRecords().get(0).getBaseTime());
+        Assert.assertEquals(Long.valueOf(120), pack.getRecords().get(1).getBaseTime());
+        Assert.assertNull(pack.getRecords().get(2).getBaseTime());
+        Assert.assertNull(pack.getRecords().get(2).getTime());
+
+        List<TimestampedLwM2mNode> decoded = new DefaultLwM2mNodeDecoder().decodeTimestampedData(encoded,
+                ContentFormat.SENML_CBOR, new LwM2mPath(1024, 0), model);
+        Assert.assertEquals(new TimestampedLwM2mNode(120L, instanceAt120), decoded.get(0));
+        Assert.assertEquals(new TimestampedLwM2mNode(110L, instanceAt110), decoded.get(1));
+    }
 }
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.node.codec;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.leshan.core.model.LwM2mModel;
+import org.eclipse.leshan.core.model.ObjectLoader;
+import org.eclipse.leshan.core.model.StaticModel;
+import org.eclipse.leshan.core.node.LwM2mMultipleResource;
+import org.eclipse.leshan.core.node.LwM2mNode;
+import org.eclipse.leshan.core.node.LwM2mObjectInstance;
+import org.eclipse.leshan.core.node.LwM2mPath;
+import org.eclipse.leshan.core.node.LwM2mSingleResource;
+import org.eclipse.leshan.core.node.TimestampedLwM2mNode;
+import org.eclipse.leshan.core.request.ContentFormat;
+
+/**
+ * Compare payload size and encoding/decoding throughput of {@link ContentFormat#TLV}, {@link ContentFormat#JSON} and
+ * {@link ContentFormat#SENML_CBOR}.
+ * <p>
+ * Payloads are a device object instance and 10 time-stamped values of a temperature sensor (not supported by TLV).
+ * <p>
+ * This is not a unit test, launch it manually with :
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=org.eclipse.leshan.core.node.codec.NodeCodecBenchmark -Dexec.args="[nbIterations]"
+ * </pre>
+ */
+public class NodeCodecBenchmark {
+
+    private static final LwM2mModel model = new StaticModel(ObjectLoader.loadDefault());
+    private static final LwM2mNodeEncoder encoder = new DefaultLwM2mNodeEncoder();
+    private static final LwM2mNodeDecoder decoder = new DefaultLwM2mNodeDecoder();
+
+    public static void main(String[] args) {
+        int nbIterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        LwM2mPath devicePath = new LwM2mPath(3, 0);
+        LwM2mObjectInstance device = createDevice();
+        LwM2mPath temperaturePath = new LwM2mPath(3303, 0, 5700);
+        List<TimestampedLwM2mNode> temperatures = createTemperatures();
+
+        // first round is used as warm-up
+        for (int round = 0; round < 3; round++) {
+            System.out.println("round " + round);
+            for (ContentFormat format : new ContentFormat[] { ContentFormat.TLV, ContentFormat.JSON,
+                    ContentFormat.SENML_CBOR }) {
+                bench(format, device, devicePath, nbIterations);
+            }
+            for (ContentFormat format : new ContentFormat[] { ContentFormat.JSON, ContentFormat.SENML_CBOR }) {
+                benchTimestamped(format, temperatures, temperaturePath, nbIterations);
+            }
+        }
+    }
+
+    private static void bench(ContentFormat format, LwM2mNode node, LwM2mPath path, int nbIterations) {
+        byte[] encoded = encoder.encode(node, format, path, model);
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < nbIterations; i++) {
+            encoder.encode(node, format, path, model);
+        }
+        long encodeDuration = System.nanoTime() - begin;
+
+        begin = System.nanoTime();
+        for (int i = 0; i < nbIterations; i++) {
+            decoder.decode(encoded, format, path, model);
+        }
+        long decodeDuration = System.nanoTime() - begin;
+
+        print("device", format, encoded.length, nbIterations, encodeDuration, decodeDuration);
+    }
+
+    private static void benchTimestamped(ContentFormat format, List<TimestampedLwM2mNode> nodes, LwM2mPath path,
+            int nbIterations) {
+        byte[] encoded = encoder.encodeTimestampedData(nodes, format, path, model);
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < nbIterations; i++) {
+            encoder.encodeTimestampedData(nodes, format, path, model);
+        }
+        long encodeDuration = System.nanoTime() - begin;
+
+        begin = System.nanoTime();
+        for (int i = 0; i < nbIterations; i++) {
+            decoder.decodeTimestampedData(encoded, format, path, model);
+        }
+        long decodeDuration = System.nanoTime() - begin;
+
+        print("timestamped", format, encoded.length, nbIterations, encodeDuration, decodeDuration);
+    }
+
+    private static void print(String payload, ContentFormat format, int size, int nbIterations, long encodeDuration,
+            long decodeDuration) {
+        System.out.println(String.format("  %-11s %-10s : %4d bytes, encode %,10d op/s, decode %,10d op/s", payload,
+                format.getName(), size, nbIterations * 1_000_000_000L / encodeDuration,
+                nbIterations * 1_000_000_000L / decodeDuration));
+    }
+
+    private static LwM2mObjectInstance createDevice() {
+        Map<Integer, Long> powerSources = new HashMap<>();
+        powerSources.put(0, 1L);
+        powerSources.put(1, 5L);
+        Map<Integer, Long> errorCodes = new HashMap<>();
+        errorCodes.put(0, 0L);
+        return new LwM2mObjectInstance(0, LwM2mSingleResource.newStringResource(0, "Open Mobile Alliance"),
+                LwM2mSingleResource.newStringResource(1, "Lightweight M2M Client"),
+                LwM2mSingleResource.newStringResource(2, "345000123"), LwM2mSingleResource.newStringResource(3, "1.0"),
+                LwM2mMultipleResource.newIntegerResource(6, powerSources),
+                LwM2mSingleResource.newIntegerResource(9, 100), LwM2mSingleResource.newIntegerResource(10, 15),
+                LwM2mMultipleResource.newIntegerResource(11, errorCodes),
+                LwM2mSingleResource.newDateResource(13, new Date(1367491215000L)),
+                LwM2mSingleResource.newStringResource(14, "+02:00"), LwM2mSingleResource.newStringResource(16, "U"));
+    }
+
+    private static List<TimestampedLwM2mNode> createTemperatures() {
+        List<TimestampedLwM2mNode> temperatures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            temperatures.add(new TimestampedLwM2mNode(1_600_000_000L + i * 60,
+                    LwM2mSingleResource.newFloatResource(5700, 20 + i * 0.5)));
+        }
+        return temperatures;
+    }
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.node.codec.json;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.leshan.core.model.LwM2mModel;
+import org.eclipse.leshan.core.model.ObjectLoader;
+import org.eclipse.leshan.core.model.StaticModel;
+import org.eclipse.leshan.core.node.LwM2mObject;
+import org.eclipse.leshan.core.node.LwM2mObjectInstance;
+import org.eclipse.leshan.core.node.LwM2mPath;
+import org.eclipse.leshan.core.node.LwM2mResource;
+import org.eclipse.leshan.core.node.LwM2mSingleResource;
+import org.eclipse.leshan.core.node.TimestampedLwM2mNode;
+import org.eclipse.leshan.core.node.codec.LwM2mValueChecker;
+
+/**
+ * Measure throughput of {@link LwM2mNodeJsonEncoder} and {@link LwM2mNodeJsonDecoder} on large payloads :
+ * <ul>
+ * <li>an object with 100 instances of 8 resources</li>
+ * <li>1000 historical values of a sensor resource</li>
+ * </ul>
+ * <p>
+ * This is not a unit test, launch it manually with :
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=org.eclipse.leshan.core.node.codec.json.JsonCodecBenchmark -Dexec.args="[nbIterations]"
+ * </pre>
+ */
+public class JsonCodecBenchmark {
+
+    private static final LwM2mModel model = new StaticModel(ObjectLoader.loadDefault());
+    private static final LwM2mValueChecker converter = new LwM2mValueChecker();
+
+    public static void main(String[] args) {
+        int nbIterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+
+        LwM2mPath objectPath = new LwM2mPath(3303);
+        LwM2mObject object = createObject(100);
+        byte[] encodedObject = LwM2mNodeJsonEncoder.encode(object, objectPath, model, converter);
+
+        LwM2mPath historyPath = new LwM2mPath(3303, 0, 5700);
+        List<TimestampedLwM2mNode> history = createHistory(1000);
+        byte[] encodedHistory = LwM2mNodeJsonEncoder.encodeTimestampedData(history, historyPath, model, converter);
+
+        // first round is used as warm-up
+        for (int round = 0; round < 3; round++) {
+            long begin = System.nanoTime();
+            for (int i = 0; i < nbIterations; i++) {
+                LwM2mNodeJsonEncoder.encode(object, objectPath, model, converter);
+            }
+            long objectEncoding = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            for (int i = 0; i < nbIterations; i++) {
+                LwM2mNodeJsonDecoder.decode(encodedObject, objectPath, model, LwM2mObject.class);
+            }
+            long objectDecoding = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            for (int i = 0; i < nbIterations; i++) {
+                LwM2mNodeJsonEncoder.encodeTimestampedData(history, historyPath, model, converter);
+            }
+            long historyEncoding = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            for (int i = 0; i < nbIterations; i++) {
+                LwM2mNodeJsonDecoder.decodeTimestamped(encodedHistory, historyPath, model, LwM2mResource.class);
+            }
+            long historyDecoding = System.nanoTime() - begin;
+
+            System.out.println(String.format(
+                    "object (%d bytes) : encode %,7d op/s, decode %,7d op/s | history (%d bytes) : encode %,7d op/s, decode %,7d op/s",
+                    encodedObject.length, rate(nbIterations, objectEncoding), rate(nbIterations, objectDecoding),
+                    encodedHistory.length, rate(nbIterations, historyEncoding), rate(nbIterations, historyDecoding)));
+        }
+    }
+
+    private static long rate(int nbIterations, long duration) {
+        return nbIterations * 1_000_000_000L / duration;
+    }
+
+    private static LwM2mObject createObject(int nbInstances) {
+        List<LwM2mObjectInstance> instances = new ArrayList<>();
+        for (int i = 0; i < nbInstances; i++) {
+            instances.add(new LwM2mObjectInstance(i, LwM2mSingleResource.newFloatResource(5700, 20 + i * 0.25),
+                    LwM2mSingleResource.newStringResource(5701, "Cel"),
+                    LwM2mSingleResource.newFloatResource(5601, 10.5), LwM2mSingleResource.newFloatResource(5602, 42),
+                    LwM2mSingleResource.newStringResource(5750, "sensor " + i),
+                    LwM2mSingleResource.newFloatResource(5603, -40), LwM2mSingleResource.newFloatResource(5604, 85),
+                    LwM2mSingleResource.newStringResource(5751, "temperature")));
+        }
+        return new LwM2mObject(3303, instances);
+    }
+
+    private static List<TimestampedLwM2mNode> createHistory(int nbValues) {
+        List<TimestampedLwM2mNode> history = new ArrayList<>();
+        for (int i = 0; i < nbValues; i++) {
+            history.add(new TimestampedLwM2mNode(1_600_000_000L + i * 60,
+                    LwM2mSingleResource.newFloatResource(5700, 20 + (i % 40) * 0.25)));
+        }
+        return history;
+    }
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.senml;
+
+import static org.junit.Assert.*;
+
+import org.eclipse.leshan.core.util.Hex;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link SenMLCbor}
+ */
+public class SenMLCborTest {
+
+    @Test
+    public void serialize_and_deserialize_all_fields() throws SenMLException {
+        SenMLRecord first = new SenMLRecord();
+        first.setBaseName("/3/0/");
+        first.setBaseTime(1_600_000_000L);
+        first.setName("0");
+        first.setTime(-10L);
+        first.setStringValue("Leshan");
+
+        SenMLRecord second = new SenMLRecord();
+        second.setName("1");
+        second.setNumberValue(Math.PI);
+        SenMLRecord third = new SenMLRecord();
+        third.setName("2");
+        third.setNumberValue(-300L);
+        SenMLRecord fourth = new SenMLRecord();
+        fourth.setName("3");
+        fourth.setBooleanValue(true);
+        SenMLRecord fifth = new SenMLRecord();
+        fifth.setName("4");
+        fifth.setOpaqueValue(new byte[] { 1, 2, 3 });
+        SenMLRecord sixth = new SenMLRecord();
+        sixth.setName("5");
+        sixth.setObjectLinkValue("3:0");
+
+        SenMLPack pack = new SenMLPack();
+        pack.addRecord(first);
+        pack.addRecord(second);
+        pack.addRecord(third);
+        pack.addRecord(fourth);
+        pack.addRecord(fifth);
+        pack.addRecord(sixth);
+
+        SenMLPack decoded = SenMLCbor.fromCbor(SenMLCbor.toCbor(pack));
+
+        // integers are decoded as Long and floats as Double
+        assertEquals(pack, decoded);
+    }
+
+    @Test
+    public void deserialize_indefinite_length_and_half_float() throws SenMLException {
+        // [_ {_ 0: "1", 2: 1.5 (half float), 99: [1, 2], "x": 0 }]
+        SenMLPack pack = SenMLCbor
+                .fromCbor(Hex.decodeHex("9fbf006131 02f93e00 1863820102 617800 ffff".replace(" ", "").toCharArray()));
+
+        assertEquals(1, pack.getRecords().size());
+        assertEquals("1", pack.getRecords().get(0).getName());
+        assertEquals(1.5d, pack.getRecords().get(0).getNumberValue());
+    }
+
+    @Test(expected = SenMLException.class)
+    public void invalid_value_type_is_rejected() throws SenMLException {
+        // [{0: 1}] : name must be a text string
+        SenMLCbor.fromCbor(Hex.decodeHex("81a10001".toCharArray()));
+    }
+
+    @Test(expected = SenMLException.class)
+    public void truncated_content_is_rejected() throws SenMLException {
+        // [{3: "abc"}] without last byte
+        SenMLCbor.fromCbor(Hex.decodeHex("81a103636162".toCharArray()));
+    }
+
+    @Test(expected = SenMLException.class)
+    public void deeply_nested_content_is_rejected() throws SenMLException {
+        // [{99: [[[[...]]]]}] with 10 000 nested arrays
+        StringBuilder hex = new StringBuilder("81a11863");
+        for (int i = 0; i < 10_000; i++) {
+            hex.append("81");
+        }
+        hex.append("00");
+        SenMLCbor.fromCbor(Hex.decodeHex(hex.toString().toCharArray()));
+    }
+
+    @Test
+    public void nested_content_within_limit_is_skipped() throws SenMLException {
+        // [{0: "1", 99: [[[[0]]]]}]
+        SenMLPack pack = SenMLCbor.fromCbor(Hex.decodeHex("81a200613118638181818100".toCharArray()));
+        assertEquals("1", pack.getRecords().get(0).getName());
+    }
+
+    @Test
+    public void tagged_values_are_read() throws SenMLException {
+        // [{0: tag(1, tag(1, "1"))}]
+        SenMLPack pack = SenMLCbor.fromCbor(Hex.decodeHex("81a100c1c16131".toCharArray()));
+        assertEquals("1", pack.getRecords().get(0).getName());
+    }
+
+    @Test
+    public void label_out_of_int_range_is_skipped() throws SenMLException {
+        // [{0: "1", 4294967298: 5}] : 2^32 + 2 must not be read as the value label
+        SenMLPack pack = SenMLCbor.fromCbor(Hex.decodeHex("81a20061311b000000010000000205".toCharArray()));
+        assertEquals("1", pack.getRecords().get(0).getName());
+        assertNull(pack.getRecords().get(0).getNumberValue());
+    }
+
+    @Test(expected = SenMLException.class)
+    public void non_integral_time_is_rejected() throws SenMLException {
+        // [{6: 1.5 (half float)}]
+        SenMLCbor.fromCbor(Hex.decodeHex("81a106f93e00".toCharArray()));
+    }
+
+    @Test(expected = SenMLException.class)
+    public void non_integral_base_time_is_rejected() throws SenMLException {
+        // [{-3: 1.5 (half float)}]
+        SenMLCbor.fromCbor(Hex.decodeHex("81a122f93e00".toCharArray()));
+    }
+
+    @Test
+    public void integral_float_time_is_accepted() throws SenMLException {
+        // [{6: 2.0 (half float)}]
+        SenMLPack pack = SenMLCbor.fromCbor(Hex.decodeHex("81a106f94000".toCharArray()));
+        assertEquals(Long.valueOf(2), pack.getRecords().get(0).getTime());
+    }
+}
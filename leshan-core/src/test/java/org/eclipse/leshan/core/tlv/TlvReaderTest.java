@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.tlv;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import org.eclipse.leshan.core.tlv.Tlv.TlvType;
+import org.eclipse.leshan.core.util.Hex;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link TlvReader}
+ */
+public class TlvReaderTest {
+
+    @Test
+    public void read_nested_entries_without_moving_buffer() throws TlvException {
+        // instance 0 containing : resource 1 = 0x7FFF, multiple resource 6 { 0 = 1, 1 = 5 }
+        Tlv[] resourceInstances = new Tlv[] {
+                new Tlv(TlvType.RESOURCE_INSTANCE, null, TlvEncoder.encodeInteger(1), 0),
+                new Tlv(TlvType.RESOURCE_INSTANCE, null, TlvEncoder.encodeInteger(5), 1) };
+        Tlv[] resources = new Tlv[] { new Tlv(TlvType.RESOURCE_VALUE, null, TlvEncoder.encodeInteger(0x7FFF), 1),
+                new Tlv(TlvType.MULTIPLE_RESOURCE, resourceInstances, null, 6) };
+        Tlv[] tlvs = new Tlv[] { new Tlv(TlvType.OBJECT_INSTANCE, resources, null, 0) };
+        ByteBuffer buffer = TlvEncoder.encode(tlvs);
+        int position = buffer.position();
+
+        TlvReader reader = new TlvReader(buffer);
+        assertTrue(reader.next());
+        assertEquals(TlvType.OBJECT_INSTANCE, reader.getType());
+        assertEquals(0, reader.getIdentifier());
+
+        TlvReader resourceReader = reader.children();
+        assertTrue(resourceReader.next());
+        assertEquals(TlvType.RESOURCE_VALUE, resourceReader.getType());
+        assertEquals(0x7FFF, resourceReader.readInteger());
+
+        assertTrue(resourceReader.next());
+        assertEquals(TlvType.MULTIPLE_RESOURCE, resourceReader.getType());
+        TlvReader instances = resourceReader.children();
+        assertTrue(instances.next());
+        assertEquals(1, instances.readInteger());
+        assertTrue(instances.next());
+        assertEquals(1, instances.getIdentifier());
+        assertEquals(5, instances.readInteger());
+        assertFalse(instances.next());
+
+        assertFalse(resourceReader.next());
+        assertFalse(reader.next());
+        assertEquals(position, buffer.position());
+    }
+
+    @Test
+    public void decode_values_from_buffer() throws TlvException {
+        assertEquals(-2L, valueReader(TlvEncoder.encodeInteger(-2)).readInteger());
+        assertEquals(Long.MIN_VALUE, valueReader(TlvEncoder.encodeInteger(Long.MIN_VALUE)).readInteger());
+        assertEquals(-300L, valueReader(new byte[] { (byte) 0xFE, (byte) 0xD4 }).readInteger());
+        assertEquals(1.5d, valueReader(TlvEncoder.encodeFloat(1.5f)).readFloat(), 0);
+        assertEquals(Math.PI, valueReader(TlvEncoder.encodeFloat(Math.PI)).readFloat(), 0);
+        assertEquals(new Date(1_500_000_000_000L), valueReader(TlvEncoder.encodeDate(new Date(1_500_000_000_000L)))
+                .readDate());
+        assertTrue(valueReader(TlvEncoder.encodeBoolean(true)).readBoolean());
+        assertEquals("héllo", valueReader(TlvEncoder.encodeString("héllo")).readString());
+        assertEquals(0x1234, valueReader(Hex.decodeHex("12345678".toCharArray())).readObjlnk().getObjectId());
+    }
+
+    @Test(expected = TlvException.class)
+    public void value_overflowing_its_container_is_rejected() throws TlvException {
+        // resource value 0 of length 4 but only 1 byte available
+        TlvReader reader = new TlvReader(ByteBuffer.wrap(Hex.decodeHex("C40001".toCharArray())));
+        reader.next();
+    }
+
+    @Test(expected = TlvException.class)
+    public void invalid_integer_length_is_rejected() throws TlvException {
+        valueReader(new byte[9]).readInteger();
+    }
+
+    private TlvReader valueReader(byte[] value) throws TlvException {
+        ByteBuffer buffer = TlvEncoder.encode(new Tlv[] { new Tlv(TlvType.RESOURCE_VALUE, null, value, 0) });
+        TlvReader reader = new TlvReader(buffer);
+        assertTrue(reader.next());
+        assertEquals(value.length, reader.getValueLength());
+        return reader;
+    }
+}
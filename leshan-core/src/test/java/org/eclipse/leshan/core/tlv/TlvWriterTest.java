@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.core.tlv;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.eclipse.leshan.core.tlv.Tlv.TlvType;
+import org.eclipse.leshan.core.util.Hex;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link TlvWriter}
+ */
+public class TlvWriterTest {
+
+    @Test
+    public void write_nested_containers() {
+        TlvWriter writer = new TlvWriter(4);
+        writer.startContainer(TlvType.OBJECT_INSTANCE, 0);
+        writer.writeInteger(TlvType.RESOURCE_VALUE, 1, 0x7FFF);
+        writer.startContainer(TlvType.MULTIPLE_RESOURCE, 6);
+        writer.writeInteger(TlvType.RESOURCE_INSTANCE, 0, 1);
+        writer.writeInteger(TlvType.RESOURCE_INSTANCE, 1, 5);
+        writer.endContainer();
+        writer.endContainer();
+
+        assertEquals("08000C" + "C2017FFF" + "8606" + "410001" + "410105", Hex.encodeHexString(writer.toByteArray())
+                .toUpperCase());
+    }
+
+    @Test
+    public void write_same_bytes_as_tlv_tree() {
+        byte[] longValue = new byte[300];
+        Arrays.fill(longValue, (byte) 0x2A);
+        Tlv[] resources = new Tlv[] { new Tlv(TlvType.RESOURCE_VALUE, null, longValue, 1000),
+                new Tlv(TlvType.RESOURCE_VALUE, null, TlvEncoder.encodeString("Leshan"), 0) };
+        Tlv tlv = new Tlv(TlvType.OBJECT_INSTANCE, resources, null, 2);
+
+        TlvWriter writer = new TlvWriter();
+        writer.startContainer(TlvType.OBJECT_INSTANCE, 2);
+        writer.writeOpaque(TlvType.RESOURCE_VALUE, 1000, longValue);
+        writer.writeString(TlvType.RESOURCE_VALUE, 0, "Leshan");
+        writer.endContainer();
+
+        assertArrayEquals(TlvEncoder.encode(new Tlv[] { tlv }).array(), writer.toByteArray());
+    }
+
+    @Test
+    public void reuse_writer_after_reset() throws TlvException {
+        TlvWriter writer = new TlvWriter();
+        writer.writeString(TlvType.RESOURCE_VALUE, 0, "a first payload");
+        writer.reset();
+        writer.writeDouble(TlvType.RESOURCE_VALUE, 3, Math.PI);
+
+        ByteBuffer buffer = ByteBuffer.allocate(writer.size());
+        writer.writeTo(buffer);
+        buffer.flip();
+        TlvReader reader = new TlvReader(buffer);
+        assertTrue(reader.next());
+        assertEquals(3, reader.getIdentifier());
+        assertEquals(Math.PI, reader.readFloat(), 0);
+        assertFalse(reader.next());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unterminated_container_is_rejected() {
+        TlvWriter writer = new TlvWriter();
+        writer.startContainer(TlvType.MULTIPLE_RESOURCE, 0);
+        writer.toByteArray();
+    }
+}
@@ -17,6 +17,10 @@ package org.eclipse.leshan.server.californium;
 
 import java.security.Principal;
 import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.security.auth.x500.X500Principal;
 
@@ -40,40 +44,70 @@ public class ConnectionCleaner {
     }
 
     public void cleanConnectionFor(final SecurityInfo... infos) {
-        connector.startTerminateConnectionsForPrincipal(new Predicate<Principal>() {
-            @Override
-            public boolean accept(Principal principal) {
-                if (principal != null) {
-                    for (SecurityInfo info : infos) {
-                        if (info != null) {
-                            // PSK
-                            if (info.usePSK() && principal instanceof PreSharedKeyIdentity) {
-                                String identity = ((PreSharedKeyIdentity) principal).getIdentity();
-                                if (info.getIdentity().equals(identity)) {
-                                    return true;
-                                }
-                            }
-                            // RPK
-                            else if (info.useRPK() && principal instanceof RawPublicKeyIdentity) {
-                                PublicKey publicKey = ((RawPublicKeyIdentity) principal).getKey();
-                                if (info.getRawPublicKey().equals(publicKey)) {
-                                    return true;
-                                }
-                            }
-                            // x509
-                            else if (info.useX509Cert() && principal instanceof X500Principal
-                                    || principal instanceof X509CertPath) {
-                                // Extract common name
-                                String x509CommonName = EndpointContextUtil.extractCN(principal.getName());
-                                if (x509CommonName.equals(info.getEndpoint())) {
-                                    return true;
-                                }
-                            }
-                        }
+        cleanConnectionFor(Arrays.asList(infos));
+    }
+
+    /**
+     * Remove DTLS connections of all the given {@link SecurityInfo} in a single pass over the connection store.
+     * <p>
+     * Prefer this method to several calls to {@link #cleanConnectionFor(SecurityInfo...)} when a lot of security info
+     * are revoked at once : the cost of each connection check does not depend on the number of security info.
+     * 
+     * @param infos the security info which connections must be removed
+     * @since 1.4
+     */
+    public void cleanConnectionFor(Collection<SecurityInfo> infos) {
+        PrincipalMatcher matcher = new PrincipalMatcher(infos);
+        if (!matcher.isEmpty()) {
+            connector.startTerminateConnectionsForPrincipal(matcher);
+        }
+    }
+
+    /**
+     * Accepts principals of the given security info, using hash sets of PSK identities, public keys and X.509 common
+     * names.
+     */
+    static class PrincipalMatcher implements Predicate<Principal> {
+
+        private final Set<String> pskIdentities = new HashSet<>();
+        private final Set<PublicKey> publicKeys = new HashSet<>();
+        private final Set<String> x509CommonNames = new HashSet<>();
+
+        PrincipalMatcher(Collection<SecurityInfo> infos) {
+            for (SecurityInfo info : infos) {
+                if (info != null) {
+                    if (info.usePSK()) {
+                        pskIdentities.add(info.getIdentity());
+                    } else if (info.useRPK()) {
+                        publicKeys.add(info.getRawPublicKey());
+                    } else if (info.useX509Cert()) {
+                        // x509 common name must be the endpoint name
+                        x509CommonNames.add(info.getEndpoint());
                     }
                 }
-                return false;
             }
-        });
+        }
+
+        boolean isEmpty() {
+            return pskIdentities.isEmpty() && publicKeys.isEmpty() && x509CommonNames.isEmpty();
+        }
+
+        @Override
+        public boolean accept(Principal principal) {
+            // PSK
+            if (principal instanceof PreSharedKeyIdentity) {
+                return pskIdentities.contains(((PreSharedKeyIdentity) principal).getIdentity());
+            }
+            // RPK
+            else if (principal instanceof RawPublicKeyIdentity) {
+                return publicKeys.contains(((RawPublicKeyIdentity) principal).getKey());
+            }
+            // x509
+            else if (principal instanceof X500Principal || principal instanceof X509CertPath) {
+                return !x509CommonNames.isEmpty()
+                        && x509CommonNames.contains(EndpointContextUtil.extractCN(principal.getName()));
+            }
+            return false;
+        }
     }
 }
@@ -47,6 +47,8 @@ import org.eclipse.leshan.core.response.ErrorCallback;
 import org.eclipse.leshan.core.response.LwM2mResponse;
 import org.eclipse.leshan.core.response.ResponseCallback;
 import org.eclipse.leshan.core.util.Validate;
+import org.eclipse.leshan.server.californium.observation.NotificationBatcher;
+import org.eclipse.leshan.server.californium.observation.NotificationPipeline;
 import org.eclipse.leshan.server.californium.observation.ObservationServiceImpl;
 import org.eclipse.leshan.server.californium.registration.CaliforniumRegistrationStore;
 import org.eclipse.leshan.server.californium.registration.RegisterResource;
@@ -60,6 +62,7 @@ import org.eclipse.leshan.server.queue.PresenceListener;
 import org.eclipse.leshan.server.queue.PresenceService;
 import org.eclipse.leshan.server.queue.PresenceServiceImpl;
 import org.eclipse.leshan.server.queue.PresenceStateListener;
+import org.eclipse.leshan.server.registration.ObjectLinksCache;
 import org.eclipse.leshan.server.registration.Registration;
 import org.eclipse.leshan.server.registration.RegistrationHandler;
 import org.eclipse.leshan.server.registration.RegistrationIdProvider;
@@ -116,6 +119,10 @@ public class LeshanServer {
     // Configuration
     /** since 1.1 */
     protected final boolean updateRegistrationOnNotification;
+    /** since 1.4 */
+    protected final NotificationPipeline notificationPipeline;
+    /** since 1.4 */
+    protected final NotificationBatcher notificationBatcher;
 
     /**
      * Initialize a server which will bind to the specified address and port.
@@ -172,6 +179,43 @@ public class LeshanServer {
             LwM2mModelProvider modelProvider, LwM2mNodeEncoder encoder, LwM2mNodeDecoder decoder,
             NetworkConfig coapConfig, boolean noQueueMode, ClientAwakeTimeProvider awakeTimeProvider,
             RegistrationIdProvider registrationIdProvider, boolean updateRegistrationOnNotification) {
+        this(unsecuredEndpoint, securedEndpoint, registrationStore, securityStore, authorizer, modelProvider, encoder,
+                decoder, coapConfig, noQueueMode, awakeTimeProvider, registrationIdProvider,
+                updateRegistrationOnNotification, null, null);
+    }
+
+    /**
+     * Initialize a server which will bind to the specified address and port.
+     * <p>
+     * {@link LeshanServerBuilder} is the priviledged way to create a {@link LeshanServer}.
+     *
+     * @param unsecuredEndpoint CoAP endpoint used for <code>coap://</code> communication.
+     * @param securedEndpoint CoAP endpoint used for <code>coaps://</code> communication.
+     * @param registrationStore the {@link Registration} store.
+     * @param securityStore the {@link SecurityInfo} store.
+     * @param authorizer define which devices is allow to register on this server.
+     * @param modelProvider provides the objects description for each client.
+     * @param decoder decoder used to decode response payload.
+     * @param encoder encode used to encode request payload.
+     * @param coapConfig the CoAP {@link NetworkConfig}.
+     * @param noQueueMode true to disable presenceService.
+     * @param awakeTimeProvider to set the client awake time if queue mode is used.
+     * @param registrationIdProvider to provide registrationId using for location-path option values on response of
+     *        Register operation.
+     * @param updateRegistrationOnNotification will activate registration update on observe notification.
+     * @param notificationPipeline the pipeline used to handle notifications outside of CoAP protocol threads, or
+     *        <code>null</code> to handle them synchronously.
+     * @param notificationBatcher the batcher used to group notifications delivered to batch listeners, or
+     *        <code>null</code>.
+     * 
+     * @since 1.4
+     */
+    public LeshanServer(CoapEndpoint unsecuredEndpoint, CoapEndpoint securedEndpoint,
+            CaliforniumRegistrationStore registrationStore, SecurityStore securityStore, Authorizer authorizer,
+            LwM2mModelProvider modelProvider, LwM2mNodeEncoder encoder, LwM2mNodeDecoder decoder,
+            NetworkConfig coapConfig, boolean noQueueMode, ClientAwakeTimeProvider awakeTimeProvider,
+            RegistrationIdProvider registrationIdProvider, boolean updateRegistrationOnNotification,
+            NotificationPipeline notificationPipeline, NotificationBatcher notificationBatcher) {
 
         Validate.notNull(registrationStore, "registration store cannot be null");
         Validate.notNull(authorizer, "authorizer cannot be null");
@@ -202,6 +246,8 @@ public class LeshanServer {
         this.securityStore = securityStore;
         this.modelProvider = modelProvider;
         this.updateRegistrationOnNotification = updateRegistrationOnNotification;
+        this.notificationPipeline = notificationPipeline;
+        this.notificationBatcher = notificationBatcher;
         observationService = createObservationService(registrationStore, modelProvider, decoder, unsecuredEndpoint,
                 securedEndpoint);
         if (noQueueMode) {
@@ -241,7 +287,7 @@ public class LeshanServer {
             CoapEndpoint securedEndpoint) {
 
         ObservationServiceImpl observationService = new ObservationServiceImpl(registrationStore, modelProvider,
-                decoder, updateRegistrationOnNotification);
+                decoder, updateRegistrationOnNotification, notificationPipeline, notificationBatcher);
 
         if (unsecuredEndpoint != null) {
             unsecuredEndpoint.addNotificationListener(observationService);
@@ -268,7 +314,11 @@ public class LeshanServer {
 
     protected CoapResource createRegisterResource(RegistrationServiceImpl registrationService, Authorizer authorizer,
             RegistrationIdProvider registrationIdProvider) {
-        return new RegisterResource(new RegistrationHandler(registrationService, authorizer, registrationIdProvider));
+        // share object links between registrations of devices sending the same payload
+        ObjectLinksCache objectLinksCache = new ObjectLinksCache();
+        return new RegisterResource(
+                new RegistrationHandler(registrationService, authorizer, registrationIdProvider, objectLinksCache),
+                objectLinksCache);
     }
 
     protected LwM2mRequestSender createRequestSender(Endpoint securedEndpoint, Endpoint unsecuredEndpoint,
@@ -404,6 +454,7 @@ public class LeshanServer {
             ((Stoppable) requestSender).stop();
         }
 
+        observationService.destroy();
         presenceService.destroy();
 
         LOG.info("LWM2M server destroyed.");
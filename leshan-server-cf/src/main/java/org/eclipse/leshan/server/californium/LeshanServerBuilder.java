@@ -45,6 +45,8 @@ import org.eclipse.leshan.core.node.codec.LwM2mNodeDecoder;
 import org.eclipse.leshan.core.node.codec.LwM2mNodeEncoder;
 import org.eclipse.leshan.core.observation.Observation;
 import org.eclipse.leshan.core.request.exception.ClientSleepingException;
+import org.eclipse.leshan.server.californium.observation.NotificationBatcher;
+import org.eclipse.leshan.server.californium.observation.NotificationPipeline;
 import org.eclipse.leshan.server.californium.registration.CaliforniumRegistrationStore;
 import org.eclipse.leshan.server.californium.registration.InMemoryRegistrationStore;
 import org.eclipse.leshan.server.model.LwM2mModelProvider;
@@ -100,6 +102,10 @@ public class LeshanServerBuilder {
     private boolean noQueueMode = false;
     /** @since 1.1 */
     protected boolean updateRegistrationOnNotification;
+    /** @since 1.4 */
+    protected NotificationPipeline notificationPipeline;
+    /** @since 1.4 */
+    protected NotificationBatcher notificationBatcher;
 
     /**
      * <p>
@@ -385,6 +391,32 @@ public class LeshanServerBuilder {
         return this;
     }
 
+    /**
+     * Set the pipeline used to handle notifications outside of CoAP protocol threads, with bounded queues and
+     * configurable overflow policy.
+     * <p>
+     * By default, notifications are handled by CoAP protocol threads.
+     *
+     * @since 1.4
+     */
+    public LeshanServerBuilder setNotificationPipeline(NotificationPipeline notificationPipeline) {
+        this.notificationPipeline = notificationPipeline;
+        return this;
+    }
+
+    /**
+     * Set the {@link NotificationBatcher} used to group notifications delivered to
+     * {@link org.eclipse.leshan.server.observation.BatchObservationListener}s.
+     * <p>
+     * By default, each notification is delivered to batch listeners as a batch of one.
+     *
+     * @since 1.4
+     */
+    public LeshanServerBuilder setNotificationBatcher(NotificationBatcher notificationBatcher) {
+        this.notificationBatcher = notificationBatcher;
+        return this;
+    }
+
     /**
      * The default Californium/CoAP {@link NetworkConfig} used by the builder.
      */
@@ -618,6 +650,6 @@ public class LeshanServerBuilder {
             RegistrationIdProvider registrationIdProvider) {
         return new LeshanServer(unsecuredEndpoint, securedEndpoint, registrationStore, securityStore, authorizer,
                 modelProvider, encoder, decoder, coapConfig, noQueueMode, awakeTimeProvider, registrationIdProvider,
-                updateRegistrationOnNotification);
+                updateRegistrationOnNotification, notificationPipeline, notificationBatcher);
     }
 }
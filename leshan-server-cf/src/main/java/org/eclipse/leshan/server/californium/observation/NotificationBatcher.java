@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.observation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.leshan.core.Destroyable;
+import org.eclipse.leshan.core.util.NamedThreadFactory;
+import org.eclipse.leshan.core.util.Validate;
+import org.eclipse.leshan.server.californium.observation.NotificationPipeline.OverflowPolicy;
+import org.eclipse.leshan.server.observation.BatchObservationListener;
+import org.eclipse.leshan.server.observation.ObservationListener;
+import org.eclipse.leshan.server.observation.ObservationNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Groups notifications before delivering them to {@link BatchObservationListener}s.
+ * <p>
+ * A batch is flushed when it reaches the maximum batch size, or when the maximum delay has elapsed since its first
+ * notification was added. All batches are delivered by a single thread, in the order they were flushed, and the same
+ * batch is shared by all batch listeners.
+ * <p>
+ * Flushed batches wait for delivery in a bounded queue. When it is full, the {@link OverflowPolicy} applies as in
+ * {@link NotificationPipeline} : the batch is dropped or the flushing thread waits for room in the queue.
+ *
+ * @see org.eclipse.leshan.server.californium.LeshanServerBuilder#setNotificationBatcher(NotificationBatcher)
+ * @since 1.4
+ */
+public class NotificationBatcher implements Destroyable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NotificationBatcher.class);
+
+    private static final int DEFAULT_MAX_PENDING_BATCHES = 1024;
+
+    private final int maxBatchSize;
+    private final long maxBatchDelay;
+    private final OverflowPolicy overflowPolicy;
+    // only used to schedule flushes : at most one flush is scheduled at a time and cancelled ones leave the queue once
+    // their delay is elapsed, so its queue stays small.
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final BlockingQueue<List<ObservationNotification>> pendingBatches;
+    private final Thread deliveryThread;
+    private final AtomicLong droppedNotifications = new AtomicLong();
+
+    private volatile List<ObservationListener> listeners = Collections.emptyList();
+
+    // guarded by this
+    private List<ObservationNotification> batch;
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean destroyed;
+
+    /**
+     * Create a batcher which keeps at most 1024 batches waiting for delivery, flushing threads wait when this limit is
+     * reached.
+     *
+     * @param maxBatchSize maximum number of notifications in a batch
+     * @param maxBatchDelay maximum time a notification waits before its batch is flushed
+     * @param unit the unit of <code>maxBatchDelay</code>
+     */
+    public NotificationBatcher(int maxBatchSize, long maxBatchDelay, TimeUnit unit) {
+        this(maxBatchSize, maxBatchDelay, unit, DEFAULT_MAX_PENDING_BATCHES, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * @param maxBatchSize maximum number of notifications in a batch
+     * @param maxBatchDelay maximum time a notification waits before its batch is flushed
+     * @param unit the unit of <code>maxBatchDelay</code>
+     * @param maxPendingBatches maximum number of flushed batches waiting for delivery
+     * @param overflowPolicy what to do when a batch is flushed and <code>maxPendingBatches</code> batches are already
+     *        waiting
+     */
+    public NotificationBatcher(int maxBatchSize, long maxBatchDelay, TimeUnit unit, int maxPendingBatches,
+            OverflowPolicy overflowPolicy) {
+        Validate.isTrue(maxBatchSize > 0, "batch size must be positive");
+        Validate.isTrue(maxBatchDelay > 0, "batch delay must be positive");
+        Validate.notNull(unit);
+        Validate.isTrue(maxPendingBatches > 0, "maximum number of pending batches must be positive");
+        Validate.notNull(overflowPolicy);
+
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelay = unit.toNanos(maxBatchDelay);
+        this.overflowPolicy = overflowPolicy;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("Leshan Notification batcher"));
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.pendingBatches = new ArrayBlockingQueue<>(maxPendingBatches);
+        this.batch = new ArrayList<>(maxBatchSize);
+        this.deliveryThread = new NamedThreadFactory("Leshan Notification batch delivery")
+                .newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliverPendingBatches();
+                    }
+                });
+        this.deliveryThread.start();
+    }
+
+    /**
+     * Set the listeners to which batches are delivered, only {@link BatchObservationListener}s are called.
+     */
+    void setListeners(List<ObservationListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    /**
+     * @return the number of flushed batches waiting for delivery.
+     */
+    public int getPendingBatches() {
+        return pendingBatches.size();
+    }
+
+    /**
+     * @return the number of notifications dropped because the queue of pending batches was full or the batcher
+     *         destroyed.
+     */
+    public long getDroppedCount() {
+        return droppedNotifications.get();
+    }
+
+    /**
+     * Add a notification to the current batch.
+     */
+    synchronized void add(ObservationNotification notification) {
+        if (destroyed) {
+            LOG.debug("Notification batcher destroyed, notification {} dropped", notification);
+            droppedNotifications.incrementAndGet();
+            return;
+        }
+        batch.add(notification);
+        if (batch.size() >= maxBatchSize) {
+            flush();
+        } else if (batch.size() == 1) {
+            final List<ObservationNotification> scheduledBatch = batch;
+            scheduledFlush = scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flushIfCurrent(scheduledBatch);
+                }
+            }, maxBatchDelay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private synchronized void flushIfCurrent(List<ObservationNotification> scheduledBatch) {
+        // the batch may already have been flushed because it was full
+        if (batch == scheduledBatch && !batch.isEmpty()) {
+            flush();
+        }
+    }
+
+    // must be called holding the lock, so batches are queued in order
+    private void flush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        List<ObservationNotification> flushed = Collections.unmodifiableList(batch);
+        batch = new ArrayList<>(maxBatchSize);
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                pendingBatches.put(flushed);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (pendingBatches.offer(flushed)) {
+            return;
+        }
+        droppedNotifications.addAndGet(flushed.size());
+        LOG.debug("Queue of notification batcher is full, batch of {} notifications dropped", flushed.size());
+    }
+
+    private void deliverPendingBatches() {
+        while (true) {
+            List<ObservationNotification> notifications;
+            try {
+                notifications = pendingBatches.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            deliver(notifications);
+        }
+        // destroyed : nothing can be queued anymore, deliver remaining batches
+        List<List<ObservationNotification>> remaining = new ArrayList<>();
+        pendingBatches.drainTo(remaining);
+        for (List<ObservationNotification> notifications : remaining) {
+            deliver(notifications);
+        }
+    }
+
+    private void deliver(List<ObservationNotification> notifications) {
+        for (ObservationListener listener : listeners) {
+            if (listener instanceof BatchObservationListener) {
+                try {
+                    ((BatchObservationListener) listener).onResponses(notifications);
+                } catch (Throwable e) {
+                    // delivery thread must survive any error : with BLOCK policy, flushing threads would wait forever.
+                    LOG.error("Unable to deliver {} notifications to {}", notifications.size(), listener, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Flush the pending batch and stop the delivery thread once all flushed batches are delivered.
+     */
+    @Override
+    public void destroy() {
+        synchronized (this) {
+            if (destroyed) {
+                return;
+            }
+            destroyed = true;
+            scheduler.shutdownNow();
+            if (!batch.isEmpty()) {
+                flush();
+            }
+        }
+        deliveryThread.interrupt();
+    }
+}
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.observation;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.leshan.core.Destroyable;
+import org.eclipse.leshan.core.util.NamedThreadFactory;
+import org.eclipse.leshan.core.util.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handles notifications outside of CoAP protocol threads.
+ * <p>
+ * A notification goes through 2 stages :
+ * <ul>
+ * <li>{@link Stage#STORE} : observation and registration are retrieved (and registration updated if needed) from the
+ * registration store,</li>
+ * <li>{@link Stage#DELIVERY} : payload is decoded and listeners are called.</li>
+ * </ul>
+ * Each stage has its own pool of workers, each worker with a bounded queue. All notifications of a registration are
+ * handled by the same worker of each stage, so they are delivered in order. When a queue is full, the
+ * {@link OverflowPolicy} applies.
+ * <p>
+ * Queue depth, number of handled or dropped tasks and latency (from submission to end of processing) of each stage are
+ * available for monitoring.
+ *
+ * @see org.eclipse.leshan.server.californium.LeshanServerBuilder#setNotificationPipeline(NotificationPipeline)
+ * @since 1.4
+ */
+public class NotificationPipeline implements Destroyable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NotificationPipeline.class);
+
+    public enum Stage {
+        STORE, DELIVERY
+    }
+
+    public enum OverflowPolicy {
+        /**
+         * The notification is dropped if the queue is full.
+         */
+        DROP,
+        /**
+         * The submitting thread waits for room in the queue, this slows down the CoAP stack when listeners or store
+         * are too slow.
+         */
+        BLOCK
+    }
+
+    private final OverflowPolicy overflowPolicy;
+    private final StageWorkers[] stages;
+    private volatile boolean destroyed;
+
+    /**
+     * @param nbWorkers number of workers of each stage
+     * @param queueCapacity maximum number of pending tasks for each worker
+     * @param overflowPolicy what to do when a worker queue is full
+     */
+    public NotificationPipeline(int nbWorkers, int queueCapacity, OverflowPolicy overflowPolicy) {
+        Validate.isTrue(nbWorkers > 0, "number of workers must be positive");
+        Validate.isTrue(queueCapacity > 0, "queue capacity must be positive");
+        Validate.notNull(overflowPolicy);
+
+        this.overflowPolicy = overflowPolicy;
+        this.stages = new StageWorkers[Stage.values().length];
+        for (Stage stage : Stage.values()) {
+            stages[stage.ordinal()] = new StageWorkers(stage, nbWorkers, queueCapacity);
+        }
+    }
+
+    /**
+     * Submit a task to a stage, tasks with the same key are executed in submission order.
+     *
+     * @return <code>false</code> if the task was dropped.
+     */
+    boolean submit(Stage stage, String key, Runnable task) {
+        if (destroyed) {
+            LOG.debug("Notification pipeline destroyed, {} task dropped", stage);
+            stages[stage.ordinal()].dropped.incrementAndGet();
+            return false;
+        }
+        return stages[stage.ordinal()].submit(key, task);
+    }
+
+    /**
+     * @return the number of tasks waiting in queues of the given stage.
+     */
+    public int getQueueDepth(Stage stage) {
+        int depth = 0;
+        for (Worker worker : stages[stage.ordinal()].workers) {
+            depth += worker.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return the number of tasks executed by the given stage.
+     */
+    public long getProcessedCount(Stage stage) {
+        return stages[stage.ordinal()].processed.get();
+    }
+
+    /**
+     * @return the number of tasks dropped by the given stage, because its queue was full or the pipeline destroyed.
+     */
+    public long getDroppedCount(Stage stage) {
+        return stages[stage.ordinal()].dropped.get();
+    }
+
+    /**
+     * @return the average time between submission and end of execution of tasks of the given stage.
+     */
+    public long getAverageLatency(Stage stage, TimeUnit unit) {
+        StageWorkers workers = stages[stage.ordinal()];
+        long processed = workers.processed.get();
+        return processed == 0 ? 0 : unit.convert(workers.totalLatency.get() / processed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the maximum time between submission and end of execution of tasks of the given stage.
+     */
+    public long getMaxLatency(Stage stage, TimeUnit unit) {
+        return unit.convert(stages[stage.ordinal()].maxLatency.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stop all workers, pending tasks are discarded.
+     */
+    @Override
+    public void destroy() {
+        destroyed = true;
+        for (StageWorkers stage : stages) {
+            for (Worker worker : stage.workers) {
+                worker.thread.interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("NotificationPipeline [");
+        for (Stage stage : Stage.values()) {
+            b.append(String.format("%s: depth=%d, processed=%d, dropped=%d, avgLatency=%dus; ", stage,
+                    getQueueDepth(stage), getProcessedCount(stage), getDroppedCount(stage),
+                    getAverageLatency(stage, TimeUnit.MICROSECONDS)));
+        }
+        b.setLength(b.length() - 2);
+        return b.append("]").toString();
+    }
+
+    private class StageWorkers {
+        private final Stage stage;
+        private final Worker[] workers;
+
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong totalLatency = new AtomicLong();
+        private final AtomicLong maxLatency = new AtomicLong();
+
+        private StageWorkers(Stage stage, int nbWorkers, int queueCapacity) {
+            this.stage = stage;
+            this.workers = new Worker[nbWorkers];
+            NamedThreadFactory threadFactory = new NamedThreadFactory(
+                    "Leshan Notification " + stage.name().toLowerCase() + "#%d");
+            for (int i = 0; i < nbWorkers; i++) {
+                workers[i] = new Worker(this, queueCapacity);
+                workers[i].thread = threadFactory.newThread(workers[i]);
+                workers[i].thread.start();
+            }
+        }
+
+        private boolean submit(String key, Runnable runnable) {
+            // same key always goes to the same worker to keep ordering
+            int index = key == null ? 0 : (key.hashCode() & Integer.MAX_VALUE) % workers.length;
+            BlockingQueue<Task> queue = workers[index].queue;
+            Task task = new Task(runnable, System.nanoTime());
+            if (overflowPolicy == OverflowPolicy.BLOCK) {
+                try {
+                    queue.put(task);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (queue.offer(task)) {
+                return true;
+            }
+            dropped.incrementAndGet();
+            LOG.debug("{} queue of notification pipeline is full, task for {} dropped", stage, key);
+            return false;
+        }
+
+        private void done(Task task) {
+            long latency = System.nanoTime() - task.submissionTime;
+            processed.incrementAndGet();
+            totalLatency.addAndGet(latency);
+            long max = maxLatency.get();
+            while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+                max = maxLatency.get();
+            }
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final StageWorkers stage;
+        private final BlockingQueue<Task> queue;
+        private Thread thread;
+
+        private Worker(StageWorkers stage, int queueCapacity) {
+            this.stage = stage;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        @Override
+        public void run() {
+            while (!destroyed) {
+                Task task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                try {
+                    task.runnable.run();
+                } catch (Throwable e) {
+                    // worker must survive any error : with BLOCK policy, producers would wait forever for it.
+                    LOG.error("Unexpected error in {} stage of notification pipeline", stage.stage, e);
+                } finally {
+                    stage.done(task);
+                }
+            }
+            queue.clear();
+        }
+    }
+
+    private static class Task {
+        private final Runnable runnable;
+        private final long submissionTime;
+
+        private Task(Runnable runnable, long submissionTime) {
+            this.runnable = runnable;
+            this.submissionTime = submissionTime;
+        }
+    }
+}
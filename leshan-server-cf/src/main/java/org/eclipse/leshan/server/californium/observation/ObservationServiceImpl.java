@@ -20,6 +20,7 @@ import static org.eclipse.leshan.core.californium.ResponseCodeUtil.toLwM2mRespon
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -31,11 +32,13 @@ import org.eclipse.californium.core.coap.Token;
 import org.eclipse.californium.core.network.Endpoint;
 import org.eclipse.californium.core.observe.NotificationListener;
 import org.eclipse.californium.core.observe.ObservationStore;
+import org.eclipse.leshan.core.Destroyable;
 import org.eclipse.leshan.core.californium.EndpointContextUtil;
 import org.eclipse.leshan.core.model.LwM2mModel;
 import org.eclipse.leshan.core.node.LwM2mPath;
 import org.eclipse.leshan.core.node.TimestampedLwM2mNode;
 import org.eclipse.leshan.core.node.codec.CodecException;
+import org.eclipse.leshan.core.node.codec.IncrementalLwM2mNodeDecoder;
 import org.eclipse.leshan.core.node.codec.LwM2mNodeDecoder;
 import org.eclipse.leshan.core.observation.Observation;
 import org.eclipse.leshan.core.request.ContentFormat;
@@ -43,10 +46,14 @@ import org.eclipse.leshan.core.request.Identity;
 import org.eclipse.leshan.core.request.exception.InvalidResponseException;
 import org.eclipse.leshan.core.response.ObserveResponse;
 import org.eclipse.leshan.core.util.Hex;
+import org.eclipse.leshan.server.californium.observation.NotificationPipeline.Stage;
 import org.eclipse.leshan.server.californium.registration.CaliforniumRegistrationStore;
 import org.eclipse.leshan.server.model.LwM2mModelProvider;
+import org.eclipse.leshan.server.observation.BatchObservationListener;
 import org.eclipse.leshan.server.observation.ObservationListener;
+import org.eclipse.leshan.server.observation.ObservationNotification;
 import org.eclipse.leshan.server.observation.ObservationService;
+import org.eclipse.leshan.server.observation.RawPayloadObservationListener;
 import org.eclipse.leshan.server.registration.Registration;
 import org.eclipse.leshan.server.registration.RegistrationUpdate;
 import org.eclipse.leshan.server.registration.UpdatedRegistration;
@@ -59,7 +66,7 @@ import org.slf4j.LoggerFactory;
  * 
  * When a new observation is added or changed or canceled, the registered listeners are notified.
  */
-public class ObservationServiceImpl implements ObservationService, NotificationListener {
+public class ObservationServiceImpl implements ObservationService, NotificationListener, Destroyable {
 
     private final Logger LOG = LoggerFactory.getLogger(ObservationServiceImpl.class);
 
@@ -69,6 +76,9 @@ public class ObservationServiceImpl implements ObservationService, NotificationL
     private Endpoint secureEndpoint;
     private Endpoint nonSecureEndpoint;
     private boolean updateRegistrationOnNotification;
+    private volatile boolean decodeNotificationOnDemand;
+    private final NotificationPipeline notificationPipeline;
+    private final NotificationBatcher notificationBatcher;
 
     private final List<ObservationListener> listeners = new CopyOnWriteArrayList<>();;
 
@@ -96,10 +106,37 @@ public class ObservationServiceImpl implements ObservationService, NotificationL
      */
     public ObservationServiceImpl(CaliforniumRegistrationStore store, LwM2mModelProvider modelProvider,
             LwM2mNodeDecoder decoder, boolean updateRegistrationOnNotification) {
+        this(store, modelProvider, decoder, updateRegistrationOnNotification, null, null);
+    }
+
+    /**
+     * Creates an instance of {@link ObservationServiceImpl}
+     * 
+     * @param store instance of californium's {@link ObservationStore}
+     * @param modelProvider instance of {@link LwM2mModelProvider}
+     * @param decoder instance of {@link LwM2mNodeDecoder}
+     * @param updateRegistrationOnNotification will activate registration update on observe notification.
+     * @param notificationPipeline the pipeline used to handle notifications outside of CoAP protocol threads, which is
+     *        destroyed with this service. If <code>null</code>, notifications are handled by CoAP protocol threads :
+     *        store accesses, payload decoding and listeners are executed synchronously when a notification is received.
+     * @param notificationBatcher the batcher used to group notifications delivered to
+     *        {@link BatchObservationListener}s, which is destroyed with this service. If <code>null</code>, each
+     *        notification is delivered to batch listeners as a batch of one.
+     * 
+     * @since 1.4
+     */
+    public ObservationServiceImpl(CaliforniumRegistrationStore store, LwM2mModelProvider modelProvider,
+            LwM2mNodeDecoder decoder, boolean updateRegistrationOnNotification,
+            NotificationPipeline notificationPipeline, NotificationBatcher notificationBatcher) {
         this.registrationStore = store;
         this.modelProvider = modelProvider;
         this.decoder = decoder;
         this.updateRegistrationOnNotification = updateRegistrationOnNotification;
+        this.notificationPipeline = notificationPipeline;
+        this.notificationBatcher = notificationBatcher;
+        if (notificationBatcher != null) {
+            notificationBatcher.setListeners(listeners);
+        }
     }
 
     public void addObservation(Registration registration, Observation observation) {
@@ -112,6 +149,58 @@ public class ObservationServiceImpl implements ObservationService, NotificationL
         }
     }
 
+    /**
+     * Set if notification payloads are decoded only when the content of the {@link ObserveResponse} is accessed.
+     * <p>
+     * By default, payloads are decoded before calling listeners, unless all listeners are
+     * {@link RawPayloadObservationListener}, and a malformed payload is reported to
+     * {@link ObservationListener#onError(Observation, Registration, Exception)}. When decoding on demand, a malformed
+     * payload raises an {@link InvalidResponseException} when the response content is accessed.
+     *
+     * @param decodeNotificationOnDemand true to decode notification payloads on first access.
+     *
+     * @since 1.4
+     */
+    public void setDecodeNotificationOnDemand(boolean decodeNotificationOnDemand) {
+        this.decodeNotificationOnDemand = decodeNotificationOnDemand;
+    }
+
+    /**
+     * @return the pipeline used to handle notifications or <code>null</code> if notifications are handled by CoAP
+     *         protocol threads.
+     *
+     * @since 1.4
+     */
+    public NotificationPipeline getNotificationPipeline() {
+        return notificationPipeline;
+    }
+
+    /**
+     * @return the batcher used to group notifications delivered to {@link BatchObservationListener}s, if any.
+     *
+     * @since 1.4
+     */
+    public NotificationBatcher getNotificationBatcher() {
+        return notificationBatcher;
+    }
+
+    /**
+     * Destroy the notification pipeline and batcher if any.
+     *
+     * @since 1.4
+     */
+    @Override
+    public void destroy() {
+        NotificationPipeline pipeline = notificationPipeline;
+        if (pipeline != null) {
+            pipeline.destroy();
+        }
+        NotificationBatcher batcher = notificationBatcher;
+        if (batcher != null) {
+            batcher.destroy();
+        }
+    }
+
     public void setNonSecureEndpoint(Endpoint endpoint) {
         nonSecureEndpoint = endpoint;
     }
@@ -217,17 +306,31 @@ public class ObservationServiceImpl implements ObservationService, NotificationL
     // ********** NotificationListener interface **********//
 
     @Override
-    public void onNotification(Request coapRequest, Response coapResponse) {
+    public void onNotification(Request coapRequest, final Response coapResponse) {
         LOG.trace("notification received for request {}: {}", coapRequest, coapResponse);
 
         if (listeners.isEmpty())
             return;
 
         // get registration Id
-        String regid = coapRequest.getUserContext().get(ObserveUtil.CTX_REGID);
+        final String regid = coapRequest.getUserContext().get(ObserveUtil.CTX_REGID);
 
+        final NotificationPipeline pipeline = notificationPipeline;
+        if (pipeline == null) {
+            handleNotification(regid, coapResponse, null);
+        } else {
+            pipeline.submit(Stage.STORE, regid, new Runnable() {
+                @Override
+                public void run() {
+                    handleNotification(regid, coapResponse, pipeline);
+                }
+            });
+        }
+    }
+
+    private void handleNotification(final String regid, final Response coapResponse, NotificationPipeline pipeline) {
         // get observation for this request
-        Observation observation = registrationStore.getObservation(regid, coapResponse.getToken().getBytes());
+        final Observation observation = registrationStore.getObservation(regid, coapResponse.getToken().getBytes());
         if (observation == null) {
             LOG.error("Unexpected error: Unable to find observation with token {} for registration {}",
                     coapResponse.getToken(), regid);
@@ -235,7 +338,7 @@ public class ObservationServiceImpl implements ObservationService, NotificationL
         }
 
         // get registration
-        Registration registration;
+        final Registration registration;
         if (updateRegistrationOnNotification) {
             Identity obsIdentity = EndpointContextUtil.extractIdentity(coapResponse.getSourceContext());
             RegistrationUpdate regUpdate = new RegistrationUpdate(observation.getRegistrationId(), obsIdentity, null,
@@ -256,16 +359,38 @@ public class ObservationServiceImpl implements ObservationService, NotificationL
             }
         }
 
+        if (pipeline == null) {
+            notifyListeners(observation, registration, coapResponse);
+        } else {
+            pipeline.submit(Stage.DELIVERY, regid, new Runnable() {
+                @Override
+                public void run() {
+                    notifyListeners(observation, registration, coapResponse);
+                }
+            });
+        }
+    }
+
+    private void notifyListeners(Observation observation, Registration registration, Response coapResponse) {
         try {
             // get model for this registration
             LwM2mModel model = modelProvider.getObjectModel(registration);
 
             // create response
-            ObserveResponse response = createObserveResponse(observation, model, coapResponse);
+            ObserveResponse response = createObserveResponse(observation, model, coapResponse,
+                    decodeNotificationOnDemand || !needDecodedContent());
 
             // notify all listeners
+            boolean batchListeners = false;
             for (ObservationListener listener : listeners) {
-                listener.onResponse(observation, registration, response);
+                if (listener instanceof BatchObservationListener) {
+                    batchListeners = true;
+                } else {
+                    listener.onResponse(observation, registration, response);
+                }
+            }
+            if (batchListeners) {
+                notifyBatchListeners(new ObservationNotification(observation, registration, response));
             }
         } catch (InvalidResponseException e) {
             if (LOG.isDebugEnabled()) {
@@ -284,10 +409,35 @@ public class ObservationServiceImpl implements ObservationService, NotificationL
                 listener.onError(observation, registration, e);
             }
         }
+    }
 
+    private void notifyBatchListeners(ObservationNotification notification) {
+        NotificationBatcher batcher = notificationBatcher;
+        if (batcher != null) {
+            batcher.add(notification);
+            return;
+        }
+
+        List<ObservationNotification> batch = Collections.singletonList(notification);
+        for (ObservationListener listener : listeners) {
+            if (listener instanceof BatchObservationListener) {
+                ((BatchObservationListener) listener).onResponses(batch);
+            }
+        }
+    }
+
+    // true if at least one listener uses the decoded content of notifications
+    private boolean needDecodedContent() {
+        for (ObservationListener listener : listeners) {
+            if (!(listener instanceof RawPayloadObservationListener)) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private ObserveResponse createObserveResponse(Observation observation, LwM2mModel model, Response coapResponse) {
+    private ObserveResponse createObserveResponse(Observation observation, LwM2mModel model, Response coapResponse,
+            boolean decodeOnDemand) {
         // CHANGED response is supported for backward compatibility with old spec.
         if (coapResponse.getCode() != CoAP.ResponseCode.CHANGED
                 && coapResponse.getCode() != CoAP.ResponseCode.CONTENT) {
@@ -295,32 +445,106 @@ public class ObservationServiceImpl implements ObservationService, NotificationL
                     observation);
         }
 
-        // get content format
-        ContentFormat contentFormat = null;
-        if (coapResponse.getOptions().hasContentFormat()) {
-            contentFormat = ContentFormat.fromCode(coapResponse.getOptions().getContentFormat());
+        NotificationContentDecoder contentDecoder = new NotificationContentDecoder(decoder, observation, model,
+                coapResponse);
+        if (decodeOnDemand) {
+            return new ObserveResponse(toLwM2mResponseCode(coapResponse.getCode()), observation, contentDecoder,
+                    coapResponse);
         }
 
         // decode response
-        try {
-            List<TimestampedLwM2mNode> timestampedNodes = decoder.decodeTimestampedData(coapResponse.getPayload(),
-                    contentFormat, observation.getPath(), model);
+        List<TimestampedLwM2mNode> timestampedNodes = contentDecoder.decode();
 
-            // create lwm2m response
-            if (timestampedNodes.size() == 1 && !timestampedNodes.get(0).isTimestamped()) {
-                return new ObserveResponse(toLwM2mResponseCode(coapResponse.getCode()),
-                        timestampedNodes.get(0).getNode(), null, observation, null, coapResponse);
+        // create lwm2m response
+        if (timestampedNodes.size() == 1 && !timestampedNodes.get(0).isTimestamped()) {
+            return new ObserveResponse(toLwM2mResponseCode(coapResponse.getCode()), timestampedNodes.get(0).getNode(),
+                    null, observation, null, coapResponse);
+        } else {
+            return new ObserveResponse(toLwM2mResponseCode(coapResponse.getCode()), null, timestampedNodes,
+                    observation, null, coapResponse);
+        }
+    }
+
+    /**
+     * Decodes the payload of a notification, now or on demand.
+     */
+    private class NotificationContentDecoder implements ObserveResponse.ContentDecoder {
+
+        private final LwM2mNodeDecoder decoder;
+        private final Observation observation;
+        private final LwM2mModel model;
+        private final Response coapResponse;
+        private final ContentFormat contentFormat;
+
+        public NotificationContentDecoder(LwM2mNodeDecoder decoder, Observation observation, LwM2mModel model,
+                Response coapResponse) {
+            this.decoder = decoder;
+            this.observation = observation;
+            this.model = model;
+            this.coapResponse = coapResponse;
+
+            // get content format
+            if (coapResponse.getOptions().hasContentFormat()) {
+                contentFormat = ContentFormat.fromCode(coapResponse.getOptions().getContentFormat());
             } else {
-                return new ObserveResponse(toLwM2mResponseCode(coapResponse.getCode()), null, timestampedNodes,
-                        observation, null, coapResponse);
+                contentFormat = null;
             }
-        } catch (CodecException e) {
+        }
+
+        @Override
+        public List<TimestampedLwM2mNode> decode() {
+            try {
+                return decoder.decodeTimestampedData(coapResponse.getPayload(), contentFormat, observation.getPath(),
+                        model);
+            } catch (CodecException e) {
+                throw invalidPayload(e);
+            }
+        }
+
+        @Override
+        public Iterator<TimestampedLwM2mNode> iterate() {
+            if (!(decoder instanceof IncrementalLwM2mNodeDecoder)) {
+                return decode().iterator();
+            }
+            try {
+                final Iterator<TimestampedLwM2mNode> iterator = ((IncrementalLwM2mNodeDecoder) decoder)
+                        .iterateTimestampedData(coapResponse.getPayload(), contentFormat, observation.getPath(), model);
+                return new Iterator<TimestampedLwM2mNode>() {
+                    @Override
+                    public boolean hasNext() {
+                        try {
+                            return iterator.hasNext();
+                        } catch (CodecException e) {
+                            throw invalidPayload(e);
+                        }
+                    }
+
+                    @Override
+                    public TimestampedLwM2mNode next() {
+                        try {
+                            return iterator.next();
+                        } catch (CodecException e) {
+                            throw invalidPayload(e);
+                        }
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            } catch (CodecException e) {
+                throw invalidPayload(e);
+            }
+        }
+
+        private InvalidResponseException invalidPayload(CodecException e) {
             if (LOG.isDebugEnabled()) {
                 byte[] payload = coapResponse.getPayload() == null ? new byte[0] : coapResponse.getPayload();
                 LOG.debug(String.format("Unable to decode notification payload [%s] of observation [%s] ",
                         Hex.encodeHexString(payload), observation), e);
             }
-            throw new InvalidResponseException(e, "Unable to decode notification payload  of observation [%s] ",
+            return new InvalidResponseException(e, "Unable to decode notification payload  of observation [%s] ",
                     observation);
         }
     }
@@ -0,0 +1,601 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.registration;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.californium.core.observe.ObservationStoreException;
+import org.eclipse.californium.core.observe.ObservationUtil;
+import org.eclipse.californium.elements.EndpointContext;
+import org.eclipse.leshan.core.observation.Observation;
+import org.eclipse.leshan.core.util.NamedThreadFactory;
+import org.eclipse.leshan.core.util.Validate;
+import org.eclipse.leshan.server.Destroyable;
+import org.eclipse.leshan.server.Startable;
+import org.eclipse.leshan.server.Stoppable;
+import org.eclipse.leshan.server.californium.observation.ObserveUtil;
+import org.eclipse.leshan.server.registration.Deregistration;
+import org.eclipse.leshan.server.registration.ExpirationListener;
+import org.eclipse.leshan.server.registration.Registration;
+import org.eclipse.leshan.server.registration.RegistrationUpdate;
+import org.eclipse.leshan.server.registration.UpdatedRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in memory store for registration and observation designed for highly concurrent access.
+ * <p>
+ * Unlike {@link InMemoryRegistrationStore} which protects all its data with one global lock, this store keeps its data
+ * in {@link ConcurrentHashMap}s and serializes modifications per endpoint using a fixed set of striped locks. Reads
+ * never block and modifications of 2 different endpoints can be done in parallel.
+ * <p>
+ * All modifications which concern a given endpoint (its registration and the observations of this registration) are
+ * done under the same lock, so {@link Deregistration} and observation removal semantics are the same as
+ * {@link InMemoryRegistrationStore}.
+ */
+public class ConcurrentInMemoryRegistrationStore
+        implements CaliforniumRegistrationStore, Startable, Stoppable, Destroyable {
+    private final Logger LOG = LoggerFactory.getLogger(ConcurrentInMemoryRegistrationStore.class);
+
+    // Data structure
+    private final ConcurrentMap<String /* end-point */, Registration> regsByEp = new ConcurrentHashMap<>();
+    private final ConcurrentMap<InetSocketAddress, Registration> regsByAddr = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String /* reg-id */, Registration> regsByRegId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Token, org.eclipse.californium.core.observe.Observation> obsByToken = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String /* reg-id */, Set<Token>> tokensByRegId = new ConcurrentHashMap<>();
+    // package-private for tests
+    final RegistrationExpirationIndex expirationIndex = new RegistrationExpirationIndex();
+
+    // Locks used to serialize modification by endpoint
+    private final ReentrantLock[] locks;
+
+    // Listener use to notify when a registration expires
+    private ExpirationListener expirationListener;
+
+    private final ScheduledExecutorService schedExecutor;
+    private ScheduledFuture<?> cleanerTask;
+    private boolean started = false;
+    private final long cleanPeriod; // in seconds
+
+    public ConcurrentInMemoryRegistrationStore() {
+        this(2); // default clean period : 2s
+    }
+
+    public ConcurrentInMemoryRegistrationStore(long cleanPeriodInSec) {
+        this(Executors.newScheduledThreadPool(1,
+                new NamedThreadFactory(
+                        String.format("ConcurrentInMemoryRegistrationStore Cleaner (%ds)", cleanPeriodInSec))),
+                cleanPeriodInSec);
+    }
+
+    public ConcurrentInMemoryRegistrationStore(ScheduledExecutorService schedExecutor, long cleanPeriodInSec) {
+        this(schedExecutor, cleanPeriodInSec, Runtime.getRuntime().availableProcessors() * 16);
+    }
+
+    /**
+     * @param schedExecutor the executor used to clean expired registrations.
+     * @param cleanPeriodInSec the period between 2 cleaning tasks.
+     * @param concurrencyLevel the estimated number of concurrently modifying threads. This is used to define the
+     *        number of lock stripes (rounded to the next power of 2).
+     */
+    public ConcurrentInMemoryRegistrationStore(ScheduledExecutorService schedExecutor, long cleanPeriodInSec,
+            int concurrencyLevel) {
+        Validate.isTrue(concurrencyLevel > 0, "concurrencyLevel must be positive");
+        this.schedExecutor = schedExecutor;
+        this.cleanPeriod = cleanPeriodInSec;
+
+        int nbLocks = 1;
+        while (nbLocks < concurrencyLevel) {
+            nbLocks <<= 1;
+        }
+        locks = new ReentrantLock[nbLocks];
+        for (int i = 0; i < nbLocks; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /* *************** Leshan Registration API **************** */
+
+    @Override
+    public Deregistration addRegistration(Registration registration) {
+        ReentrantLock lock = lockFor(registration.getEndpoint());
+        try {
+            lock.lock();
+
+            Registration registrationRemoved = regsByEp.put(registration.getEndpoint(), registration);
+            regsByRegId.put(registration.getId(), registration);
+            // If a registration is already associated to this address we don't care as we only want to keep the most
+            // recent binding.
+            regsByAddr.put(registration.getSocketAddress(), registration);
+            // remove previous entry first : it could be equal to the new one (e.g. same registration added again)
+            if (registrationRemoved != null) {
+                expirationIndex.remove(registrationRemoved);
+            }
+            expirationIndex.add(registration);
+            if (registrationRemoved != null) {
+                Collection<Observation> observationsRemoved = unsafeRemoveAllObservations(registrationRemoved.getId());
+                if (!registrationRemoved.getSocketAddress().equals(registration.getSocketAddress())) {
+                    regsByAddr.remove(registrationRemoved.getSocketAddress(), registrationRemoved);
+                }
+                if (!registrationRemoved.getId().equals(registration.getId())) {
+                    regsByRegId.remove(registrationRemoved.getId(), registrationRemoved);
+                }
+                return new Deregistration(registrationRemoved, observationsRemoved);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return null;
+    }
+
+    @Override
+    public UpdatedRegistration updateRegistration(RegistrationUpdate update) {
+        Registration registration = lockRegistration(update.getRegistrationId());
+        if (registration == null) {
+            return null;
+        }
+        try {
+            Registration updatedRegistration = update.update(registration);
+            regsByEp.put(updatedRegistration.getEndpoint(), updatedRegistration);
+            // If registration is already associated to this address we don't care as we only want to keep the most
+            // recent binding.
+            regsByAddr.put(updatedRegistration.getSocketAddress(), updatedRegistration);
+            if (!registration.getSocketAddress().equals(updatedRegistration.getSocketAddress())) {
+                regsByAddr.remove(registration.getSocketAddress(), registration);
+            }
+
+            regsByRegId.put(updatedRegistration.getId(), updatedRegistration);
+            expirationIndex.update(registration, updatedRegistration);
+
+            return new UpdatedRegistration(registration, updatedRegistration);
+        } finally {
+            lockFor(registration.getEndpoint()).unlock();
+        }
+    }
+
+    @Override
+    public Registration getRegistration(String registrationId) {
+        return regsByRegId.get(registrationId);
+    }
+
+    @Override
+    public Registration getRegistrationByEndpoint(String endpoint) {
+        return regsByEp.get(endpoint);
+    }
+
+    @Override
+    public Registration getRegistrationByAdress(InetSocketAddress address) {
+        return regsByAddr.get(address);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned iterator is weakly consistent, it does not copy the registrations and reflects some (but not
+     * necessarily all) of the changes made to the store since its creation.
+     */
+    @Override
+    public Iterator<Registration> getAllRegistrations() {
+        return Collections.unmodifiableCollection(regsByEp.values()).iterator();
+    }
+
+    @Override
+    public Deregistration removeRegistration(String registrationId) {
+        Registration registration = lockRegistration(registrationId);
+        if (registration == null) {
+            return null;
+        }
+        try {
+            return unsafeRemoveRegistration(registration);
+        } finally {
+            lockFor(registration.getEndpoint()).unlock();
+        }
+    }
+
+    private Deregistration unsafeRemoveRegistration(Registration registration) {
+        Collection<Observation> observationsRemoved = unsafeRemoveAllObservations(registration.getId());
+        regsByEp.remove(registration.getEndpoint(), registration);
+        regsByAddr.remove(registration.getSocketAddress(), registration);
+        regsByRegId.remove(registration.getId(), registration);
+        expirationIndex.remove(registration);
+        return new Deregistration(registration, observationsRemoved);
+    }
+
+    /* *************** Leshan Observation API **************** */
+
+    /*
+     * The observation is not persisted here, it is done by the Californium layer (in the implementation of the
+     * org.eclipse.californium.core.observe.ObservationStore#add method)
+     */
+    @Override
+    public Collection<Observation> addObservation(String registrationId, Observation observation) {
+
+        List<Observation> removed = new ArrayList<>();
+
+        Registration registration = lockRegistration(registrationId);
+        if (registration == null) {
+            return removed;
+        }
+        try {
+            // cancel existing observations for the same path and registration id.
+            for (Observation obs : unsafeGetObservations(registrationId)) {
+                if (observation.getPath().equals(obs.getPath()) && !Arrays.equals(observation.getId(), obs.getId())) {
+                    unsafeRemoveObservation(new Token(obs.getId()));
+                    removed.add(obs);
+                }
+            }
+        } finally {
+            lockFor(registration.getEndpoint()).unlock();
+        }
+
+        return removed;
+    }
+
+    @Override
+    public Observation removeObservation(String registrationId, byte[] observationId) {
+        Registration registration = lockRegistration(registrationId);
+        if (registration == null) {
+            return null;
+        }
+        try {
+            Token token = new Token(observationId);
+            Observation observation = build(unsafeGetObservation(token));
+            if (observation != null && registrationId.equals(observation.getRegistrationId())) {
+                unsafeRemoveObservation(token);
+                return observation;
+            }
+            return null;
+        } finally {
+            lockFor(registration.getEndpoint()).unlock();
+        }
+    }
+
+    @Override
+    public Observation getObservation(String registrationId, byte[] observationId) {
+        Observation observation = build(unsafeGetObservation(new Token(observationId)));
+        if (observation != null && registrationId.equals(observation.getRegistrationId())) {
+            return observation;
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<Observation> getObservations(String registrationId) {
+        return unsafeGetObservations(registrationId);
+    }
+
+    @Override
+    public Collection<Observation> removeObservations(String registrationId) {
+        Registration registration = lockRegistration(registrationId);
+        if (registration == null) {
+            return Collections.emptyList();
+        }
+        try {
+            return unsafeRemoveAllObservations(registrationId);
+        } finally {
+            lockFor(registration.getEndpoint()).unlock();
+        }
+    }
+
+    /* *************** Californium ObservationStore API **************** */
+
+    @Override
+    public org.eclipse.californium.core.observe.Observation putIfAbsent(Token token,
+            org.eclipse.californium.core.observe.Observation obs) throws ObservationStoreException {
+        return add(token, obs, true);
+    }
+
+    @Override
+    public org.eclipse.californium.core.observe.Observation put(Token token,
+            org.eclipse.californium.core.observe.Observation obs) throws ObservationStoreException {
+        return add(token, obs, false);
+    }
+
+    private org.eclipse.californium.core.observe.Observation add(Token token,
+            org.eclipse.californium.core.observe.Observation obs, boolean ifAbsent) throws ObservationStoreException {
+        org.eclipse.californium.core.observe.Observation previousObservation = null;
+        String previousRegistrationId = null;
+        if (obs != null) {
+            String endpoint = ObserveUtil.validateCoapObservation(obs);
+            String registrationId = ObserveUtil.extractRegistrationId(obs);
+
+            ReentrantLock lock = lockFor(endpoint);
+            try {
+                lock.lock();
+
+                // validate observation under lock, so the registration can not be removed concurrently.
+                Registration registration = regsByRegId.get(registrationId);
+                if (registration == null || !registration.getEndpoint().equals(endpoint)) {
+                    throw new ObservationStoreException("no registration for this Id");
+                }
+
+                if (ifAbsent) {
+                    previousObservation = obsByToken.putIfAbsent(token, obs);
+                    if (previousObservation != null)
+                        return previousObservation;
+                } else {
+                    previousObservation = obsByToken.put(token, obs);
+                }
+                Set<Token> tokens = tokensByRegId.get(registrationId);
+                if (tokens == null) {
+                    tokens = Collections.newSetFromMap(new ConcurrentHashMap<Token, Boolean>());
+                    tokensByRegId.put(registrationId, tokens);
+                }
+                tokens.add(token);
+
+                // log any collisions
+                if (previousObservation != null) {
+                    LOG.warn(
+                            "Token collision ? observation from request [{}] will be replaced by observation from request [{}] ",
+                            previousObservation.getRequest(), obs.getRequest());
+                    previousRegistrationId = ObserveUtil.extractRegistrationId(previousObservation);
+                }
+            } finally {
+                lock.unlock();
+            }
+            // previous observation could belong to another registration, its tokens must be modified under the lock
+            // of its own endpoint (acquired after releasing ours to avoid deadlocks)
+            if (previousRegistrationId != null && !registrationId.equals(previousRegistrationId)) {
+                removeTokenOf(previousRegistrationId, token);
+            }
+        }
+        return previousObservation;
+    }
+
+    private void removeTokenOf(String registrationId, Token token) {
+        Registration registration = lockRegistration(registrationId);
+        if (registration == null) {
+            // registration removed, its tokens were removed with it
+            return;
+        }
+        try {
+            // token could have been re-assigned to this registration meanwhile
+            org.eclipse.californium.core.observe.Observation current = obsByToken.get(token);
+            if (current == null || !registrationId.equals(ObserveUtil.extractRegistrationId(current))) {
+                removeToken(registrationId, token);
+            }
+        } finally {
+            lockFor(registration.getEndpoint()).unlock();
+        }
+    }
+
+    @Override
+    public org.eclipse.californium.core.observe.Observation get(Token token) {
+        return unsafeGetObservation(token);
+    }
+
+    @Override
+    public void setContext(Token token, EndpointContext ctx) {
+        // optimistic update : retry if observation was concurrently modified
+        org.eclipse.californium.core.observe.Observation obs = obsByToken.get(token);
+        while (obs != null) {
+            org.eclipse.californium.core.observe.Observation newObs = new org.eclipse.californium.core.observe.Observation(
+                    obs.getRequest(), ctx);
+            if (obsByToken.replace(token, obs, newObs)) {
+                return;
+            }
+            obs = obsByToken.get(token);
+        }
+    }
+
+    @Override
+    public void remove(Token token) {
+        org.eclipse.californium.core.observe.Observation obs = obsByToken.get(token);
+        if (obs == null)
+            return;
+
+        ReentrantLock lock = lockFor(ObserveUtil.extractEndpoint(obs));
+        try {
+            lock.lock();
+            unsafeRemoveObservation(token);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* *************** Lock utility functions **************** */
+
+    private ReentrantLock lockFor(String endpoint) {
+        // spread hash like HashMap does to use high bits too
+        int h = endpoint.hashCode();
+        h ^= (h >>> 16);
+        return locks[h & (locks.length - 1)];
+    }
+
+    /**
+     * Acquire the lock of the registration with the given id.
+     *
+     * @return the locked registration or <code>null</code> if there is no registration for this id. If a registration
+     *         is returned, caller is in charge of releasing the lock of its endpoint.
+     */
+    private Registration lockRegistration(String registrationId) {
+        Registration registration = regsByRegId.get(registrationId);
+        while (registration != null) {
+            ReentrantLock lock = lockFor(registration.getEndpoint());
+            lock.lock();
+            // check registration was not modified before we get the lock
+            Registration current = regsByRegId.get(registrationId);
+            if (current != null && current.getEndpoint().equals(registration.getEndpoint())) {
+                return current;
+            }
+            lock.unlock();
+            registration = current;
+        }
+        return null;
+    }
+
+    /* *************** Observation utility functions **************** */
+
+    private org.eclipse.californium.core.observe.Observation unsafeGetObservation(Token token) {
+        org.eclipse.californium.core.observe.Observation obs = obsByToken.get(token);
+        return ObservationUtil.shallowClone(obs);
+    }
+
+    private void unsafeRemoveObservation(Token observationId) {
+        org.eclipse.californium.core.observe.Observation removed = obsByToken.remove(observationId);
+
+        if (removed != null) {
+            removeToken(ObserveUtil.extractRegistrationId(removed), observationId);
+        }
+    }
+
+    private void removeToken(String registrationId, Token token) {
+        Set<Token> tokens = tokensByRegId.get(registrationId);
+        if (tokens != null) {
+            tokens.remove(token);
+            if (tokens.isEmpty()) {
+                tokensByRegId.remove(registrationId, tokens);
+            }
+        }
+    }
+
+    private Collection<Observation> unsafeRemoveAllObservations(String registrationId) {
+        Collection<Observation> removed = new ArrayList<>();
+        Set<Token> tokens = tokensByRegId.remove(registrationId);
+        if (tokens != null) {
+            for (Token token : tokens) {
+                Observation observationRemoved = build(obsByToken.remove(token));
+                if (observationRemoved != null) {
+                    removed.add(observationRemoved);
+                }
+            }
+        }
+        return removed;
+    }
+
+    private Collection<Observation> unsafeGetObservations(String registrationId) {
+        Collection<Observation> result = new ArrayList<>();
+        Set<Token> tokens = tokensByRegId.get(registrationId);
+        if (tokens != null) {
+            for (Token token : tokens) {
+                Observation obs = build(unsafeGetObservation(token));
+                if (obs != null) {
+                    result.add(obs);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Observation build(org.eclipse.californium.core.observe.Observation cfObs) {
+        if (cfObs == null)
+            return null;
+
+        return ObserveUtil.createLwM2mObservation(cfObs.getRequest());
+    }
+
+    /* *************** Expiration handling **************** */
+
+    @Override
+    public void setExpirationListener(ExpirationListener listener) {
+        this.expirationListener = listener;
+    }
+
+    /**
+     * start the registration store, will start regular cleanup of dead registrations.
+     */
+    @Override
+    public synchronized void start() {
+        if (!started) {
+            started = true;
+            cleanerTask = schedExecutor.scheduleAtFixedRate(new Cleaner(), cleanPeriod, cleanPeriod, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop the underlying cleanup of the registrations.
+     */
+    @Override
+    public synchronized void stop() {
+        if (started) {
+            started = false;
+            if (cleanerTask != null) {
+                cleanerTask.cancel(false);
+                cleanerTask = null;
+            }
+        }
+    }
+
+    /**
+     * Destroy "cleanup" scheduler.
+     */
+    @Override
+    public synchronized void destroy() {
+        started = false;
+        schedExecutor.shutdownNow();
+        try {
+            schedExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            LOG.warn("Destroying ConcurrentInMemoryRegistrationStore was interrupted.", e);
+        }
+    }
+
+    private Deregistration removeExpiredRegistration(String registrationId) {
+        Registration registration = lockRegistration(registrationId);
+        if (registration == null) {
+            return null;
+        }
+        try {
+            // registration could have been updated since it was indexed as expired
+            if (registration.isAlive()) {
+                return null;
+            }
+            return unsafeRemoveRegistration(registration);
+        } finally {
+            lockFor(registration.getEndpoint()).unlock();
+        }
+    }
+
+    private class Cleaner implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                // only visit registrations which are due
+                for (String registrationId : expirationIndex.pollExpired(System.currentTimeMillis())) {
+                    // force de-registration
+                    Deregistration removedRegistration = removeExpiredRegistration(registrationId);
+                    if (removedRegistration != null) {
+                        expirationListener.registrationExpired(removedRegistration.getRegistration(),
+                                removedRegistration.getObservations());
+                    }
+                }
+            } catch (Exception e) {
+                LOG.warn("Unexpected Exception while registration cleaning", e);
+            }
+        }
+    }
+
+    @Override
+    public void setExecutor(ScheduledExecutorService executor) {
+        // expired registrations are cleaned using the executor given at construction
+    }
+}
@@ -24,6 +24,7 @@
  *******************************************************************************/
 package org.eclipse.leshan.server.californium.registration;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -62,6 +63,9 @@ import org.slf4j.LoggerFactory;
 
 /**
  * An in memory store for registration and observation.
+ * <p>
+ * Optionally, a {@link RegistrationStoreJournal} can be used to persist registrations and observations on local disk,
+ * so they are recovered on restart without waiting for devices to register again.
  */
 public class InMemoryRegistrationStore implements CaliforniumRegistrationStore, Startable, Stoppable, Destroyable {
     private final Logger LOG = LoggerFactory.getLogger(InMemoryRegistrationStore.class);
@@ -72,6 +76,11 @@ public class InMemoryRegistrationStore implements CaliforniumRegistrationStore,
     private final Map<String /* reg-id */, Registration> regsByRegId = new HashMap<>();
     private Map<Token, org.eclipse.californium.core.observe.Observation> obsByToken = new HashMap<>();
     private Map<String, Set<Token>> tokensByRegId = new HashMap<>();
+    // package-private for tests
+    final RegistrationExpirationIndex expirationIndex = new RegistrationExpirationIndex();
+
+    // Persistence, could be null
+    private final RegistrationStoreJournal journal;
 
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
@@ -94,8 +103,50 @@ public class InMemoryRegistrationStore implements CaliforniumRegistrationStore,
     }
 
     public InMemoryRegistrationStore(ScheduledExecutorService schedExecutor, long cleanPeriodInSec) {
+        this(schedExecutor, cleanPeriodInSec, null);
+    }
+
+    /**
+     * Create a store which persists its content using the given journal. Registrations and observations previously
+     * persisted are loaded immediately.
+     *
+     * @param schedExecutor the executor used to clean expired registrations and to create journal snapshots.
+     * @param cleanPeriodInSec the period between 2 cleaning tasks.
+     * @param journal the journal used to persist registrations and observations or <code>null</code> for a pure in
+     *        memory store.
+     */
+    public InMemoryRegistrationStore(ScheduledExecutorService schedExecutor, long cleanPeriodInSec,
+            RegistrationStoreJournal journal) {
         this.schedExecutor = schedExecutor;
         this.cleanPeriod = cleanPeriodInSec;
+        this.journal = journal;
+        if (journal != null) {
+            try {
+                load(journal.open());
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to load registrations from journal", e);
+            }
+        }
+    }
+
+    private void load(RegistrationStoreJournal.State state) {
+        for (Registration registration : state.getRegistrations()) {
+            regsByEp.put(registration.getEndpoint(), registration);
+            regsByRegId.put(registration.getId(), registration);
+            regsByAddr.put(registration.getSocketAddress(), registration);
+            expirationIndex.add(registration);
+        }
+        for (Map.Entry<Token, org.eclipse.californium.core.observe.Observation> entry : state.getObservations()
+                .entrySet()) {
+            String registrationId = ObserveUtil.extractRegistrationId(entry.getValue());
+            if (regsByRegId.containsKey(registrationId)) {
+                obsByToken.put(entry.getKey(), entry.getValue());
+                if (!tokensByRegId.containsKey(registrationId)) {
+                    tokensByRegId.put(registrationId, new HashSet<Token>());
+                }
+                tokensByRegId.get(registrationId).add(entry.getKey());
+            }
+        }
     }
 
     /* *************** Leshan Registration API **************** */
@@ -105,11 +156,20 @@ public class InMemoryRegistrationStore implements CaliforniumRegistrationStore,
         try {
             lock.writeLock().lock();
 
+            // persist first, so nothing is modified if the journal fails
+            if (journal != null) {
+                journal.addRegistration(registration);
+            }
             Registration registrationRemoved = regsByEp.put(registration.getEndpoint(), registration);
             regsByRegId.put(registration.getId(), registration);
             // If a registration is already associated to this address we don't care as we only want to keep the most
             // recent binding.
             regsByAddr.put(registration.getSocketAddress(), registration);
+            // remove previous entry first : it could be equal to the new one (e.g. same registration added again)
+            if (registrationRemoved != null) {
+                expirationIndex.remove(registrationRemoved);
+            }
+            expirationIndex.add(registration);
             if (registrationRemoved != null) {
                 Collection<Observation> observationsRemoved = unsafeRemoveAllObservations(registrationRemoved.getId());
                 if (!registrationRemoved.getSocketAddress().equals(registration.getSocketAddress())) {
@@ -136,6 +196,9 @@ public class InMemoryRegistrationStore implements CaliforniumRegistrationStore,
                 return null;
             } else {
                 Registration updatedRegistration = update.update(registration);
+                if (journal != null) {
+                    journal.updateRegistration(updatedRegistration);
+                }
                 regsByEp.put(updatedRegistration.getEndpoint(), updatedRegistration);
                 // If registration is already associated to this address we don't care as we only want to keep the most
                 // recent binding.
@@ -145,6 +208,7 @@ public class InMemoryRegistrationStore implements CaliforniumRegistrationStore,
                 }
 
                 regsByRegId.put(updatedRegistration.getId(), updatedRegistration);
+                expirationIndex.update(registration, updatedRegistration);
 
                 return new UpdatedRegistration(registration, updatedRegistration);
             }
@@ -200,11 +264,7 @@ public class InMemoryRegistrationStore implements CaliforniumRegistrationStore,
 
             Registration registration = getRegistration(registrationId);
             if (registration != null) {
-                Collection<Observation> observationsRemoved = unsafeRemoveAllObservations(registration.getId());
-                regsByEp.remove(registration.getEndpoint());
-                removeFromMap(regsByAddr, registration.getSocketAddress(), registration);
-                removeFromMap(regsByRegId, registration.getId(), registration);
-                return new Deregistration(registration, observationsRemoved);
+                return unsafeRemoveRegistration(registration);
             }
             return null;
         } finally {
@@ -212,6 +272,18 @@ public class InMemoryRegistrationStore implements CaliforniumRegistrationStore,
         }
     }
 
+    private Deregistration unsafeRemoveRegistration(Registration registration) {
+        if (journal != null) {
+            journal.removeRegistration(registration.getId());
+        }
+        Collection<Observation> observationsRemoved = unsafeRemoveAllObservations(registration.getId());
+        regsByEp.remove(registration.getEndpoint());
+        removeFromMap(regsByAddr, registration.getSocketAddress(), registration);
+        removeFromMap(regsByRegId, registration.getId(), registration);
+        expirationIndex.remove(registration);
+        return new Deregistration(registration, observationsRemoved);
+    }
+
     /* *************** Leshan Observation API **************** */
 
     /*
@@ -283,6 +355,15 @@ public class InMemoryRegistrationStore implements CaliforniumRegistrationStore,
     public Collection<Observation> removeObservations(String registrationId) {
         try {
             lock.writeLock().lock();
+            // registration is kept, so observations removal must be persisted explicitly
+            if (journal != null) {
+                Set<Token> tokens = tokensByRegId.get(registrationId);
+                if (tokens != null) {
+                    for (Token token : tokens) {
+                        journal.removeObservation(token);
+                    }
+                }
+            }
             return unsafeRemoveAllObservations(registrationId);
         } finally {
             lock.writeLock().unlock();
@@ -313,14 +394,13 @@ public class InMemoryRegistrationStore implements CaliforniumRegistrationStore,
                 validateObservation(obs);
 
                 String registrationId = ObserveUtil.extractRegistrationId(obs);
-                if (ifAbsent) {
-                    if (!obsByToken.containsKey(token))
-                        previousObservation = obsByToken.put(token, obs);
-                    else
-                        return obsByToken.get(token);
-                } else {
-                    previousObservation = obsByToken.put(token, obs);
+                if (ifAbsent && obsByToken.containsKey(token)) {
+                    return obsByToken.get(token);
                 }
+                if (journal != null) {
+                    journal.putObservation(token, obs);
+                }
+                previousObservation = obsByToken.put(token, obs);
                 if (!tokensByRegId.containsKey(registrationId)) {
                     tokensByRegId.put(registrationId, new HashSet<Token>());
                 }
@@ -355,7 +435,12 @@ public class InMemoryRegistrationStore implements CaliforniumRegistrationStore,
             lock.writeLock().lock();
             org.eclipse.californium.core.observe.Observation obs = obsByToken.get(token);
             if (obs != null) {
-                obsByToken.put(token, new org.eclipse.californium.core.observe.Observation(obs.getRequest(), ctx));
+                org.eclipse.californium.core.observe.Observation newObs = new org.eclipse.californium.core.observe.Observation(
+                        obs.getRequest(), ctx);
+                if (journal != null) {
+                    journal.putObservation(token, newObs);
+                }
+                obsByToken.put(token, newObs);
             }
         } finally {
             lock.writeLock().unlock();
@@ -380,6 +465,9 @@ public class InMemoryRegistrationStore implements CaliforniumRegistrationStore,
     }
 
     private void unsafeRemoveObservation(Token observationId) {
+        if (journal != null && obsByToken.containsKey(observationId)) {
+            journal.removeObservation(observationId);
+        }
         org.eclipse.californium.core.observe.Observation removed = obsByToken.remove(observationId);
 
         if (removed != null) {
@@ -471,7 +559,7 @@ public class InMemoryRegistrationStore implements CaliforniumRegistrationStore,
     }
 
     /**
-     * Destroy "cleanup" scheduler.
+     * Destroy "cleanup" scheduler and close the journal if any.
      */
     @Override
     public synchronized void destroy() {
@@ -482,6 +570,51 @@ public class InMemoryRegistrationStore implements CaliforniumRegistrationStore,
         } catch (InterruptedException e) {
             LOG.warn("Destroying InMemoryRegistrationStore was interrupted.", e);
         }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                LOG.warn("Unable to close registration store journal.", e);
+            }
+        }
+    }
+
+    /**
+     * Write a snapshot of the store content in the journal. This is done automatically when the journal is large
+     * enough.
+     */
+    public void snapshot() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        Collection<Registration> registrations;
+        Map<Token, org.eclipse.californium.core.observe.Observation> observations;
+        try {
+            // no modification can happened while the read lock is held, so captured state matches the journal
+            // rotation.
+            lock.readLock().lock();
+            registrations = new ArrayList<>(regsByEp.values());
+            observations = new HashMap<>(obsByToken);
+            journal.rotate();
+        } finally {
+            lock.readLock().unlock();
+        }
+        journal.writeSnapshot(registrations, observations);
+    }
+
+    private Deregistration removeExpiredRegistration(String registrationId) {
+        try {
+            lock.writeLock().lock();
+
+            Registration registration = regsByRegId.get(registrationId);
+            // registration could have been removed or updated since it was indexed as expired
+            if (registration != null && !registration.isAlive()) {
+                return unsafeRemoveRegistration(registration);
+            }
+            return null;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     private class Cleaner implements Runnable {
@@ -489,18 +622,11 @@ public class InMemoryRegistrationStore implements CaliforniumRegistrationStore,
         @Override
         public void run() {
             try {
-                Collection<Registration> allRegs = new ArrayList<>();
-                try {
-                    lock.readLock().lock();
-                    allRegs.addAll(regsByEp.values());
-                } finally {
-                    lock.readLock().unlock();
-                }
-
-                for (Registration reg : allRegs) {
-                    if (!reg.isAlive()) {
-                        // force de-registration
-                        Deregistration removedRegistration = removeRegistration(reg.getId());
+                // only visit registrations which are due
+                for (String registrationId : expirationIndex.pollExpired(System.currentTimeMillis())) {
+                    // force de-registration
+                    Deregistration removedRegistration = removeExpiredRegistration(registrationId);
+                    if (removedRegistration != null) {
                         expirationListener.registrationExpired(removedRegistration.getRegistration(),
                                 removedRegistration.getObservations());
                     }
@@ -508,6 +634,18 @@ public class InMemoryRegistrationStore implements CaliforniumRegistrationStore,
             } catch (Exception e) {
                 LOG.warn("Unexpected Exception while registration cleaning", e);
             }
+
+            if (journal != null) {
+                try {
+                    if (journal.needsSnapshot()) {
+                        snapshot();
+                    } else {
+                        journal.flush();
+                    }
+                } catch (Exception e) {
+                    LOG.warn("Unexpected Exception while writing registration store snapshot", e);
+                }
+            }
         }
     }
 
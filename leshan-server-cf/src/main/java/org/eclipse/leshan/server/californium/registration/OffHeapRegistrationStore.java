@@ -0,0 +1,1115 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.registration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.californium.core.observe.ObservationStoreException;
+import org.eclipse.californium.core.observe.ObservationUtil;
+import org.eclipse.californium.elements.EndpointContext;
+import org.eclipse.leshan.core.observation.Observation;
+import org.eclipse.leshan.core.util.NamedThreadFactory;
+import org.eclipse.leshan.core.util.Validate;
+import org.eclipse.leshan.server.Destroyable;
+import org.eclipse.leshan.server.Startable;
+import org.eclipse.leshan.server.Stoppable;
+import org.eclipse.leshan.server.californium.observation.ObserveUtil;
+import org.eclipse.leshan.server.californium.serialization.BinarySerDesUtil;
+import org.eclipse.leshan.server.californium.serialization.RegistrationBinarySerDes;
+import org.eclipse.leshan.server.registration.Deregistration;
+import org.eclipse.leshan.server.registration.ExpirationListener;
+import org.eclipse.leshan.server.registration.Registration;
+import org.eclipse.leshan.server.registration.RegistrationUpdate;
+import org.eclipse.leshan.server.registration.UpdatedRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A store for registration and observation which keeps registrations outside of the java heap.
+ * <p>
+ * Registrations are encoded with {@link RegistrationBinarySerDes} and appended to pages of direct {@link ByteBuffer}.
+ * They are indexed by endpoint, registration id and socket address using open-addressing hash tables of primitive
+ * values, so a stored registration costs no java object. {@link Registration} objects are only materialized when they
+ * are accessed, which means each access decodes the registration.
+ * <p>
+ * A modified or removed registration leaves a dead record behind; pages are compacted by the cleaner task once dead
+ * records use more memory than live ones. Expired registrations are found using a {@link RegistrationExpirationIndex},
+ * which costs a small heap object per registration but avoids scanning the whole store on each clean.
+ * <p>
+ * Observations are kept on heap as in {@link InMemoryRegistrationStore}.
+ * <p>
+ * This store is intended for very large fleets where the registration store dominates the old generation of the heap.
+ * For smaller fleets, {@link InMemoryRegistrationStore} is faster.
+ */
+public class OffHeapRegistrationStore implements CaliforniumRegistrationStore, Startable, Stoppable, Destroyable {
+    private final Logger LOG = LoggerFactory.getLogger(OffHeapRegistrationStore.class);
+
+    private static final int DEFAULT_PAGE_SIZE = 4 * 1024 * 1024;
+
+    // Record layout : length (int) + status (byte) + expiration time stamp (long) + encoded registration
+    private static final int STATUS_OFFSET = 4;
+    private static final int EXPIRATION_OFFSET = 5;
+    private static final int HEADER_SIZE = 13;
+    private static final byte LIVE = 1;
+    private static final byte DEAD = 0;
+
+    // address of a record : page index + 1 (high 32 bits) | offset in page (low 32 bits). 0 means no record.
+    private static final long NO_RECORD = 0;
+
+    // Registration data
+    private final int pageSize;
+    private ByteBuffer[] pages = new ByteBuffer[0];
+    private int[] pageLimits = new int[0];
+    private long liveBytes;
+    private long deadBytes;
+
+    // Indexes
+    private final RecordIndex regsByEp = new RecordIndex() {
+        @Override
+        protected boolean matches(long address, byte[] key) {
+            return matchString(address, endpointOffset(address), key);
+        }
+    };
+    private final RecordIndex regsByRegId = new RecordIndex() {
+        @Override
+        protected boolean matches(long address, byte[] key) {
+            return matchString(address, registrationIdOffset(address), key);
+        }
+    };
+    private final RecordIndex regsByAddr = new RecordIndex() {
+        @Override
+        protected boolean matches(long address, byte[] key) {
+            return matchBytes(address, socketAddressOffset(address), key);
+        }
+    };
+
+    private final RegistrationExpirationIndex expirationIndex = new RegistrationExpirationIndex();
+
+    // Observations
+    private final Map<Token, org.eclipse.californium.core.observe.Observation> obsByToken = new HashMap<>();
+    private final Map<String, Set<Token>> tokensByRegId = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Listener use to notify when a registration expires
+    private ExpirationListener expirationListener;
+
+    private final ScheduledExecutorService schedExecutor;
+    private ScheduledFuture<?> cleanerTask;
+    private boolean started = false;
+    private final long cleanPeriod; // in seconds
+
+    public OffHeapRegistrationStore() {
+        this(2); // default clean period : 2s
+    }
+
+    public OffHeapRegistrationStore(long cleanPeriodInSec) {
+        this(Executors.newScheduledThreadPool(1,
+                new NamedThreadFactory(String.format("OffHeapRegistrationStore Cleaner (%ds)", cleanPeriodInSec))),
+                cleanPeriodInSec, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * @param schedExecutor the executor used to clean expired registrations and compact memory.
+     * @param cleanPeriodInSec the period between 2 cleaning tasks.
+     * @param pageSize the size in bytes of each direct buffer used to store registrations.
+     */
+    public OffHeapRegistrationStore(ScheduledExecutorService schedExecutor, long cleanPeriodInSec, int pageSize) {
+        Validate.isTrue(pageSize > HEADER_SIZE, "pageSize is too small");
+        this.schedExecutor = schedExecutor;
+        this.cleanPeriod = cleanPeriodInSec;
+        this.pageSize = pageSize;
+    }
+
+    /* *************** Leshan Registration API **************** */
+
+    @Override
+    public Deregistration addRegistration(Registration registration) {
+        byte[] endpointKey = stringKey(registration.getEndpoint());
+        byte[] idKey = stringKey(registration.getId());
+        byte[] addrKey = addressKey(registration.getSocketAddress());
+        try {
+            lock.writeLock().lock();
+
+            long newRecord = writeRecord(registration);
+            long previousRecord = regsByEp.put(registration.getEndpoint().hashCode(), endpointKey, newRecord);
+            regsByRegId.put(registration.getId().hashCode(), idKey, newRecord);
+            // If a registration is already associated to this address we don't care as we only want to keep the most
+            // recent binding.
+            regsByAddr.put(registration.getSocketAddress().hashCode(), addrKey, newRecord);
+
+            Registration registrationRemoved = readRegistration(previousRecord);
+            if (registrationRemoved != null) {
+                expirationIndex.remove(registrationRemoved);
+            }
+            expirationIndex.add(registration);
+
+            if (registrationRemoved != null) {
+                Collection<Observation> observationsRemoved = unsafeRemoveAllObservations(registrationRemoved.getId());
+                if (!registrationRemoved.getSocketAddress().equals(registration.getSocketAddress())) {
+                    InetSocketAddress previousAddress = registrationRemoved.getSocketAddress();
+                    regsByAddr.remove(previousAddress.hashCode(), addressKey(previousAddress), previousRecord);
+                }
+                if (!registrationRemoved.getId().equals(registration.getId())) {
+                    regsByRegId.remove(registrationRemoved.getId().hashCode(), stringKey(registrationRemoved.getId()),
+                            previousRecord);
+                }
+                markDead(previousRecord);
+                return new Deregistration(registrationRemoved, observationsRemoved);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return null;
+    }
+
+    @Override
+    public UpdatedRegistration updateRegistration(RegistrationUpdate update) {
+        try {
+            lock.writeLock().lock();
+
+            long record = regsByRegId.get(update.getRegistrationId().hashCode(),
+                    stringKey(update.getRegistrationId()));
+            if (record == NO_RECORD) {
+                return null;
+            } else {
+                Registration registration = readRegistration(record);
+                Registration updatedRegistration = update.update(registration);
+
+                long newRecord = writeRecord(updatedRegistration);
+                regsByEp.put(updatedRegistration.getEndpoint().hashCode(), stringKey(updatedRegistration.getEndpoint()),
+                        newRecord);
+                // If registration is already associated to this address we don't care as we only want to keep the most
+                // recent binding.
+                regsByAddr.put(updatedRegistration.getSocketAddress().hashCode(),
+                        addressKey(updatedRegistration.getSocketAddress()), newRecord);
+                if (!registration.getSocketAddress().equals(updatedRegistration.getSocketAddress())) {
+                    regsByAddr.remove(registration.getSocketAddress().hashCode(),
+                            addressKey(registration.getSocketAddress()), record);
+                }
+                regsByRegId.put(updatedRegistration.getId().hashCode(), stringKey(updatedRegistration.getId()),
+                        newRecord);
+                markDead(record);
+                expirationIndex.update(registration, updatedRegistration);
+
+                return new UpdatedRegistration(registration, updatedRegistration);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Registration getRegistration(String registrationId) {
+        byte[] key = stringKey(registrationId);
+        try {
+            lock.readLock().lock();
+            return readRegistration(regsByRegId.get(registrationId.hashCode(), key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Registration getRegistrationByEndpoint(String endpoint) {
+        byte[] key = stringKey(endpoint);
+        try {
+            lock.readLock().lock();
+            return readRegistration(regsByEp.get(endpoint.hashCode(), key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Registration getRegistrationByAdress(InetSocketAddress address) {
+        byte[] key = addressKey(address);
+        try {
+            lock.readLock().lock();
+            return readRegistration(regsByAddr.get(address.hashCode(), key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned iterator is weakly consistent : it iterates over the endpoints registered when it was created and
+     * returns their current registration, skipping the ones which were removed in the meantime.
+     */
+    @Override
+    public Iterator<Registration> getAllRegistrations() {
+        try {
+            lock.readLock().lock();
+            // keep a reference to current pages : even if pages are compacted, old ones stay readable.
+            ByteBuffer[] snapshotPages = pages;
+            long[] records = new long[regsByEp.size()];
+            int nbRecords = 0;
+            for (int page = 0; page < snapshotPages.length; page++) {
+                int offset = 0;
+                while (offset < pageLimits[page]) {
+                    long record = toAddress(page, offset);
+                    if (isLive(record)) {
+                        records[nbRecords++] = record;
+                    }
+                    offset += recordLength(record);
+                }
+            }
+            return new RegistrationIterator(snapshotPages, records, nbRecords);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Deregistration removeRegistration(String registrationId) {
+        try {
+            lock.writeLock().lock();
+            long record = regsByRegId.get(registrationId.hashCode(), stringKey(registrationId));
+            if (record != NO_RECORD) {
+                return unsafeRemoveRegistration(record);
+            }
+            return null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Deregistration unsafeRemoveRegistration(long record) {
+        Registration registration = readRegistration(record);
+        Collection<Observation> observationsRemoved = unsafeRemoveAllObservations(registration.getId());
+        regsByEp.remove(registration.getEndpoint().hashCode(), stringKey(registration.getEndpoint()), record);
+        regsByAddr.remove(registration.getSocketAddress().hashCode(), addressKey(registration.getSocketAddress()),
+                record);
+        regsByRegId.remove(registration.getId().hashCode(), stringKey(registration.getId()), record);
+        markDead(record);
+        expirationIndex.remove(registration);
+        return new Deregistration(registration, observationsRemoved);
+    }
+
+    /**
+     * @return the number of registrations in this store.
+     */
+    public int size() {
+        try {
+            lock.readLock().lock();
+            return regsByEp.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of bytes of direct memory currently allocated by this store.
+     */
+    public long getAllocatedMemory() {
+        try {
+            lock.readLock().lock();
+            long allocated = 0;
+            for (ByteBuffer page : pages) {
+                allocated += page.capacity();
+            }
+            return allocated;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* *************** Leshan Observation API **************** */
+
+    /*
+     * The observation is not persisted here, it is done by the Californium layer (in the implementation of the
+     * org.eclipse.californium.core.observe.ObservationStore#add method)
+     */
+    @Override
+    public Collection<Observation> addObservation(String registrationId, Observation observation) {
+
+        List<Observation> removed = new ArrayList<>();
+
+        try {
+            lock.writeLock().lock();
+            // cancel existing observations for the same path and registration id.
+            for (Observation obs : unsafeGetObservations(registrationId)) {
+                if (observation.getPath().equals(obs.getPath()) && !Arrays.equals(observation.getId(), obs.getId())) {
+                    unsafeRemoveObservation(new Token(obs.getId()));
+                    removed.add(obs);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        return removed;
+    }
+
+    @Override
+    public Observation removeObservation(String registrationId, byte[] observationId) {
+        try {
+            lock.writeLock().lock();
+            Token token = new Token(observationId);
+            Observation observation = build(unsafeGetObservation(token));
+            if (observation != null && registrationId.equals(observation.getRegistrationId())) {
+                unsafeRemoveObservation(token);
+                return observation;
+            }
+            return null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Observation getObservation(String registrationId, byte[] observationId) {
+        try {
+            lock.readLock().lock();
+            Observation observation = build(unsafeGetObservation(new Token(observationId)));
+            if (observation != null && registrationId.equals(observation.getRegistrationId())) {
+                return observation;
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<Observation> getObservations(String registrationId) {
+        try {
+            lock.readLock().lock();
+            return unsafeGetObservations(registrationId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<Observation> removeObservations(String registrationId) {
+        try {
+            lock.writeLock().lock();
+            return unsafeRemoveAllObservations(registrationId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* *************** Californium ObservationStore API **************** */
+
+    @Override
+    public org.eclipse.californium.core.observe.Observation putIfAbsent(Token token,
+            org.eclipse.californium.core.observe.Observation obs) throws ObservationStoreException {
+        return add(token, obs, true);
+    }
+
+    @Override
+    public org.eclipse.californium.core.observe.Observation put(Token token,
+            org.eclipse.californium.core.observe.Observation obs) throws ObservationStoreException {
+        return add(token, obs, false);
+    }
+
+    private org.eclipse.californium.core.observe.Observation add(Token token,
+            org.eclipse.californium.core.observe.Observation obs, boolean ifAbsent) throws ObservationStoreException {
+        org.eclipse.californium.core.observe.Observation previousObservation = null;
+        if (obs != null) {
+            ObserveUtil.validateCoapObservation(obs);
+            String registrationId = ObserveUtil.extractRegistrationId(obs);
+            byte[] idKey = stringKey(registrationId);
+            try {
+                lock.writeLock().lock();
+
+                if (regsByRegId.get(registrationId.hashCode(), idKey) == NO_RECORD) {
+                    throw new ObservationStoreException("no registration for this Id");
+                }
+
+                if (ifAbsent) {
+                    if (!obsByToken.containsKey(token))
+                        previousObservation = obsByToken.put(token, obs);
+                    else
+                        return obsByToken.get(token);
+                } else {
+                    previousObservation = obsByToken.put(token, obs);
+                }
+                if (!tokensByRegId.containsKey(registrationId)) {
+                    tokensByRegId.put(registrationId, new HashSet<Token>());
+                }
+                tokensByRegId.get(registrationId).add(token);
+
+                // log any collisions
+                if (previousObservation != null) {
+                    LOG.warn(
+                            "Token collision ? observation from request [{}] will be replaced by observation from request [{}] ",
+                            previousObservation.getRequest(), obs.getRequest());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return previousObservation;
+    }
+
+    @Override
+    public org.eclipse.californium.core.observe.Observation get(Token token) {
+        try {
+            lock.readLock().lock();
+            return unsafeGetObservation(token);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void setContext(Token token, EndpointContext ctx) {
+        try {
+            lock.writeLock().lock();
+            org.eclipse.californium.core.observe.Observation obs = obsByToken.get(token);
+            if (obs != null) {
+                obsByToken.put(token, new org.eclipse.californium.core.observe.Observation(obs.getRequest(), ctx));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Token token) {
+        try {
+            lock.writeLock().lock();
+            unsafeRemoveObservation(token);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* *************** Observation utility functions **************** */
+
+    private org.eclipse.californium.core.observe.Observation unsafeGetObservation(Token token) {
+        org.eclipse.californium.core.observe.Observation obs = obsByToken.get(token);
+        return ObservationUtil.shallowClone(obs);
+    }
+
+    private void unsafeRemoveObservation(Token observationId) {
+        org.eclipse.californium.core.observe.Observation removed = obsByToken.remove(observationId);
+
+        if (removed != null) {
+            String registrationId = ObserveUtil.extractRegistrationId(removed);
+            Set<Token> tokens = tokensByRegId.get(registrationId);
+            tokens.remove(observationId);
+            if (tokens.isEmpty()) {
+                tokensByRegId.remove(registrationId);
+            }
+        }
+    }
+
+    private Collection<Observation> unsafeRemoveAllObservations(String registrationId) {
+        Collection<Observation> removed = new ArrayList<>();
+        Set<Token> tokens = tokensByRegId.get(registrationId);
+        if (tokens != null) {
+            for (Token token : tokens) {
+                Observation observationRemoved = build(obsByToken.remove(token));
+                if (observationRemoved != null) {
+                    removed.add(observationRemoved);
+                }
+            }
+        }
+        tokensByRegId.remove(registrationId);
+        return removed;
+    }
+
+    private Collection<Observation> unsafeGetObservations(String registrationId) {
+        Collection<Observation> result = new ArrayList<>();
+        Set<Token> tokens = tokensByRegId.get(registrationId);
+        if (tokens != null) {
+            for (Token token : tokens) {
+                Observation obs = build(unsafeGetObservation(token));
+                if (obs != null) {
+                    result.add(obs);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Observation build(org.eclipse.californium.core.observe.Observation cfObs) {
+        if (cfObs == null)
+            return null;
+
+        return ObserveUtil.createLwM2mObservation(cfObs.getRequest());
+    }
+
+    /* *************** Record management **************** */
+
+    private static long toAddress(int page, int offset) {
+        return ((long) (page + 1) << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int pageOf(long address) {
+        return (int) (address >>> 32) - 1;
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    private long writeRecord(Registration registration) {
+        byte[] encoded = RegistrationBinarySerDes.serialize(registration);
+        int length = HEADER_SIZE + encoded.length;
+
+        // find a page with enough space
+        int page = pages.length - 1;
+        if (page < 0 || pages[page].capacity() - pageLimits[page] < length) {
+            page = allocatePage(Math.max(pageSize, length));
+        }
+
+        ByteBuffer buffer = pages[page].duplicate();
+        int offset = pageLimits[page];
+        buffer.position(offset);
+        buffer.putInt(length);
+        buffer.put(LIVE);
+        buffer.putLong(registration.getExpirationTimeStamp());
+        buffer.put(encoded);
+        pageLimits[page] = offset + length;
+        liveBytes += length;
+        return toAddress(page, offset);
+    }
+
+    private int allocatePage(int size) {
+        pages = Arrays.copyOf(pages, pages.length + 1);
+        pageLimits = Arrays.copyOf(pageLimits, pageLimits.length + 1);
+        pages[pages.length - 1] = ByteBuffer.allocateDirect(size);
+        return pages.length - 1;
+    }
+
+    private void markDead(long record) {
+        pages[pageOf(record)].put(offsetOf(record) + STATUS_OFFSET, DEAD);
+        int length = recordLength(record);
+        liveBytes -= length;
+        deadBytes += length;
+    }
+
+    private int recordLength(long record) {
+        return pages[pageOf(record)].getInt(offsetOf(record));
+    }
+
+    private boolean isLive(long record) {
+        return pages[pageOf(record)].get(offsetOf(record) + STATUS_OFFSET) == LIVE;
+    }
+
+    private long expirationTimeStamp(long record) {
+        return pages[pageOf(record)].getLong(offsetOf(record) + EXPIRATION_OFFSET);
+    }
+
+    private Registration readRegistration(long record) {
+        return readRegistration(pages, record);
+    }
+
+    private static Registration readRegistration(ByteBuffer[] pages, long record) {
+        if (record == NO_RECORD) {
+            return null;
+        }
+        ByteBuffer buffer = pages[pageOf(record)].duplicate();
+        int offset = offsetOf(record);
+        byte[] encoded = new byte[buffer.getInt(offset) - HEADER_SIZE];
+        buffer.position(offset + HEADER_SIZE);
+        buffer.get(encoded);
+        return RegistrationBinarySerDes.deserialize(encoded);
+    }
+
+    /* Access to the keys of an encoded registration (see RegistrationBinarySerDes) */
+
+    private int registrationIdOffset(long record) {
+        // skip header and format version
+        return offsetOf(record) + HEADER_SIZE + 1;
+    }
+
+    private int endpointOffset(long record) {
+        return skipString(pages[pageOf(record)], registrationIdOffset(record));
+    }
+
+    private int socketAddressOffset(long record) {
+        // skip endpoint and identity type
+        return skipString(pages[pageOf(record)], endpointOffset(record)) + 1;
+    }
+
+    private static int readVarInt(ByteBuffer buffer, int offset) {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = buffer.get(offset++);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int skipVarInt(ByteBuffer buffer, int offset) {
+        while ((buffer.get(offset++) & 0x80) != 0) {
+        }
+        return offset;
+    }
+
+    private static int skipString(ByteBuffer buffer, int offset) {
+        int length = readVarInt(buffer, offset);
+        return skipVarInt(buffer, offset) + length;
+    }
+
+    private static String readString(ByteBuffer buffer, int offset) {
+        int length = readVarInt(buffer, offset);
+        byte[] bytes = new byte[length];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(skipVarInt(buffer, offset));
+        duplicate.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean matchString(long record, int offset, byte[] key) {
+        ByteBuffer buffer = pages[pageOf(record)];
+        if (readVarInt(buffer, offset) != key.length) {
+            return false;
+        }
+        int start = skipVarInt(buffer, offset);
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matchBytes(long record, int offset, byte[] key) {
+        ByteBuffer buffer = pages[pageOf(record)];
+        if (offset + key.length > pageLimits[pageOf(record)]) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(offset + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] stringKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] addressKey(InetSocketAddress address) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(24);
+            BinarySerDesUtil.writeSocketAddress(new DataOutputStream(bytes), address);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Move all live records in new pages and update indexes.
+     */
+    void compact() {
+        try {
+            lock.writeLock().lock();
+            unsafeCompact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unsafeCompact() {
+        // all live records are indexed by endpoint
+        int nbRecords = regsByEp.size();
+        // old and new addresses of moved records, old addresses are sorted as pages are scanned in order
+        long[] oldRecords = new long[nbRecords];
+        long[] newRecords = new long[nbRecords];
+        int nbMoved = 0;
+
+        ByteBuffer[] newPages = new ByteBuffer[0];
+        int[] newLimits = new int[0];
+        long newLiveBytes = 0;
+        for (int page = 0; page < pages.length; page++) {
+            ByteBuffer oldPage = pages[page];
+            int offset = 0;
+            while (offset < pageLimits[page]) {
+                int length = oldPage.getInt(offset);
+                if (oldPage.get(offset + STATUS_OFFSET) == LIVE) {
+                    // copy record
+                    int newPage = newPages.length - 1;
+                    if (newPage < 0 || newPages[newPage].capacity() - newLimits[newPage] < length) {
+                        newPages = Arrays.copyOf(newPages, newPages.length + 1);
+                        newLimits = Arrays.copyOf(newLimits, newLimits.length + 1);
+                        newPage = newPages.length - 1;
+                        newPages[newPage] = ByteBuffer.allocateDirect(Math.max(pageSize, length));
+                    }
+                    ByteBuffer source = oldPage.duplicate();
+                    source.position(offset);
+                    source.limit(offset + length);
+                    ByteBuffer target = newPages[newPage].duplicate();
+                    target.position(newLimits[newPage]);
+                    target.put(source);
+
+                    oldRecords[nbMoved] = toAddress(page, offset);
+                    newRecords[nbMoved] = toAddress(newPage, newLimits[newPage]);
+                    nbMoved++;
+                    newLimits[newPage] += length;
+                    newLiveBytes += length;
+                }
+                offset += length;
+            }
+        }
+
+        // Switch to new pages. Readers access pages and indexes under the read lock, so they see either the old or
+        // the new state; iterators keep a reference to old pages which are left untouched.
+        pages = newPages;
+        pageLimits = newLimits;
+        liveBytes = newLiveBytes;
+        deadBytes = 0;
+        // records keep their keys, so index slots are still valid : only record addresses change.
+        regsByEp.relocate(oldRecords, newRecords, nbMoved);
+        regsByRegId.relocate(oldRecords, newRecords, nbMoved);
+        regsByAddr.relocate(oldRecords, newRecords, nbMoved);
+    }
+
+    /**
+     * An open-addressing hash table (linear probing) from a key to a record address. Keys are not stored, they are
+     * read from the records.
+     */
+    private abstract static class RecordIndex {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private long[] records = new long[INITIAL_CAPACITY];
+        private int[] hashes = new int[INITIAL_CAPACITY];
+        private int size;
+
+        protected abstract boolean matches(long record, byte[] key);
+
+        public int size() {
+            return size;
+        }
+
+        public long get(int hash, byte[] key) {
+            int mask = records.length - 1;
+            for (int i = spread(hash) & mask;; i = (i + 1) & mask) {
+                long record = records[i];
+                if (record == NO_RECORD) {
+                    return NO_RECORD;
+                }
+                if (hashes[i] == hash && matches(record, key)) {
+                    return record;
+                }
+            }
+        }
+
+        /**
+         * @return the previous record associated to this key or {@link OffHeapRegistrationStore#NO_RECORD}
+         */
+        public long put(int hash, byte[] key, long record) {
+            int mask = records.length - 1;
+            for (int i = spread(hash) & mask;; i = (i + 1) & mask) {
+                long current = records[i];
+                if (current == NO_RECORD) {
+                    records[i] = record;
+                    hashes[i] = hash;
+                    size++;
+                    ensureCapacity();
+                    return NO_RECORD;
+                }
+                if (hashes[i] == hash && matches(current, key)) {
+                    records[i] = record;
+                    return current;
+                }
+            }
+        }
+
+        /**
+         * Remove the key only if it is associated to the given record.
+         */
+        public boolean remove(int hash, byte[] key, long expectedRecord) {
+            int mask = records.length - 1;
+            for (int i = spread(hash) & mask;; i = (i + 1) & mask) {
+                long record = records[i];
+                if (record == NO_RECORD) {
+                    return false;
+                }
+                if (hashes[i] == hash && matches(record, key)) {
+                    if (record != expectedRecord) {
+                        return false;
+                    }
+                    deleteSlot(i);
+                    size--;
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Replace record addresses after records were moved.
+         *
+         * @param oldRecords the previous addresses, sorted.
+         * @param newRecords the new addresses, at the same index than the previous ones.
+         * @param nbRecords the number of moved records.
+         */
+        public void relocate(long[] oldRecords, long[] newRecords, int nbRecords) {
+            for (int i = 0; i < records.length; i++) {
+                if (records[i] != NO_RECORD) {
+                    int moved = Arrays.binarySearch(oldRecords, 0, nbRecords, records[i]);
+                    if (moved < 0) {
+                        throw new IllegalStateException("Indexed record was not moved : " + records[i]);
+                    }
+                    records[i] = newRecords[moved];
+                }
+            }
+        }
+
+        public void clear() {
+            records = new long[INITIAL_CAPACITY];
+            hashes = new int[INITIAL_CAPACITY];
+            size = 0;
+        }
+
+        // backward shift deletion, so no tombstone is needed
+        private void deleteSlot(int slot) {
+            int mask = records.length - 1;
+            int hole = slot;
+            for (int i = (slot + 1) & mask; records[i] != NO_RECORD; i = (i + 1) & mask) {
+                int ideal = spread(hashes[i]) & mask;
+                // move entry if its ideal slot is not between the hole and its current position
+                if (((i - ideal) & mask) >= ((i - hole) & mask)) {
+                    records[hole] = records[i];
+                    hashes[hole] = hashes[i];
+                    hole = i;
+                }
+            }
+            records[hole] = NO_RECORD;
+            hashes[hole] = 0;
+        }
+
+        private void ensureCapacity() {
+            // keep load factor under 0.6
+            if (size * 5 < records.length * 3) {
+                return;
+            }
+            long[] oldRecords = records;
+            int[] oldHashes = hashes;
+            records = new long[oldRecords.length * 2];
+            hashes = new int[oldHashes.length * 2];
+            int mask = records.length - 1;
+            for (int j = 0; j < oldRecords.length; j++) {
+                if (oldRecords[j] != NO_RECORD) {
+                    int i = spread(oldHashes[j]) & mask;
+                    while (records[i] != NO_RECORD) {
+                        i = (i + 1) & mask;
+                    }
+                    records[i] = oldRecords[j];
+                    hashes[i] = oldHashes[j];
+                }
+            }
+        }
+
+        private static int spread(int hash) {
+            // murmur3 finalizer to limit clustering of linear probing
+            hash ^= hash >>> 16;
+            hash *= 0x85ebca6b;
+            hash ^= hash >>> 13;
+            return hash;
+        }
+    }
+
+    private class RegistrationIterator implements Iterator<Registration> {
+        private final ByteBuffer[] snapshotPages;
+        private final long[] records;
+        private final int nbRecords;
+        private int index = 0;
+        private Registration next;
+
+        public RegistrationIterator(ByteBuffer[] snapshotPages, long[] records, int nbRecords) {
+            this.snapshotPages = snapshotPages;
+            this.records = records;
+            this.nbRecords = nbRecords;
+            this.next = fetchNext();
+        }
+
+        private Registration fetchNext() {
+            while (index < nbRecords) {
+                long record = records[index++];
+                // records of the snapshot pages are never modified (except status) so we can read endpoint without
+                // lock, then get the current registration for this endpoint.
+                ByteBuffer page = snapshotPages[pageOf(record)];
+                String endpoint = readString(page, skipString(page, offsetOf(record) + HEADER_SIZE + 1));
+                Registration registration = getRegistrationByEndpoint(endpoint);
+                if (registration != null) {
+                    return registration;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Registration next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Registration current = next;
+            next = fetchNext();
+            return current;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /* *************** Expiration handling **************** */
+
+    @Override
+    public void setExpirationListener(ExpirationListener listener) {
+        this.expirationListener = listener;
+    }
+
+    /**
+     * start the registration store, will start regular cleanup of dead registrations.
+     */
+    @Override
+    public synchronized void start() {
+        if (!started) {
+            started = true;
+            cleanerTask = schedExecutor.scheduleAtFixedRate(new Cleaner(), cleanPeriod, cleanPeriod, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop the underlying cleanup of the registrations.
+     */
+    @Override
+    public synchronized void stop() {
+        if (started) {
+            started = false;
+            if (cleanerTask != null) {
+                cleanerTask.cancel(false);
+                cleanerTask = null;
+            }
+        }
+    }
+
+    /**
+     * Destroy "cleanup" scheduler and release memory.
+     */
+    @Override
+    public synchronized void destroy() {
+        started = false;
+        schedExecutor.shutdownNow();
+        try {
+            schedExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            LOG.warn("Destroying OffHeapRegistrationStore was interrupted.", e);
+        }
+        try {
+            lock.writeLock().lock();
+            // direct buffers are released once garbage collected
+            pages = new ByteBuffer[0];
+            pageLimits = new int[0];
+            regsByEp.clear();
+            regsByRegId.clear();
+            regsByAddr.clear();
+            expirationIndex.clear();
+            liveBytes = 0;
+            deadBytes = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Deregistration removeExpiredRegistration(String registrationId) {
+        try {
+            lock.writeLock().lock();
+            long record = regsByRegId.get(registrationId.hashCode(), stringKey(registrationId));
+            // registration could have been removed or updated in the meantime
+            if (record != NO_RECORD && expirationTimeStamp(record) <= System.currentTimeMillis()) {
+                return unsafeRemoveRegistration(record);
+            }
+            return null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactIfNeeded() {
+        try {
+            lock.writeLock().lock();
+            if (deadBytes > liveBytes && deadBytes > pageSize) {
+                long start = System.currentTimeMillis();
+                long released = deadBytes;
+                unsafeCompact();
+                LOG.debug("Registration store compacted in {}ms, {} bytes released", System.currentTimeMillis() - start,
+                        released);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private class Cleaner implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                // only visit registrations which are due
+                for (String registrationId : expirationIndex.pollExpired(System.currentTimeMillis())) {
+                    // force de-registration
+                    Deregistration removedRegistration = removeExpiredRegistration(registrationId);
+                    if (removedRegistration != null) {
+                        expirationListener.registrationExpired(removedRegistration.getRegistration(),
+                                removedRegistration.getObservations());
+                    }
+                }
+                compactIfNeeded();
+            } catch (Exception e) {
+                LOG.warn("Unexpected Exception while registration cleaning", e);
+            }
+        }
+    }
+
+    @Override
+    public void setExecutor(ScheduledExecutorService executor) {
+        // expired registrations are cleaned using the executor given at construction
+    }
+}
@@ -37,6 +37,7 @@ import org.eclipse.leshan.core.response.DeregisterResponse;
 import org.eclipse.leshan.core.response.RegisterResponse;
 import org.eclipse.leshan.core.response.SendableResponse;
 import org.eclipse.leshan.core.response.UpdateResponse;
+import org.eclipse.leshan.server.registration.ObjectLinksCache;
 import org.eclipse.leshan.server.registration.RegistrationHandler;
 import org.eclipse.leshan.server.registration.RegistrationService;
 import org.slf4j.Logger;
@@ -66,11 +67,22 @@ public class RegisterResource extends LwM2mCoapResource {
     public static final String RESOURCE_NAME = "rd";
 
     private final RegistrationHandler registrationHandler;
+    private final ObjectLinksCache objectLinksCache;
 
     public RegisterResource(RegistrationHandler registrationHandler) {
+        this(registrationHandler, null);
+    }
+
+    /**
+     * @param registrationHandler the handler of registration requests.
+     * @param objectLinksCache the cache used to parse object links payload, so identical payloads are parsed only
+     *        once. Could be <code>null</code>.
+     */
+    public RegisterResource(RegistrationHandler registrationHandler, ObjectLinksCache objectLinksCache) {
         super(RESOURCE_NAME);
 
         this.registrationHandler = registrationHandler;
+        this.objectLinksCache = objectLinksCache;
         getAttributes().addResourceType("core.rd");
     }
 
@@ -131,7 +143,7 @@ public class RegisterResource extends LwM2mCoapResource {
         BindingMode binding = null;
 
         // Get object Links
-        Link[] objectLinks = Link.parse(request.getPayload());
+        Link[] objectLinks = parseObjectLinks(request.getPayload());
 
         Map<String, String> additionalParams = new HashMap<>();
 
@@ -202,7 +214,7 @@ public class RegisterResource extends LwM2mCoapResource {
             }
         }
         if (request.getPayload() != null && request.getPayload().length > 0) {
-            objectLinks = Link.parse(request.getPayload());
+            objectLinks = parseObjectLinks(request.getPayload());
         }
         UpdateRequest updateRequest = new UpdateRequest(registrationId, lifetime, smsNumber, binding, objectLinks,
                 additionalParams);
@@ -220,6 +232,13 @@ public class RegisterResource extends LwM2mCoapResource {
         sendableResponse.sent();
     }
 
+    protected Link[] parseObjectLinks(byte[] payload) {
+        if (objectLinksCache != null) {
+            return objectLinksCache.parse(payload);
+        }
+        return Link.parse(payload);
+    }
+
     protected void handleDeregister(CoapExchange exchange, String registrationId) {
         // Get identity
         Identity sender = extractIdentity(exchange.advanced().getRequest().getSourceContext());
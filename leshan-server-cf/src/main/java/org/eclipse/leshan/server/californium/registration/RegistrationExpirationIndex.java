@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.registration;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.eclipse.leshan.server.registration.Registration;
+
+/**
+ * An index of registrations ordered by expiration time (see {@link Registration#getExpirationTimeStamp()}).
+ * <p>
+ * This allows to clean expired registrations without scanning the whole store : only registrations which are due are
+ * visited. The index must be kept up to date each time a registration is added, updated or removed.
+ * <p>
+ * This class is thread-safe. Modifications concerning a same registration are expected to be serialized by the
+ * caller.
+ */
+public class RegistrationExpirationIndex {
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+    /**
+     * Index a new registration.
+     */
+    public void add(Registration registration) {
+        entries.add(new Entry(registration.getExpirationTimeStamp(), registration.getId()));
+    }
+
+    /**
+     * Remove a registration from the index.
+     */
+    public void remove(Registration registration) {
+        entries.remove(new Entry(registration.getExpirationTimeStamp(), registration.getId()));
+    }
+
+    /**
+     * Replace the previous version of a registration by its new one (e.g. on registration update).
+     */
+    public void update(Registration previous, Registration updated) {
+        remove(previous);
+        add(updated);
+    }
+
+    /**
+     * Remove from the index all the registrations which expired at the given time.
+     *
+     * @param now the current time in milliseconds.
+     * @return the id of the registrations removed from the index, ordered by expiration time.
+     */
+    public List<String> pollExpired(long now) {
+        List<String> expired = new ArrayList<>();
+        // registration is expired if expiration time stamp is not strictly after now (see Registration#isAlive())
+        Iterator<Entry> it = entries.headSet(new Entry(now + 1, "")).iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entries.remove(entry)) {
+                expired.add(entry.registrationId);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Remove all registrations from the index.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of indexed registrations.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        private final long expirationTimeStamp;
+        private final String registrationId;
+
+        public Entry(long expirationTimeStamp, String registrationId) {
+            this.expirationTimeStamp = expirationTimeStamp;
+            this.registrationId = registrationId;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            if (expirationTimeStamp != o.expirationTimeStamp) {
+                return expirationTimeStamp < o.expirationTimeStamp ? -1 : 1;
+            }
+            return registrationId.compareTo(o.registrationId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (expirationTimeStamp ^ (expirationTimeStamp >>> 32)) + registrationId.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Entry))
+                return false;
+            Entry other = (Entry) obj;
+            return expirationTimeStamp == other.expirationTimeStamp && registrationId.equals(other.registrationId);
+        }
+    }
+}
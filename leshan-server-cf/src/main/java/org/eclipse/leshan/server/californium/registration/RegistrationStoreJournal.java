@@ -0,0 +1,543 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.registration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.californium.core.observe.Observation;
+import org.eclipse.leshan.core.util.Validate;
+import org.eclipse.leshan.server.californium.observation.ObserveUtil;
+import org.eclipse.leshan.server.californium.serialization.BinarySerDesUtil;
+import org.eclipse.leshan.server.californium.serialization.ObservationBinarySerDes;
+import org.eclipse.leshan.server.californium.serialization.RegistrationBinarySerDes;
+import org.eclipse.leshan.server.registration.Registration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A file based persistence for {@link InMemoryRegistrationStore}, made of a compact snapshot and an append-only journal
+ * of modifications.
+ * <p>
+ * Files are organized in generations. <code>snapshot-N</code> contains the state of the store when the
+ * <code>journal-N</code> was started. Each modification of the store is appended to the current journal as a
+ * checksummed record. At startup, the most recent snapshot is loaded and all following journals are replayed; an
+ * incomplete or corrupted record (e.g. due to a crash while writing) ends the replay : the journal is truncated before
+ * this record and following journals are ignored, so no record is applied on top of a gap.
+ * <p>
+ * If a record can not be written, the journal is considered as failed : the modification and all following ones are
+ * rejected with an {@link IllegalStateException}.
+ * <p>
+ * Snapshots are written in a temporary file which is renamed once complete. Files of previous generations
+ * are deleted only once a newer snapshot is available.
+ * <p>
+ * By default, records are written to the OS without forcing them to disk, so they survive a crash of the process but
+ * not necessarily a crash of the host. Use <code>syncOnWrite</code> to force each record to disk.
+ */
+public class RegistrationStoreJournal {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RegistrationStoreJournal.class);
+
+    private static final long DEFAULT_SNAPSHOT_THRESHOLD = 100_000;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final Pattern FILE_PATTERN = Pattern
+            .compile("(" + SNAPSHOT_PREFIX + "|" + JOURNAL_PREFIX + ")(\\d+)");
+
+    // record types
+    private static final byte ADD_REGISTRATION = 1;
+    private static final byte UPDATE_REGISTRATION = 2;
+    private static final byte REMOVE_REGISTRATION = 3;
+    private static final byte PUT_OBSERVATION = 4;
+    private static final byte REMOVE_OBSERVATION = 5;
+
+    // record header : length (int) + crc (int)
+    private static final int HEADER_SIZE = 8;
+
+    private final File directory;
+    private final boolean syncOnWrite;
+    private final long snapshotThreshold;
+
+    // current generation and its journal
+    private long generation;
+    private FileChannel journal;
+    private long recordsSinceSnapshot;
+
+    // guard snapshot writing, journal appending is guarded by "this"
+    private final Object snapshotLock = new Object();
+
+    // first write error, once set no record can be appended anymore
+    private IOException failure;
+
+    /**
+     * Create a journal in the given directory, which does not force writes to disk and creates a new snapshot every
+     * 100 000 records.
+     */
+    public RegistrationStoreJournal(File directory) {
+        this(directory, false, DEFAULT_SNAPSHOT_THRESHOLD);
+    }
+
+    /**
+     * @param directory the directory where snapshot and journal files are stored.
+     * @param syncOnWrite <code>true</code> to force each record to the storage device before returning.
+     * @param snapshotThreshold the number of journal records after which a new snapshot should be created.
+     */
+    public RegistrationStoreJournal(File directory, boolean syncOnWrite, long snapshotThreshold) {
+        Validate.notNull(directory);
+        Validate.isTrue(snapshotThreshold > 0, "snapshotThreshold must be positive");
+        this.directory = directory;
+        this.syncOnWrite = syncOnWrite;
+        this.snapshotThreshold = snapshotThreshold;
+    }
+
+    /* *************** Recovery **************** */
+
+    /**
+     * The state of a store rebuilt from files.
+     */
+    public static class State {
+        private final Map<String /* end-point */, Registration> regsByEp = new HashMap<>();
+        private final Map<String /* reg-id */, String /* end-point */> epByRegId = new HashMap<>();
+        private final Map<Token, Observation> obsByToken = new HashMap<>();
+        private final Map<String /* reg-id */, Set<Token>> tokensByRegId = new HashMap<>();
+
+        public Collection<Registration> getRegistrations() {
+            return regsByEp.values();
+        }
+
+        public Map<Token, Observation> getObservations() {
+            return obsByToken;
+        }
+
+        private void addRegistration(Registration registration) {
+            Registration previous = regsByEp.put(registration.getEndpoint(), registration);
+            if (previous != null) {
+                epByRegId.remove(previous.getId());
+                removeObservations(previous.getId());
+            }
+            epByRegId.put(registration.getId(), registration.getEndpoint());
+        }
+
+        private void updateRegistration(Registration registration) {
+            regsByEp.put(registration.getEndpoint(), registration);
+            epByRegId.put(registration.getId(), registration.getEndpoint());
+        }
+
+        private void removeRegistration(String registrationId) {
+            String endpoint = epByRegId.remove(registrationId);
+            if (endpoint != null) {
+                regsByEp.remove(endpoint);
+            }
+            removeObservations(registrationId);
+        }
+
+        private void putObservation(Token token, Observation observation) {
+            removeObservation(token);
+            obsByToken.put(token, observation);
+            String registrationId = ObserveUtil.extractRegistrationId(observation);
+            Set<Token> tokens = tokensByRegId.get(registrationId);
+            if (tokens == null) {
+                tokens = new HashSet<>();
+                tokensByRegId.put(registrationId, tokens);
+            }
+            tokens.add(token);
+        }
+
+        private void removeObservation(Token token) {
+            Observation removed = obsByToken.remove(token);
+            if (removed != null) {
+                Set<Token> tokens = tokensByRegId.get(ObserveUtil.extractRegistrationId(removed));
+                if (tokens != null) {
+                    tokens.remove(token);
+                }
+            }
+        }
+
+        private void removeObservations(String registrationId) {
+            Set<Token> tokens = tokensByRegId.remove(registrationId);
+            if (tokens != null) {
+                for (Token token : tokens) {
+                    obsByToken.remove(token);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuild the state of the store from the most recent snapshot and the following journals, then start a new
+     * generation from this state. This must be called once before any other method.
+     *
+     * @return the recovered state.
+     */
+    public State open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(String.format("Unable to create directory %s", directory));
+        }
+
+        // list generations
+        TreeSet<Long> snapshots = new TreeSet<>();
+        TreeSet<Long> journals = new TreeSet<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Matcher matcher = FILE_PATTERN.matcher(file.getName());
+                if (matcher.matches()) {
+                    long fileGeneration = Long.parseLong(matcher.group(2));
+                    if (SNAPSHOT_PREFIX.equals(matcher.group(1))) {
+                        snapshots.add(fileGeneration);
+                    } else {
+                        journals.add(fileGeneration);
+                    }
+                }
+            }
+        }
+
+        // load last snapshot then replay all following journals
+        long start = System.currentTimeMillis();
+        State state = new State();
+        long lastGeneration = 0;
+        if (!snapshots.isEmpty()) {
+            lastGeneration = snapshots.last();
+            readSnapshot(snapshotFile(lastGeneration), state);
+        }
+        long nbRecords = 0;
+        for (Long journalGeneration : journals.tailSet(lastGeneration)) {
+            ReplayResult result = replayJournal(journalFile(journalGeneration), state);
+            nbRecords += result.nbRecords;
+            if (!result.complete) {
+                if (journalGeneration < journals.last()) {
+                    LOG.warn("Journals following {} are ignored", journalFile(journalGeneration));
+                }
+                break;
+            }
+        }
+        if (!journals.isEmpty()) {
+            lastGeneration = Math.max(lastGeneration, journals.last());
+        }
+        LOG.debug("{} registrations and {} observations recovered from {} ({} journal records) in {}ms",
+                state.regsByEp.size(), state.obsByToken.size(), directory, nbRecords,
+                System.currentTimeMillis() - start);
+
+        // start a new generation from the recovered state.
+        synchronized (this) {
+            generation = lastGeneration;
+        }
+        rotate();
+        writeSnapshot(state.getRegistrations(), state.getObservations());
+        return state;
+    }
+
+    private void readSnapshot(File file, State state) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            long nbRegistrations = BinarySerDesUtil.readVarLong(in);
+            for (long i = 0; i < nbRegistrations; i++) {
+                state.addRegistration(RegistrationBinarySerDes.deserialize(in));
+            }
+            long nbObservations = BinarySerDesUtil.readVarLong(in);
+            for (long i = 0; i < nbObservations; i++) {
+                Token token = new Token(BinarySerDesUtil.readBytes(in));
+                state.putObservation(token, ObservationBinarySerDes.deserialize(in));
+            }
+        }
+    }
+
+    private static class ReplayResult {
+        private long nbRecords;
+        // false if replay stopped on an invalid record
+        private boolean complete = true;
+    }
+
+    private ReplayResult replayJournal(File file, State state) throws IOException {
+        ReplayResult result = new ReplayResult();
+        long fileLength = file.length();
+        // position of the end of the last valid record
+        long position = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            CRC32 crc = new CRC32();
+            while (position < fileLength) {
+                if (fileLength - position < HEADER_SIZE) {
+                    LOG.warn("Incomplete record header in {}", file);
+                    result.complete = false;
+                    break;
+                }
+                int length = in.readInt();
+                int checksum = in.readInt();
+                // length is read from disk : check it before allocating anything
+                if (length <= 0 || length > fileLength - position - HEADER_SIZE) {
+                    LOG.warn("Invalid or incomplete record of length {} in {}", length, file);
+                    result.complete = false;
+                    break;
+                }
+                byte[] record = new byte[length];
+                in.readFully(record);
+                crc.reset();
+                crc.update(record, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    LOG.warn("Corrupted record in {}", file);
+                    result.complete = false;
+                    break;
+                }
+                try {
+                    applyRecord(record, state);
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("Unable to apply record of {}", file, e);
+                    result.complete = false;
+                    break;
+                }
+                position += HEADER_SIZE + length;
+                result.nbRecords++;
+            }
+        }
+        if (!result.complete) {
+            LOG.warn("{} truncated to its {} valid records", file, result.nbRecords);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(position);
+            }
+        }
+        return result;
+    }
+
+    private void applyRecord(byte[] record, State state) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte type = in.readByte();
+        switch (type) {
+        case ADD_REGISTRATION:
+            state.addRegistration(RegistrationBinarySerDes.deserialize(in));
+            break;
+        case UPDATE_REGISTRATION:
+            state.updateRegistration(RegistrationBinarySerDes.deserialize(in));
+            break;
+        case REMOVE_REGISTRATION:
+            state.removeRegistration(BinarySerDesUtil.readString(in));
+            break;
+        case PUT_OBSERVATION:
+            Token token = new Token(BinarySerDesUtil.readBytes(in));
+            state.putObservation(token, ObservationBinarySerDes.deserialize(in));
+            break;
+        case REMOVE_OBSERVATION:
+            state.removeObservation(new Token(BinarySerDesUtil.readBytes(in)));
+            break;
+        default:
+            throw new IOException("Unknown journal record type : " + type);
+        }
+    }
+
+    /* *************** Journal **************** */
+
+    /*
+     * All the following methods throw an IllegalStateException if the record can not be written, they must be called
+     * before applying the modification to the store.
+     */
+
+    public void addRegistration(Registration registration) {
+        append(ADD_REGISTRATION, registration, null, null, null);
+    }
+
+    public void updateRegistration(Registration registration) {
+        append(UPDATE_REGISTRATION, registration, null, null, null);
+    }
+
+    public void removeRegistration(String registrationId) {
+        append(REMOVE_REGISTRATION, null, registrationId, null, null);
+    }
+
+    public void putObservation(Token token, Observation observation) {
+        append(PUT_OBSERVATION, null, null, token, observation);
+    }
+
+    public void removeObservation(Token token) {
+        append(REMOVE_OBSERVATION, null, null, token, null);
+    }
+
+    private void append(byte type, Registration registration, String registrationId, Token token,
+            Observation observation) {
+        synchronized (this) {
+            if (failure != null) {
+                throw new IllegalStateException("Registration journal failed, modifications are rejected", failure);
+            }
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            // reserve header
+            out.writeLong(0);
+            out.writeByte(type);
+            if (registration != null) {
+                RegistrationBinarySerDes.serialize(registration, out);
+            }
+            if (registrationId != null) {
+                BinarySerDesUtil.writeString(out, registrationId);
+            }
+            if (token != null) {
+                BinarySerDesUtil.writeBytes(out, token.getBytes());
+            }
+            if (observation != null) {
+                ObservationBinarySerDes.serialize(observation, out);
+            }
+
+            // complete header
+            ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+            int length = record.limit() - HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), HEADER_SIZE, length);
+            record.putInt(0, length);
+            record.putInt(4, (int) crc.getValue());
+
+            synchronized (this) {
+                if (journal == null) {
+                    throw new IllegalStateException("Journal is not opened");
+                }
+                while (record.hasRemaining()) {
+                    journal.write(record);
+                }
+                if (syncOnWrite) {
+                    journal.force(false);
+                }
+                recordsSinceSnapshot++;
+            }
+        } catch (IOException e) {
+            LOG.error("Unable to write record in registration journal {}", directory, e);
+            synchronized (this) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+            throw new IllegalStateException("Unable to write record in registration journal", e);
+        }
+    }
+
+    /* *************** Snapshot **************** */
+
+    /**
+     * @return <code>true</code> if enough records were written since last snapshot.
+     */
+    public synchronized boolean needsSnapshot() {
+        return recordsSinceSnapshot >= snapshotThreshold;
+    }
+
+    /**
+     * Start a new generation : following records will be written in a new journal. This must be called atomically
+     * with the capture of the state which will be given to {@link #writeSnapshot(Collection, Map)}.
+     */
+    public synchronized void rotate() throws IOException {
+        if (journal != null) {
+            journal.force(false);
+            journal.close();
+        }
+        generation++;
+        journal = new FileOutputStream(journalFile(generation)).getChannel();
+        recordsSinceSnapshot = 0;
+    }
+
+    /**
+     * Write a snapshot for the current generation, then delete files of older generations.
+     *
+     * @param registrations all the registrations of the store when {@link #rotate()} was called.
+     * @param observations all the observations of the store when {@link #rotate()} was called.
+     */
+    public void writeSnapshot(Collection<Registration> registrations, Map<Token, Observation> observations)
+            throws IOException {
+        synchronized (snapshotLock) {
+            long snapshotGeneration;
+            synchronized (this) {
+                snapshotGeneration = generation;
+            }
+
+            File tmpFile = new File(directory, SNAPSHOT_PREFIX + snapshotGeneration + ".tmp");
+            try (FileOutputStream fileOut = new FileOutputStream(tmpFile)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+                BinarySerDesUtil.writeVarLong(out, registrations.size());
+                for (Registration registration : registrations) {
+                    RegistrationBinarySerDes.serialize(registration, out);
+                }
+                BinarySerDesUtil.writeVarLong(out, observations.size());
+                for (Entry<Token, Observation> observation : observations.entrySet()) {
+                    BinarySerDesUtil.writeBytes(out, observation.getKey().getBytes());
+                    ObservationBinarySerDes.serialize(observation.getValue(), out);
+                }
+                out.flush();
+                fileOut.getChannel().force(true);
+            }
+            // rename is atomic on POSIX file systems
+            if (!tmpFile.renameTo(snapshotFile(snapshotGeneration))) {
+                throw new IOException(String.format("Unable to rename %s", tmpFile));
+            }
+
+            // now older generations are useless
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    Matcher matcher = FILE_PATTERN.matcher(file.getName());
+                    if (matcher.matches() && Long.parseLong(matcher.group(2)) < snapshotGeneration) {
+                        if (!file.delete()) {
+                            LOG.warn("Unable to delete obsolete registration store file {}", file);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Force written records to the storage device.
+     */
+    public synchronized void flush() throws IOException {
+        if (journal != null) {
+            journal.force(false);
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.force(false);
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private File snapshotFile(long generation) {
+        return new File(directory, SNAPSHOT_PREFIX + generation);
+    }
+
+    private File journalFile(long generation) {
+        return new File(directory, JOURNAL_PREFIX + generation);
+    }
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.serialization;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Low level functions used by the compact binary serializers.
+ * <p>
+ * Integers are encoded as unsigned LEB128 variable length integers (varint), strings as a varint length followed by
+ * their UTF-8 bytes and IP addresses in their raw form.
+ */
+public class BinarySerDesUtil {
+
+    /**
+     * Write a positive long as a variable length integer (1 byte for values lower than 128).
+     */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Only positive values can be encoded as varint");
+        }
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Varint value too large : " + value);
+        }
+        return (int) value;
+    }
+
+    public static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write a string which could be <code>null</code>. Length is shifted by one, 0 meaning <code>null</code>.
+     */
+    public static void writeNullableString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length + 1);
+            out.write(bytes);
+        }
+    }
+
+    public static String readNullableString(DataInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write a map of string, values could be <code>null</code>.
+     */
+    public static void writeStringMap(DataOutput out, Map<String, String> map) throws IOException {
+        writeVarInt(out, map.size());
+        for (Entry<String, String> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            writeNullableString(out, entry.getValue());
+        }
+    }
+
+    public static Map<String, String> readStringMap(DataInput in) throws IOException {
+        int size = readVarInt(in);
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(readString(in), readNullableString(in));
+        }
+        return map;
+    }
+
+    /**
+     * Write a socket address using raw IP address (4 bytes for IPv4, 16 bytes for IPv6). Unresolved addresses are
+     * written using their host name.
+     */
+    public static void writeSocketAddress(DataOutput out, InetSocketAddress address) throws IOException {
+        if (address.isUnresolved()) {
+            out.writeByte(0);
+            writeString(out, address.getHostString());
+        } else {
+            byte[] ip = address.getAddress().getAddress();
+            out.writeByte(ip.length);
+            out.write(ip);
+        }
+        writeVarInt(out, address.getPort());
+    }
+
+    public static InetSocketAddress readSocketAddress(DataInput in) throws IOException {
+        int length = in.readUnsignedByte();
+        if (length == 0) {
+            String host = readString(in);
+            return InetSocketAddress.createUnresolved(host, readVarInt(in));
+        }
+        byte[] ip = new byte[length];
+        in.readFully(ip);
+        return new InetSocketAddress(InetAddress.getByAddress(ip), readVarInt(in));
+    }
+}
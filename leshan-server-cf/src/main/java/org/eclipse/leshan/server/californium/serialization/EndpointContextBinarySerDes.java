@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.serialization;
+
+import static org.eclipse.leshan.server.californium.serialization.BinarySerDesUtil.*;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.eclipse.californium.elements.AddressEndpointContext;
+import org.eclipse.californium.elements.EndpointContext;
+import org.eclipse.californium.elements.MapBasedEndpointContext;
+import org.eclipse.californium.elements.auth.PreSharedKeyIdentity;
+import org.eclipse.californium.elements.auth.RawPublicKeyIdentity;
+import org.eclipse.californium.elements.auth.X509CertPath;
+
+/**
+ * Functions for serializing and deserializing a Californium {@link EndpointContext} in a compact binary format.
+ */
+public class EndpointContextBinarySerDes {
+
+    private static final int NO_PRINCIPAL = 0;
+    private static final int PSK = 1;
+    private static final int RPK = 2;
+    private static final int DN = 3;
+
+    public static void serialize(EndpointContext context, DataOutput out) throws IOException {
+        writeSocketAddress(out, context.getPeerAddress());
+
+        Principal principal = context.getPeerIdentity();
+        if (principal instanceof PreSharedKeyIdentity) {
+            out.writeByte(PSK);
+            writeString(out, ((PreSharedKeyIdentity) principal).getIdentity());
+        } else if (principal instanceof RawPublicKeyIdentity) {
+            out.writeByte(RPK);
+            PublicKey publicKey = ((RawPublicKeyIdentity) principal).getKey();
+            writeString(out, publicKey.getAlgorithm());
+            writeBytes(out, publicKey.getEncoded());
+        } else if (principal instanceof X500Principal || principal instanceof X509CertPath) {
+            out.writeByte(DN);
+            writeString(out, principal.getName());
+        } else {
+            out.writeByte(NO_PRINCIPAL);
+        }
+
+        // copy the attributes
+        Map<String, String> attributes = context.entries();
+        writeVarInt(out, attributes.size());
+        for (Entry<String, String> attribute : attributes.entrySet()) {
+            writeString(out, attribute.getKey());
+            writeString(out, attribute.getValue());
+        }
+    }
+
+    public static EndpointContext deserialize(DataInput in) throws IOException {
+        InetSocketAddress socketAddress = readSocketAddress(in);
+
+        Principal principal = null;
+        int principalType = in.readUnsignedByte();
+        switch (principalType) {
+        case NO_PRINCIPAL:
+            break;
+        case PSK:
+            principal = new PreSharedKeyIdentity(readString(in));
+            break;
+        case RPK:
+            String algorithm = readString(in);
+            byte[] encodedKey = readBytes(in);
+            try {
+                PublicKey publicKey = KeyFactory.getInstance(algorithm)
+                        .generatePublic(new X509EncodedKeySpec(encodedKey));
+                principal = new RawPublicKeyIdentity(publicKey);
+            } catch (InvalidKeySpecException | NoSuchAlgorithmException e) {
+                throw new IOException("Invalid raw public key", e);
+            }
+            break;
+        case DN:
+            principal = new X500Principal(readString(in));
+            break;
+        default:
+            throw new IOException("Unknown principal type : " + principalType);
+        }
+
+        int nbAttributes = readVarInt(in);
+        if (nbAttributes == 0) {
+            return new AddressEndpointContext(socketAddress, principal);
+        }
+        String[] attributes = new String[nbAttributes * 2];
+        for (int i = 0; i < attributes.length; i++) {
+            attributes[i] = readString(in);
+        }
+        return new MapBasedEndpointContext(socketAddress, principal, attributes);
+    }
+}
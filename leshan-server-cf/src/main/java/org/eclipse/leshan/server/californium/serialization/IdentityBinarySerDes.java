@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.serialization;
+
+import static org.eclipse.leshan.server.californium.serialization.BinarySerDesUtil.*;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+
+import org.eclipse.leshan.core.request.Identity;
+
+/**
+ * Functions for serializing and deserializing an {@link Identity} in a compact binary format.
+ */
+public class IdentityBinarySerDes {
+
+    private static final int UNSECURE = 0;
+    private static final int PSK = 1;
+    private static final int RPK = 2;
+    private static final int X509 = 3;
+
+    public static void serialize(Identity identity, DataOutput out) throws IOException {
+        if (identity.isPSK()) {
+            out.writeByte(PSK);
+            writeSocketAddress(out, identity.getPeerAddress());
+            writeString(out, identity.getPskIdentity());
+        } else if (identity.isRPK()) {
+            out.writeByte(RPK);
+            writeSocketAddress(out, identity.getPeerAddress());
+            PublicKey publicKey = identity.getRawPublicKey();
+            writeString(out, publicKey.getAlgorithm());
+            writeBytes(out, publicKey.getEncoded());
+        } else if (identity.isX509()) {
+            out.writeByte(X509);
+            writeSocketAddress(out, identity.getPeerAddress());
+            writeString(out, identity.getX509CommonName());
+        } else {
+            out.writeByte(UNSECURE);
+            writeSocketAddress(out, identity.getPeerAddress());
+        }
+    }
+
+    public static Identity deserialize(DataInput in) throws IOException {
+        int type = in.readUnsignedByte();
+        InetSocketAddress address = readSocketAddress(in);
+        switch (type) {
+        case UNSECURE:
+            return Identity.unsecure(address);
+        case PSK:
+            return Identity.psk(address, readString(in));
+        case RPK:
+            String algorithm = readString(in);
+            byte[] encodedKey = readBytes(in);
+            try {
+                PublicKey publicKey = KeyFactory.getInstance(algorithm)
+                        .generatePublic(new X509EncodedKeySpec(encodedKey));
+                return Identity.rpk(address, publicKey);
+            } catch (InvalidKeySpecException | NoSuchAlgorithmException e) {
+                throw new IOException("Invalid raw public key", e);
+            }
+        case X509:
+            return Identity.x509(address, readString(in));
+        default:
+            throw new IOException("Unknown identity type : " + type);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.serialization;
+
+import static org.eclipse.leshan.server.californium.serialization.BinarySerDesUtil.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.serialization.DataParser;
+import org.eclipse.californium.core.network.serialization.DataSerializer;
+import org.eclipse.californium.core.network.serialization.UdpDataParser;
+import org.eclipse.californium.core.network.serialization.UdpDataSerializer;
+import org.eclipse.californium.core.observe.Observation;
+import org.eclipse.californium.elements.EndpointContext;
+
+/**
+ * Functions for serializing and deserializing a Californium {@link Observation} in a compact binary format.
+ * <p>
+ * The embedded CoAP request is serialized using the Californium network serialization (see {@link UdpDataParser} and
+ * {@link UdpDataSerializer}).
+ */
+public class ObservationBinarySerDes {
+
+    /**
+     * First byte of a serialized observation. This allows to distinguish this format from other ones (e.g. JSON).
+     */
+    public static final byte VERSION = 1;
+
+    private static final DataSerializer serializer = new UdpDataSerializer();
+    private static final DataParser parser = new UdpDataParser();
+
+    public static void serialize(Observation obs, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        writeBytes(out, serializer.serializeRequest(obs.getRequest()).bytes);
+        if (obs.getContext() != null)
+            EndpointContextBinarySerDes.serialize(obs.getContext(), out);
+        else
+            EndpointContextBinarySerDes.serialize(obs.getRequest().getDestinationContext(), out);
+        Map<String, String> userContext = obs.getRequest().getUserContext();
+        writeStringMap(out, userContext != null ? userContext : Collections.<String, String> emptyMap());
+    }
+
+    public static byte[] serialize(Observation obs) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            serialize(obs, new DataOutputStream(bytes));
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // should not happened with in memory stream
+            throw new IllegalStateException("Unable to serialize observation", e);
+        }
+    }
+
+    public static Observation deserialize(DataInput in) throws IOException {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported observation format version : " + version);
+        }
+        Request request = (Request) parser.parseMessage(readBytes(in));
+        EndpointContext endpointContext = EndpointContextBinarySerDes.deserialize(in);
+        request.setDestinationContext(endpointContext);
+        request.setUserContext(readStringMap(in));
+
+        return new Observation(request, endpointContext);
+    }
+
+    public static Observation deserialize(byte[] data) {
+        try {
+            return deserialize(new DataInputStream(new ByteArrayInputStream(data)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid binary observation", e);
+        }
+    }
+}
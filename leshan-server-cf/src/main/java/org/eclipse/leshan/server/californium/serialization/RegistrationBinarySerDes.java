@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.serialization;
+
+import static org.eclipse.leshan.server.californium.serialization.BinarySerDesUtil.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.leshan.core.Link;
+import org.eclipse.leshan.core.request.BindingMode;
+import org.eclipse.leshan.server.registration.Registration;
+
+/**
+ * Functions for serializing and deserializing a {@link Registration} in a compact binary format.
+ * <p>
+ * Numbers are encoded as varint, addresses in their raw form and well-known link attribute names are replaced by a
+ * 1 byte index.
+ */
+public class RegistrationBinarySerDes {
+
+    /**
+     * First byte of a serialized registration. This allows to distinguish this format from other ones (e.g. JSON).
+     */
+    public static final byte VERSION = 1;
+
+    // Link attributes commonly used in LWM2M registration payload. As this is part of the binary format, this list
+    // must only be extended by appending new values at the end.
+    private static final String[] KNOWN_ATTRIBUTES = { "ver", "rt", "ct", "pmin", "pmax", "gt", "lt", "st", "obs",
+                            "if", "title", "dim", "epmin", "epmax" };
+    private static final Map<String, Integer> KNOWN_ATTRIBUTES_INDEX = new HashMap<>();
+    static {
+        for (int i = 0; i < KNOWN_ATTRIBUTES.length; i++) {
+            KNOWN_ATTRIBUTES_INDEX.put(KNOWN_ATTRIBUTES[i], i + 1);
+        }
+    }
+
+    public static void serialize(Registration r, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        writeString(out, r.getId());
+        writeString(out, r.getEndpoint());
+        IdentityBinarySerDes.serialize(r.getIdentity(), out);
+        writeVarLong(out, r.getLifeTimeInSec());
+        writeNullableString(out, r.getSmsNumber());
+        writeString(out, r.getLwM2mVersion());
+        writeString(out, r.getBindingMode().name());
+        writeVarLong(out, r.getRegistrationDate().getTime());
+        writeVarLong(out, r.getLastUpdate().getTime());
+
+        Link[] links = r.getObjectLinks();
+        if (links == null) {
+            writeVarInt(out, 0);
+        } else {
+            // number of links is shifted by one, 0 meaning null
+            writeVarInt(out, links.length + 1);
+            for (Link link : links) {
+                writeString(out, link.getUrl());
+                writeVarInt(out, link.getAttributes().size());
+                for (Entry<String, String> attribute : link.getAttributes().entrySet()) {
+                    Integer index = KNOWN_ATTRIBUTES_INDEX.get(attribute.getKey());
+                    if (index != null) {
+                        writeVarInt(out, index);
+                    } else {
+                        writeVarInt(out, 0);
+                        writeString(out, attribute.getKey());
+                    }
+                    writeNullableString(out, attribute.getValue());
+                }
+            }
+        }
+        writeStringMap(out, r.getAdditionalRegistrationAttributes());
+    }
+
+    public static byte[] serialize(Registration r) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            serialize(r, new DataOutputStream(bytes));
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // should not happened with in memory stream
+            throw new IllegalStateException("Unable to serialize registration", e);
+        }
+    }
+
+    public static Registration deserialize(DataInput in) throws IOException {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported registration format version : " + version);
+        }
+        String id = readString(in);
+        String endpoint = readString(in);
+        Registration.Builder b = new Registration.Builder(id, endpoint, IdentityBinarySerDes.deserialize(in));
+        b.lifeTimeInSec(readVarLong(in));
+        b.smsNumber(readNullableString(in));
+        b.lwM2mVersion(readString(in));
+        b.bindingMode(BindingMode.valueOf(readString(in)));
+        b.registrationDate(new Date(readVarLong(in)));
+        b.lastUpdate(new Date(readVarLong(in)));
+
+        int nbLinks = readVarInt(in);
+        if (nbLinks > 0) {
+            Link[] links = new Link[nbLinks - 1];
+            for (int i = 0; i < links.length; i++) {
+                String url = readString(in);
+                int nbAttributes = readVarInt(in);
+                Map<String, String> attributes = new HashMap<>();
+                for (int j = 0; j < nbAttributes; j++) {
+                    int index = readVarInt(in);
+                    String key;
+                    if (index == 0) {
+                        key = readString(in);
+                    } else if (index <= KNOWN_ATTRIBUTES.length) {
+                        key = KNOWN_ATTRIBUTES[index - 1];
+                    } else {
+                        throw new IOException("Unknown link attribute index : " + index);
+                    }
+                    attributes.put(key, readNullableString(in));
+                }
+                links[i] = new Link(url, attributes);
+            }
+            b.objectLinks(links);
+        }
+        b.additionalRegistrationAttributes(readStringMap(in));
+
+        return b.build();
+    }
+
+    public static Registration deserialize(byte[] data) {
+        try {
+            return deserialize(new DataInputStream(new ByteArrayInputStream(data)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid binary registration", e);
+        }
+    }
+}
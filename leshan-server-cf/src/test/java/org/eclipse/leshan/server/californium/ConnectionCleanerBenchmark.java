@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.Principal;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.eclipse.californium.elements.auth.PreSharedKeyIdentity;
+import org.eclipse.californium.elements.auth.RawPublicKeyIdentity;
+import org.eclipse.californium.elements.util.LeastRecentlyUsedCache.Predicate;
+import org.eclipse.leshan.core.californium.EndpointContextUtil;
+import org.eclipse.leshan.server.security.SecurityInfo;
+
+/**
+ * Compares the time needed to check all connections of a DTLS connection store when security info are revoked, with
+ * the former predicate (iterating over all security info for each connection) and with
+ * {@link ConnectionCleaner.PrincipalMatcher}.
+ * <p>
+ * Connections are simulated by their principal : 80% PSK, 10% RPK and 10% X.509.
+ * <p>
+ * This is not a unit test, launch it manually with :
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=org.eclipse.leshan.server.californium.ConnectionCleanerBenchmark \
+ *   -Dexec.args="[nbConnections] [nbRevokedInfos...]"
+ * </pre>
+ */
+public class ConnectionCleanerBenchmark {
+
+    public static void main(String[] args) throws GeneralSecurityException {
+        int nbConnections = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        List<Integer> nbRevoked = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            nbRevoked.add(Integer.parseInt(args[i]));
+        }
+        if (nbRevoked.isEmpty()) {
+            nbRevoked.addAll(Arrays.asList(1, 10, 100, 1000));
+        }
+
+        // create connections principals and matching security info
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        List<Principal> principals = new ArrayList<>(nbConnections);
+        List<SecurityInfo> infos = new ArrayList<>(nbConnections);
+        for (int i = 0; i < nbConnections; i++) {
+            String endpoint = "urn:imei:" + i;
+            switch (i % 10) {
+            case 0:
+                PublicKey publicKey = generator.generateKeyPair().getPublic();
+                principals.add(new RawPublicKeyIdentity(publicKey));
+                infos.add(SecurityInfo.newRawPublicKeyInfo(endpoint, publicKey));
+                break;
+            case 1:
+                principals.add(new X500Principal("CN=" + endpoint));
+                infos.add(SecurityInfo.newX509CertInfo(endpoint));
+                break;
+            default:
+                principals.add(new PreSharedKeyIdentity("identity" + i));
+                infos.add(SecurityInfo.newPreSharedKeyInfo(endpoint, "identity" + i, new byte[] { 1 }));
+            }
+        }
+
+        // first round is used as warm-up
+        for (int round = 0; round < 3; round++) {
+            for (int n : nbRevoked) {
+                // revoke info spread over all connections
+                List<SecurityInfo> revoked = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    revoked.add(infos.get((int) ((long) i * nbConnections / n)));
+                }
+                run("linear predicate", new LinearPredicate(revoked), principals, n);
+                run("PrincipalMatcher", new ConnectionCleaner.PrincipalMatcher(revoked), principals, n);
+            }
+        }
+    }
+
+    private static void run(String name, Predicate<Principal> predicate, List<Principal> principals, int nbRevoked) {
+        long begin = System.nanoTime();
+        int accepted = 0;
+        for (Principal principal : principals) {
+            if (predicate.accept(principal)) {
+                accepted++;
+            }
+        }
+        long duration = System.nanoTime() - begin;
+        System.out.println(String.format("%-20s %,8d connections, %,6d revoked infos : %,10d us (%d terminated)",
+                name, principals.size(), nbRevoked, duration / 1000, accepted));
+    }
+
+    /**
+     * The predicate used by {@link ConnectionCleaner} before security info were indexed.
+     */
+    private static class LinearPredicate implements Predicate<Principal> {
+        private final List<SecurityInfo> infos;
+
+        public LinearPredicate(List<SecurityInfo> infos) {
+            this.infos = infos;
+        }
+
+        @Override
+        public boolean accept(Principal principal) {
+            for (SecurityInfo info : infos) {
+                if (info.usePSK() && principal instanceof PreSharedKeyIdentity) {
+                    if (info.getIdentity().equals(((PreSharedKeyIdentity) principal).getIdentity())) {
+                        return true;
+                    }
+                } else if (info.useRPK() && principal instanceof RawPublicKeyIdentity) {
+                    if (info.getRawPublicKey().equals(((RawPublicKeyIdentity) principal).getKey())) {
+                        return true;
+                    }
+                } else if (info.useX509Cert() && principal instanceof X500Principal) {
+                    if (EndpointContextUtil.extractCN(principal.getName()).equals(info.getEndpoint())) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
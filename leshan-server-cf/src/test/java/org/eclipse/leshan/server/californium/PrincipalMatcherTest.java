@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.Principal;
+import java.security.PublicKey;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.eclipse.californium.elements.auth.PreSharedKeyIdentity;
+import org.eclipse.californium.elements.auth.RawPublicKeyIdentity;
+import org.eclipse.californium.elements.auth.X509CertPath;
+import org.eclipse.leshan.core.util.Base64;
+import org.eclipse.leshan.server.californium.ConnectionCleaner.PrincipalMatcher;
+import org.eclipse.leshan.server.security.SecurityInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrincipalMatcherTest {
+
+    // self-signed certificate with "CN=x509-endpoint" as subject
+    private static final String X509_CERTIFICATE = //
+            "MIIBhzCCAS2gAwIBAgIUKY6r1H74E5nF7FDMV60KmKkXeO8wCgYIKoZIzj0EAwIwGDEWMBQGA1UEAwwNeDUwOS1lbmRwb2lu"
+            + "dDAgFw0yNjEwMTcwMTAxMzJaGA8yMTI2MDkyMzAxMDEzMlowGDEWMBQGA1UEAwwNeDUwOS1lbmRwb2ludDBZMBMGByqGSM49"
+            + "AgEGCCqGSM49AwEHA0IABJhlgcR6ziRJycCL1AfcEokCzNj7zKvCtlqq2OaZTOni8i73YFlAzwZLsVXE5t4lpQUWOiyQxeoJ"
+            + "WPKoSStpVcKjUzBRMB0GA1UdDgQWBBR8Ivh17YwhA1BsCUMhN+oCGJ7w9DAfBgNVHSMEGDAWgBR8Ivh17YwhA1BsCUMhN+oC"
+            + "GJ7w9DAPBgNVHRMBAf8EBTADAQH/MAoGCCqGSM49BAMCA0gAMEUCIEaTe/VGIQfzN98geUXWpZBMgVFW7J2zeeyK+Mc8UDyY"
+            + "AiEAjIKO9gBi40B7SFgIOTJJfHILg7uI/EY/zir/MwpMSuo=";
+
+    private PublicKey publicKey;
+    private PublicKey otherPublicKey;
+
+    @Before
+    public void generateKeys() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        publicKey = generator.generateKeyPair().getPublic();
+        otherPublicKey = generator.generateKeyPair().getPublic();
+    }
+
+    @Test
+    public void accept_psk_identity_of_revoked_info() {
+        PrincipalMatcher matcher = givenAMatcher(
+                SecurityInfo.newPreSharedKeyInfo("psk-endpoint", "psk-identity", new byte[] { 1 }));
+
+        assertTrue(matcher.accept(new PreSharedKeyIdentity("psk-identity")));
+        assertFalse(matcher.accept(new PreSharedKeyIdentity("other-identity")));
+    }
+
+    @Test
+    public void accept_raw_public_key_of_revoked_info() {
+        PrincipalMatcher matcher = givenAMatcher(SecurityInfo.newRawPublicKeyInfo("rpk-endpoint", publicKey));
+
+        assertTrue(matcher.accept(new RawPublicKeyIdentity(publicKey)));
+        assertFalse(matcher.accept(new RawPublicKeyIdentity(otherPublicKey)));
+    }
+
+    @Test
+    public void accept_x500_principal_of_revoked_info() {
+        PrincipalMatcher matcher = givenAMatcher(SecurityInfo.newX509CertInfo("x509-endpoint"));
+
+        assertTrue(matcher.accept(new X500Principal("CN=x509-endpoint, O=Leshan")));
+        assertFalse(matcher.accept(new X500Principal("CN=other-endpoint, O=Leshan")));
+    }
+
+    @Test
+    public void accept_x509_cert_path_of_revoked_info() throws GeneralSecurityException {
+        X509CertPath certPath = X509CertPath.fromCertificatesChain(givenACertificate());
+
+        assertTrue(givenAMatcher(SecurityInfo.newX509CertInfo("x509-endpoint")).accept(certPath));
+        assertFalse(givenAMatcher(SecurityInfo.newX509CertInfo("other-endpoint")).accept(certPath));
+    }
+
+    @Test
+    public void do_not_accept_principal_of_other_security_mode() throws GeneralSecurityException {
+        PrincipalMatcher matcher = givenAMatcher(
+                SecurityInfo.newPreSharedKeyInfo("psk-endpoint", "psk-identity", new byte[] { 1 }),
+                SecurityInfo.newRawPublicKeyInfo("rpk-endpoint", publicKey));
+        assertFalse(matcher.isEmpty());
+
+        // no x509 info revoked, even if CN matches an endpoint or a PSK identity
+        assertFalse(matcher.accept(new X500Principal("CN=psk-endpoint")));
+        assertFalse(matcher.accept(new X500Principal("CN=psk-identity")));
+        assertFalse(matcher.accept(X509CertPath.fromCertificatesChain(givenACertificate())));
+        // PSK identity equals to an endpoint name
+        assertFalse(matcher.accept(new PreSharedKeyIdentity("rpk-endpoint")));
+        // unknown principal type
+        assertFalse(matcher.accept(new Principal() {
+            @Override
+            public String getName() {
+                return "psk-identity";
+            }
+        }));
+    }
+
+    @Test
+    public void matcher_of_no_info_is_empty() {
+        PrincipalMatcher matcher = new PrincipalMatcher(Collections.<SecurityInfo> singletonList(null));
+
+        assertTrue(matcher.isEmpty());
+        assertFalse(matcher.accept(new PreSharedKeyIdentity("psk-identity")));
+        assertFalse(matcher.accept(new RawPublicKeyIdentity(publicKey)));
+        assertFalse(matcher.accept(new X500Principal("CN=x509-endpoint")));
+    }
+
+    private PrincipalMatcher givenAMatcher(SecurityInfo... infos) {
+        return new PrincipalMatcher(Arrays.asList(infos));
+    }
+
+    private X509Certificate givenACertificate() throws GeneralSecurityException {
+        CertificateFactory factory = CertificateFactory.getInstance("X.509");
+        return (X509Certificate) factory
+                .generateCertificate(new ByteArrayInputStream(Base64.decodeBase64(X509_CERTIFICATE)));
+    }
+}
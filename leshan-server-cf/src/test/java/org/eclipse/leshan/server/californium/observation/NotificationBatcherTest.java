@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.observation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.leshan.core.observation.Observation;
+import org.eclipse.leshan.core.response.ObserveResponse;
+import org.eclipse.leshan.server.californium.observation.NotificationPipeline.OverflowPolicy;
+import org.eclipse.leshan.server.observation.BatchObservationListener;
+import org.eclipse.leshan.server.observation.ObservationListener;
+import org.eclipse.leshan.server.observation.ObservationNotification;
+import org.eclipse.leshan.server.registration.Registration;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NotificationBatcherTest {
+
+    @Test
+    public void batches_are_dropped_when_delivery_queue_is_full() throws InterruptedException {
+        NotificationBatcher batcher = new NotificationBatcher(1, 1, TimeUnit.SECONDS, 1, OverflowPolicy.DROP);
+        BlockingListener listener = new BlockingListener();
+        batcher.setListeners(Collections.<ObservationListener> singletonList(listener));
+        try {
+            // first batch is being delivered, second one is queued, third one is dropped
+            batcher.add(new ObservationNotification(null, null, null));
+            Assert.assertTrue(listener.deliveryStarted.await(5, TimeUnit.SECONDS));
+            batcher.add(new ObservationNotification(null, null, null));
+            batcher.add(new ObservationNotification(null, null, null));
+
+            Assert.assertEquals(1, batcher.getPendingBatches());
+            Assert.assertEquals(1, batcher.getDroppedCount());
+        } finally {
+            listener.release.countDown();
+            batcher.destroy();
+        }
+    }
+
+    private static class BlockingListener implements BatchObservationListener {
+        final CountDownLatch deliveryStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void onResponses(List<ObservationNotification> notifications) {
+            deliveryStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void newObservation(Observation observation, Registration registration) {
+        }
+
+        @Override
+        public void cancelled(Observation observation) {
+        }
+
+        @Override
+        public void onResponse(Observation observation, Registration registration, ObserveResponse response) {
+        }
+
+        @Override
+        public void onError(Observation observation, Registration registration, Exception error) {
+        }
+    }
+}
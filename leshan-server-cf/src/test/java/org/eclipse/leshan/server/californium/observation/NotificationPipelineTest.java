@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.observation;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.leshan.server.californium.observation.NotificationPipeline.OverflowPolicy;
+import org.eclipse.leshan.server.californium.observation.NotificationPipeline.Stage;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NotificationPipelineTest {
+
+    @Test
+    public void worker_survives_an_error() throws InterruptedException {
+        NotificationPipeline pipeline = new NotificationPipeline(1, 1, OverflowPolicy.BLOCK);
+        try {
+            pipeline.submit(Stage.DELIVERY, "ep", new Runnable() {
+                @Override
+                public void run() {
+                    throw new AssertionError("error raised by a listener");
+                }
+            });
+            final CountDownLatch executed = new CountDownLatch(1);
+            pipeline.submit(Stage.DELIVERY, "ep", new Runnable() {
+                @Override
+                public void run() {
+                    executed.countDown();
+                }
+            });
+
+            Assert.assertTrue(executed.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, pipeline.getDroppedCount(Stage.DELIVERY));
+        } finally {
+            pipeline.destroy();
+        }
+    }
+}
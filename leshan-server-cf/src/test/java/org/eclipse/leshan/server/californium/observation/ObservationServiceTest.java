@@ -17,20 +17,40 @@ package org.eclipse.leshan.server.californium.observation;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
 import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Response;
+import org.eclipse.leshan.core.Link;
 import org.eclipse.leshan.core.californium.EndpointContextUtil;
 import org.eclipse.leshan.core.node.LwM2mPath;
+import org.eclipse.leshan.core.node.LwM2mResource;
+import org.eclipse.leshan.core.node.TimestampedLwM2mNode;
 import org.eclipse.leshan.core.node.codec.DefaultLwM2mNodeDecoder;
 import org.eclipse.leshan.core.observation.Observation;
+import org.eclipse.leshan.core.request.ContentFormat;
 import org.eclipse.leshan.core.request.Identity;
 import org.eclipse.leshan.core.request.ObserveRequest;
+import org.eclipse.leshan.core.request.exception.InvalidResponseException;
+import org.eclipse.leshan.core.response.ObserveResponse;
 import org.eclipse.leshan.server.californium.CaliforniumTestSupport;
+import org.eclipse.leshan.server.californium.observation.NotificationPipeline.OverflowPolicy;
+import org.eclipse.leshan.server.californium.observation.NotificationPipeline.Stage;
 import org.eclipse.leshan.server.californium.registration.CaliforniumRegistrationStore;
 import org.eclipse.leshan.server.californium.registration.InMemoryRegistrationStore;
 import org.eclipse.leshan.server.model.StandardModelProvider;
+import org.eclipse.leshan.server.observation.BatchObservationListener;
+import org.eclipse.leshan.server.observation.ObservationListener;
+import org.eclipse.leshan.server.observation.ObservationNotification;
+import org.eclipse.leshan.server.observation.RawPayloadObservationListener;
 import org.eclipse.leshan.server.registration.Registration;
 import org.junit.Assert;
 import org.junit.Before;
@@ -127,6 +147,206 @@ public class ObservationServiceTest {
         Assert.assertEquals(1, observations.size());
     }
 
+    @Test
+    public void notification_is_decoded_before_calling_listeners() {
+        Observation observation = givenAnObservation(support.registration.getId(), new LwM2mPath(3, 0, 1));
+        RecordingListener listener = new RecordingListener();
+        observationService.addListener(listener);
+
+        observationService.onNotification(coapRequest, givenANotification(ContentFormat.TEXT, "model"));
+
+        Assert.assertEquals(observation, listener.response.getObservation());
+        Assert.assertTrue(listener.response.isContentDecoded());
+        Assert.assertEquals("model", ((LwM2mResource) listener.response.getContent()).getValue());
+    }
+
+    @Test
+    public void notification_is_not_decoded_for_raw_payload_listeners() {
+        givenAnObservation(support.registration.getId(), new LwM2mPath(3, 0, 1));
+        RecordingListener listener = new RawPayloadRecordingListener();
+        observationService.addListener(listener);
+
+        observationService.onNotification(coapRequest, givenANotification(ContentFormat.TEXT, "model"));
+
+        Assert.assertFalse(listener.response.isContentDecoded());
+        Assert.assertEquals("model", ((Response) listener.response.getCoapResponse()).getPayloadString());
+
+        // content is decoded on first access
+        Assert.assertEquals("model", ((LwM2mResource) listener.response.getContent()).getValue());
+        Assert.assertTrue(listener.response.isContentDecoded());
+    }
+
+    @Test
+    public void malformed_notification_decoded_on_demand() {
+        givenAnObservation(support.registration.getId(), new LwM2mPath(3, 0, 1));
+        observationService.setDecodeNotificationOnDemand(true);
+        RecordingListener listener = new RecordingListener();
+        observationService.addListener(listener);
+
+        observationService.onNotification(coapRequest, givenANotification(ContentFormat.JSON, "{\"e\":"));
+
+        Assert.assertNull(listener.error);
+        try {
+            listener.response.getContent();
+            Assert.fail("InvalidResponseException expected");
+        } catch (InvalidResponseException e) {
+            Assert.assertFalse(listener.response.isContentDecoded());
+        }
+    }
+
+    @Test
+    public void timestamped_notification_iterated_on_demand() {
+        givenAnObservation(support.registration.getId(), new LwM2mPath(3, 0, 1));
+        observationService.setDecodeNotificationOnDemand(true);
+        RecordingListener listener = new RecordingListener();
+        observationService.addListener(listener);
+
+        observationService.onNotification(coapRequest, givenANotification(ContentFormat.JSON,
+                "{\"bn\":\"/3/0/1\",\"e\":[{\"sv\":\"a\",\"t\":10},{\"sv\":\"b\",\"t\":20}]}"));
+
+        Iterator<TimestampedLwM2mNode> nodes = listener.response.iterateTimestampedLwM2mNode();
+        Assert.assertEquals(Long.valueOf(10), nodes.next().getTimestamp());
+        Assert.assertEquals("b", ((LwM2mResource) nodes.next().getNode()).getValue());
+        Assert.assertFalse(nodes.hasNext());
+        Assert.assertFalse(listener.response.isContentDecoded());
+    }
+
+    @Test
+    public void notifications_delivered_in_order_by_pipeline() throws InterruptedException {
+        givenAnObservation(support.registration.getId(), new LwM2mPath(3, 0, 1));
+        NotificationPipeline pipeline = new NotificationPipeline(2, 10, OverflowPolicy.BLOCK);
+        observationService = new ObservationServiceImpl(store, new StandardModelProvider(),
+                new DefaultLwM2mNodeDecoder(), false, pipeline, null);
+        final CountDownLatch delivered = new CountDownLatch(3);
+        final List<String> values = new ArrayList<>();
+        final List<String> threads = new ArrayList<>();
+        observationService.addListener(new RecordingListener() {
+            @Override
+            public void onResponse(Observation observation, Registration registration, ObserveResponse response) {
+                values.add((String) ((LwM2mResource) response.getContent()).getValue());
+                threads.add(Thread.currentThread().getName());
+                delivered.countDown();
+            }
+        });
+
+        try {
+            observationService.onNotification(coapRequest, givenANotification(ContentFormat.TEXT, "a"));
+            observationService.onNotification(coapRequest, givenANotification(ContentFormat.TEXT, "b"));
+            observationService.onNotification(coapRequest, givenANotification(ContentFormat.TEXT, "c"));
+
+            Assert.assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(3, values.size());
+            Assert.assertEquals("a", values.get(0));
+            Assert.assertEquals("b", values.get(1));
+            Assert.assertEquals("c", values.get(2));
+            Assert.assertTrue(threads.get(0).startsWith("Leshan Notification delivery"));
+            Assert.assertEquals(0, pipeline.getDroppedCount(Stage.STORE));
+            Assert.assertEquals(0, pipeline.getDroppedCount(Stage.DELIVERY));
+        } finally {
+            observationService.destroy();
+        }
+    }
+
+    @Test
+    public void batch_listener_without_batcher_receives_batches_of_one() {
+        givenAnObservation(support.registration.getId(), new LwM2mPath(3, 0, 1));
+        BatchRecordingListener batchListener = new BatchRecordingListener(1);
+        RecordingListener listener = new RecordingListener();
+        observationService.addListener(batchListener);
+        observationService.addListener(listener);
+
+        observationService.onNotification(coapRequest, givenANotification(ContentFormat.TEXT, "a"));
+
+        Assert.assertNull(batchListener.response);
+        Assert.assertEquals(1, batchListener.batches.size());
+        Assert.assertEquals("a", batchListener.values(0).get(0));
+        Assert.assertNotNull(listener.response);
+    }
+
+    @Test
+    public void batches_flushed_by_size_then_by_time() throws InterruptedException {
+        givenAnObservation(support.registration.getId(), new LwM2mPath(3, 0, 1));
+        observationService = new ObservationServiceImpl(store, new StandardModelProvider(),
+                new DefaultLwM2mNodeDecoder(), false, null, new NotificationBatcher(2, 50, TimeUnit.MILLISECONDS));
+        BatchRecordingListener listener = new BatchRecordingListener(2);
+        observationService.addListener(listener);
+
+        try {
+            observationService.onNotification(coapRequest, givenANotification(ContentFormat.TEXT, "a"));
+            observationService.onNotification(coapRequest, givenANotification(ContentFormat.TEXT, "b"));
+            observationService.onNotification(coapRequest, givenANotification(ContentFormat.TEXT, "c"));
+
+            Assert.assertTrue(listener.delivered.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(2, listener.batches.size());
+            Assert.assertEquals(2, listener.batches.get(0).size());
+            Assert.assertEquals("a", listener.values(0).get(0));
+            Assert.assertEquals("b", listener.values(0).get(1));
+            Assert.assertEquals(1, listener.batches.get(1).size());
+            Assert.assertEquals("c", listener.values(1).get(0));
+        } finally {
+            observationService.destroy();
+        }
+    }
+
+    private Response givenANotification(ContentFormat format, String payload) {
+        Response response = new Response(ResponseCode.CONTENT);
+        response.setToken(coapRequest.getToken());
+        response.getOptions().setContentFormat(format.getCode());
+        response.getOptions().setObserve(2);
+        response.setPayload(payload);
+        return response;
+    }
+
+    private static class RecordingListener implements ObservationListener {
+        ObserveResponse response;
+        Exception error;
+
+        @Override
+        public void newObservation(Observation observation, Registration registration) {
+        }
+
+        @Override
+        public void cancelled(Observation observation) {
+        }
+
+        @Override
+        public void onResponse(Observation observation, Registration registration, ObserveResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void onError(Observation observation, Registration registration, Exception error) {
+            this.error = error;
+        }
+    }
+
+    private static class RawPayloadRecordingListener extends RecordingListener
+            implements RawPayloadObservationListener {
+    }
+
+    private static class BatchRecordingListener extends RecordingListener implements BatchObservationListener {
+        final List<List<ObservationNotification>> batches = new CopyOnWriteArrayList<>();
+        final CountDownLatch delivered;
+
+        BatchRecordingListener(int expectedBatches) {
+            delivered = new CountDownLatch(expectedBatches);
+        }
+
+        @Override
+        public void onResponses(List<ObservationNotification> notifications) {
+            batches.add(notifications);
+            delivered.countDown();
+        }
+
+        List<String> values(int batch) {
+            List<String> values = new ArrayList<>();
+            for (ObservationNotification notification : batches.get(batch)) {
+                values.add((String) ((LwM2mResource) notification.getResponse().getContent()).getValue());
+            }
+            return values;
+        }
+    }
+
     private Observation givenAnObservation(String registrationId, LwM2mPath target) {
         Registration registration = store.getRegistration(registrationId);
         if (registration == null) {
@@ -159,6 +379,7 @@ public class ObservationServiceTest {
         try {
             builder = new Registration.Builder(registrationId, registrationId + "_ep",
                     Identity.unsecure(InetAddress.getLocalHost(), 10000));
+            builder.objectLinks(Link.parse("</3/0>".getBytes()));
             return builder.build();
         } catch (UnknownHostException e) {
             throw new RuntimeException(e);
@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.registration;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.californium.core.observe.ObservationStoreException;
+import org.eclipse.leshan.core.observation.Observation;
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.core.request.ObserveRequest;
+import org.eclipse.leshan.server.californium.observation.ObserveUtil;
+import org.eclipse.leshan.server.registration.Deregistration;
+import org.eclipse.leshan.server.registration.Registration;
+import org.eclipse.leshan.server.registration.RegistrationUpdate;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentInMemoryRegistrationStoreTest {
+
+    ConcurrentInMemoryRegistrationStore store;
+    InetAddress address;
+    AtomicLong tokenGenerator = new AtomicLong();
+
+    @Before
+    public void setUp() throws Exception {
+        address = InetAddress.getLoopbackAddress();
+        store = new ConcurrentInMemoryRegistrationStore();
+    }
+
+    @Test
+    public void new_registration_replaces_previous_one_and_its_observations() {
+        Registration first = givenARegistration("reg1", "ep", 5683);
+        store.addRegistration(first);
+        Token token = givenAnObservation(first, "/3/0/1");
+
+        Registration second = givenARegistration("reg2", "ep", 5684);
+        Deregistration deregistration = store.addRegistration(second);
+
+        Assert.assertEquals("reg1", deregistration.getRegistration().getId());
+        Assert.assertEquals(1, deregistration.getObservations().size());
+        Assert.assertNull(store.get(token));
+        Assert.assertNull(store.getRegistration("reg1"));
+        Assert.assertNull(store.getRegistrationByAdress(first.getSocketAddress()));
+        Assert.assertEquals("reg2", store.getRegistrationByEndpoint("ep").getId());
+        Assert.assertEquals("reg2", store.getRegistrationByAdress(second.getSocketAddress()).getId());
+    }
+
+    @Test
+    public void registration_added_again_is_still_indexed_for_expiration() {
+        Registration registration = givenARegistration("reg1", "ep", 5683);
+        store.addRegistration(registration);
+        store.addRegistration(registration);
+
+        Assert.assertEquals(1, store.expirationIndex.size());
+    }
+
+    @Test
+    public void remove_registration_removes_its_observations() {
+        Registration registration = givenARegistration("reg1", "ep", 5683);
+        store.addRegistration(registration);
+        givenAnObservation(registration, "/3/0/1");
+        givenAnObservation(registration, "/3/0/2");
+
+        Deregistration deregistration = store.removeRegistration("reg1");
+
+        Assert.assertEquals(2, deregistration.getObservations().size());
+        Assert.assertTrue(store.getObservations("reg1").isEmpty());
+        Assert.assertNull(store.getRegistrationByEndpoint("ep"));
+        Assert.assertNull(store.removeRegistration("reg1"));
+    }
+
+    @Test
+    public void update_registration_moves_address_index() {
+        Registration registration = givenARegistration("reg1", "ep", 5683);
+        store.addRegistration(registration);
+
+        RegistrationUpdate update = new RegistrationUpdate("reg1", Identity.unsecure(address, 5690), null, null, null,
+                null, null);
+        store.updateRegistration(update);
+
+        Assert.assertNull(store.getRegistrationByAdress(registration.getSocketAddress()));
+        Assert.assertEquals("reg1", store.getRegistrationByAdress(new InetSocketAddress(address, 5690)).getId());
+    }
+
+    @Test
+    public void add_observation_cancels_previous_one_on_same_path() {
+        Registration registration = givenARegistration("reg1", "ep", 5683);
+        store.addRegistration(registration);
+        Token first = givenAnObservation(registration, "/3/0/1");
+        Token second = givenAnObservation(registration, "/3/0/1");
+
+        Collection<Observation> removed = store.addObservation("reg1",
+                ObserveUtil.createLwM2mObservation(store.get(second).getRequest()));
+
+        Assert.assertEquals(1, removed.size());
+        Assert.assertArrayEquals(first.getBytes(), removed.iterator().next().getId());
+        Assert.assertEquals(1, store.getObservations("reg1").size());
+    }
+
+    @Test(expected = ObservationStoreException.class)
+    public void observation_without_registration_is_rejected() {
+        Registration registration = givenARegistration("reg1", "ep", 5683);
+        givenAnObservation(registration, "/3/0/1");
+    }
+
+    @Test
+    public void concurrent_registrations_keep_indexes_consistent() throws Exception {
+        final int nbThreads = 8;
+        final int nbRegistrationsPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int t = 0; t < nbThreads; t++) {
+                final int threadId = t;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < nbRegistrationsPerThread; i++) {
+                            // endpoints are shared between threads to create contention
+                            String endpoint = "ep" + i;
+                            Registration registration = givenARegistration(endpoint + "_" + threadId, endpoint,
+                                    10000 + i);
+                            store.addRegistration(registration);
+                            try {
+                                givenAnObservation(registration, "/3/0/1");
+                            } catch (ObservationStoreException e) {
+                                // registration was replaced by another thread in the meantime
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        int count = 0;
+        for (Iterator<Registration> it = store.getAllRegistrations(); it.hasNext();) {
+            Registration registration = it.next();
+            Assert.assertSame(registration, store.getRegistration(registration.getId()));
+            Assert.assertSame(registration, store.getRegistrationByAdress(registration.getSocketAddress()));
+            Assert.assertEquals(1, store.getObservations(registration.getId()).size());
+            count++;
+        }
+        Assert.assertEquals(nbRegistrationsPerThread, count);
+    }
+
+    private Registration givenARegistration(String registrationId, String endpoint, int port) {
+        return new Registration.Builder(registrationId, endpoint, Identity.unsecure(address, port)).build();
+    }
+
+    private Token givenAnObservation(Registration registration, String path) {
+        Request coapRequest = Request.newGet();
+        coapRequest.setToken(ByteBuffer.allocate(8).putLong(tokenGenerator.incrementAndGet()).array());
+        coapRequest.setObserve();
+        Map<String, String> context = ObserveUtil.createCoapObserveRequestContext(registration.getEndpoint(),
+                registration.getId(), new ObserveRequest(path));
+        coapRequest.setUserContext(context);
+        store.put(coapRequest.getToken(), new org.eclipse.californium.core.observe.Observation(coapRequest, null));
+        return coapRequest.getToken();
+    }
+}
@@ -69,6 +69,15 @@ public class InMemoryRegistrationStoreTest {
         Assert.assertEquals(sms, reg.getSmsNumber());
     }
 
+    @Test
+    public void registration_added_again_is_still_indexed_for_expiration() {
+        givenASimpleRegistration(lifetime);
+        store.addRegistration(registration);
+        store.addRegistration(registration);
+
+        Assert.assertEquals(1, ((InMemoryRegistrationStore) store).expirationIndex.size());
+    }
+
     @Test
     public void client_registration_sets_time_to_live() {
         givenASimpleRegistration(lifetime);
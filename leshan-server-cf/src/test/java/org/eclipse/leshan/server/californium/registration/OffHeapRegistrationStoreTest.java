@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.registration;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.leshan.core.Link;
+import org.eclipse.leshan.core.observation.Observation;
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.core.request.ObserveRequest;
+import org.eclipse.leshan.server.californium.CaliforniumTestSupport;
+import org.eclipse.leshan.server.californium.observation.ObserveUtil;
+import org.eclipse.leshan.server.registration.Deregistration;
+import org.eclipse.leshan.server.registration.ExpirationListener;
+import org.eclipse.leshan.server.registration.Registration;
+import org.eclipse.leshan.server.registration.RegistrationUpdate;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapRegistrationStoreTest {
+
+    OffHeapRegistrationStore store;
+    InetAddress address;
+
+    @Before
+    public void setUp() throws Exception {
+        address = InetAddress.getLoopbackAddress();
+        // use small pages to exercise page allocation
+        store = new OffHeapRegistrationStore(Executors.newSingleThreadScheduledExecutor(), 2, 1024);
+    }
+
+    @After
+    public void tearDown() {
+        store.destroy();
+    }
+
+    @Test
+    public void registration_is_materialized_from_off_heap_memory() {
+        Registration registration = new Registration.Builder("reg1", "ep", Identity.unsecure(address, 5683))
+                .objectLinks(Link.parse("</1/0>,</3/0>;ver=\"1.1\",</6>".getBytes())).build();
+        store.addRegistration(registration);
+
+        Registration stored = store.getRegistrationByEndpoint("ep");
+        Assert.assertEquals("reg1", stored.getId());
+        Assert.assertArrayEquals(registration.getObjectLinks(), stored.getObjectLinks());
+        Assert.assertEquals(registration.getSocketAddress(), stored.getSocketAddress());
+        Assert.assertEquals("ep", store.getRegistration("reg1").getEndpoint());
+        Assert.assertEquals("ep", store.getRegistrationByAdress(new InetSocketAddress(address, 5683)).getEndpoint());
+        Assert.assertNull(store.getRegistrationByEndpoint("unknown"));
+    }
+
+    @Test
+    public void new_registration_replaces_previous_one_and_its_observations() {
+        Registration first = givenARegistration("reg1", "ep", 5683);
+        store.addRegistration(first);
+        Token token = givenAnObservation(first, "/3/0/1");
+
+        Registration second = givenARegistration("reg2", "ep", 5684);
+        Deregistration deregistration = store.addRegistration(second);
+
+        Assert.assertEquals("reg1", deregistration.getRegistration().getId());
+        Assert.assertEquals(1, deregistration.getObservations().size());
+        Assert.assertNull(store.get(token));
+        Assert.assertNull(store.getRegistration("reg1"));
+        Assert.assertNull(store.getRegistrationByAdress(first.getSocketAddress()));
+        Assert.assertEquals("reg2", store.getRegistrationByEndpoint("ep").getId());
+        Assert.assertEquals("reg2", store.getRegistrationByAdress(second.getSocketAddress()).getId());
+        Assert.assertEquals(1, store.size());
+    }
+
+    @Test
+    public void update_registration_moves_address_index() {
+        Registration registration = givenARegistration("reg1", "ep", 5683);
+        store.addRegistration(registration);
+
+        RegistrationUpdate update = new RegistrationUpdate("reg1", Identity.unsecure(address, 5690), 120L, null, null,
+                null, null);
+        store.updateRegistration(update);
+
+        Assert.assertNull(store.getRegistrationByAdress(registration.getSocketAddress()));
+        Assert.assertEquals("reg1", store.getRegistrationByAdress(new InetSocketAddress(address, 5690)).getId());
+        Assert.assertEquals(120L, store.getRegistrationByEndpoint("ep").getLifeTimeInSec().longValue());
+    }
+
+    @Test
+    public void remove_registration_removes_its_observations() {
+        Registration registration = givenARegistration("reg1", "ep", 5683);
+        store.addRegistration(registration);
+        givenAnObservation(registration, "/3/0/1");
+
+        Deregistration deregistration = store.removeRegistration("reg1");
+
+        Assert.assertEquals(1, deregistration.getObservations().size());
+        Assert.assertTrue(store.getObservations("reg1").isEmpty());
+        Assert.assertNull(store.getRegistrationByEndpoint("ep"));
+        Assert.assertNull(store.removeRegistration("reg1"));
+        Assert.assertEquals(0, store.size());
+    }
+
+    @Test
+    public void indexes_stay_consistent_after_many_removals_and_compaction() {
+        int nbRegistrations = 5000;
+        for (int i = 0; i < nbRegistrations; i++) {
+            store.addRegistration(givenARegistration("reg" + i, "ep" + i, 10000 + i));
+        }
+        // remove one registration out of 2 to create holes in indexes and dead records
+        for (int i = 0; i < nbRegistrations; i += 2) {
+            Assert.assertNotNull(store.removeRegistration("reg" + i));
+        }
+        long allocatedBeforeCompaction = store.getAllocatedMemory();
+        store.compact();
+        Assert.assertTrue(store.getAllocatedMemory() < allocatedBeforeCompaction);
+
+        for (int i = 0; i < nbRegistrations; i++) {
+            if (i % 2 == 0) {
+                Assert.assertNull(store.getRegistrationByEndpoint("ep" + i));
+                Assert.assertNull(store.getRegistration("reg" + i));
+                Assert.assertNull(store.getRegistrationByAdress(new InetSocketAddress(address, 10000 + i)));
+            } else {
+                Assert.assertEquals("reg" + i, store.getRegistrationByEndpoint("ep" + i).getId());
+                Assert.assertEquals("ep" + i, store.getRegistration("reg" + i).getEndpoint());
+                Assert.assertEquals("ep" + i,
+                        store.getRegistrationByAdress(new InetSocketAddress(address, 10000 + i)).getEndpoint());
+            }
+        }
+        Assert.assertEquals(nbRegistrations / 2, store.size());
+    }
+
+    @Test
+    public void address_index_is_unchanged_by_compaction() {
+        store.addRegistration(givenARegistration("reg1", "ep1", 5683));
+        // reg2 takes over the address binding, then removing it unbinds the address
+        store.addRegistration(givenARegistration("reg2", "ep2", 5683));
+        store.removeRegistration("reg2");
+        InetSocketAddress sharedAddress = new InetSocketAddress(address, 5683);
+        Assert.assertNull(store.getRegistrationByAdress(sharedAddress));
+
+        store.compact();
+
+        Assert.assertNull(store.getRegistrationByAdress(sharedAddress));
+        Assert.assertEquals("reg1", store.getRegistrationByEndpoint("ep1").getId());
+    }
+
+    @Test
+    public void iterator_returns_current_registrations_even_after_compaction() {
+        for (int i = 0; i < 100; i++) {
+            store.addRegistration(givenARegistration("reg" + i, "ep" + i, 10000 + i));
+        }
+        Iterator<Registration> iterator = store.getAllRegistrations();
+        store.removeRegistration("reg50");
+        store.compact();
+
+        Set<String> endpoints = new HashSet<>();
+        while (iterator.hasNext()) {
+            Assert.assertTrue(endpoints.add(iterator.next().getEndpoint()));
+        }
+        Assert.assertEquals(99, endpoints.size());
+        Assert.assertFalse(endpoints.contains("ep50"));
+    }
+
+    @Test
+    public void expired_registration_is_removed_by_cleaner() throws Exception {
+        Registration registration = new Registration.Builder("reg1", "ep", Identity.unsecure(address, 5683))
+                .lastUpdate(new Date(System.currentTimeMillis() - 120_000)).lifeTimeInSec(60L).build();
+        store.addRegistration(registration);
+        final Registration[] expired = new Registration[1];
+        store.setExpirationListener(new ExpirationListener() {
+            @Override
+            public void registrationExpired(Registration registration, Collection<Observation> observations) {
+                synchronized (expired) {
+                    expired[0] = registration;
+                    expired.notifyAll();
+                }
+            }
+        });
+        store.start();
+        synchronized (expired) {
+            expired.wait(5000);
+        }
+
+        Assert.assertNotNull(expired[0]);
+        Assert.assertEquals("reg1", expired[0].getId());
+        Assert.assertNull(store.getRegistrationByEndpoint("ep"));
+    }
+
+    @Test
+    public void updated_registration_is_not_removed_by_cleaner() throws Exception {
+        Registration registration = new Registration.Builder("reg1", "ep", Identity.unsecure(address, 5683))
+                .lastUpdate(new Date(System.currentTimeMillis() - 120_000)).lifeTimeInSec(60L).build();
+        store.addRegistration(registration);
+        // registration update refreshes last update date
+        store.updateRegistration(
+                new RegistrationUpdate("reg1", Identity.unsecure(address, 5683), null, null, null, null, null));
+        final Registration[] expired = new Registration[1];
+        store.setExpirationListener(new ExpirationListener() {
+            @Override
+            public void registrationExpired(Registration registration, Collection<Observation> observations) {
+                expired[0] = registration;
+            }
+        });
+        store.start();
+        Thread.sleep(2500);
+
+        Assert.assertNull(expired[0]);
+        Assert.assertNotNull(store.getRegistrationByEndpoint("ep"));
+    }
+
+    private Registration givenARegistration(String registrationId, String endpoint, int port) {
+        return new Registration.Builder(registrationId, endpoint, Identity.unsecure(address, port)).build();
+    }
+
+    private Token givenAnObservation(Registration registration, String path) {
+        Request coapRequest = Request.newGet();
+        coapRequest.setToken(CaliforniumTestSupport.createToken());
+        coapRequest.setObserve();
+        Map<String, String> context = ObserveUtil.createCoapObserveRequestContext(registration.getEndpoint(),
+                registration.getId(), new ObserveRequest(path));
+        coapRequest.setUserContext(context);
+        store.put(coapRequest.getToken(), new org.eclipse.californium.core.observe.Observation(coapRequest, null));
+        return coapRequest.getToken();
+    }
+}
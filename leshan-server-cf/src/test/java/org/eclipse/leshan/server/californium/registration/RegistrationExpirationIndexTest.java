@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.registration;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.server.registration.Registration;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RegistrationExpirationIndexTest {
+
+    RegistrationExpirationIndex index = new RegistrationExpirationIndex();
+
+    @Test
+    public void poll_only_returns_due_registrations_in_expiration_order() {
+        index.add(givenARegistration("late", 1000, 60));
+        index.add(givenARegistration("second", 1000, 20));
+        index.add(givenARegistration("first", 1000, 10));
+
+        Assert.assertEquals(Collections.emptyList(), index.pollExpired(1000 + 9_999));
+        Assert.assertEquals(Arrays.asList("first", "second"), index.pollExpired(1000 + 20_000));
+        Assert.assertEquals(1, index.size());
+    }
+
+    @Test
+    public void updated_registration_is_reindexed() {
+        Registration registration = givenARegistration("reg", 1000, 10);
+        index.add(registration);
+
+        Registration updated = givenARegistration("reg", 50_000, 10);
+        index.update(registration, updated);
+
+        Assert.assertEquals(Collections.emptyList(), index.pollExpired(1000 + 10_000));
+        Assert.assertEquals(Arrays.asList("reg"), index.pollExpired(50_000 + 10_000));
+    }
+
+    @Test
+    public void removed_registration_is_not_polled() {
+        Registration registration = givenARegistration("reg", 1000, 10);
+        index.add(registration);
+        index.remove(registration);
+
+        Assert.assertEquals(Collections.emptyList(), index.pollExpired(Long.MAX_VALUE - 1));
+        Assert.assertEquals(0, index.size());
+    }
+
+    private Registration givenARegistration(String registrationId, long lastUpdate, long lifetime) {
+        return new Registration.Builder(registrationId, registrationId + "_ep",
+                Identity.unsecure(InetAddress.getLoopbackAddress(), 5683)).lastUpdate(new Date(lastUpdate))
+                        .lifeTimeInSec(lifetime).build();
+    }
+}
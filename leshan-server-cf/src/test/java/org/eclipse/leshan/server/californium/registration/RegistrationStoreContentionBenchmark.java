@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.registration;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.californium.core.observe.ObservationStoreException;
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.core.request.ObserveRequest;
+import org.eclipse.leshan.server.Destroyable;
+import org.eclipse.leshan.server.californium.observation.ObserveUtil;
+import org.eclipse.leshan.server.registration.Registration;
+import org.eclipse.leshan.server.registration.RegistrationUpdate;
+
+/**
+ * A simple contention benchmark comparing {@link InMemoryRegistrationStore} and
+ * {@link ConcurrentInMemoryRegistrationStore}.
+ * <p>
+ * Each thread simulates a registration storm : it registers devices, updates them, adds observations and looks up the
+ * observation and registration as done when a notification is received.
+ * <p>
+ * This is not a unit test, launch it manually with :
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=org.eclipse.leshan.server.californium.registration.RegistrationStoreContentionBenchmark \
+ *   -Dexec.args="[nbThreads] [nbOperationsPerThread]"
+ * </pre>
+ */
+public class RegistrationStoreContentionBenchmark {
+
+    private static final int NB_ENDPOINTS = 100_000;
+
+    private final AtomicLong tokenGenerator = new AtomicLong();
+    private final InetAddress address = InetAddress.getLoopbackAddress();
+
+    public static void main(String[] args) throws Exception {
+        int nbThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int nbOperations = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+        RegistrationStoreContentionBenchmark benchmark = new RegistrationStoreContentionBenchmark();
+        // first round is used as warm-up
+        for (int round = 0; round < 3; round++) {
+            benchmark.run("InMemoryRegistrationStore", new InMemoryRegistrationStore(), nbThreads, nbOperations);
+            benchmark.run("ConcurrentInMemoryRegistrationStore", new ConcurrentInMemoryRegistrationStore(), nbThreads,
+                    nbOperations);
+        }
+    }
+
+    public void run(String name, final CaliforniumRegistrationStore store, int nbThreads, final int nbOperations)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> results = new ArrayList<>();
+        for (int t = 0; t < nbThreads; t++) {
+            results.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    for (int i = 0; i < nbOperations; i++) {
+                        doOperation(store, i);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<Void> result : results) {
+            result.get();
+        }
+        long duration = System.nanoTime() - begin;
+        executor.shutdown();
+        if (store instanceof Destroyable) {
+            ((Destroyable) store).destroy();
+        }
+
+        long totalOperations = (long) nbThreads * nbOperations;
+        System.out.println(String.format("%-40s %2d threads : %,12d ops/s", name, nbThreads,
+                totalOperations * 1_000_000_000L / duration));
+    }
+
+    private void doOperation(CaliforniumRegistrationStore store, int i) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String endpoint = "urn:imei:" + random.nextInt(NB_ENDPOINTS);
+
+        switch (i % 4) {
+        case 0:
+            // register
+            Registration registration = new Registration.Builder(Long.toString(random.nextLong()), endpoint,
+                    Identity.unsecure(address, random.nextInt(1, 65535))).build();
+            store.addRegistration(registration);
+            break;
+        case 1:
+            // update
+            Registration toUpdate = store.getRegistrationByEndpoint(endpoint);
+            if (toUpdate != null) {
+                store.updateRegistration(new RegistrationUpdate(toUpdate.getId(), toUpdate.getIdentity(), null, null,
+                        null, null, null));
+            }
+            break;
+        case 2:
+            // observe
+            Registration toObserve = store.getRegistrationByEndpoint(endpoint);
+            if (toObserve != null) {
+                addObservation(store, toObserve);
+            }
+            break;
+        default:
+            // notification
+            Registration observed = store.getRegistrationByEndpoint(endpoint);
+            if (observed != null) {
+                for (org.eclipse.leshan.core.observation.Observation obs : store.getObservations(observed.getId())) {
+                    store.get(new Token(obs.getId()));
+                    store.getRegistration(obs.getRegistrationId());
+                }
+            }
+            break;
+        }
+    }
+
+    private void addObservation(CaliforniumRegistrationStore store, Registration registration) {
+        Request coapRequest = Request.newGet();
+        coapRequest.setToken(ByteBuffer.allocate(8).putLong(tokenGenerator.incrementAndGet()).array());
+        coapRequest.setObserve();
+        ObserveRequest observeRequest = new ObserveRequest("/3/0/13");
+        Map<String, String> context = ObserveUtil.createCoapObserveRequestContext(registration.getEndpoint(),
+                registration.getId(), observeRequest);
+        coapRequest.setUserContext(context);
+        try {
+            store.put(coapRequest.getToken(), new org.eclipse.californium.core.observe.Observation(coapRequest, null));
+            store.addObservation(registration.getId(), ObserveUtil.createLwM2mObservation(coapRequest));
+        } catch (ObservationStoreException e) {
+            // registration was removed concurrently
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.registration;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.core.request.ObserveRequest;
+import org.eclipse.leshan.server.californium.observation.ObserveUtil;
+import org.eclipse.leshan.server.registration.Registration;
+import org.eclipse.leshan.server.registration.RegistrationUpdate;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RegistrationStoreJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    InMemoryRegistrationStore store;
+    InetAddress address = InetAddress.getLoopbackAddress();
+
+    @After
+    public void tearDown() {
+        if (store != null) {
+            store.destroy();
+        }
+    }
+
+    @Test
+    public void registrations_and_observations_are_recovered_after_restart() throws Exception {
+        File directory = folder.getRoot();
+        store = givenAStore(directory, 1000);
+
+        store.addRegistration(givenARegistration("reg1", "ep1", 5683));
+        store.addRegistration(givenARegistration("reg2", "ep2", 5684));
+        store.addRegistration(givenARegistration("reg3", "ep3", 5685));
+        Token token1 = givenAnObservation(store.getRegistration("reg1"), "/3/0/1");
+        Token token2 = givenAnObservation(store.getRegistration("reg2"), "/3/0/1");
+        store.updateRegistration(
+                new RegistrationUpdate("reg1", Identity.unsecure(address, 6000), 3600L, null, null, null, null));
+        store.removeRegistration("reg3");
+        store.remove(token2);
+
+        // restart
+        store.destroy();
+        store = givenAStore(directory, 1000);
+
+        Assert.assertNull(store.getRegistration("reg3"));
+        Assert.assertEquals(6000, store.getRegistration("reg1").getPort());
+        Assert.assertEquals(Long.valueOf(3600L), store.getRegistrationByEndpoint("ep1").getLifeTimeInSec());
+        Assert.assertNotNull(store.getRegistrationByAdress(store.getRegistration("reg2").getSocketAddress()));
+        Assert.assertNotNull(store.get(token1));
+        Assert.assertNull(store.get(token2));
+        Assert.assertEquals(1, store.getObservations("reg1").size());
+        Assert.assertTrue(store.getObservations("reg2").isEmpty());
+    }
+
+    @Test
+    public void replaced_registration_observations_are_not_recovered() throws Exception {
+        File directory = folder.getRoot();
+        store = givenAStore(directory, 1000);
+
+        store.addRegistration(givenARegistration("reg1", "ep1", 5683));
+        Token token = givenAnObservation(store.getRegistration("reg1"), "/3/0/1");
+        store.addRegistration(givenARegistration("reg2", "ep1", 5683));
+
+        store.destroy();
+        store = givenAStore(directory, 1000);
+
+        Assert.assertEquals("reg2", store.getRegistrationByEndpoint("ep1").getId());
+        Assert.assertNull(store.get(token));
+    }
+
+    @Test
+    public void observations_removed_for_a_registration_are_not_recovered() throws Exception {
+        File directory = folder.getRoot();
+        store = givenAStore(directory, 1000);
+
+        store.addRegistration(givenARegistration("reg1", "ep1", 5683));
+        Token token1 = givenAnObservation(store.getRegistration("reg1"), "/3/0/1");
+        Token token2 = givenAnObservation(store.getRegistration("reg1"), "/3/0/2");
+        Assert.assertEquals(2, store.removeObservations("reg1").size());
+
+        // Californium removes cancelled observations afterwards, this must not change anything
+        store.remove(token1);
+
+        store.destroy();
+        store = givenAStore(directory, 1000);
+
+        Assert.assertNotNull(store.getRegistration("reg1"));
+        Assert.assertNull(store.get(token1));
+        Assert.assertNull(store.get(token2));
+        Assert.assertTrue(store.getObservations("reg1").isEmpty());
+    }
+
+    @Test
+    public void snapshot_then_journal_are_recovered() throws Exception {
+        File directory = folder.getRoot();
+        store = givenAStore(directory, 1000);
+
+        store.addRegistration(givenARegistration("reg1", "ep1", 5683));
+        store.snapshot();
+        store.addRegistration(givenARegistration("reg2", "ep2", 5684));
+
+        store.destroy();
+        store = givenAStore(directory, 1000);
+
+        Assert.assertNotNull(store.getRegistration("reg1"));
+        Assert.assertNotNull(store.getRegistration("reg2"));
+    }
+
+    @Test
+    public void incomplete_last_record_is_ignored() throws Exception {
+        File directory = folder.getRoot();
+        store = givenAStore(directory, 1000);
+        store.addRegistration(givenARegistration("reg1", "ep1", 5683));
+        store.addRegistration(givenARegistration("reg2", "ep2", 5684));
+        store.destroy();
+        store = null;
+
+        // simulate a crash while writing the last record
+        try (RandomAccessFile raf = new RandomAccessFile(lastJournal(directory), "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+
+        store = givenAStore(directory, 1000);
+        Assert.assertNotNull(store.getRegistration("reg1"));
+        Assert.assertNull(store.getRegistration("reg2"));
+    }
+
+    @Test
+    public void record_with_invalid_length_is_ignored() throws Exception {
+        File directory = folder.getRoot();
+        store = givenAStore(directory, 1000);
+        store.addRegistration(givenARegistration("reg1", "ep1", 5683));
+        store.addRegistration(givenARegistration("reg2", "ep2", 5684));
+        store.destroy();
+        store = null;
+
+        // append a record header announcing a length far bigger than the file
+        try (RandomAccessFile raf = new RandomAccessFile(lastJournal(directory), "rw")) {
+            raf.seek(raf.length());
+            raf.writeInt(Integer.MAX_VALUE);
+            raf.writeInt(0);
+            raf.write(new byte[16]);
+        }
+
+        store = givenAStore(directory, 1000);
+        Assert.assertNotNull(store.getRegistration("reg1"));
+        Assert.assertNotNull(store.getRegistration("reg2"));
+
+        // journal is still usable
+        store.addRegistration(givenARegistration("reg3", "ep3", 5685));
+        store.destroy();
+        store = givenAStore(directory, 1000);
+        Assert.assertNotNull(store.getRegistration("reg3"));
+    }
+
+    @Test
+    public void records_following_a_corrupted_record_are_ignored() throws Exception {
+        File directory = folder.getRoot();
+        store = givenAStore(directory, 1000);
+        store.addRegistration(givenARegistration("reg1", "ep1", 5683));
+        store.addRegistration(givenARegistration("reg2", "ep2", 5684));
+        store.addRegistration(givenARegistration("reg3", "ep3", 5685));
+        store.destroy();
+        store = null;
+
+        // corrupt the content of the second record
+        File journal = lastJournal(directory);
+        try (RandomAccessFile raf = new RandomAccessFile(journal, "rw")) {
+            int firstRecordLength = raf.readInt();
+            long secondRecordContent = 8 + firstRecordLength + 8;
+            raf.seek(secondRecordContent + 1);
+            byte b = raf.readByte();
+            raf.seek(secondRecordContent + 1);
+            raf.writeByte(~b);
+        }
+
+        store = givenAStore(directory, 1000);
+        Assert.assertNotNull(store.getRegistration("reg1"));
+        Assert.assertNull(store.getRegistration("reg2"));
+        Assert.assertNull(store.getRegistration("reg3"));
+    }
+
+    private File lastJournal(File directory) {
+        File journal = null;
+        for (File file : directory.listFiles()) {
+            if (file.getName().startsWith("journal-") && (journal == null || file.length() > journal.length())) {
+                journal = file;
+            }
+        }
+        return journal;
+    }
+
+    private InMemoryRegistrationStore givenAStore(File directory, long snapshotThreshold) {
+        return new InMemoryRegistrationStore(Executors.newSingleThreadScheduledExecutor(), 2,
+                new RegistrationStoreJournal(directory, false, snapshotThreshold));
+    }
+
+    private Registration givenARegistration(String registrationId, String endpoint, int port) {
+        return new Registration.Builder(registrationId, endpoint, Identity.unsecure(address, port)).build();
+    }
+
+    private Token givenAnObservation(Registration registration, String path) {
+        Request coapRequest = Request.newGet();
+        coapRequest.setToken(new byte[] { (byte) path.hashCode(), (byte) registration.getId().hashCode() });
+        coapRequest.setMID(1);
+        coapRequest.setObserve();
+        Map<String, String> context = ObserveUtil.createCoapObserveRequestContext(registration.getEndpoint(),
+                registration.getId(), new ObserveRequest(path));
+        coapRequest.setUserContext(context);
+        coapRequest.setDestinationContext(new org.eclipse.californium.elements.AddressEndpointContext(
+                registration.getSocketAddress()));
+        store.put(coapRequest.getToken(), new org.eclipse.californium.core.observe.Observation(coapRequest, null));
+        return coapRequest.getToken();
+    }
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.registration;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.eclipse.leshan.core.Link;
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.server.Destroyable;
+import org.eclipse.leshan.server.registration.Registration;
+
+/**
+ * Compare the memory used per registration by {@link InMemoryRegistrationStore} and {@link OffHeapRegistrationStore}.
+ * <p>
+ * Heap usage is measured after forcing garbage collections, direct memory is given by
+ * {@link OffHeapRegistrationStore#getAllocatedMemory()}. Run it with a large enough heap (e.g. -Xmx4g).
+ * <p>
+ * This is not a unit test, launch it manually with :
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=org.eclipse.leshan.server.californium.registration.RegistrationStoreMemoryBenchmark \
+ *   -Dexec.args="[nbRegistrations]"
+ * </pre>
+ */
+public class RegistrationStoreMemoryBenchmark {
+
+    // a typical object list for a device supporting a few standard objects
+    private static final Link[] OBJECT_LINKS = Link.parse(("</>;rt=\"oma.lwm2m\";ct=11543,"
+            + "</1>;ver=1.1,</1/0>,</3>;ver=1.1,</3/0>,</4/0>,</5/0>,</6/0>,</7/0>,</3303/0>,</3303/1>,"
+            + "</3311/0>,</3311/1>,</3341/0>,</3442/0>").getBytes());
+
+    public static void main(String[] args) throws Exception {
+        int nbRegistrations = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+
+        measure("InMemoryRegistrationStore", new InMemoryRegistrationStore(), nbRegistrations);
+        measure("OffHeapRegistrationStore", new OffHeapRegistrationStore(), nbRegistrations);
+    }
+
+    private static void measure(String name, CaliforniumRegistrationStore store, int nbRegistrations)
+            throws UnknownHostException {
+        long heapBefore = usedHeap();
+        for (int i = 0; i < nbRegistrations; i++) {
+            // each registration gets its own link objects, as it would be when decoded from a request
+            Link[] links = new Link[OBJECT_LINKS.length];
+            for (int j = 0; j < links.length; j++) {
+                links[j] = new Link(new String(OBJECT_LINKS[j].getUrl()), OBJECT_LINKS[j].getAttributes());
+            }
+            InetAddress address = InetAddress.getByAddress(new byte[] { 10, (byte) (i >> 16), (byte) (i >> 8),
+                    (byte) i });
+            store.addRegistration(new Registration.Builder("reg" + i, "urn:imei:" + (350000000000000L + i),
+                    Identity.unsecure(address, 5683)).objectLinks(links).lifeTimeInSec(86400L).build());
+        }
+        long heap = usedHeap() - heapBefore;
+        long direct = store instanceof OffHeapRegistrationStore
+                ? ((OffHeapRegistrationStore) store).getAllocatedMemory()
+                : 0;
+
+        System.out.println(String.format("%-30s %,10d registrations : heap %,6d bytes/reg, direct %,6d bytes/reg",
+                name, nbRegistrations, heap / nbRegistrations, direct / nbRegistrations));
+
+        if (store instanceof Destroyable) {
+            ((Destroyable) store).destroy();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
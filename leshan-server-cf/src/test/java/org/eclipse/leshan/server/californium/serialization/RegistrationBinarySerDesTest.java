@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.californium.serialization;
+
+import static org.junit.Assert.*;
+
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.observe.Observation;
+import org.eclipse.californium.elements.AddressEndpointContext;
+import org.eclipse.californium.elements.auth.PreSharedKeyIdentity;
+import org.eclipse.leshan.core.Link;
+import org.eclipse.leshan.core.request.BindingMode;
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.server.registration.Registration;
+import org.junit.Test;
+
+public class RegistrationBinarySerDesTest {
+
+    @Test
+    public void ser_and_des_are_equals() throws Exception {
+        Link[] objs = new Link[2];
+        Map<String, Object> att = new HashMap<>();
+        att.put("ts", 12);
+        att.put("rt", "test");
+        att.put("hb", null);
+        objs[0] = new Link("/0/1024/2", att, Object.class);
+        objs[1] = new Link("/0/2");
+
+        Map<String, String> additionalAttributes = new HashMap<>();
+        additionalAttributes.put("key", "value");
+
+        Registration.Builder builder = new Registration.Builder("registrationId", "endpoint",
+                Identity.psk(Inet4Address.getLoopbackAddress(), 1, "pskIdentity")).objectLinks(objs)
+                        .bindingMode(BindingMode.UQ).smsNumber("0123456789").lifeTimeInSec(3600L)
+                        .additionalRegistrationAttributes(additionalAttributes);
+
+        builder.registrationDate(new Date(100L));
+        builder.lastUpdate(new Date(101L));
+        Registration r = builder.build();
+
+        byte[] ser = RegistrationBinarySerDes.serialize(r);
+        Registration r2 = RegistrationBinarySerDes.deserialize(ser);
+
+        assertEquals(r, r2);
+        assertEquals(r.getId(), r2.getId());
+        assertEquals(r.getIdentity(), r2.getIdentity());
+        assertArrayEquals(r.getObjectLinks(), r2.getObjectLinks());
+        assertEquals(r.getBindingMode(), r2.getBindingMode());
+        assertEquals(r.getSmsNumber(), r2.getSmsNumber());
+        assertEquals(r.getLifeTimeInSec(), r2.getLifeTimeInSec());
+        assertEquals(r.getRegistrationDate(), r2.getRegistrationDate());
+        assertEquals(r.getLastUpdate(), r2.getLastUpdate());
+        assertEquals(r.getAdditionalRegistrationAttributes(), r2.getAdditionalRegistrationAttributes());
+    }
+
+    @Test
+    public void ser_and_des_rpk_identity() throws Exception {
+        PublicKey publicKey = KeyPairGenerator.getInstance("EC").generateKeyPair().getPublic();
+        Registration r = new Registration.Builder("registrationId", "endpoint",
+                Identity.rpk(Inet4Address.getLoopbackAddress(), 1, publicKey)).build();
+
+        Registration r2 = RegistrationBinarySerDes.deserialize(RegistrationBinarySerDes.serialize(r));
+
+        assertEquals(r.getIdentity(), r2.getIdentity());
+        assertNull(r2.getObjectLinks());
+    }
+
+    @Test
+    public void ser_and_des_observation() throws Exception {
+        Request request = Request.newGet();
+        request.setToken(new byte[] { 1, 2, 3 });
+        request.setMID(1);
+        request.getOptions().addUriPath("3").addUriPath("0");
+        request.setObserve();
+        Map<String, String> userContext = new HashMap<>();
+        userContext.put("leshan-regId", "registrationId");
+        request.setUserContext(userContext);
+        AddressEndpointContext context = new AddressEndpointContext(
+                new InetSocketAddress(Inet4Address.getLoopbackAddress(), 5684), new PreSharedKeyIdentity("pskIdentity"));
+        request.setDestinationContext(context);
+
+        Observation observation = ObservationBinarySerDes
+                .deserialize(ObservationBinarySerDes.serialize(new Observation(request, null)));
+
+        assertEquals(request.getToken(), observation.getRequest().getToken());
+        assertEquals(request.getOptions().getUriPathString(), observation.getRequest().getOptions().getUriPathString());
+        assertEquals(userContext, observation.getRequest().getUserContext());
+        assertEquals(context.getPeerAddress(), observation.getContext().getPeerAddress());
+        assertEquals(context.getPeerIdentity(), observation.getContext().getPeerIdentity());
+    }
+}
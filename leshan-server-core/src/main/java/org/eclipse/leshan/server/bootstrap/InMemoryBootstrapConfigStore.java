@@ -16,7 +16,9 @@
 package org.eclipse.leshan.server.bootstrap;
 
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.leshan.core.SecurityMode;
@@ -32,6 +34,9 @@ public class InMemoryBootstrapConfigStore implements EditableBootstrapConfigStor
 
     protected final Map<String /* endpoint */, BootstrapConfig> bootstrapByEndpoint = new ConcurrentHashMap<>();
     protected final ConcurrentHashMap<PskByServer, BootstrapConfig> bootstrapByPskId = new ConcurrentHashMap<>();
+    // endpoints by PSK identity used to connect to a bootstrap server, whatever the server
+    // sets are never modified once indexed, they are replaced under the store lock
+    private final ConcurrentHashMap<String, Set<String>> endpointsByBootstrapPskId = new ConcurrentHashMap<>();
 
     @Override
     public BootstrapConfig get(String endpoint, Identity deviceIdentity, BootstrapSession session) {
@@ -58,9 +63,13 @@ public class InMemoryBootstrapConfigStore implements EditableBootstrapConfigStor
         }
         // TODO we should probably also check lwm2m server
 
-        bootstrapByEndpoint.put(endpoint, config);
+        BootstrapConfig previousConfig = bootstrapByEndpoint.put(endpoint, config);
+        if (previousConfig != null) {
+            removeFromIndex(endpoint, previousConfig);
+        }
         if (pskToAdd != null) {
             bootstrapByPskId.put(pskToAdd, config);
+            addToPskIdentityIndex(pskToAdd.identity, endpoint);
         }
     }
 
@@ -72,14 +81,54 @@ public class InMemoryBootstrapConfigStore implements EditableBootstrapConfigStor
     public synchronized BootstrapConfig remove(String enpoint) {
         BootstrapConfig bootstrapConfig = bootstrapByEndpoint.remove(enpoint);
         if (bootstrapConfig != null) {
-            PskByServer pskIdentity = getBootstrapPskIdentity(bootstrapConfig);
-            if (pskIdentity != null) {
-                bootstrapByPskId.remove(pskIdentity, bootstrapConfig);
-            }
+            removeFromIndex(enpoint, bootstrapConfig);
         }
         return bootstrapConfig;
     }
 
+    private void removeFromIndex(String endpoint, BootstrapConfig config) {
+        PskByServer pskIdentity = getBootstrapPskIdentity(config);
+        if (pskIdentity != null) {
+            bootstrapByPskId.remove(pskIdentity, config);
+            removeFromPskIdentityIndex(pskIdentity.identity, endpoint);
+        }
+    }
+
+    private void addToPskIdentityIndex(String identity, String endpoint) {
+        Set<String> previous = endpointsByBootstrapPskId.get(identity);
+        Set<String> endpoints = previous == null ? new LinkedHashSet<String>() : new LinkedHashSet<>(previous);
+        endpoints.add(endpoint);
+        endpointsByBootstrapPskId.put(identity, Collections.unmodifiableSet(endpoints));
+    }
+
+    private void removeFromPskIdentityIndex(String identity, String endpoint) {
+        Set<String> previous = endpointsByBootstrapPskId.get(identity);
+        if (previous == null || !previous.contains(endpoint)) {
+            return;
+        }
+        if (previous.size() == 1) {
+            endpointsByBootstrapPskId.remove(identity);
+        } else {
+            Set<String> endpoints = new LinkedHashSet<>(previous);
+            endpoints.remove(endpoint);
+            endpointsByBootstrapPskId.put(identity, Collections.unmodifiableSet(endpoints));
+        }
+    }
+
+    /**
+     * Returns the end-points which use the given PSK identity to connect to a bootstrap server.
+     * <p>
+     * Several configurations can use the same identity if they target different bootstrap servers.
+     * 
+     * @param identity the PSK identity
+     * @return an unmodifiable set of end-points in insertion order, empty if no configuration uses this identity.
+     * @since 1.4
+     */
+    public Set<String> getEndpointsByBootstrapPskIdentity(String identity) {
+        Set<String> endpoints = endpointsByBootstrapPskId.get(identity);
+        return endpoints == null ? Collections.<String> emptySet() : endpoints;
+    }
+
     protected PskByServer getBootstrapPskIdentity(BootstrapConfig config) {
         for (ServerSecurity security : config.security.values()) {
             if (security.bootstrapServer) {
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.observation;
+
+import java.util.List;
+
+import org.eclipse.leshan.core.observation.Observation;
+import org.eclipse.leshan.core.response.ObserveResponse;
+import org.eclipse.leshan.server.registration.Registration;
+
+/**
+ * An {@link ObservationListener} which receives notifications in batches, e.g. to write them in bulk to a database or
+ * a message broker.
+ * <p>
+ * Successful notifications are delivered to {@link #onResponses(List)} instead of
+ * {@link #onResponse(Observation, Registration, ObserveResponse)}. An {@link ObservationService} decides when a batch
+ * is flushed, generally when it reaches a maximum size or after a maximum delay. Errors are still reported one by one
+ * to {@link #onError(Observation, Registration, Exception)}.
+ *
+ * @since 1.4
+ */
+public interface BatchObservationListener extends ObservationListener {
+
+    /**
+     * Called with a batch of notifications, in the order they were received for each registration.
+     *
+     * @param notifications the notifications, this list must not be modified.
+     */
+    void onResponses(List<ObservationNotification> notifications);
+}
@@ -23,7 +23,9 @@ import org.eclipse.leshan.server.registration.Registration;
  * Monitor observation lifetime.
  * <p>
  * Those methods are called by the protocol stage thread pool, this means that execution MUST be done in a short delay,
- * if you need to do long time processing use a dedicated thread pool.
+ * if you need to do long time processing use a dedicated thread pool. Observation services can also be configured to
+ * call {@link #onResponse(Observation, Registration, ObserveResponse)} and
+ * {@link #onError(Observation, Registration, Exception)} from their own workers.
  */
 public interface ObservationListener {
 
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.observation;
+
+import org.eclipse.leshan.core.observation.Observation;
+import org.eclipse.leshan.core.response.ObserveResponse;
+import org.eclipse.leshan.server.registration.Registration;
+
+/**
+ * A notification received for an observation, as delivered to a {@link BatchObservationListener}.
+ *
+ * @since 1.4
+ */
+public class ObservationNotification {
+
+    private final Observation observation;
+    private final Registration registration;
+    private final ObserveResponse response;
+
+    public ObservationNotification(Observation observation, Registration registration, ObserveResponse response) {
+        this.observation = observation;
+        this.registration = registration;
+        this.response = response;
+    }
+
+    /**
+     * @return the observation for which new data are received
+     */
+    public Observation getObservation() {
+        return observation;
+    }
+
+    /**
+     * @return the registration concerned by this observation
+     */
+    public Registration getRegistration() {
+        return registration;
+    }
+
+    /**
+     * @return the lwm2m response received
+     */
+    public ObserveResponse getResponse() {
+        return response;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ObservationNotification [observation=%s, registration=%s, response=%s]", observation,
+                registration.getId(), response);
+    }
+}
@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.observation;
+
+import org.eclipse.leshan.core.response.ObserveResponse;
+
+/**
+ * An {@link ObservationListener} which only uses the raw payload of notifications, available through
+ * {@link ObserveResponse#getCoapResponse()}, and never reads their decoded content.
+ * <p>
+ * When all listeners are raw payload only, notification payloads are not decoded before calling listeners : the
+ * content of the {@link ObserveResponse} is decoded on first access. This means that a malformed payload is not
+ * reported to <code>onError()</code>, it is raised as an InvalidResponseException when the content is accessed.
+ *
+ * @since 1.4
+ */
+public interface RawPayloadObservationListener extends ObservationListener {
+}
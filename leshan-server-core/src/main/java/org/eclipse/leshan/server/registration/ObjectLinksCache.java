@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.registration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.leshan.core.Link;
+import org.eclipse.leshan.core.util.Validate;
+
+/**
+ * A bounded canonicalizing cache for registration object links.
+ * <p>
+ * Devices running the same firmware send byte-identical object links payloads. This cache returns the same
+ * {@link Link} array for identical payloads, so registrations share it instead of each holding its own copy, and it
+ * computes the supported objects map (see {@link Registration#getSupportedObject()}) only once per distinct payload.
+ * <p>
+ * Returned arrays are shared between registrations and must not be modified.
+ * <p>
+ * The least recently used payloads are evicted once {@code maxSize} distinct payloads are cached. Registrations keep
+ * referencing their links after eviction, only further sharing is lost.
+ */
+public class ObjectLinksCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final int maxSize;
+
+    // payload => entry, in access order for LRU eviction
+    private final Map<Payload, Entry> entriesByPayload;
+    // canonical links (by identity) => entry
+    private final Map<Link[], Entry> entriesByLinks = new IdentityHashMap<>();
+
+    public ObjectLinksCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the maximum number of distinct payloads to cache.
+     */
+    public ObjectLinksCache(int maxSize) {
+        Validate.isTrue(maxSize > 0, "maxSize must be positive");
+        this.maxSize = maxSize;
+        this.entriesByPayload = new LinkedHashMap<Payload, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Payload, Entry> eldest) {
+                if (size() > ObjectLinksCache.this.maxSize) {
+                    entriesByLinks.remove(eldest.getValue().links);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Parse an object links payload, reusing the result of a previous parsing of the same payload if possible.
+     *
+     * @param payload the link format payload encoded in UTF-8.
+     * @return the canonical {@link Link} array for this payload.
+     * @see Link#parse(byte[])
+     */
+    public Link[] parse(byte[] payload) {
+        if (payload == null) {
+            return Link.parse(null);
+        }
+        Payload key = new Payload(payload);
+        synchronized (this) {
+            Entry entry = entriesByPayload.get(key);
+            if (entry != null) {
+                return entry.links;
+            }
+        }
+
+        // parse outside of the lock, concurrent parsing of the same payload is harmless
+        Link[] links = Link.parse(payload);
+        synchronized (this) {
+            Entry entry = entriesByPayload.get(key);
+            if (entry != null) {
+                return entry.links;
+            }
+            entry = new Entry(links);
+            // copy payload as caller could reuse its buffer
+            entriesByPayload.put(new Payload(payload.clone()), entry);
+            entriesByLinks.put(links, entry);
+            return links;
+        }
+    }
+
+    /**
+     * Get the supported objects map shared by all registrations using the given links.
+     *
+     * @param links links previously returned by {@link #parse(byte[])}.
+     * @return the shared supported objects map or <code>null</code> if those links are not (or no more) cached.
+     */
+    public Map<Integer, String> getSupportedObjects(Link[] links) {
+        if (links == null) {
+            return null;
+        }
+        Entry entry;
+        synchronized (this) {
+            entry = entriesByLinks.get(links);
+        }
+        return entry == null ? null : entry.getSupportedObjects();
+    }
+
+    /**
+     * @return the number of distinct payloads currently cached.
+     */
+    public synchronized int size() {
+        return entriesByPayload.size();
+    }
+
+    private static class Entry {
+        private final Link[] links;
+        private volatile Map<Integer, String> supportedObjects;
+
+        public Entry(Link[] links) {
+            this.links = links;
+        }
+
+        public Map<Integer, String> getSupportedObjects() {
+            Map<Integer, String> objects = supportedObjects;
+            if (objects == null) {
+                // computed at most a few times in case of concurrent access, which is harmless
+                objects = Collections.unmodifiableMap(
+                        Registration.getSupportedObject(Registration.getRootPath(links), links));
+                supportedObjects = objects;
+            }
+            return objects;
+        }
+    }
+
+    private static class Payload {
+        private final byte[] bytes;
+        private final int hash;
+
+        public Payload(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Payload))
+                return false;
+            Payload other = (Payload) obj;
+            return hash == other.hash && Arrays.equals(bytes, other.bytes);
+        }
+    }
+}
@@ -94,19 +94,7 @@ public class Registration implements Serializable {
         this.smsNumber = smsNumber;
 
         this.objectLinks = objectLinks;
-        // Parse object link to extract root path.
-        String rootPath = "/";
-        if (objectLinks != null) {
-            for (Link link : objectLinks) {
-                if (link != null && "oma.lwm2m".equals(Link.unquote(link.getAttributes().get("rt")))) {
-                    rootPath = link.getUrl();
-                    break;
-                }
-            }
-        }
-        if (!rootPath.endsWith("/"))
-            rootPath = rootPath + "/";
-        this.rootPath = rootPath;
+        this.rootPath = getRootPath(objectLinks);
         this.supportedObjects = new AtomicReference<Map<Integer, String>>(supportedObjects);
         this.lifeTimeInSec = lifetimeInSec == null ? DEFAULT_LIFETIME_IN_SEC : lifetimeInSec;
         this.lwM2mVersion = lwM2mVersion == null ? DEFAULT_LWM2M_VERSION : lwM2mVersion;
@@ -355,6 +343,27 @@ public class Registration implements Serializable {
         }
     }
 
+    /**
+     * Extract the root path of the LWM2M tree from registration object links.
+     * 
+     * @param objectLinks the registration object links payload, could be <code>null</code>.
+     * @return the root path, always ending with "/".
+     */
+    public static String getRootPath(Link[] objectLinks) {
+        String rootPath = "/";
+        if (objectLinks != null) {
+            for (Link link : objectLinks) {
+                if (link != null && "oma.lwm2m".equals(Link.unquote(link.getAttributes().get("rt")))) {
+                    rootPath = link.getUrl();
+                    break;
+                }
+            }
+        }
+        if (!rootPath.endsWith("/"))
+            rootPath = rootPath + "/";
+        return rootPath;
+    }
+
     /**
      * Build a Map {@code objectId} {@literal =>} {@code supportedVersion} from root path and registration object links.
      * 
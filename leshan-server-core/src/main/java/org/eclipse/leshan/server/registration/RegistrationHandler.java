@@ -18,6 +18,7 @@
 package org.eclipse.leshan.server.registration;
 
 import java.util.Date;
+import java.util.Map;
 
 import org.eclipse.leshan.core.request.DeregisterRequest;
 import org.eclipse.leshan.core.request.Identity;
@@ -42,12 +43,23 @@ public class RegistrationHandler {
     private RegistrationServiceImpl registrationService;
     private RegistrationIdProvider registrationIdProvider;
     private Authorizer authorizer;
+    private ObjectLinksCache objectLinksCache;
 
     public RegistrationHandler(RegistrationServiceImpl registrationService, Authorizer authorizer,
             RegistrationIdProvider registrationIdProvider) {
+        this(registrationService, authorizer, registrationIdProvider, null);
+    }
+
+    /**
+     * @param objectLinksCache the cache used to parse object links of incoming requests. Registrations using links
+     *        coming from this cache will share their supported objects map. Could be <code>null</code>.
+     */
+    public RegistrationHandler(RegistrationServiceImpl registrationService, Authorizer authorizer,
+            RegistrationIdProvider registrationIdProvider, ObjectLinksCache objectLinksCache) {
         this.registrationService = registrationService;
         this.authorizer = authorizer;
         this.registrationIdProvider = registrationIdProvider;
+        this.objectLinksCache = objectLinksCache;
     }
 
     public SendableResponse<RegisterResponse> register(Identity sender, RegisterRequest registerRequest) {
@@ -59,6 +71,13 @@ public class RegistrationHandler {
                 .bindingMode(registerRequest.getBindingMode()).objectLinks(registerRequest.getObjectLinks())
                 .smsNumber(registerRequest.getSmsNumber()).registrationDate(new Date()).lastUpdate(new Date())
                 .additionalRegistrationAttributes(registerRequest.getAdditionalAttributes());
+        if (objectLinksCache != null) {
+            Map<Integer, String> supportedObjects = objectLinksCache
+                    .getSupportedObjects(registerRequest.getObjectLinks());
+            if (supportedObjects != null) {
+                builder.supportedObjects(supportedObjects);
+            }
+        }
 
         // We must check if the client is using the right identity.
         final Registration registration = authorizer.isAuthorized(registerRequest, builder.build(), sender);
@@ -103,7 +122,7 @@ public class RegistrationHandler {
         // Create update
         final RegistrationUpdate update = new RegistrationUpdate(updateRequest.getRegistrationId(), sender,
                 updateRequest.getLifeTimeInSec(), updateRequest.getSmsNumber(), updateRequest.getBindingMode(),
-                updateRequest.getObjectLinks(), updateRequest.getAdditionalAttributes());
+                updateRequest.getObjectLinks(), updateRequest.getAdditionalAttributes(), objectLinksCache);
 
         // update registration
         final UpdatedRegistration updatedRegistration = registrationService.getStore().updateRegistration(update);
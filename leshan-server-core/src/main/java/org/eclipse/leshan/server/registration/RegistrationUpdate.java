@@ -41,9 +41,21 @@ public class RegistrationUpdate {
     private final BindingMode bindingMode;
     private final Link[] objectLinks;
     private final Map<String, String> additionalAttributes;
+    // used to share supported objects between registrations, not part of the update itself.
+    private final ObjectLinksCache objectLinksCache;
 
     public RegistrationUpdate(String registrationId, Identity identity, Long lifeTimeInSec, String smsNumber,
             BindingMode bindingMode, Link[] objectLinks, Map<String, String> additionalAttributes) {
+        this(registrationId, identity, lifeTimeInSec, smsNumber, bindingMode, objectLinks, additionalAttributes, null);
+    }
+
+    /**
+     * @param objectLinksCache the cache which provided the object links of the registration (if any), it is used to
+     *        share the supported objects map of the updated registration. Could be <code>null</code>.
+     */
+    public RegistrationUpdate(String registrationId, Identity identity, Long lifeTimeInSec, String smsNumber,
+            BindingMode bindingMode, Link[] objectLinks, Map<String, String> additionalAttributes,
+            ObjectLinksCache objectLinksCache) {
         Validate.notNull(registrationId);
         Validate.notNull(identity);
         this.registrationId = registrationId;
@@ -56,6 +68,7 @@ public class RegistrationUpdate {
             this.additionalAttributes = Collections.emptyMap();
         else
             this.additionalAttributes = Collections.unmodifiableMap(new HashMap<>(additionalAttributes));
+        this.objectLinksCache = objectLinksCache;
     }
 
     /**
@@ -86,6 +99,13 @@ public class RegistrationUpdate {
                 .bindingMode(bindingMode).objectLinks(linkObject).registrationDate(registration.getRegistrationDate())
                 .lastUpdate(lastUpdate).additionalRegistrationAttributes(additionalAttributes);
 
+        if (objectLinksCache != null) {
+            Map<Integer, String> supportedObjects = objectLinksCache.getSupportedObjects(linkObject);
+            if (supportedObjects != null) {
+                builder.supportedObjects(supportedObjects);
+            }
+        }
+
         return builder.build();
 
     }
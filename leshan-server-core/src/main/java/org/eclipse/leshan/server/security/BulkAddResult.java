@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.security;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of {@link BulkSecurityStore#addAll(java.util.Iterator, int, BulkSecurityStore.ProgressListener)}.
+ *
+ * @since 1.4
+ */
+public class BulkAddResult {
+
+    private final int added;
+    private final List<SecurityInfo> rejected;
+
+    private BulkAddResult(int added, List<SecurityInfo> rejected) {
+        this.added = added;
+        this.rejected = rejected;
+    }
+
+    /**
+     * @return the number of security information added or replaced.
+     */
+    public int getAddedCount() {
+        return added;
+    }
+
+    /**
+     * @return the security information not added because some identifiers are not unique.
+     */
+    public List<SecurityInfo> getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return the number of security information processed.
+     */
+    public int getProcessedCount() {
+        return added + rejected.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BulkAddResult [added=%s, rejected=%s]", added, rejected.size());
+    }
+
+    /**
+     * Class helping {@link BulkSecurityStore} implementations to build a {@link BulkAddResult}.
+     */
+    public static class Builder {
+
+        private int added;
+        private final List<SecurityInfo> rejected = new ArrayList<>();
+
+        /**
+         * Counts a security information as added or replaced.
+         */
+        public Builder added() {
+            added++;
+            return this;
+        }
+
+        /**
+         * Reports a security information as not added because some identifiers are not unique.
+         */
+        public Builder rejected(SecurityInfo info) {
+            rejected.add(info);
+            return this;
+        }
+
+        /**
+         * @return a {@link BulkAddResult} with the security information counted so far.
+         */
+        public BulkAddResult build() {
+            return new BulkAddResult(added, Collections.unmodifiableList(new ArrayList<>(rejected)));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.security;
+
+import java.util.Iterator;
+
+/**
+ * An {@link EditableSecurityStore} able to add a large number of {@link SecurityInfo} efficiently.
+ * <p>
+ * Security info are read lazily from the given {@link Iterator}, so they can be streamed (e.g. from a file) without
+ * holding all of them in memory. They are added by batches, implementations check uniqueness and persist each batch at
+ * once.
+ *
+ * @since 1.4
+ */
+public interface BulkSecurityStore extends EditableSecurityStore {
+
+    /**
+     * Listener notified after each batch of a bulk add.
+     */
+    interface ProgressListener {
+
+        /**
+         * @param result the result of the bulk add so far
+         */
+        void onProgress(BulkAddResult result);
+    }
+
+    /**
+     * Adds or replaces security information of several end-points.
+     * <p>
+     * A {@link SecurityInfo} which identifiers (PSK identity, ...) are already used by another end-point, in the store
+     * or earlier in the same bulk add, is not added and is reported in {@link BulkAddResult#getRejected()}, the other
+     * ones are still added.
+     * <p>
+     * A {@link SecurityInfo} replaced by a different one is reported to the {@link SecurityStoreListener} as removed
+     * (not compromised), so connections established with the previous credentials can be cleaned.
+     *
+     * @param infos the security information to add
+     * @param batchSize the maximum number of security information added at once
+     * @param listener the listener notified after each batch, may be <code>null</code>
+     * @return the result of the bulk add
+     */
+    BulkAddResult addAll(Iterator<SecurityInfo> infos, int batchSize, ProgressListener listener);
+}
@@ -15,13 +15,27 @@
  *******************************************************************************/
 package org.eclipse.leshan.server.security;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
 
+import org.eclipse.leshan.core.util.SecurityUtil;
 import org.eclipse.leshan.core.util.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,17 +43,55 @@ import org.slf4j.LoggerFactory;
 /**
  * A {@link SecurityStore} which persists {@link SecurityInfo} in a file.
  * <p>
- * This implementation serializes the store content into a file to be able to re-load the {@link SecurityInfo} when the
- * server is restarted.
+ * This implementation appends each modification to a journal file to be able to re-load the {@link SecurityInfo} when
+ * the server is restarted. Each <code>add</code> or <code>remove</code> costs a single small write, the journal is
+ * compacted (rewritten with only the current content) when it contains too many obsolete records.
+ * </p>
+ * <p>
+ * Each record is framed by its length and a CRC32 checksum. An incomplete or corrupted record (e.g. after a crash or a
+ * power loss) ends the loading : the journal is truncated before this record. A well-framed record which can not be
+ * decoded makes the loading fail with an {@link IllegalStateException}, and the journal is left untouched, rather than
+ * silently starting with a partial content.
+ * </p>
+ * <p>
+ * A file written by a previous version (Java serialization of the whole content) is still loaded and converted to the
+ * journal format.
  * </p>
  */
 public class FileSecurityStore extends InMemorySecurityStore {
 
     private static final Logger LOG = LoggerFactory.getLogger(FileSecurityStore.class);
 
+    // journal file header : "LSJ" + format version
+    private static final byte[] HEADER = new byte[] { 'L', 'S', 'J', 2 };
+
+    // record header : length (int) + crc (int)
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    // record types
+    private static final byte ADD = 'A';
+    private static final byte REMOVE = 'R';
+
+    // security modes of ADD records
+    private static final byte PSK = 0;
+    private static final byte RPK = 1;
+    private static final byte X509 = 2;
+
+    // default minimum number of records before compacting the journal
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+
     // the name of the file used to persist the store content
     private final String filename;
 
+    // force each journal record to the storage device
+    private final boolean syncOnWrite;
+
+    // the journal is compacted when it contains more than this number of records and more than twice the live ones
+    private final int compactionThreshold;
+
+    // number of records currently in the journal
+    private int journalRecords;
+
     // default location for persistence
     private static final String DEFAULT_FILE = "data/security.data";
 
@@ -48,21 +100,36 @@ public class FileSecurityStore extends InMemorySecurityStore {
     }
 
     public FileSecurityStore(String file) {
+        this(file, false, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * @param file the journal file
+     * @param syncOnWrite if <code>true</code> each modification is forced to the storage device before
+     *        <code>add</code> or <code>remove</code> returns
+     * @param compactionThreshold minimum number of records in the journal before it is compacted
+     * @since 1.4
+     */
+    public FileSecurityStore(String file, boolean syncOnWrite, int compactionThreshold) {
         Validate.notEmpty(file);
+        Validate.isTrue(compactionThreshold > 0, "compaction threshold must be positive");
         filename = file;
+        this.syncOnWrite = syncOnWrite;
+        this.compactionThreshold = compactionThreshold;
         loadFromFile();
     }
 
     protected SecurityInfo addToStore(SecurityInfo info) throws NonUniqueSecurityInfoException {
-        return super.add(info);
+        return unsafeAdd(info);
     }
 
     @Override
     public SecurityInfo add(SecurityInfo info) throws NonUniqueSecurityInfoException {
+        byte[] record = encodeAdd(info);
         writeLock.lock();
         try {
             SecurityInfo previous = addToStore(info);
-            saveToFile();
+            appendToJournal(record, 1);
             return previous;
         } finally {
             writeLock.unlock();
@@ -75,7 +142,7 @@ public class FileSecurityStore extends InMemorySecurityStore {
         try {
             SecurityInfo info = super.remove(endpoint, infosAreCompromised);
             if (info != null) {
-                saveToFile();
+                appendToJournal(encodeRemove(endpoint), 1);
             }
             return info;
         } finally {
@@ -83,14 +150,153 @@ public class FileSecurityStore extends InMemorySecurityStore {
         }
     }
 
+    /**
+     * Adds a batch of security information, all records of the batch are appended to the journal at once.
+     * 
+     * @since 1.4
+     */
+    @Override
+    protected List<SecurityInfo> addBatch(List<SecurityInfo> batch, BulkAddResult.Builder result) {
+        // encode first, so an invalid security info does not leave the batch half applied
+        byte[][] encoded = new byte[batch.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = encodeAdd(batch.get(i));
+        }
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream(batch.size() * 64);
+        List<SecurityInfo> replaced = new ArrayList<>();
+        int count = 0;
+        writeLock.lock();
+        try {
+            for (int i = 0; i < encoded.length; i++) {
+                SecurityInfo info = batch.get(i);
+                byte[] record = encoded[i];
+                SecurityInfo previous;
+                try {
+                    previous = addToStore(info);
+                } catch (NonUniqueSecurityInfoException e) {
+                    result.rejected(info);
+                    continue;
+                }
+                if (previous != null && !previous.equals(info)) {
+                    replaced.add(previous);
+                }
+                records.write(record, 0, record.length);
+                count++;
+                result.added();
+            }
+            if (count > 0) {
+                appendToJournal(records.toByteArray(), count);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return replaced;
+    }
+
     protected void loadFromFile() {
         File file = new File(filename);
         if (!file.exists()) {
             return;
         }
 
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file));) {
-            SecurityInfo[] infos = (SecurityInfo[]) in.readObject();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+            byte[] header = new byte[HEADER.length];
+            in.mark(HEADER.length);
+            int read = in.read(header);
+            if (read == HEADER.length && Arrays.equals(header, HEADER)) {
+                loadJournal(file, new DataInputStream(in));
+            } else if (read == HEADER.length && header[0] == HEADER[0] && header[1] == HEADER[1]
+                    && header[2] == HEADER[2]) {
+                throw new IllegalStateException(
+                        String.format("Unsupported journal format version %d in %s", header[3], filename));
+            } else {
+                in.reset();
+                loadLegacyFile(in);
+                // convert to journal format
+                saveToFile();
+            }
+            if (needsCompaction()) {
+                saveToFile();
+            }
+        } catch (IOException | ClassNotFoundException | NonUniqueSecurityInfoException e) {
+            // never start with a partial content : it would be persisted by the next compaction
+            throw new IllegalStateException("Could not load security infos from " + filename, e);
+        }
+    }
+
+    private void loadJournal(File file, DataInputStream in) throws IOException {
+        long fileLength = file.length();
+        // position of the end of the last valid record
+        long position = HEADER.length;
+        journalRecords = 0;
+        CRC32 crc = new CRC32();
+        boolean truncated = false;
+        while (position < fileLength) {
+            if (fileLength - position < RECORD_HEADER_SIZE) {
+                truncated = true;
+                break;
+            }
+            int length = in.readInt();
+            int checksum = in.readInt();
+            // length is read from disk : check it before allocating anything
+            if (length <= 0 || length > fileLength - position - RECORD_HEADER_SIZE) {
+                truncated = true;
+                break;
+            }
+            byte[] record = new byte[length];
+            in.readFully(record);
+            crc.reset();
+            crc.update(record, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                truncated = true;
+                break;
+            }
+            applyRecord(record, position);
+            position += RECORD_HEADER_SIZE + length;
+            journalRecords++;
+        }
+        if (truncated) {
+            // record was not completely written (e.g. crash or power loss), drop it and the following bytes
+            LOG.warn("Incomplete or corrupted record at offset {} of {}, journal truncated to its {} valid records",
+                    position, filename, journalRecords);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(position);
+            }
+        }
+        if (journalRecords > 0) {
+            LOG.debug("{} security infos loaded from {} journal records", securityByEp.size(), journalRecords);
+        }
+    }
+
+    private void applyRecord(byte[] record, long offset) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        try {
+            byte type = in.readByte();
+            switch (type) {
+            case ADD:
+                addToStore(decodeAdd(in));
+                break;
+            case REMOVE:
+                super.remove(in.readUTF(), false);
+                break;
+            default:
+                throw new IllegalStateException("Unknown record type " + type);
+            }
+            if (in.available() > 0) {
+                throw new IllegalStateException("Unexpected content at the end of the record");
+            }
+        } catch (IOException | GeneralSecurityException | NonUniqueSecurityInfoException | RuntimeException e) {
+            // the record was completely written, so the journal is not readable by this version or was modified
+            throw new IllegalStateException(
+                    String.format("Unable to load record at offset %d of %s", offset, filename), e);
+        }
+    }
+
+    private void loadLegacyFile(InputStream in)
+            throws IOException, ClassNotFoundException, NonUniqueSecurityInfoException {
+        try (ObjectInputStream oin = new ObjectInputStream(in)) {
+            SecurityInfo[] infos = (SecurityInfo[]) oin.readObject();
 
             if (infos != null) {
                 for (SecurityInfo info : infos) {
@@ -100,26 +306,145 @@ public class FileSecurityStore extends InMemorySecurityStore {
                     LOG.debug("{} security infos loaded", infos.length);
                 }
             }
-        } catch (NonUniqueSecurityInfoException | IOException | ClassNotFoundException e) {
-            LOG.error("Could not load security infos from file", e);
         }
     }
 
+    /**
+     * Rewrites the journal with only the current content of the store.
+     */
     protected void saveToFile() {
         try {
             File file = new File(filename);
-            if (!file.exists()) {
-                File parent = file.getParentFile();
-                if (parent != null) {
-                    parent.mkdirs();
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            // write a new journal then replace the old one, so a crash never leaves a partial content
+            File tmp = new File(filename + ".tmp");
+            int records = 0;
+            try (FileOutputStream fos = new FileOutputStream(tmp);
+                    BufferedOutputStream out = new BufferedOutputStream(fos)) {
+                out.write(HEADER);
+                for (SecurityInfo info : this.getAll()) {
+                    out.write(encodeAdd(info));
+                    records++;
+                }
+                out.flush();
+                if (syncOnWrite) {
+                    fos.getFD().sync();
                 }
-                file.createNewFile();
             }
-            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filename));) {
-                out.writeObject(this.getAll().toArray(new SecurityInfo[0]));
+            // rename replaces the journal atomically on POSIX systems, some others need the target to be deleted first
+            if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+                throw new IOException("Unable to replace " + filename + " by " + tmp);
             }
+            journalRecords = records;
         } catch (IOException e) {
             LOG.error("Could not save security infos to file", e);
         }
     }
+
+    private void appendToJournal(byte[] records, int count) {
+        File file = new File(filename);
+        if (!file.exists()) {
+            saveToFile();
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(records);
+            if (syncOnWrite) {
+                out.getFD().sync();
+            }
+            journalRecords += count;
+        } catch (IOException e) {
+            LOG.error("Could not save security infos to file", e);
+        }
+        if (needsCompaction()) {
+            saveToFile();
+        }
+    }
+
+    private boolean needsCompaction() {
+        return journalRecords > compactionThreshold && journalRecords > 2 * securityByEp.size();
+    }
+
+    /* *************** Record encoding **************** */
+
+    private static byte[] encodeAdd(SecurityInfo info) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            // reserve record header
+            out.writeLong(0);
+            out.writeByte(ADD);
+            out.writeUTF(info.getEndpoint());
+            if (info.usePSK()) {
+                out.writeByte(PSK);
+                out.writeUTF(info.getIdentity());
+                writeBytes(out, info.getPreSharedKey());
+            } else if (info.useRPK()) {
+                out.writeByte(RPK);
+                writeBytes(out, info.getRawPublicKey().getEncoded());
+            } else {
+                out.writeByte(X509);
+            }
+            return frame(bytes.toByteArray());
+        } catch (IOException e) {
+            // only when a value is too long for the format
+            throw new IllegalArgumentException("Unable to persist security info of " + info.getEndpoint(), e);
+        }
+    }
+
+    private static SecurityInfo decodeAdd(DataInputStream in) throws IOException, GeneralSecurityException {
+        String endpoint = in.readUTF();
+        int mode = in.readUnsignedByte();
+        switch (mode) {
+        case PSK:
+            String identity = in.readUTF();
+            return SecurityInfo.newPreSharedKeyInfo(endpoint, identity, readBytes(in));
+        case RPK:
+            return SecurityInfo.newRawPublicKeyInfo(endpoint, SecurityUtil.publicKey.decode(readBytes(in)));
+        case X509:
+            return SecurityInfo.newX509CertInfo(endpoint);
+        default:
+            throw new IllegalStateException("Unknown security mode " + mode);
+        }
+    }
+
+    private static byte[] encodeRemove(String endpoint) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+            DataOutputStream out = new DataOutputStream(bytes);
+            // reserve record header
+            out.writeLong(0);
+            out.writeByte(REMOVE);
+            out.writeUTF(endpoint);
+            return frame(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to persist removal of " + endpoint, e);
+        }
+    }
+
+    private static byte[] frame(byte[] record) {
+        // complete the record header
+        int length = record.length - RECORD_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(record, RECORD_HEADER_SIZE, length);
+        ByteBuffer.wrap(record).putInt(0, length).putInt(4, (int) crc.getValue());
+        return record;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value.length > 0xFFFF) {
+            throw new IOException(String.format("value too long : %d bytes (maximum is 65535)", value.length));
+        }
+        out.writeShort(value.length);
+        out.write(value);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] value = new byte[in.readUnsignedShort()];
+        in.readFully(value);
+        return value;
+    }
 }
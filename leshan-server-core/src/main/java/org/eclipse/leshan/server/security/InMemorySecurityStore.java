@@ -19,15 +19,19 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.eclipse.leshan.core.util.Validate;
+
 /**
  * A {@link SecurityStore} which store {@link SecurityInfo} in memory.
  */
-public class InMemorySecurityStore implements EditableSecurityStore {
+public class InMemorySecurityStore implements BulkSecurityStore {
 
     // lock for the two maps
     protected final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
@@ -85,26 +89,93 @@ public class InMemorySecurityStore implements EditableSecurityStore {
     public SecurityInfo add(SecurityInfo info) throws NonUniqueSecurityInfoException {
         writeLock.lock();
         try {
-            String identity = info.getIdentity();
-            if (identity != null) {
-                SecurityInfo infoByIdentity = securityByIdentity.get(info.getIdentity());
-                if (infoByIdentity != null && !info.getEndpoint().equals(infoByIdentity.getEndpoint())) {
-                    throw new NonUniqueSecurityInfoException("PSK Identity " + info.getIdentity() + " is already used");
-                }
+            return unsafeAdd(info);
+        } finally {
+            writeLock.unlock();
+        }
+    }
 
-                securityByIdentity.put(info.getIdentity(), info);
+    /**
+     * Adds or replaces security information, the caller must hold the write lock.
+     * 
+     * @return the replaced security information or <code>null</code>.
+     * @since 1.4
+     */
+    protected SecurityInfo unsafeAdd(SecurityInfo info) throws NonUniqueSecurityInfoException {
+        String identity = info.getIdentity();
+        if (identity != null) {
+            SecurityInfo infoByIdentity = securityByIdentity.get(info.getIdentity());
+            if (infoByIdentity != null && !info.getEndpoint().equals(infoByIdentity.getEndpoint())) {
+                throw new NonUniqueSecurityInfoException("PSK Identity " + info.getIdentity() + " is already used");
             }
 
-            SecurityInfo previous = securityByEp.put(info.getEndpoint(), info);
-            String previousIdentity = previous == null ? null : previous.getIdentity();
-            if (previousIdentity != null && !previousIdentity.equals(identity)) {
-                securityByIdentity.remove(previousIdentity);
+            securityByIdentity.put(info.getIdentity(), info);
+        }
+
+        SecurityInfo previous = securityByEp.put(info.getEndpoint(), info);
+        String previousIdentity = previous == null ? null : previous.getIdentity();
+        if (previousIdentity != null && !previousIdentity.equals(identity)) {
+            securityByIdentity.remove(previousIdentity);
+        }
+
+        return previous;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @since 1.4
+     */
+    @Override
+    public BulkAddResult addAll(Iterator<SecurityInfo> infos, int batchSize, ProgressListener progressListener) {
+        Validate.isTrue(batchSize > 0, "batch size must be positive");
+        BulkAddResult.Builder result = new BulkAddResult.Builder();
+        List<SecurityInfo> batch = new ArrayList<>(batchSize);
+        while (infos.hasNext()) {
+            batch.add(infos.next());
+            if (batch.size() == batchSize || !infos.hasNext()) {
+                List<SecurityInfo> replaced = addBatch(batch, result);
+                batch.clear();
+                notifyReplaced(replaced);
+                if (progressListener != null) {
+                    progressListener.onProgress(result.build());
+                }
             }
+        }
+        return result.build();
+    }
 
-            return previous;
+    /**
+     * Adds a batch of security information, holding the write lock for the whole batch.
+     * 
+     * @return the security information replaced by a different one.
+     * @since 1.4
+     */
+    protected List<SecurityInfo> addBatch(List<SecurityInfo> batch, BulkAddResult.Builder result) {
+        List<SecurityInfo> replaced = new ArrayList<>();
+        writeLock.lock();
+        try {
+            for (SecurityInfo info : batch) {
+                try {
+                    SecurityInfo previous = unsafeAdd(info);
+                    if (previous != null && !previous.equals(info)) {
+                        replaced.add(previous);
+                    }
+                    result.added();
+                } catch (NonUniqueSecurityInfoException e) {
+                    result.rejected(info);
+                }
+            }
         } finally {
             writeLock.unlock();
         }
+        return replaced;
+    }
+
+    private void notifyReplaced(List<SecurityInfo> replaced) {
+        if (listener != null && !replaced.isEmpty()) {
+            listener.securityInfoRemoved(false, replaced.toArray(new SecurityInfo[replaced.size()]));
+        }
     }
 
     @Override
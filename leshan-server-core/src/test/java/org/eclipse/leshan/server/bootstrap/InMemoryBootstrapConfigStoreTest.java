@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.bootstrap;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.eclipse.leshan.core.SecurityMode;
+import org.eclipse.leshan.server.bootstrap.BootstrapConfig.ServerSecurity;
+import org.junit.Test;
+
+public class InMemoryBootstrapConfigStoreTest {
+
+    private final InMemoryBootstrapConfigStore store = new InMemoryBootstrapConfigStore();
+
+    @Test
+    public void bootstrap_psk_identity_index_follows_modifications() throws InvalidConfigurationException {
+        store.add("ep1", givenAPskConfig("id1"));
+        store.add("ep2", givenAPskConfig("id2"));
+        assertEquals(Collections.singleton("ep1"), store.getEndpointsByBootstrapPskIdentity("id1"));
+
+        // identity changed
+        store.add("ep1", givenAPskConfig("id1bis"));
+        assertTrue(store.getEndpointsByBootstrapPskIdentity("id1").isEmpty());
+        assertEquals(Collections.singleton("ep1"), store.getEndpointsByBootstrapPskIdentity("id1bis"));
+
+        // previous identity can be used again
+        store.add("ep3", givenAPskConfig("id1"));
+        assertEquals(Collections.singleton("ep3"), store.getEndpointsByBootstrapPskIdentity("id1"));
+
+        store.remove("ep2");
+        assertTrue(store.getEndpointsByBootstrapPskIdentity("id2").isEmpty());
+    }
+
+    @Test
+    public void bootstrap_psk_identity_can_be_shared_between_bootstrap_servers()
+            throws InvalidConfigurationException {
+        store.add("ep1", givenAPskConfig("id1", "coaps://localhost:5684"));
+        store.add("ep2", givenAPskConfig("id1", "coaps://otherhost:5684"));
+
+        assertEquals(new HashSet<>(Arrays.asList("ep1", "ep2")), store.getEndpointsByBootstrapPskIdentity("id1"));
+    }
+
+    @Test
+    public void removing_one_config_keeps_other_endpoints_sharing_bootstrap_psk_identity()
+            throws InvalidConfigurationException {
+        store.add("ep1", givenAPskConfig("id1", "coaps://localhost:5684"));
+        store.add("ep2", givenAPskConfig("id1", "coaps://otherhost:5684"));
+
+        // removing the last added config must not drop the first one
+        store.remove("ep2");
+        assertEquals(Collections.singleton("ep1"), store.getEndpointsByBootstrapPskIdentity("id1"));
+
+        // same when identity of a config changes
+        store.add("ep2", givenAPskConfig("id1", "coaps://otherhost:5684"));
+        store.add("ep1", givenAPskConfig("id1bis", "coaps://localhost:5684"));
+        assertEquals(Collections.singleton("ep2"), store.getEndpointsByBootstrapPskIdentity("id1"));
+        assertEquals(Collections.singleton("ep1"), store.getEndpointsByBootstrapPskIdentity("id1bis"));
+
+        store.remove("ep2");
+        assertTrue(store.getEndpointsByBootstrapPskIdentity("id1").isEmpty());
+    }
+
+    @Test(expected = InvalidConfigurationException.class)
+    public void bootstrap_psk_identity_must_be_unique() throws InvalidConfigurationException {
+        store.add("ep1", givenAPskConfig("id1"));
+        store.add("ep2", givenAPskConfig("id1"));
+    }
+
+    private BootstrapConfig givenAPskConfig(String identity) {
+        return givenAPskConfig(identity, "coaps://localhost:5684");
+    }
+
+    private BootstrapConfig givenAPskConfig(String identity, String bootstrapServerUri) {
+        BootstrapConfig config = new BootstrapConfig();
+        ServerSecurity bsSecurity = new ServerSecurity();
+        bsSecurity.serverId = 1111;
+        bsSecurity.bootstrapServer = true;
+        bsSecurity.uri = bootstrapServerUri;
+        bsSecurity.securityMode = SecurityMode.PSK;
+        bsSecurity.publicKeyOrId = identity.getBytes(StandardCharsets.UTF_8);
+        bsSecurity.secretKey = new byte[] { 1, 2, 3 };
+        config.security.put(0, bsSecurity);
+        return config;
+    }
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.registration;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+
+import org.eclipse.leshan.core.Link;
+import org.eclipse.leshan.core.request.Identity;
+import org.junit.Test;
+
+public class ObjectLinksCacheTest {
+
+    ObjectLinksCache cache = new ObjectLinksCache(2);
+
+    @Test
+    public void identical_payloads_share_links_and_supported_objects() {
+        Link[] first = cache.parse("</root>;rt=\"oma.lwm2m\",</root/1/0>,</root/3/0>;ver=1.1".getBytes());
+        Link[] second = cache.parse("</root>;rt=\"oma.lwm2m\",</root/1/0>,</root/3/0>;ver=1.1".getBytes());
+
+        assertSame(first, second);
+        assertArrayEquals(Link.parse("</root>;rt=\"oma.lwm2m\",</root/1/0>,</root/3/0>;ver=1.1".getBytes()), first);
+
+        Map<Integer, String> supportedObjects = cache.getSupportedObjects(first);
+        assertSame(supportedObjects, cache.getSupportedObjects(second));
+        assertEquals("1.1", supportedObjects.get(3));
+        assertEquals(2, supportedObjects.size());
+    }
+
+    @Test
+    public void unknown_links_have_no_shared_supported_objects() {
+        assertNull(cache.getSupportedObjects(Link.parse("</1/0>".getBytes())));
+        assertNull(cache.getSupportedObjects(null));
+    }
+
+    @Test
+    public void least_recently_used_payload_is_evicted() {
+        Link[] first = cache.parse("</1/0>".getBytes());
+        cache.parse("</2/0>".getBytes());
+        // access first payload so second one is the eldest
+        cache.parse("</1/0>".getBytes());
+        cache.parse("</3/0>".getBytes());
+
+        assertEquals(2, cache.size());
+        assertSame(first, cache.parse("</1/0>".getBytes()));
+        assertNotNull(cache.getSupportedObjects(first));
+    }
+
+    @Test
+    public void updated_registration_keeps_shared_supported_objects() {
+        Link[] links = cache.parse("</1/0>,</3/0>".getBytes());
+        Identity identity = Identity.unsecure(new InetSocketAddress(5683));
+        Registration registration = new Registration.Builder("id", "ep", identity).objectLinks(links)
+                .supportedObjects(cache.getSupportedObjects(links)).build();
+
+        RegistrationUpdate update = new RegistrationUpdate("id", identity, null, null, null, null, null, cache);
+        Registration updated = update.update(registration);
+
+        assertSame(links, updated.getObjectLinks());
+        assertEquals(registration.getSupportedObject(), updated.getSupportedObject());
+    }
+}
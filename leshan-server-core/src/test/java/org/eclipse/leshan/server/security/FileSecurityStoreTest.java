@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.security;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileSecurityStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String filename;
+
+    @Before
+    public void setUp() {
+        filename = new File(folder.getRoot(), "security.data").getPath();
+    }
+
+    @Test
+    public void modifications_reloaded_from_journal() throws GeneralSecurityException, NonUniqueSecurityInfoException {
+        PublicKey publicKey = KeyPairGenerator.getInstance("EC").generateKeyPair().getPublic();
+        FileSecurityStore store = new FileSecurityStore(filename);
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[] { 1 }));
+        store.add(SecurityInfo.newRawPublicKeyInfo("ep2", publicKey));
+        store.add(SecurityInfo.newX509CertInfo("ep3"));
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep1", "id1bis", new byte[] { 2 }));
+        store.remove("ep3", false);
+
+        FileSecurityStore reloaded = new FileSecurityStore(filename);
+
+        assertEquals(2, reloaded.getAll().size());
+        assertNull(reloaded.getByIdentity("id1"));
+        assertArrayEquals(new byte[] { 2 }, reloaded.getByIdentity("id1bis").getPreSharedKey());
+        assertEquals(publicKey, reloaded.getByEndpoint("ep2").getRawPublicKey());
+        assertNull(reloaded.getByEndpoint("ep3"));
+    }
+
+    @Test
+    public void truncated_last_record_ignored() throws NonUniqueSecurityInfoException, IOException {
+        FileSecurityStore store = new FileSecurityStore(filename);
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[] { 1 }));
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep2", "id2", new byte[] { 2 }));
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+            file.setLength(file.length() - 1);
+        }
+
+        FileSecurityStore reloaded = new FileSecurityStore(filename);
+        assertEquals(1, reloaded.getAll().size());
+
+        // journal is still usable
+        reloaded.add(SecurityInfo.newPreSharedKeyInfo("ep3", "id3", new byte[] { 3 }));
+        assertNotNull(new FileSecurityStore(filename).getByIdentity("id3"));
+    }
+
+    @Test
+    public void corrupted_record_truncates_journal() throws NonUniqueSecurityInfoException, IOException {
+        FileSecurityStore store = new FileSecurityStore(filename);
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[] { 1 }));
+        long firstRecordEnd = new File(filename).length();
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep2", "id2", new byte[] { 2 }));
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep3", "id3", new byte[] { 3 }));
+        // corrupt the content of the second record
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+            file.seek(firstRecordEnd + 10);
+            byte b = file.readByte();
+            file.seek(firstRecordEnd + 10);
+            file.writeByte(~b);
+        }
+
+        FileSecurityStore reloaded = new FileSecurityStore(filename);
+        assertNotNull(reloaded.getByIdentity("id1"));
+        assertNull(reloaded.getByIdentity("id2"));
+        assertNull(reloaded.getByIdentity("id3"));
+        assertEquals(firstRecordEnd, new File(filename).length());
+    }
+
+    @Test
+    public void zero_filled_tail_ignored() throws NonUniqueSecurityInfoException, IOException {
+        FileSecurityStore store = new FileSecurityStore(filename);
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[] { 1 }));
+        long length = new File(filename).length();
+        // e.g. file size updated but not its content before a power loss
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+            file.setLength(length + 64);
+        }
+
+        FileSecurityStore reloaded = new FileSecurityStore(filename);
+        assertNotNull(reloaded.getByIdentity("id1"));
+        assertEquals(length, new File(filename).length());
+
+        // journal is still usable
+        reloaded.add(SecurityInfo.newPreSharedKeyInfo("ep2", "id2", new byte[] { 2 }));
+        assertNotNull(new FileSecurityStore(filename).getByIdentity("id2"));
+    }
+
+    @Test
+    public void unknown_record_fails_loading() throws NonUniqueSecurityInfoException, IOException {
+        FileSecurityStore store = new FileSecurityStore(filename);
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[] { 1 }));
+        appendRecord(new byte[] { '?' });
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep2", "id2", new byte[] { 2 }));
+
+        assertLoadingFailsWithoutModifyingJournal();
+    }
+
+    @Test
+    public void undecodable_record_fails_loading() throws NonUniqueSecurityInfoException, IOException {
+        FileSecurityStore store = new FileSecurityStore(filename);
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[] { 1 }));
+        // ADD record of an RPK security info with an invalid public key
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(record);
+        out.writeByte('A');
+        out.writeUTF("ep2");
+        out.writeByte(1);
+        out.writeShort(3);
+        out.write(new byte[] { 1, 2, 3 });
+        appendRecord(record.toByteArray());
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep3", "id3", new byte[] { 3 }));
+
+        assertLoadingFailsWithoutModifyingJournal();
+    }
+
+    @Test
+    public void non_unique_record_fails_loading() throws NonUniqueSecurityInfoException, IOException {
+        FileSecurityStore store = new FileSecurityStore(filename);
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[] { 1 }));
+        // ADD record of another endpoint using the same identity
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(record);
+        out.writeByte('A');
+        out.writeUTF("ep2");
+        out.writeByte(0);
+        out.writeUTF("id1");
+        out.writeShort(1);
+        out.write(2);
+        appendRecord(record.toByteArray());
+
+        assertLoadingFailsWithoutModifyingJournal();
+    }
+
+    @Test
+    public void too_long_value_rejected() throws NonUniqueSecurityInfoException {
+        FileSecurityStore store = new FileSecurityStore(filename);
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[0xFFFF]));
+
+        try {
+            store.add(SecurityInfo.newPreSharedKeyInfo("ep2", "id2", new byte[0x10000]));
+            fail("value should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        assertNull(store.getByEndpoint("ep2"));
+        assertEquals(0xFFFF, new FileSecurityStore(filename).getByEndpoint("ep1").getPreSharedKey().length);
+    }
+
+    @Test
+    public void journal_compacted() throws NonUniqueSecurityInfoException {
+        FileSecurityStore store = new FileSecurityStore(filename, false, 10);
+        for (int i = 0; i < 100; i++) {
+            store.add(SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[] { (byte) i }));
+        }
+        // header + at most 11 records of 23 bytes instead of 100 records
+        assertTrue(new File(filename).length() <= 4 + 11 * 23);
+        assertArrayEquals(new byte[] { 99 }, new FileSecurityStore(filename).getByIdentity("id1").getPreSharedKey());
+    }
+
+    @Test
+    public void bulk_add_persisted_by_batch() {
+        List<SecurityInfo> infos = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            infos.add(SecurityInfo.newPreSharedKeyInfo("ep" + i, "id" + i, new byte[] { (byte) i }));
+        }
+        // identity already used in the same bulk add
+        infos.add(SecurityInfo.newPreSharedKeyInfo("other", "id3", new byte[] { 3 }));
+        final List<Integer> progress = new ArrayList<>();
+
+        FileSecurityStore store = new FileSecurityStore(filename);
+        BulkAddResult result = store.addAll(infos.iterator(), 10, new BulkSecurityStore.ProgressListener() {
+            @Override
+            public void onProgress(BulkAddResult result) {
+                progress.add(result.getProcessedCount());
+            }
+        });
+
+        assertEquals(25, result.getAddedCount());
+        assertEquals("other", result.getRejected().get(0).getEndpoint());
+        assertEquals(Arrays.asList(10, 20, 26), progress);
+        FileSecurityStore reloaded = new FileSecurityStore(filename);
+        assertEquals(25, reloaded.getAll().size());
+        assertEquals("ep3", reloaded.getByIdentity("id3").getEndpoint());
+    }
+
+    @Test
+    public void legacy_file_converted() throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filename))) {
+            out.writeObject(new SecurityInfo[] { SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[] { 1 }) });
+        }
+
+        assertNotNull(new FileSecurityStore(filename).getByIdentity("id1"));
+        assertNotNull(new FileSecurityStore(filename).getByIdentity("id1"));
+    }
+
+    private void assertLoadingFailsWithoutModifyingJournal() {
+        long length = new File(filename).length();
+        try {
+            new FileSecurityStore(filename);
+            fail("loading should fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        // records following the invalid one are not dropped
+        assertEquals(length, new File(filename).length());
+    }
+
+    private void appendRecord(byte[] content) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+            file.seek(file.length());
+            file.writeInt(content.length);
+            file.writeInt((int) crc.getValue());
+            file.write(content);
+        }
+    }
+}
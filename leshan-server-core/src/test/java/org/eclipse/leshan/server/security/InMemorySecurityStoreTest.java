@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.security;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class InMemorySecurityStoreTest {
+
+    @Test
+    public void bulk_add_rejects_non_unique_identities() throws NonUniqueSecurityInfoException {
+        InMemorySecurityStore store = new InMemorySecurityStore();
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[] { 1 }));
+
+        BulkAddResult result = store.addAll(Arrays.asList( //
+                SecurityInfo.newPreSharedKeyInfo("ep2", "id1", new byte[] { 2 }),
+                SecurityInfo.newPreSharedKeyInfo("ep3", "id3", new byte[] { 3 })).iterator(), 10, null);
+
+        assertEquals(1, result.getAddedCount());
+        assertEquals("ep2", result.getRejected().get(0).getEndpoint());
+        assertEquals("ep1", store.getByIdentity("id1").getEndpoint());
+        assertNotNull(store.getByIdentity("id3"));
+    }
+
+    @Test
+    public void bulk_add_reports_replaced_info_as_removed() throws NonUniqueSecurityInfoException {
+        InMemorySecurityStore store = new InMemorySecurityStore();
+        SecurityInfo unchanged = SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[] { 1 });
+        SecurityInfo replaced = SecurityInfo.newPreSharedKeyInfo("ep2", "id2", new byte[] { 2 });
+        store.add(unchanged);
+        store.add(replaced);
+        final List<SecurityInfo> removed = new ArrayList<>();
+        store.setListener(new SecurityStoreListener() {
+            @Override
+            public void securityInfoRemoved(boolean infosAreCompromised, SecurityInfo... infos) {
+                assertFalse(infosAreCompromised);
+                removed.addAll(Arrays.asList(infos));
+            }
+        });
+
+        store.addAll(Arrays.asList( //
+                SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[] { 1 }),
+                SecurityInfo.newPreSharedKeyInfo("ep2", "id2bis", new byte[] { 2 })).iterator(), 10, null);
+
+        assertEquals(Arrays.asList(replaced), removed);
+        assertNull(store.getByIdentity("id2"));
+    }
+
+    @Test
+    public void progress_reports_are_snapshots() {
+        InMemorySecurityStore store = new InMemorySecurityStore();
+        final List<BulkAddResult> progress = new ArrayList<>();
+
+        BulkAddResult result = store.addAll(Arrays.asList( //
+                SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[] { 1 }),
+                SecurityInfo.newPreSharedKeyInfo("ep2", "id1", new byte[] { 2 })).iterator(), 1,
+                new BulkSecurityStore.ProgressListener() {
+                    @Override
+                    public void onProgress(BulkAddResult result) {
+                        progress.add(result);
+                    }
+                });
+
+        assertEquals(2, progress.size());
+        assertEquals(1, progress.get(0).getProcessedCount());
+        assertTrue(progress.get(0).getRejected().isEmpty());
+        assertEquals(2, result.getProcessedCount());
+        assertEquals(1, result.getRejected().size());
+    }
+}
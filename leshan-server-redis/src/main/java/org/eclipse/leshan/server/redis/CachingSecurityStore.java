@@ -0,0 +1,440 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.redis;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.leshan.core.Destroyable;
+import org.eclipse.leshan.core.Startable;
+import org.eclipse.leshan.core.Stoppable;
+import org.eclipse.leshan.core.util.Validate;
+import org.eclipse.leshan.server.security.BulkAddResult;
+import org.eclipse.leshan.server.security.BulkSecurityStore;
+import org.eclipse.leshan.server.security.EditableSecurityStore;
+import org.eclipse.leshan.server.security.NonUniqueSecurityInfoException;
+import org.eclipse.leshan.server.security.SecurityInfo;
+import org.eclipse.leshan.server.security.SecurityStore;
+import org.eclipse.leshan.server.security.SecurityStoreListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.util.Pool;
+
+/**
+ * A {@link SecurityStore} decorator keeping a bounded local cache of {@link SecurityInfo} by endpoint and by PSK
+ * identity, to avoid Redis round-trips on each DTLS handshake.
+ * <p>
+ * Entries expire after a time-to-live. Unknown endpoints and identities are cached too (negative caching) with their
+ * own, usually shorter, time-to-live.
+ * <p>
+ * Each time {@link #add(SecurityInfo)}, {@link #addAll(Iterator, int, ProgressListener)} or
+ * {@link #remove(String, boolean)} is called, an invalidation message is published on a Redis channel, all instances
+ * sharing the same Redis evict the matching entries. As for
+ * {@link RedisLocalCache}, the cache is only used while the subscription to this channel is active. Modifications
+ * done without this decorator are not published and are only seen once cached entries expire.
+ * <p>
+ * When security info are removed, entries are evicted before the {@link SecurityStoreListener} is called, so
+ * compromised info are never served from the cache once the listener is notified.
+ *
+ * @since 1.4
+ */
+public class CachingSecurityStore implements BulkSecurityStore, Startable, Stoppable, Destroyable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingSecurityStore.class);
+
+    /** Default channel used to publish invalidation messages */
+    public static final String DEFAULT_CHANNEL = "LESHAN:SEC:INVALIDATE";
+
+    // first byte of invalidation messages
+    private static final byte ENDPOINT = 'E';
+    private static final byte IDENTITY = 'I';
+
+    private final EditableSecurityStore store;
+    private final Pool<Jedis> pool;
+    private final InvalidationChannel channel;
+    private final long ttl; // in ns
+    private final long negativeTtl; // in ns
+
+    private final Map<String, CacheEntry> byEndpoint;
+    private final Map<String, CacheEntry> byIdentity;
+
+    // a value loaded from the store is cached only if it was not invalidated since the load started
+    private final InvalidationVersions versions = new InvalidationVersions();
+    private volatile boolean subscribed;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private volatile SecurityStoreListener listener;
+
+    // security info replaced during the bulk add of the current thread
+    private final ThreadLocal<List<SecurityInfo>> replacedByBulkAdd = new ThreadLocal<>();
+
+    /**
+     * @param store the decorated store
+     * @param pool the Redis pool used to publish and receive invalidation messages
+     * @param maxSize maximum number of entries kept by endpoint and by identity
+     * @param ttl time-to-live of cached security info in milliseconds
+     * @param negativeTtl time-to-live of unknown endpoints and identities in milliseconds
+     */
+    public CachingSecurityStore(EditableSecurityStore store, Pool<Jedis> pool, int maxSize, long ttl,
+            long negativeTtl) {
+        this(store, pool, maxSize, ttl, negativeTtl, DEFAULT_CHANNEL);
+    }
+
+    /**
+     * @param store the decorated store
+     * @param pool the Redis pool used to publish and receive invalidation messages
+     * @param maxSize maximum number of entries kept by endpoint and by identity
+     * @param ttl time-to-live of cached security info in milliseconds
+     * @param negativeTtl time-to-live of unknown endpoints and identities in milliseconds, 0 to disable negative
+     *        caching
+     * @param channel the Redis channel used to publish invalidation messages
+     */
+    public CachingSecurityStore(EditableSecurityStore store, Pool<Jedis> pool, int maxSize, long ttl, long negativeTtl,
+            String channel) {
+        Validate.notNull(store);
+        Validate.notNull(pool);
+        Validate.notNull(channel);
+        Validate.isTrue(maxSize > 0, "maximum size must be positive");
+        Validate.isTrue(ttl > 0, "time-to-live must be positive");
+        Validate.isTrue(negativeTtl >= 0, "negative time-to-live must be positive or 0");
+
+        this.store = store;
+        this.pool = pool;
+        this.channel = new InvalidationChannel("CachingSecurityStore", channel, new InvalidationChannel.Listener() {
+            @Override
+            public void subscriptionChanged(boolean subscribed) {
+                setSubscribed(subscribed);
+            }
+
+            @Override
+            public void invalidated(byte type, byte[] id) {
+                onInvalidation(type, id);
+            }
+        });
+        this.ttl = TimeUnit.MILLISECONDS.toNanos(ttl);
+        this.negativeTtl = TimeUnit.MILLISECONDS.toNanos(negativeTtl);
+        this.byEndpoint = new LruMap<>(maxSize);
+        this.byIdentity = new LruMap<>(maxSize);
+
+        // evict removed info before forwarding the event to the user listener
+        this.store.setListener(new SecurityStoreListener() {
+            @Override
+            public void securityInfoRemoved(boolean infosAreCompromised, SecurityInfo... infos) {
+                for (SecurityInfo info : infos) {
+                    evict(info.getEndpoint(), info.getIdentity());
+                }
+                // info replaced by a bulk add of this thread must be invalidated on other instances too
+                List<SecurityInfo> replaced = replacedByBulkAdd.get();
+                if (replaced != null) {
+                    replaced.addAll(Arrays.asList(infos));
+                }
+                SecurityStoreListener l = listener;
+                if (l != null) {
+                    l.securityInfoRemoved(infosAreCompromised, infos);
+                }
+            }
+        });
+    }
+
+    /* *************** SecurityStore API **************** */
+
+    @Override
+    public SecurityInfo getByEndpoint(String endpoint) {
+        CacheEntry entry = get(byEndpoint, endpoint);
+        if (entry != null) {
+            return entry.info;
+        }
+        long loadVersion = versions.get(endpoint.hashCode());
+        SecurityInfo info = store.getByEndpoint(endpoint);
+        put(byEndpoint, endpoint, info, loadVersion);
+        return info;
+    }
+
+    @Override
+    public SecurityInfo getByIdentity(String identity) {
+        CacheEntry entry = get(byIdentity, identity);
+        if (entry != null) {
+            return entry.info;
+        }
+        long loadVersion = versions.get(identity.hashCode());
+        SecurityInfo info = store.getByIdentity(identity);
+        put(byIdentity, identity, info, loadVersion);
+        return info;
+    }
+
+    @Override
+    public Collection<SecurityInfo> getAll() {
+        return store.getAll();
+    }
+
+    @Override
+    public SecurityInfo add(SecurityInfo info) throws NonUniqueSecurityInfoException {
+        SecurityInfo previous = store.add(info);
+        // new identity may be negatively cached, previous one must not be resolved anymore
+        String previousIdentity = previous == null ? null : previous.getIdentity();
+        invalidate(info.getEndpoint(), info.getIdentity(), previousIdentity);
+        return previous;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Security information are added by batches if the decorated store is a {@link BulkSecurityStore}, one by one
+     * otherwise, then invalidation messages of each batch are published at once.
+     */
+    @Override
+    public BulkAddResult addAll(Iterator<SecurityInfo> infos, int batchSize, ProgressListener progressListener) {
+        Validate.isTrue(batchSize > 0, "batch size must be positive");
+        BulkAddResult.Builder result = new BulkAddResult.Builder();
+        List<SecurityInfo> batch = new ArrayList<>(batchSize);
+        while (infos.hasNext()) {
+            batch.add(infos.next());
+            if (batch.size() == batchSize || !infos.hasNext()) {
+                addBatch(batch, result);
+                batch.clear();
+                if (progressListener != null) {
+                    progressListener.onProgress(result.build());
+                }
+            }
+        }
+        return result.build();
+    }
+
+    private void addBatch(List<SecurityInfo> batch, BulkAddResult.Builder result) {
+        // new identities may be negatively cached, previous ones must not be resolved anymore
+        List<SecurityInfo> added = new ArrayList<>(batch.size());
+        if (store instanceof BulkSecurityStore) {
+            // replaced info are reported by the store listener
+            BulkAddResult batchResult;
+            replacedByBulkAdd.set(added);
+            try {
+                batchResult = ((BulkSecurityStore) store).addAll(batch.iterator(), batch.size(), null);
+            } finally {
+                replacedByBulkAdd.remove();
+            }
+            Set<SecurityInfo> rejected = Collections.newSetFromMap(new IdentityHashMap<SecurityInfo, Boolean>());
+            rejected.addAll(batchResult.getRejected());
+            for (SecurityInfo info : batch) {
+                if (rejected.contains(info)) {
+                    result.rejected(info);
+                } else {
+                    result.added();
+                    added.add(info);
+                }
+            }
+        } else {
+            for (SecurityInfo info : batch) {
+                try {
+                    SecurityInfo previous = store.add(info);
+                    result.added();
+                    added.add(info);
+                    if (previous != null) {
+                        added.add(previous);
+                    }
+                } catch (NonUniqueSecurityInfoException e) {
+                    result.rejected(info);
+                }
+            }
+        }
+        invalidate(added);
+    }
+
+    @Override
+    public SecurityInfo remove(String endpoint, boolean infosAreCompromised) {
+        // local entries are evicted by the store listener before the user listener is called
+        SecurityInfo removed = store.remove(endpoint, infosAreCompromised);
+        if (removed != null) {
+            invalidate(endpoint, removed.getIdentity());
+        }
+        return removed;
+    }
+
+    @Override
+    public void setListener(SecurityStoreListener listener) {
+        this.listener = listener;
+    }
+
+    /* *************** Cache access **************** */
+
+    private synchronized CacheEntry get(Map<String, CacheEntry> cache, String key) {
+        CacheEntry entry = subscribed ? cache.get(key) : null;
+        if (entry != null && entry.expiration - System.nanoTime() <= 0) {
+            cache.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    private synchronized void put(Map<String, CacheEntry> cache, String key, SecurityInfo info, long loadVersion) {
+        long entryTtl = info == null ? negativeTtl : ttl;
+        if (subscribed && loadVersion == versions.get(key.hashCode()) && entryTtl > 0) {
+            cache.put(key, new CacheEntry(info, System.nanoTime() + entryTtl));
+        }
+    }
+
+    /* *************** Invalidation **************** */
+
+    /**
+     * Evict entries from this cache and from the cache of other instances.
+     */
+    private void invalidate(String endpoint, String... identities) {
+        evict(endpoint, identities);
+        try (Jedis j = pool.getResource()) {
+            channel.publish(j, ENDPOINT, endpoint.getBytes(UTF_8));
+            for (String identity : identities) {
+                if (identity != null) {
+                    channel.publish(j, IDENTITY, identity.getBytes(UTF_8));
+                }
+            }
+        }
+    }
+
+    /**
+     * Evict entries of these security info from this cache and from the cache of other instances.
+     */
+    private void invalidate(List<SecurityInfo> infos) {
+        if (infos.isEmpty()) {
+            return;
+        }
+        for (SecurityInfo info : infos) {
+            evict(info.getEndpoint(), info.getIdentity());
+        }
+        try (Jedis j = pool.getResource()) {
+            Pipeline pipeline = j.pipelined();
+            for (SecurityInfo info : infos) {
+                channel.publish(pipeline, ENDPOINT, info.getEndpoint().getBytes(UTF_8));
+                if (info.getIdentity() != null) {
+                    channel.publish(pipeline, IDENTITY, info.getIdentity().getBytes(UTF_8));
+                }
+            }
+            pipeline.sync();
+        }
+    }
+
+    synchronized void evict(String endpoint, String... identities) {
+        if (endpoint != null) {
+            versions.increment(endpoint.hashCode());
+            byEndpoint.remove(endpoint);
+        }
+        for (String identity : identities) {
+            if (identity != null) {
+                versions.increment(identity.hashCode());
+                byIdentity.remove(identity);
+            }
+        }
+    }
+
+    synchronized void setSubscribed(boolean subscribed) {
+        versions.incrementAll();
+        byEndpoint.clear();
+        byIdentity.clear();
+        this.subscribed = subscribed;
+    }
+
+    void onInvalidation(byte type, byte[] id) {
+        switch (type) {
+        case ENDPOINT:
+            evict(new String(id, UTF_8));
+            break;
+        case IDENTITY:
+            evict(null, new String(id, UTF_8));
+            break;
+        default:
+            LOG.warn("Unknown security cache invalidation message type {} ignored", type);
+        }
+    }
+
+    /* *************** Lifecycle **************** */
+
+    /**
+     * Start listening for invalidation messages, the cache is used only once subscribed.
+     */
+    @Override
+    public synchronized void start() {
+        if (store instanceof Startable) {
+            ((Startable) store).start();
+        }
+        channel.start(pool);
+    }
+
+    /**
+     * Stop listening for invalidation messages and clear the cache.
+     */
+    @Override
+    public synchronized void stop() {
+        channel.stop();
+        setSubscribed(false);
+        if (store instanceof Stoppable) {
+            ((Stoppable) store).stop();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        stop();
+        if (store instanceof Destroyable) {
+            ((Destroyable) store).destroy();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public synchronized int getEndpointCount() {
+        return byEndpoint.size();
+    }
+
+    public synchronized int getIdentityCount() {
+        return byIdentity.size();
+    }
+
+    private static class CacheEntry {
+        // null for unknown endpoint or identity
+        private final SecurityInfo info;
+        private final long expiration; // System.nanoTime() based
+
+        private CacheEntry(SecurityInfo info, long expiration) {
+            this.info = info;
+            this.expiration = expiration;
+        }
+    }
+}
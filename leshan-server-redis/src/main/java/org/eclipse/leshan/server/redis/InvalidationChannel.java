@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.redis;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.leshan.core.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.BinaryJedisPubSub;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.util.Pool;
+
+/**
+ * A Redis channel used by local caches to publish and receive invalidation messages.
+ * <p>
+ * An invalidation message is a type byte followed by the id of the invalidated value. While started, a thread is
+ * subscribed to the channel and subscribes again when the connection to Redis is lost. The listener is told each time
+ * the subscription starts or ends, as a cache can be used only while no invalidation message can be missed.
+ */
+class InvalidationChannel {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InvalidationChannel.class);
+
+    private static final long RESUBSCRIBE_DELAY = 1000; // in ms
+
+    interface Listener {
+
+        /**
+         * Called when the subscription starts or ends, cached values must be cleared in both cases.
+         */
+        void subscriptionChanged(boolean subscribed);
+
+        /**
+         * Called when an invalidation message is received.
+         */
+        void invalidated(byte type, byte[] id);
+    }
+
+    private final String name;
+    private final byte[] channel;
+    private final Listener listener;
+
+    private Subscriber subscriber;
+    private Thread subscriberThread;
+
+    /**
+     * @param name the name of the cache, used for logging and naming the subscriber thread
+     * @param channel the Redis channel
+     * @param listener the listener of subscription changes and invalidation messages
+     */
+    InvalidationChannel(String name, String channel, Listener listener) {
+        this.name = name;
+        this.channel = channel.getBytes(UTF_8);
+        this.listener = listener;
+    }
+
+    /**
+     * Publish an invalidation message to all instances subscribed to this channel, including this one.
+     */
+    void publish(Jedis j, byte type, byte[] id) {
+        j.publish(channel, toMessage(type, id));
+    }
+
+    /**
+     * Publish an invalidation message using a pipeline, to publish many of them at once.
+     */
+    void publish(Pipeline p, byte type, byte[] id) {
+        p.publish(channel, toMessage(type, id));
+    }
+
+    private byte[] toMessage(byte type, byte[] id) {
+        byte[] message = new byte[id.length + 1];
+        message[0] = type;
+        System.arraycopy(id, 0, message, 1, id.length);
+        return message;
+    }
+
+    /**
+     * Start listening for invalidation messages.
+     */
+    synchronized void start(Pool<Jedis> pool) {
+        if (subscriberThread == null) {
+            subscriber = new Subscriber(pool);
+            subscriberThread = new NamedThreadFactory(name + " Subscriber").newThread(subscriber);
+            subscriberThread.start();
+        }
+    }
+
+    /**
+     * Stop listening for invalidation messages.
+     */
+    synchronized void stop() {
+        if (subscriberThread != null) {
+            subscriber.stopped = true;
+            if (subscriber.isSubscribed()) {
+                subscriber.unsubscribe();
+            }
+            subscriberThread.interrupt();
+            subscriberThread = null;
+            subscriber = null;
+        }
+    }
+
+    private class Subscriber extends BinaryJedisPubSub implements Runnable {
+
+        private final Pool<Jedis> pool;
+        private volatile boolean stopped;
+
+        public Subscriber(Pool<Jedis> pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                try (Jedis j = pool.getResource()) {
+                    // blocks until unsubscribed or connection lost
+                    j.subscribe(this, channel);
+                } catch (RuntimeException e) {
+                    if (!stopped) {
+                        LOG.warn("{} subscription lost, cache disabled", name, e);
+                    }
+                }
+                listener.subscriptionChanged(false);
+                try {
+                    if (!stopped) {
+                        TimeUnit.MILLISECONDS.sleep(RESUBSCRIBE_DELAY);
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public void onSubscribe(byte[] channel, int subscribedChannels) {
+            listener.subscriptionChanged(true);
+        }
+
+        @Override
+        public void onMessage(byte[] channel, byte[] message) {
+            if (message.length < 1) {
+                LOG.warn("Empty {} invalidation message ignored", name);
+                return;
+            }
+            listener.invalidated(message[0], Arrays.copyOfRange(message, 1, message.length));
+        }
+    }
+}
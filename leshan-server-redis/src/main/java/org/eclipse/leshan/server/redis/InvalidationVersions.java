@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.redis;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Versions of the keys of a local cache, used to avoid caching a value loaded from Redis while it was invalidated.
+ * <p>
+ * The version of a key is read before loading its value, and the value is cached only if the version did not change
+ * meanwhile. There is a version per stripe of keys rather than per key, so the number of versions is bounded, and
+ * rather than a single one, so frequently invalidated keys do not prevent the caching of all others.
+ */
+class InvalidationVersions {
+
+    // number of versions, must be a power of 2
+    private static final int STRIPES = 256;
+
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+    /**
+     * @return the current version of the keys having this hash code.
+     */
+    long get(int hash) {
+        return versions.get(stripe(hash));
+    }
+
+    /**
+     * Increments the version of the keys having this hash code.
+     */
+    void increment(int hash) {
+        versions.incrementAndGet(stripe(hash));
+    }
+
+    /**
+     * Increments the version of all keys.
+     */
+    void incrementAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            versions.incrementAndGet(i);
+        }
+    }
+
+    // package-private for tests
+    static int stripe(int hash) {
+        // spread high bits, as for HashMap
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.redis;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.leshan.core.observation.Observation;
+import org.eclipse.leshan.core.util.Validate;
+import org.eclipse.leshan.server.registration.Registration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.util.Pool;
+
+/**
+ * A bounded local cache of registrations and observations, used by {@link RedisRegistrationStore} to serve
+ * notifications without Redis round-trips.
+ * <p>
+ * Each time a registration or an observation is modified or removed, an invalidation message is published on a Redis
+ * channel. All cache instances sharing the same Redis subscribe to this channel and evict the matching entry. The
+ * cache is only used while the subscription is active: it is cleared when the connection to Redis is lost and
+ * re-enabled once subscribed again, so no invalidation can be missed.
+ * <p>
+ * An entry may be stale during the time an invalidation message takes to reach other instances.
+ *
+ * @since 1.4
+ */
+public class RedisLocalCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RedisLocalCache.class);
+
+    /** Default channel used to publish invalidation messages */
+    public static final String DEFAULT_CHANNEL = "LESHAN:CACHE:INVALIDATE";
+
+    // first byte of invalidation messages
+    private static final byte REGISTRATION = 'R';
+    private static final byte OBSERVATION = 'O';
+
+    private final InvalidationChannel channel;
+    private final Map<String, Registration> registrations;
+    private final Map<Token, Observation> observations;
+
+    // a value loaded from Redis is cached only if it was not invalidated since the load started
+    private final InvalidationVersions versions = new InvalidationVersions();
+    private volatile boolean subscribed;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxRegistrations maximum number of registrations kept in the cache
+     * @param maxObservations maximum number of observations kept in the cache
+     */
+    public RedisLocalCache(int maxRegistrations, int maxObservations) {
+        this(maxRegistrations, maxObservations, DEFAULT_CHANNEL);
+    }
+
+    /**
+     * @param maxRegistrations maximum number of registrations kept in the cache
+     * @param maxObservations maximum number of observations kept in the cache
+     * @param channel the Redis channel used to publish invalidation messages
+     */
+    public RedisLocalCache(int maxRegistrations, int maxObservations, String channel) {
+        Validate.isTrue(maxRegistrations > 0, "maximum number of registrations must be positive");
+        Validate.isTrue(maxObservations > 0, "maximum number of observations must be positive");
+        Validate.notNull(channel);
+
+        this.channel = new InvalidationChannel("RedisLocalCache", channel, new InvalidationChannel.Listener() {
+            @Override
+            public void subscriptionChanged(boolean subscribed) {
+                setSubscribed(subscribed);
+            }
+
+            @Override
+            public void invalidated(byte type, byte[] id) {
+                onInvalidation(type, id);
+            }
+        });
+        this.registrations = new LruMap<>(maxRegistrations);
+        this.observations = new LruMap<>(maxObservations);
+    }
+
+    /* *************** Cache access **************** */
+
+    /**
+     * @return the version to pass to {@link #putRegistration(Registration, long)} when the registration is loaded from
+     *         Redis.
+     */
+    long registrationVersion(String registrationId) {
+        return versions.get(registrationId.hashCode());
+    }
+
+    /**
+     * @return the version to pass to {@link #putObservation(byte[], Observation, long)} when the observation is loaded
+     *         from Redis.
+     */
+    long observationVersion(byte[] token) {
+        return versions.get(Arrays.hashCode(token));
+    }
+
+    synchronized Registration getRegistration(String registrationId) {
+        return count(subscribed ? registrations.get(registrationId) : null);
+    }
+
+    synchronized void putRegistration(Registration registration, long loadVersion) {
+        if (subscribed && loadVersion == registrationVersion(registration.getId())) {
+            registrations.put(registration.getId(), registration);
+        }
+    }
+
+    synchronized Observation getObservation(byte[] token) {
+        return count(subscribed ? observations.get(new Token(token)) : null);
+    }
+
+    synchronized void putObservation(byte[] token, Observation observation, long loadVersion) {
+        if (subscribed && loadVersion == observationVersion(token)) {
+            observations.put(new Token(token), observation);
+        }
+    }
+
+    private <T> T count(T value) {
+        if (value == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    /* *************** Invalidation **************** */
+
+    /**
+     * Evict a registration from this cache and from the cache of other instances.
+     */
+    void invalidateRegistration(Jedis j, String registrationId) {
+        evictRegistration(registrationId);
+        channel.publish(j, REGISTRATION, registrationId.getBytes(UTF_8));
+    }
+
+    /**
+     * Evict an observation from this cache and from the cache of other instances.
+     */
+    void invalidateObservation(Jedis j, byte[] token) {
+        evictObservation(token);
+        channel.publish(j, OBSERVATION, token);
+    }
+
+    synchronized void evictRegistration(String registrationId) {
+        versions.increment(registrationId.hashCode());
+        registrations.remove(registrationId);
+    }
+
+    synchronized void evictObservation(byte[] token) {
+        versions.increment(Arrays.hashCode(token));
+        observations.remove(new Token(token));
+    }
+
+    synchronized void setSubscribed(boolean subscribed) {
+        versions.incrementAll();
+        registrations.clear();
+        observations.clear();
+        this.subscribed = subscribed;
+    }
+
+    void onInvalidation(byte type, byte[] id) {
+        switch (type) {
+        case REGISTRATION:
+            evictRegistration(new String(id, UTF_8));
+            break;
+        case OBSERVATION:
+            evictObservation(id);
+            break;
+        default:
+            LOG.warn("Unknown cache invalidation message type {} ignored", type);
+        }
+    }
+
+    /* *************** Subscription **************** */
+
+    /**
+     * Start listening for invalidation messages, the cache is used only once subscribed.
+     */
+    void start(Pool<Jedis> pool) {
+        channel.start(pool);
+    }
+
+    /**
+     * Stop listening for invalidation messages and clear the cache.
+     */
+    void stop() {
+        channel.stop();
+        setSubscribed(false);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public synchronized int getRegistrationCount() {
+        return registrations.size();
+    }
+
+    public synchronized int getObservationCount() {
+        return observations.size();
+    }
+}
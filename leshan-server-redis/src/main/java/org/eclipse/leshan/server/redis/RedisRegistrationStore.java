@@ -22,10 +22,12 @@ package org.eclipse.leshan.server.redis;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -39,6 +41,7 @@ import org.eclipse.californium.core.coap.Token;
 import org.eclipse.californium.core.observe.ObservationStoreException;
 import org.eclipse.californium.elements.EndpointContext;
 import org.eclipse.leshan.core.observation.Observation;
+import org.eclipse.leshan.core.util.Hex;
 import org.eclipse.leshan.core.util.NamedThreadFactory;
 import org.eclipse.leshan.core.util.Validate;
 import org.eclipse.leshan.server.Destroyable;
@@ -46,6 +49,8 @@ import org.eclipse.leshan.server.Startable;
 import org.eclipse.leshan.server.Stoppable;
 import org.eclipse.leshan.server.californium.observation.ObserveUtil;
 import org.eclipse.leshan.server.californium.registration.CaliforniumRegistrationStore;
+import org.eclipse.leshan.server.californium.serialization.ObservationBinarySerDes;
+import org.eclipse.leshan.server.californium.serialization.RegistrationBinarySerDes;
 import org.eclipse.leshan.server.redis.serialization.ObservationSerDes;
 import org.eclipse.leshan.server.redis.serialization.RegistrationSerDes;
 import org.eclipse.leshan.server.registration.Deregistration;
@@ -59,7 +64,6 @@ import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.ScanParams;
 import redis.clients.jedis.ScanResult;
-import redis.clients.jedis.Transaction;
 import redis.clients.jedis.util.Pool;
 
 /**
@@ -72,6 +76,10 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
     public static final int DEFAULT_CLEAN_LIMIT = 500;
     /** Defaut Extra time for registration lifetime in seconds */
     public static final long DEFAULT_GRACE_PERIOD = 0;
+    /** Default <code>COUNT</code> hint of <code>SCAN</code> commands used to iterate over registrations */
+    public static final int DEFAULT_SCAN_COUNT = 100;
+    /** Default maximum number of registrations fetched at once when iterating over registrations */
+    public static final int DEFAULT_FETCH_BATCH_SIZE = 100;
 
     private static final Logger LOG = LoggerFactory.getLogger(RedisRegistrationStore.class);
 
@@ -79,12 +87,186 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
     private static final String REG_EP = "REG:EP:"; // (Endpoint => Registration)
     private static final String REG_EP_REGID_IDX = "EP:REGID:"; // secondary index key (Registration ID => Endpoint)
     private static final String REG_EP_ADDR_IDX = "EP:ADDR:"; // secondary index key (Socket Address => Endpoint)
-    private static final String LOCK_EP = "LOCK:EP:";
     private static final byte[] OBS_TKN = "OBS:TKN:".getBytes(UTF_8);
     private static final String OBS_TKNS_REGID_IDX = "TKNS:REGID:"; // secondary index (token list by registration)
     private static final byte[] EXP_EP = "EXP:EP".getBytes(UTF_8); // a sorted set used for registration expiration
                                                                    // (expiration date, Endpoint)
 
+    // number of attempts of a script which fails because the registration was concurrently modified
+    private static final int MAX_SCRIPT_ATTEMPTS = 10;
+    // maximum number of registrations removed by one expiration script, as Redis is blocked while a script runs
+    private static final int CLEAN_BATCH_SIZE = 100;
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final byte[] TRUE = "1".getBytes(UTF_8);
+    private static final byte[] FALSE = "0".getBytes(UTF_8);
+
+    // Lua scripts : registration is only modified if its serialized value is the one read before (optimistic locking)
+    // and observations are removed by the script returning them after the status code.
+    // All accessed keys are given in KEYS : observations of a registration are removed only if its token list still
+    // contains the tokens read before, the keys of these observations being given by the caller.
+
+    // Lua functions used to remove all observations of a registration :
+    // tokensUnchanged : true if the token list contains exactly the n tokens following index i of the given table
+    // removeObservations : remove the n observations following index i of the given key table, removed observations
+    // are added to the given result table.
+    private static final String REMOVE_OBSERVATIONS = "" //
+            + "local function tokensUnchanged(tokensKey, tokens, i, n)\n" //
+            + "  local current = redis.call('LRANGE', tokensKey, 0, -1)\n" //
+            + "  if #current ~= n then return false end\n" //
+            + "  for t = 1, n do\n" //
+            + "    if current[t] ~= tokens[i + t] then return false end\n" //
+            + "  end\n" //
+            + "  return true\n" //
+            + "end\n" //
+            + "local function removeObservations(tokensKey, obsKeys, i, n, removed)\n" //
+            + "  for t = 1, n do\n" //
+            + "    local obs = redis.call('GET', obsKeys[i + t])\n" //
+            + "    if obs then\n" //
+            + "      table.insert(removed, obs)\n" //
+            + "      redis.call('DEL', obsKeys[i + t])\n" //
+            + "    end\n" //
+            + "  end\n" //
+            + "  redis.call('DEL', tokensKey)\n" //
+            + "end\n";
+
+    // KEYS : registration, regId index, address index, expiration set[, old regId index, old address index, old
+    // token list, old observations...]
+    // ARGV : expected old registration (empty if none), registration, endpoint, expiration[, old tokens...]
+    // returns {0} on conflict, {1, removed observations...} on success
+    private static final RedisScript ADD_REGISTRATION = new RedisScript(REMOVE_OBSERVATIONS //
+            + "local old = redis.call('GET', KEYS[1])\n" //
+            + "if (old or '') ~= ARGV[1] then return {0} end\n" //
+            + "if old and not tokensUnchanged(KEYS[7], ARGV, 4, #ARGV - 4) then return {0} end\n" //
+            + "redis.call('SET', KEYS[1], ARGV[2])\n" //
+            + "redis.call('SET', KEYS[2], ARGV[3])\n" //
+            + "redis.call('SET', KEYS[3], ARGV[3])\n" //
+            + "redis.call('ZADD', KEYS[4], ARGV[4], ARGV[3])\n" //
+            + "local result = {1}\n" //
+            + "if old then\n" //
+            + "  if KEYS[5] ~= KEYS[2] then redis.call('DEL', KEYS[5]) end\n" //
+            + "  if KEYS[6] ~= KEYS[3] and redis.call('GET', KEYS[6]) == ARGV[3] then\n" //
+            + "    redis.call('DEL', KEYS[6])\n" //
+            + "  end\n" //
+            + "  removeObservations(KEYS[7], KEYS, 7, #ARGV - 4, result)\n" //
+            + "end\n" //
+            + "return result");
+
+    // KEYS : registration, address index, expiration set, old address index
+    // ARGV : expected old registration, registration, endpoint, expiration
+    // returns 0 on conflict, 1 on success
+    private static final RedisScript UPDATE_REGISTRATION = new RedisScript("" //
+            + "if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end\n" //
+            + "redis.call('SET', KEYS[1], ARGV[2])\n" //
+            + "redis.call('ZADD', KEYS[3], ARGV[4], ARGV[3])\n" //
+            + "redis.call('SET', KEYS[2], ARGV[3])\n" //
+            + "if KEYS[4] ~= KEYS[2] and redis.call('GET', KEYS[4]) == ARGV[3] then redis.call('DEL', KEYS[4]) end\n" //
+            + "return 1");
+
+    // KEYS : regId index, registration, address index, expiration set, token list, observations...
+    // ARGV : expected registration, endpoint, tokens...
+    // returns {0} on conflict, {1} if already removed, {2, removed observations...} on success
+    private static final RedisScript REMOVE_REGISTRATION = new RedisScript(REMOVE_OBSERVATIONS //
+            + "if redis.call('GET', KEYS[2]) ~= ARGV[1] then return {0} end\n" //
+            + "if not tokensUnchanged(KEYS[5], ARGV, 2, #ARGV - 2) then return {0} end\n" //
+            + "if redis.call('DEL', KEYS[1]) == 0 then return {1} end\n" //
+            + "redis.call('DEL', KEYS[2])\n" //
+            + "local result = {2}\n" //
+            + "removeObservations(KEYS[5], KEYS, 5, #ARGV - 2, result)\n" //
+            + "if redis.call('GET', KEYS[3]) == ARGV[2] then redis.call('DEL', KEYS[3]) end\n" //
+            + "redis.call('ZREM', KEYS[4], ARGV[2])\n" //
+            + "return result");
+
+    // KEYS : regId index, observation, token list
+    // ARGV : observation, if absent ("1" or "0"), token
+    // returns {-1} if registration does not exist, {0, previous} if not added, {1[, previous]} if added
+    private static final RedisScript PUT_OBSERVATION = new RedisScript("" //
+            + "if redis.call('EXISTS', KEYS[1]) == 0 then return {-1} end\n" //
+            + "local previous = redis.call('GET', KEYS[2])\n" //
+            + "if ARGV[2] == '1' and previous and #previous > 0 then return {0, previous} end\n" //
+            + "redis.call('SET', KEYS[2], ARGV[1])\n" //
+            + "redis.call('LPUSH', KEYS[3], ARGV[3])\n" //
+            + "if previous then return {1, previous} end\n" //
+            + "return {1}");
+
+    // KEYS : observation, token list
+    // ARGV : expected observation, token
+    // returns 0 on conflict, 1 on success
+    private static final RedisScript REMOVE_OBSERVATION = new RedisScript("" //
+            + "if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end\n" //
+            + "redis.call('DEL', KEYS[1])\n" //
+            + "redis.call('LREM', KEYS[2], 0, ARGV[2])\n" //
+            + "return 1");
+
+    // KEYS : token list, observations...
+    // ARGV : tokens...
+    // returns {0} on conflict, {1, removed observations...} on success
+    private static final RedisScript REMOVE_ALL_OBSERVATIONS = new RedisScript(REMOVE_OBSERVATIONS //
+            + "if not tokensUnchanged(KEYS[1], ARGV, 0, #ARGV) then return {0} end\n" //
+            + "local result = {1}\n" //
+            + "removeObservations(KEYS[1], KEYS, 1, #ARGV, result)\n" //
+            + "return result");
+
+    // KEYS : expiration set, then registration of each endpoint
+    // ARGV : now, end of claim, then endpoints
+    // claims registrations still expired by moving their expiration to the end of claim, removes endpoints without
+    // registration from the expiration set, and returns
+    // {number of removed endpoints, endpoint1, registration1, endpoint2, registration2...}
+    private static final RedisScript CLAIM_EXPIRED = new RedisScript("" //
+            + "local result = {0}\n" //
+            + "for i = 3, #ARGV do\n" //
+            + "  local ep = ARGV[i]\n" //
+            + "  local score = redis.call('ZSCORE', KEYS[1], ep)\n" //
+            + "  -- not expired anymore if claimed by another cleaner or updated meanwhile\n" //
+            + "  if score and tonumber(score) <= tonumber(ARGV[1]) then\n" //
+            + "    local reg = redis.call('GET', KEYS[i - 1])\n" //
+            + "    if reg then\n" //
+            + "      redis.call('ZADD', KEYS[1], ARGV[2], ep)\n" //
+            + "      table.insert(result, ep)\n" //
+            + "      table.insert(result, reg)\n" //
+            + "    else\n" //
+            + "      redis.call('ZREM', KEYS[1], ep)\n" //
+            + "      result[1] = result[1] + 1\n" //
+            + "    end\n" //
+            + "  end\n" //
+            + "end\n" //
+            + "return result");
+
+    // KEYS : expiration set, then for each registration : registration, regId index, address index, token list,
+    // observations...
+    // ARGV : for each registration : expected registration, endpoint, expiration (empty to remove the registration),
+    // number of tokens, tokens...
+    // returns for each registration {0} if not removed, {1, removed observations...} if removed
+    private static final RedisScript EXPIRE_REGISTRATIONS = new RedisScript(REMOVE_OBSERVATIONS //
+            + "local results = {}\n" //
+            + "local k, a = 1, 0\n" //
+            + "while a < #ARGV do\n" //
+            + "  local regKey, regIdKey, addrKey, tokensKey = KEYS[k+1], KEYS[k+2], KEYS[k+3], KEYS[k+4]\n" //
+            + "  local expected, ep, expiration = ARGV[a+1], ARGV[a+2], ARGV[a+3]\n" //
+            + "  local n = tonumber(ARGV[a+4])\n" //
+            + "  if redis.call('GET', regKey) ~= expected then\n" //
+            + "    -- modified since claimed, so its expiration was modified too\n" //
+            + "    table.insert(results, {0})\n" //
+            + "  elseif expiration ~= '' then\n" //
+            + "    redis.call('ZADD', KEYS[1], expiration, ep)\n" //
+            + "    table.insert(results, {0})\n" //
+            + "  elseif not tokensUnchanged(tokensKey, ARGV, a+4, n) then\n" //
+            + "    -- observation added since claimed, registration stays claimed and is removed by a next clean\n" //
+            + "    table.insert(results, {0})\n" //
+            + "  else\n" //
+            + "    redis.call('DEL', regIdKey)\n" //
+            + "    redis.call('DEL', regKey)\n" //
+            + "    local result = {1}\n" //
+            + "    removeObservations(tokensKey, KEYS, k+4, n, result)\n" //
+            + "    if redis.call('GET', addrKey) == ep then redis.call('DEL', addrKey) end\n" //
+            + "    redis.call('ZREM', KEYS[1], ep)\n" //
+            + "    table.insert(results, result)\n" //
+            + "  end\n" //
+            + "  k = k + 4 + n\n" //
+            + "  a = a + 4 + n\n" //
+            + "end\n" //
+            + "return results");
+
     private final Pool<Jedis> pool;
 
     // Listener use to notify when a registration expires
@@ -98,7 +280,11 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
     private final int cleanLimit; // maximum number to clean in a clean period
     private final long gracePeriod; // in seconds
 
-    private final JedisLock lock;
+    // optional local cache for the notification hot path
+    private final RedisLocalCache cache;
+
+    // true to write registrations and observations in compact binary format rather than JSON
+    private final boolean binarySerialization;
 
     public RedisRegistrationStore(Pool<Jedis> p) {
         this(p, DEFAULT_CLEAN_PERIOD, DEFAULT_GRACE_PERIOD, DEFAULT_CLEAN_LIMIT); // default clean period 60s
@@ -112,20 +298,86 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
 
     public RedisRegistrationStore(Pool<Jedis> p, ScheduledExecutorService schedExecutor, long cleanPeriodInSec,
             long lifetimeGracePeriodInSec, int cleanLimit) {
-        this(p, schedExecutor, cleanPeriodInSec, lifetimeGracePeriodInSec, cleanLimit, new SingleInstanceJedisLock());
+        this(p, schedExecutor, cleanPeriodInSec, lifetimeGracePeriodInSec, cleanLimit, (RedisLocalCache) null);
     }
 
     /**
      * @since 1.1
+     * @deprecated the lock is not used anymore : registrations and observations are modified atomically by Lua
+     *             scripts. Use {@link #RedisRegistrationStore(Pool, ScheduledExecutorService, long, long, int)}
+     *             instead.
      */
+    @Deprecated
     public RedisRegistrationStore(Pool<Jedis> p, ScheduledExecutorService schedExecutor, long cleanPeriodInSec,
             long lifetimeGracePeriodInSec, int cleanLimit, JedisLock redisLock) {
+        this(p, schedExecutor, cleanPeriodInSec, lifetimeGracePeriodInSec, cleanLimit, (RedisLocalCache) null);
+        warnIgnoredLock(redisLock);
+    }
+
+    /**
+     * @since 1.4
+     * @deprecated the lock is not used anymore : registrations and observations are modified atomically by Lua
+     *             scripts. Use
+     *             {@link #RedisRegistrationStore(Pool, ScheduledExecutorService, long, long, int, RedisLocalCache)}
+     *             instead.
+     */
+    @Deprecated
+    public RedisRegistrationStore(Pool<Jedis> p, ScheduledExecutorService schedExecutor, long cleanPeriodInSec,
+            long lifetimeGracePeriodInSec, int cleanLimit, JedisLock redisLock, RedisLocalCache cache) {
+        this(p, schedExecutor, cleanPeriodInSec, lifetimeGracePeriodInSec, cleanLimit, cache);
+        warnIgnoredLock(redisLock);
+    }
+
+    /**
+     * @since 1.4
+     * @deprecated the lock is not used anymore : registrations and observations are modified atomically by Lua
+     *             scripts. Use
+     *             {@link #RedisRegistrationStore(Pool, ScheduledExecutorService, long, long, int, RedisLocalCache, boolean)}
+     *             instead.
+     */
+    @Deprecated
+    public RedisRegistrationStore(Pool<Jedis> p, ScheduledExecutorService schedExecutor, long cleanPeriodInSec,
+            long lifetimeGracePeriodInSec, int cleanLimit, JedisLock redisLock, RedisLocalCache cache,
+            boolean binarySerialization) {
+        this(p, schedExecutor, cleanPeriodInSec, lifetimeGracePeriodInSec, cleanLimit, cache, binarySerialization);
+        warnIgnoredLock(redisLock);
+    }
+
+    /**
+     * @param cache a local cache used by {@link #getRegistration(String)} and {@link #getObservation(String, byte[])},
+     *        or <code>null</code> to always read from Redis.
+     * @since 1.4
+     */
+    public RedisRegistrationStore(Pool<Jedis> p, ScheduledExecutorService schedExecutor, long cleanPeriodInSec,
+            long lifetimeGracePeriodInSec, int cleanLimit, RedisLocalCache cache) {
+        this(p, schedExecutor, cleanPeriodInSec, lifetimeGracePeriodInSec, cleanLimit, cache, false);
+    }
+
+    /**
+     * @param cache a local cache used by {@link #getRegistration(String)} and {@link #getObservation(String, byte[])},
+     *        or <code>null</code> to always read from Redis.
+     * @param binarySerialization <code>true</code> to write registrations and observations using the compact binary
+     *        format of {@link RegistrationBinarySerDes} and {@link ObservationBinarySerDes} rather than JSON. Both
+     *        formats are always readable, so binary format should be enabled once all instances sharing the Redis
+     *        support it.
+     * @since 1.4
+     */
+    public RedisRegistrationStore(Pool<Jedis> p, ScheduledExecutorService schedExecutor, long cleanPeriodInSec,
+            long lifetimeGracePeriodInSec, int cleanLimit, RedisLocalCache cache, boolean binarySerialization) {
         this.pool = p;
         this.schedExecutor = schedExecutor;
         this.cleanPeriod = cleanPeriodInSec;
         this.cleanLimit = cleanLimit;
         this.gracePeriod = lifetimeGracePeriodInSec;
-        this.lock = redisLock;
+        this.cache = cache;
+        this.binarySerialization = binarySerialization;
+    }
+
+    private static void warnIgnoredLock(JedisLock redisLock) {
+        if (redisLock != null && !(redisLock instanceof SingleInstanceJedisLock)) {
+            LOG.warn("{} is ignored : RedisRegistrationStore does not use any lock anymore",
+                    redisLock.getClass().getName());
+        }
     }
 
     /* *************** Redis Key utility function **************** */
@@ -141,112 +393,102 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
         return (prefix + registrationID).getBytes();
     }
 
-    private byte[] toLockKey(String endpoint) {
-        return toKey(LOCK_EP, endpoint);
-    }
-
-    private byte[] toLockKey(byte[] endpoint) {
-        return toKey(LOCK_EP.getBytes(UTF_8), endpoint);
-    }
-
     /* *************** Leshan Registration API **************** */
 
     @Override
     public Deregistration addRegistration(Registration registration) {
-        try (Jedis j = pool.getResource()) {
-            byte[] lockValue = null;
-            byte[] lockKey = toLockKey(registration.getEndpoint());
-
-            try {
-                lockValue = lock.acquire(j, lockKey);
-
-                // add registration
-                byte[] k = toEndpointKey(registration.getEndpoint());
-                byte[] old = j.getSet(k, serializeReg(registration));
-
-                // add registration: secondary indexes
-                byte[] regid_idx = toRegIdKey(registration.getId());
-                j.set(regid_idx, registration.getEndpoint().getBytes(UTF_8));
-                byte[] addr_idx = toRegAddrKey(registration.getSocketAddress());
-                j.set(addr_idx, registration.getEndpoint().getBytes(UTF_8));
-
-                // Add or update expiration
-                addOrUpdateExpiration(j, registration);
-
-                if (old != null) {
-                    Registration oldRegistration = deserializeReg(old);
-                    // remove old secondary index
-                    if (!registration.getId().equals(oldRegistration.getId()))
-                        j.del(toRegIdKey(oldRegistration.getId()));
-                    if (!oldRegistration.getSocketAddress().equals(registration.getSocketAddress())) {
-                        removeAddrIndex(j, oldRegistration);
-                    }
-                    // remove old observation
-                    Collection<Observation> obsRemoved = unsafeRemoveAllObservations(j, oldRegistration.getId());
+        byte[] endpoint = registration.getEndpoint().getBytes(UTF_8);
+        byte[] k = toEndpointKey(registration.getEndpoint());
+        byte[] data = serializeReg(registration);
 
-                    return new Deregistration(oldRegistration, obsRemoved);
+        try (Jedis j = pool.getResource()) {
+            for (int attempt = 0; attempt < MAX_SCRIPT_ATTEMPTS; attempt++) {
+                byte[] old = j.get(k);
+                Registration oldRegistration = old == null ? null : deserializeReg(old);
+
+                List<byte[]> keys = new ArrayList<>();
+                keys.add(k);
+                keys.add(toRegIdKey(registration.getId()));
+                keys.add(toRegAddrKey(registration.getSocketAddress()));
+                keys.add(EXP_EP);
+                List<byte[]> args = new ArrayList<>();
+                args.addAll(Arrays.asList(old == null ? EMPTY : old, data, endpoint, toExpiration(registration)));
+                if (oldRegistration != null) {
+                    keys.add(toRegIdKey(oldRegistration.getId()));
+                    keys.add(toRegAddrKey(oldRegistration.getSocketAddress()));
+                    addObservationKeysAndTokens(j, oldRegistration.getId(), keys, args);
                 }
 
-                return null;
-            } finally {
-                lock.release(j, lockKey, lockValue);
+                List<?> result = (List<?>) ADD_REGISTRATION.eval(j, keys, args);
+                if ((Long) result.get(0) == 0L) {
+                    // registration modified concurrently, try again
+                    continue;
+                }
+                if (oldRegistration == null) {
+                    return null;
+                }
+                invalidateRegistration(j, oldRegistration.getId());
+                Collection<Observation> obsRemoved = toRemovedObservations(j, result);
+                return new Deregistration(oldRegistration, obsRemoved);
             }
         }
+        throw new IllegalStateException(String.format(
+                "Unable to add registration for %s : too many concurrent modifications", registration.getEndpoint()));
     }
 
     @Override
     public UpdatedRegistration updateRegistration(RegistrationUpdate update) {
         try (Jedis j = pool.getResource()) {
-
-            // Fetch the registration ep by registration ID index
-            byte[] ep = j.get(toRegIdKey(update.getRegistrationId()));
-            if (ep == null) {
-                return null;
-            }
-
-            byte[] lockValue = null;
-            byte[] lockKey = toLockKey(ep);
-            try {
-                lockValue = lock.acquire(j, lockKey);
-
-                // Fetch the registration
-                byte[] data = j.get(toEndpointKey(ep));
-                if (data == null) {
+            for (int attempt = 0; attempt < MAX_SCRIPT_ATTEMPTS; attempt++) {
+                // Fetch the registration by registration ID index
+                StoredRegistration stored = getStoredRegistration(j, update.getRegistrationId());
+                if (stored == null) {
                     return null;
                 }
 
-                Registration r = deserializeReg(data);
-
+                Registration r = stored.registration;
                 Registration updatedRegistration = update.update(r);
 
-                // Store the new registration
-                j.set(toEndpointKey(updatedRegistration.getEndpoint()), serializeReg(updatedRegistration));
-
-                // Add or update expiration
-                addOrUpdateExpiration(j, updatedRegistration);
-
-                // Update secondary index :
+                // Store the new registration, its expiration and its address index :
                 // If registration is already associated to this address we don't care as we only want to keep the most
                 // recent binding.
-                byte[] addr_idx = toRegAddrKey(updatedRegistration.getSocketAddress());
-                j.set(addr_idx, updatedRegistration.getEndpoint().getBytes(UTF_8));
-                if (!r.getSocketAddress().equals(updatedRegistration.getSocketAddress())) {
-                    removeAddrIndex(j, r);
+                List<byte[]> keys = Arrays.asList(toEndpointKey(stored.endpoint),
+                        toRegAddrKey(updatedRegistration.getSocketAddress()), EXP_EP,
+                        toRegAddrKey(r.getSocketAddress()));
+                List<byte[]> args = Arrays.asList(stored.data, serializeReg(updatedRegistration), stored.endpoint,
+                        toExpiration(updatedRegistration));
+
+                if ((Long) UPDATE_REGISTRATION.eval(j, keys, args) == 0L) {
+                    // registration modified concurrently, try again
+                    continue;
                 }
-
+                invalidateRegistration(j, updatedRegistration.getId());
                 return new UpdatedRegistration(r, updatedRegistration);
-
-            } finally {
-                lock.release(j, lockKey, lockValue);
             }
         }
+        throw new IllegalStateException(String.format(
+                "Unable to update registration %s : too many concurrent modifications", update.getRegistrationId()));
     }
 
     @Override
     public Registration getRegistration(String registrationId) {
-        try (Jedis j = pool.getResource()) {
-            return getRegistration(j, registrationId);
+        if (cache == null) {
+            try (Jedis j = pool.getResource()) {
+                return getRegistration(j, registrationId);
+            }
+        }
+
+        Registration registration = cache.getRegistration(registrationId);
+        if (registration == null) {
+            long version = cache.registrationVersion(registrationId);
+            try (Jedis j = pool.getResource()) {
+                registration = getRegistration(j, registrationId);
+            }
+            if (registration != null) {
+                cache.putRegistration(registration, version);
+            }
         }
+        return registration;
     }
 
     @Override
@@ -279,56 +521,88 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
 
     @Override
     public Iterator<Registration> getAllRegistrations() {
-        return new RedisIterator(pool, new ScanParams().match(REG_EP + "*").count(100));
+        return getAllRegistrations(DEFAULT_SCAN_COUNT, DEFAULT_FETCH_BATCH_SIZE);
+    }
+
+    /**
+     * Returns an iterator over all registrations.
+     * <p>
+     * Registration keys are listed using <code>SCAN</code>, then registrations are fetched by <code>MGET</code> batches
+     * and deserialized one by one when iterating, so at most <code>scanCount</code> keys and <code>batchSize</code>
+     * serialized registrations are kept in memory. As for <code>SCAN</code>, a registration modified during the
+     * iteration could be returned twice.
+     * 
+     * @param scanCount the <code>COUNT</code> hint of <code>SCAN</code> commands
+     * @param batchSize the maximum number of registrations fetched by a <code>MGET</code> command
+     * @since 1.4
+     */
+    public Iterator<Registration> getAllRegistrations(int scanCount, int batchSize) {
+        return new RedisIterator(pool, new ScanParams().match(REG_EP + "*").count(scanCount), batchSize);
     }
 
     protected class RedisIterator implements Iterator<Registration> {
 
-        private Pool<Jedis> pool;
-        private ScanParams scanParams;
+        private final Pool<Jedis> pool;
+        private final ScanParams scanParams;
+        private final int batchSize;
 
-        private String cursor;
-        private List<Registration> scanResult;
+        private String cursor = "0";
+        private boolean scanCompleted = false;
+        // keys returned by SCAN, not fetched yet
+        private final Deque<byte[]> keys = new ArrayDeque<>();
+        // registrations fetched, not deserialized yet
+        private final Deque<byte[]> values = new ArrayDeque<>();
 
         public RedisIterator(Pool<Jedis> p, ScanParams scanParams) {
-            pool = p;
+            this(p, scanParams, DEFAULT_FETCH_BATCH_SIZE);
+        }
+
+        /**
+         * @since 1.4
+         */
+        public RedisIterator(Pool<Jedis> p, ScanParams scanParams, int batchSize) {
+            Validate.isTrue(batchSize > 0, "batch size must be positive");
+            this.pool = p;
             this.scanParams = scanParams;
-            // init scan result
-            scanNext("0");
+            this.batchSize = batchSize;
         }
 
-        private void scanNext(String cursor) {
+        private void fetchNext() {
             try (Jedis j = pool.getResource()) {
-                do {
-                    ScanResult<byte[]> sr = j.scan(cursor.getBytes(), scanParams);
-
-                    this.scanResult = new ArrayList<>();
-                    if (sr.getResult() != null && !sr.getResult().isEmpty()) {
-                        for (byte[] value : j.mget(sr.getResult().toArray(new byte[][] {}))) {
-                            this.scanResult.add(deserializeReg(value));
+                while (values.isEmpty() && !(scanCompleted && keys.isEmpty())) {
+                    if (keys.isEmpty()) {
+                        ScanResult<byte[]> sr = j.scan(cursor.getBytes(), scanParams);
+                        if (sr.getResult() != null) {
+                            keys.addAll(sr.getResult());
                         }
+                        cursor = sr.getCursor();
+                        scanCompleted = "0".equals(cursor);
                     }
 
-                    cursor = sr.getCursor();
-                } while (!"0".equals(cursor) && scanResult.isEmpty());
-
-                this.cursor = cursor;
+                    int size = Math.min(batchSize, keys.size());
+                    if (size > 0) {
+                        byte[][] batch = new byte[size][];
+                        for (int i = 0; i < size; i++) {
+                            batch[i] = keys.poll();
+                        }
+                        for (byte[] value : j.mget(batch)) {
+                            // registration could be removed since the scan
+                            if (value != null) {
+                                values.add(value);
+                            }
+                        }
+                    }
+                }
             }
         }
 
         @Override
         public boolean hasNext() {
-            if (!scanResult.isEmpty()) {
-                return true;
-            }
-            if ("0".equals(cursor)) {
-                // no more elements to scan
-                return false;
+            if (values.isEmpty()) {
+                // read more elements
+                fetchNext();
             }
-
-            // read more elements
-            scanNext(cursor);
-            return !scanResult.isEmpty();
+            return !values.isEmpty();
         }
 
         @Override
@@ -336,7 +610,7 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-            return scanResult.remove(0);
+            return deserializeReg(values.poll());
         }
 
         @Override
@@ -348,71 +622,110 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
     @Override
     public Deregistration removeRegistration(String registrationId) {
         try (Jedis j = pool.getResource()) {
-            return removeRegistration(j, registrationId, false);
+            return removeRegistration(j, registrationId);
         }
     }
 
-    private Deregistration removeRegistration(Jedis j, String registrationId, boolean removeOnlyIfNotAlive) {
-        // fetch the client ep by registration ID index
+    private Deregistration removeRegistration(Jedis j, String registrationId) {
+        for (int attempt = 0; attempt < MAX_SCRIPT_ATTEMPTS; attempt++) {
+            // fetch the client by registration ID index
+            StoredRegistration stored = getStoredRegistration(j, registrationId);
+            if (stored == null) {
+                return null;
+            }
+            Registration r = stored.registration;
+
+            List<byte[]> keys = new ArrayList<>();
+            keys.addAll(Arrays.asList(toRegIdKey(r.getId()), toEndpointKey(stored.endpoint),
+                    toRegAddrKey(r.getSocketAddress()), EXP_EP));
+            List<byte[]> args = new ArrayList<>();
+            args.addAll(Arrays.asList(stored.data, stored.endpoint));
+            addObservationKeysAndTokens(j, r.getId(), keys, args);
+
+            List<?> result = (List<?>) REMOVE_REGISTRATION.eval(j, keys, args);
+            long status = (Long) result.get(0);
+            if (status == 0L) {
+                // registration modified concurrently, try again
+                continue;
+            }
+            if (status == 1L) {
+                // already removed
+                return null;
+            }
+            invalidateRegistration(j, r.getId());
+            Collection<Observation> obsRemoved = toRemovedObservations(j, result);
+            return new Deregistration(r, obsRemoved);
+        }
+        throw new IllegalStateException(String.format(
+                "Unable to remove registration %s : too many concurrent modifications", registrationId));
+    }
+
+    /**
+     * A registration with its endpoint and serialized value as read from Redis.
+     */
+    private static class StoredRegistration {
+        private final byte[] endpoint;
+        private final byte[] data;
+        private final Registration registration;
+
+        private StoredRegistration(byte[] endpoint, byte[] data, Registration registration) {
+            this.endpoint = endpoint;
+            this.data = data;
+            this.registration = registration;
+        }
+    }
+
+    /**
+     * @return the registration for this registration id, or <code>null</code>.
+     */
+    private StoredRegistration getStoredRegistration(Jedis j, String registrationId) {
         byte[] ep = j.get(toRegIdKey(registrationId));
         if (ep == null) {
             return null;
         }
-
-        byte[] lockValue = null;
-        byte[] lockKey = toLockKey(ep);
-        try {
-            lockValue = lock.acquire(j, lockKey);
-
-            // fetch the client
-            byte[] data = j.get(toEndpointKey(ep));
-            if (data == null) {
-                return null;
-            }
-            Registration r = deserializeReg(data);
-
-            if (!removeOnlyIfNotAlive || !r.isAlive(gracePeriod)) {
-                long nbRemoved = j.del(toRegIdKey(r.getId()));
-                if (nbRemoved > 0) {
-                    j.del(toEndpointKey(r.getEndpoint()));
-                    Collection<Observation> obsRemoved = unsafeRemoveAllObservations(j, r.getId());
-                    removeAddrIndex(j, r);
-                    removeExpiration(j, r);
-                    return new Deregistration(r, obsRemoved);
-                }
-            }
+        byte[] data = j.get(toEndpointKey(ep));
+        if (data == null) {
+            return null;
+        }
+        // the endpoint could have registered again between the 2 reads
+        Registration registration = deserializeReg(data);
+        if (!registration.getId().equals(registrationId)) {
             return null;
-        } finally {
-            lock.release(j, lockKey, lockValue);
         }
+        return new StoredRegistration(ep, data, registration);
     }
 
-    private void removeAddrIndex(Jedis j, Registration registration) {
-        // Watch the key to remove.
-        byte[] regAddrKey = toRegAddrKey(registration.getSocketAddress());
-        j.watch(regAddrKey);
+    /**
+     * Adds the token list key and the observation keys of this registration to the given script keys, and its tokens
+     * to the given script arguments, so the script can check the token list is unchanged before removing them.
+     */
+    private void addObservationKeysAndTokens(Jedis j, String registrationId, List<byte[]> keys, List<byte[]> args) {
+        keys.add(toKey(OBS_TKNS_REGID_IDX, registrationId));
+        for (byte[] token : j.lrange(toKey(OBS_TKNS_REGID_IDX, registrationId), 0, -1)) {
+            keys.add(toKey(OBS_TKN, token));
+            args.add(token);
+        }
+    }
 
-        byte[] epFromAddr = j.get(regAddrKey);
-        // Delete the key if needed.
-        if (Arrays.equals(epFromAddr, registration.getEndpoint().getBytes(UTF_8))) {
-            // Try to delete the key
-            Transaction transaction = j.multi();
-            transaction.del(regAddrKey);
-            transaction.exec();
-            // if transaction failed this is not an issue as the socket address is probably reused and we don't neeed to
-            // delete it anymore.
-        } else {
-            // the key must not be deleted.
-            j.unwatch();
+    // removed observations are returned by scripts after the status code
+    private Collection<Observation> toRemovedObservations(Jedis j, List<?> result) {
+        Collection<Observation> removed = new ArrayList<>(result.size() - 1);
+        for (int i = 1; i < result.size(); i++) {
+            org.eclipse.californium.core.observe.Observation obs = deserializeObs((byte[]) result.get(i));
+            invalidateObservation(j, obs.getRequest().getToken().getBytes());
+            removed.add(build(obs));
         }
+        return removed;
     }
 
-    private void addOrUpdateExpiration(Jedis j, Registration registration) {
-        j.zadd(EXP_EP, registration.getExpirationTimeStamp(gracePeriod), registration.getEndpoint().getBytes(UTF_8));
+    private byte[] toExpiration(Registration registration) {
+        return Long.toString(registration.getExpirationTimeStamp(gracePeriod)).getBytes(UTF_8);
     }
 
-    private void removeExpiration(Jedis j, Registration registration) {
-        j.zrem(EXP_EP, registration.getEndpoint().getBytes(UTF_8));
+    private void invalidateRegistration(Jedis j, String registrationId) {
+        if (cache != null) {
+            cache.invalidateRegistration(j, registrationId);
+        }
     }
 
     private byte[] toRegIdKey(String registrationId) {
@@ -432,11 +745,23 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
     }
 
     private byte[] serializeReg(Registration registration) {
+        if (binarySerialization) {
+            return RegistrationBinarySerDes.serialize(registration);
+        }
         return RegistrationSerDes.bSerialize(registration);
     }
 
-    private Registration deserializeReg(byte[] data) {
-        return RegistrationSerDes.deserialize(data);
+    // package-private for tests
+    static Registration deserializeReg(byte[] data) {
+        if (isJson(data)) {
+            return RegistrationSerDes.deserialize(data);
+        }
+        return RegistrationBinarySerDes.deserialize(data);
+    }
+
+    // JSON values are objects, binary values start with a version number
+    private static boolean isJson(byte[] data) {
+        return data.length > 0 && data[0] == '{';
     }
 
     /* *************** Leshan Observation API **************** */
@@ -451,29 +776,19 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
         List<Observation> removed = new ArrayList<>();
         try (Jedis j = pool.getResource()) {
 
-            // fetch the client ep by registration ID index
-            byte[] ep = j.get(toRegIdKey(registrationId));
-            if (ep == null) {
+            // check registration exists
+            if (!j.exists(toRegIdKey(registrationId))) {
                 return null;
             }
 
-            byte[] lockValue = null;
-            byte[] lockKey = toLockKey(ep);
-
-            try {
-                lockValue = lock.acquire(j, lockKey);
-
-                // cancel existing observations for the same path and registration id.
-                for (Observation obs : getObservations(j, registrationId)) {
-                    if (observation.getPath().equals(obs.getPath())
-                            && !Arrays.equals(observation.getId(), obs.getId())) {
-                        removed.add(obs);
-                        unsafeRemoveObservation(j, registrationId, obs.getId());
+            // cancel existing observations for the same path and registration id.
+            for (Observation obs : getObservations(j, registrationId)) {
+                if (observation.getPath().equals(obs.getPath()) && !Arrays.equals(observation.getId(), obs.getId())) {
+                    Observation removedObservation = removeObservation(j, registrationId, obs.getId());
+                    if (removedObservation != null) {
+                        removed.add(removedObservation);
                     }
                 }
-
-            } finally {
-                lock.release(j, lockKey, lockValue);
             }
         }
         return removed;
@@ -482,35 +797,29 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
     @Override
     public Observation removeObservation(String registrationId, byte[] observationId) {
         try (Jedis j = pool.getResource()) {
-
-            // fetch the client ep by registration ID index
-            byte[] ep = j.get(toRegIdKey(registrationId));
-            if (ep == null) {
-                return null;
-            }
-
-            // remove observation
-            byte[] lockValue = null;
-            byte[] lockKey = toLockKey(ep);
-            try {
-                lockValue = lock.acquire(j, lockKey);
-
-                Observation observation = build(get(new Token(observationId)));
-                if (observation != null && registrationId.equals(observation.getRegistrationId())) {
-                    unsafeRemoveObservation(j, registrationId, observationId);
-                    return observation;
-                }
+            // check registration exists
+            if (!j.exists(toRegIdKey(registrationId))) {
                 return null;
-
-            } finally {
-                lock.release(j, lockKey, lockValue);
             }
+            return removeObservation(j, registrationId, observationId);
         }
     }
 
     @Override
     public Observation getObservation(String registrationId, byte[] observationId) {
-        return build(get(new Token(observationId)));
+        if (cache == null) {
+            return build(get(new Token(observationId)));
+        }
+
+        Observation observation = cache.getObservation(observationId);
+        if (observation == null) {
+            long version = cache.observationVersion(observationId);
+            observation = build(get(new Token(observationId)));
+            if (observation != null) {
+                cache.putObservation(observationId, observation, version);
+            }
+        }
+        return observation;
     }
 
     @Override
@@ -539,18 +848,22 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
             if (registration == null)
                 return Collections.emptyList();
 
-            // get endpoint and create lock
-            String endpoint = registration.getEndpoint();
-            byte[] lockValue = null;
-            byte[] lockKey = toKey(LOCK_EP, endpoint);
-            try {
-                lockValue = lock.acquire(j, lockKey);
+            for (int attempt = 0; attempt < MAX_SCRIPT_ATTEMPTS; attempt++) {
+                List<byte[]> keys = new ArrayList<>();
+                List<byte[]> args = new ArrayList<>();
+                addObservationKeysAndTokens(j, registrationId, keys, args);
 
-                return unsafeRemoveAllObservations(j, registrationId);
-            } finally {
-                lock.release(j, lockKey, lockValue);
+                List<?> result = (List<?>) REMOVE_ALL_OBSERVATIONS.eval(j, keys, args);
+                if ((Long) result.get(0) == 0L) {
+                    // observations modified concurrently, try again
+                    continue;
+                }
+                return toRemovedObservations(j, result);
             }
         }
+        throw new IllegalStateException(String.format(
+                "Unable to remove observations of registration %s : too many concurrent modifications",
+                registrationId));
     }
 
     /* *************** Californium ObservationStore API **************** */
@@ -569,44 +882,36 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
 
     private org.eclipse.californium.core.observe.Observation add(Token token,
             org.eclipse.californium.core.observe.Observation obs, boolean ifAbsent) throws ObservationStoreException {
-        String endpoint = ObserveUtil.validateCoapObservation(obs);
+        ObserveUtil.validateCoapObservation(obs);
         org.eclipse.californium.core.observe.Observation previousObservation = null;
 
         try (Jedis j = pool.getResource()) {
-            byte[] lockValue = null;
-            byte[] lockKey = toKey(LOCK_EP, endpoint);
-            try {
-                lockValue = lock.acquire(j, lockKey);
-
-                String registrationId = ObserveUtil.extractRegistrationId(obs);
-                if (!j.exists(toRegIdKey(registrationId)))
-                    throw new ObservationStoreException("no registration for this Id");
-                byte[] key = toKey(OBS_TKN, obs.getRequest().getToken().getBytes());
-                byte[] serializeObs = serializeObs(obs);
-                byte[] previousValue = null;
-                if (ifAbsent) {
-                    previousValue = j.get(key);
-                    if (previousValue == null || previousValue.length == 0) {
-                        j.set(key, serializeObs);
-                    } else {
-                        return deserializeObs(previousValue);
-                    }
-                } else {
-                    previousValue = j.getSet(key, serializeObs);
-                }
-
-                // secondary index to get the list by registrationId
-                j.lpush(toKey(OBS_TKNS_REGID_IDX, registrationId), obs.getRequest().getToken().getBytes());
+            String registrationId = ObserveUtil.extractRegistrationId(obs);
+            byte[] tokenBytes = obs.getRequest().getToken().getBytes();
+            List<byte[]> keys = Arrays.asList(toRegIdKey(registrationId), toKey(OBS_TKN, tokenBytes),
+                    toKey(OBS_TKNS_REGID_IDX, registrationId));
+            List<byte[]> args = Arrays.asList(serializeObs(obs), ifAbsent ? TRUE : FALSE, tokenBytes);
+
+            // the observation and its secondary index (to get the list by registrationId) are added only if the
+            // registration exists
+            List<?> result = (List<?>) PUT_OBSERVATION.eval(j, keys, args);
+            long status = (Long) result.get(0);
+            if (status == -1L) {
+                throw new ObservationStoreException("no registration for this Id");
+            }
+            byte[] previousValue = result.size() > 1 ? (byte[]) result.get(1) : null;
+            if (status == 0L) {
+                // not added as an observation already exists for this token
+                return deserializeObs(previousValue);
+            }
 
-                // log any collisions
-                if (previousValue != null && previousValue.length != 0) {
-                    previousObservation = deserializeObs(previousValue);
-                    LOG.warn(
-                            "Token collision ? observation from request [{}] will be replaced by observation from request [{}] ",
-                            previousObservation.getRequest(), obs.getRequest());
-                }
-            } finally {
-                lock.release(j, lockKey, lockValue);
+            // log any collisions
+            if (previousValue != null && previousValue.length != 0) {
+                invalidateObservation(j, tokenBytes);
+                previousObservation = deserializeObs(previousValue);
+                LOG.warn(
+                        "Token collision ? observation from request [{}] will be replaced by observation from request [{}] ",
+                        previousObservation.getRequest(), obs.getRequest());
             }
         }
         return previousObservation;
@@ -631,16 +936,7 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
                 return;
             }
 
-            String endpoint = registration.getEndpoint();
-            byte[] lockValue = null;
-            byte[] lockKey = toKey(LOCK_EP, endpoint);
-            try {
-                lockValue = lock.acquire(j, lockKey);
-
-                unsafeRemoveObservation(j, registrationId, token.getBytes());
-            } finally {
-                lock.release(j, lockKey, lockValue);
-            }
+            removeObservation(j, registrationId, token.getBytes());
         }
 
     }
@@ -660,39 +956,48 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
     /* *************** Observation utility functions **************** */
 
     private Registration getRegistration(Jedis j, String registrationId) {
-        byte[] ep = j.get(toRegIdKey(registrationId));
-        if (ep == null) {
-            return null;
-        }
-        byte[] data = j.get(toEndpointKey(ep));
-        if (data == null) {
+        StoredRegistration stored = getStoredRegistration(j, registrationId);
+        if (stored == null) {
             return null;
         }
-
-        return deserializeReg(data);
-    }
-
-    private void unsafeRemoveObservation(Jedis j, String registrationId, byte[] observationId) {
-        if (j.del(toKey(OBS_TKN, observationId)) > 0L) {
-            j.lrem(toKey(OBS_TKNS_REGID_IDX, registrationId), 0, observationId);
-        }
+        return stored.registration;
     }
 
-    private Collection<Observation> unsafeRemoveAllObservations(Jedis j, String registrationId) {
-        Collection<Observation> removed = new ArrayList<>();
-        byte[] regIdKey = toKey(OBS_TKNS_REGID_IDX, registrationId);
+    /**
+     * Removes this observation if it belongs to the given registration.
+     * 
+     * @return the removed observation or <code>null</code> if there is no such observation.
+     */
+    private Observation removeObservation(Jedis j, String registrationId, byte[] observationId) {
+        byte[] obsKey = toKey(OBS_TKN, observationId);
+        for (int attempt = 0; attempt < MAX_SCRIPT_ATTEMPTS; attempt++) {
+            byte[] data = j.get(obsKey);
+            if (data == null) {
+                return null;
+            }
+            Observation observation = build(deserializeObs(data));
+            if (!registrationId.equals(observation.getRegistrationId())) {
+                return null;
+            }
 
-        // fetch all observations by token
-        for (byte[] token : j.lrange(regIdKey, 0, -1)) {
-            byte[] obs = j.get(toKey(OBS_TKN, token));
-            if (obs != null) {
-                removed.add(build(deserializeObs(obs)));
+            List<byte[]> keys = Arrays.asList(obsKey, toKey(OBS_TKNS_REGID_IDX, registrationId));
+            List<byte[]> args = Arrays.asList(data, observationId);
+            if ((Long) REMOVE_OBSERVATION.eval(j, keys, args) == 0L) {
+                // observation modified concurrently, try again
+                continue;
             }
-            j.del(toKey(OBS_TKN, token));
+            invalidateObservation(j, observationId);
+            return observation;
         }
-        j.del(regIdKey);
+        throw new IllegalStateException(String.format(
+                "Unable to remove observation %s : too many concurrent modifications",
+                Hex.encodeHexString(observationId)));
+    }
 
-        return removed;
+    private void invalidateObservation(Jedis j, byte[] observationId) {
+        if (cache != null) {
+            cache.invalidateObservation(j, observationId);
+        }
     }
 
     @Override
@@ -701,11 +1006,18 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
     }
 
     private byte[] serializeObs(org.eclipse.californium.core.observe.Observation obs) {
+        if (binarySerialization) {
+            return ObservationBinarySerDes.serialize(obs);
+        }
         return ObservationSerDes.serialize(obs);
     }
 
-    private org.eclipse.californium.core.observe.Observation deserializeObs(byte[] data) {
-        return ObservationSerDes.deserialize(data);
+    // package-private for tests
+    static org.eclipse.californium.core.observe.Observation deserializeObs(byte[] data) {
+        if (isJson(data)) {
+            return ObservationSerDes.deserialize(data);
+        }
+        return ObservationBinarySerDes.deserialize(data);
     }
 
     private Observation build(org.eclipse.californium.core.observe.Observation cfObs) {
@@ -724,6 +1036,9 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
     public synchronized void start() {
         if (!started) {
             started = true;
+            if (cache != null) {
+                cache.start(pool);
+            }
             cleanerTask = schedExecutor.scheduleAtFixedRate(new Cleaner(), cleanPeriod, cleanPeriod, TimeUnit.SECONDS);
         }
     }
@@ -739,6 +1054,9 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
                 cleanerTask.cancel(false);
                 cleanerTask = null;
             }
+            if (cache != null) {
+                cache.stop();
+            }
         }
     }
 
@@ -748,6 +1066,9 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
     @Override
     public synchronized void destroy() {
         started = false;
+        if (cache != null) {
+            cache.stop();
+        }
         schedExecutor.shutdownNow();
         try {
             schedExecutor.awaitTermination(5, TimeUnit.SECONDS);
@@ -756,27 +1077,141 @@ public class RedisRegistrationStore implements CaliforniumRegistrationStore, Sta
         }
     }
 
+    /**
+     * Expired registrations claimed by a cleaner, decoded from the result of the claim script.
+     */
+    // package-private for tests
+    static class ClaimedRegistrations {
+
+        private final int removedEndpoints;
+        private int corrupted = 0;
+        private final List<byte[]> endpoints = new ArrayList<>();
+        private final List<byte[]> values = new ArrayList<>();
+        private final List<Registration> registrations = new ArrayList<>();
+
+        ClaimedRegistrations(List<?> claimResult) {
+            removedEndpoints = ((Long) claimResult.get(0)).intValue();
+            for (int i = 1; i + 1 < claimResult.size(); i += 2) {
+                byte[] endpoint = (byte[]) claimResult.get(i);
+                byte[] value = (byte[]) claimResult.get(i + 1);
+                Registration registration;
+                try {
+                    registration = deserializeReg(value);
+                } catch (RuntimeException e) {
+                    // stays claimed, so it is retried at the end of the claim
+                    corrupted++;
+                    LOG.warn("Unable to decode expired registration of endpoint {}", new String(endpoint, UTF_8), e);
+                    continue;
+                }
+                endpoints.add(endpoint);
+                values.add(value);
+                registrations.add(registration);
+            }
+        }
+
+        /**
+         * @return the number of elements removed or claimed from the expiration set.
+         */
+        int size() {
+            return removedEndpoints + corrupted + registrations.size();
+        }
+
+        List<Registration> getRegistrations() {
+            return registrations;
+        }
+    }
+
     private class Cleaner implements Runnable {
 
         @Override
         public void run() {
 
             try (Jedis j = pool.getResource()) {
-                Set<byte[]> endpointsExpired = j.zrangeByScore(EXP_EP, Double.NEGATIVE_INFINITY,
-                        System.currentTimeMillis(), 0, cleanLimit);
-
-                for (byte[] endpoint : endpointsExpired) {
-                    Registration r = deserializeReg(j.get(toEndpointKey(endpoint)));
-                    if (!r.isAlive(gracePeriod)) {
-                        Deregistration dereg = removeRegistration(j, r.getId(), true);
-                        if (dereg != null)
-                            expirationListener.registrationExpired(dereg.getRegistration(), dereg.getObservations());
+                int cleaned = 0;
+                while (cleaned < cleanLimit) {
+                    int batchSize = Math.min(CLEAN_BATCH_SIZE, cleanLimit - cleaned);
+                    int handled = cleanBatch(j, batchSize);
+                    cleaned += handled;
+                    if (handled < batchSize) {
+                        break;
                     }
                 }
             } catch (Exception e) {
                 LOG.warn("Unexpected Exception while registration cleaning", e);
             }
         }
+
+        /**
+         * Remove a batch of expired registrations.
+         * 
+         * @return the number of elements removed or claimed from the expiration set.
+         */
+        private int cleanBatch(Jedis j, int batchSize) {
+            long now = System.currentTimeMillis();
+            Set<byte[]> expired = j.zrangeByScore(EXP_EP, Double.NEGATIVE_INFINITY, now, 0, batchSize);
+            if (expired.isEmpty()) {
+                return 0;
+            }
+
+            // claim expired registrations : they are hidden from other cleaners until the end of the claim
+            List<byte[]> claimKeys = new ArrayList<>(1 + expired.size());
+            List<byte[]> claimArgs = new ArrayList<>(2 + expired.size());
+            claimKeys.add(EXP_EP);
+            claimArgs.add(Long.toString(now).getBytes(UTF_8));
+            claimArgs.add(Long.toString(now + TimeUnit.SECONDS.toMillis(cleanPeriod)).getBytes(UTF_8));
+            for (byte[] endpoint : expired) {
+                claimKeys.add(toEndpointKey(endpoint));
+                claimArgs.add(endpoint);
+            }
+            ClaimedRegistrations claimed = new ClaimedRegistrations(
+                    (List<?>) CLAIM_EXPIRED.eval(j, claimKeys, claimArgs));
+            List<Registration> registrations = claimed.getRegistrations();
+            if (registrations.isEmpty()) {
+                return claimed.size();
+            }
+
+            // remove all claimed registrations which are not alive, restore expiration of the other ones
+            List<byte[]> keys = new ArrayList<>(1 + registrations.size() * 4);
+            List<byte[]> args = new ArrayList<>(registrations.size() * 4);
+            keys.add(EXP_EP);
+            for (int i = 0; i < registrations.size(); i++) {
+                Registration r = registrations.get(i);
+                keys.add(toEndpointKey(claimed.endpoints.get(i)));
+                keys.add(toRegIdKey(r.getId()));
+                keys.add(toRegAddrKey(r.getSocketAddress()));
+                args.add(claimed.values.get(i));
+                args.add(claimed.endpoints.get(i));
+                if (r.isAlive(gracePeriod)) {
+                    keys.add(toKey(OBS_TKNS_REGID_IDX, r.getId()));
+                    args.add(toExpiration(r));
+                    args.add("0".getBytes(UTF_8)); // no token
+                } else {
+                    List<byte[]> tokenKeys = new ArrayList<>();
+                    List<byte[]> tokens = new ArrayList<>();
+                    addObservationKeysAndTokens(j, r.getId(), tokenKeys, tokens);
+                    keys.addAll(tokenKeys);
+                    args.add(EMPTY);
+                    args.add(Integer.toString(tokens.size()).getBytes(UTF_8));
+                    args.addAll(tokens);
+                }
+            }
+            List<?> results = (List<?>) EXPIRE_REGISTRATIONS.eval(j, keys, args);
+
+            for (int i = 0; i < registrations.size(); i++) {
+                List<?> result = (List<?>) results.get(i);
+                if ((Long) result.get(0) == 1L) {
+                    Registration r = registrations.get(i);
+                    try {
+                        invalidateRegistration(j, r.getId());
+                        Collection<Observation> obsRemoved = toRemovedObservations(j, result);
+                        expirationListener.registrationExpired(r, obsRemoved);
+                    } catch (RuntimeException e) {
+                        LOG.warn("Unable to notify expiration of registration {}", r.getId(), e);
+                    }
+                }
+            }
+            return claimed.size();
+        }
     }
 
     @Override
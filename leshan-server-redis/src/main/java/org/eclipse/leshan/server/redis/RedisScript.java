@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.redis;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import org.eclipse.leshan.core.util.Hex;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+/**
+ * A Lua script executed atomically by Redis.
+ * <p>
+ * The script is called by its SHA1 digest, so its content is only sent when Redis does not know it yet (e.g. first call
+ * or after a restart).
+ */
+class RedisScript {
+
+    private final byte[] script;
+    private final byte[] sha1;
+
+    RedisScript(String script) {
+        this.script = script.getBytes(UTF_8);
+        try {
+            this.sha1 = Hex.encodeHexString(MessageDigest.getInstance("SHA-1").digest(this.script)).getBytes(UTF_8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported", e);
+        }
+    }
+
+    // package-private for tests
+    String getSource() {
+        return new String(script, UTF_8);
+    }
+
+    /**
+     * Execute this script.
+     *
+     * @return the script result : a Long, a byte[], a List of those or <code>null</code>.
+     */
+    Object eval(Jedis j, List<byte[]> keys, List<byte[]> args) {
+        try {
+            return j.evalsha(sha1, keys, args);
+        } catch (JedisNoScriptException e) {
+            // EVAL loads the script in Redis cache
+            return j.eval(script, keys, args);
+        }
+    }
+}
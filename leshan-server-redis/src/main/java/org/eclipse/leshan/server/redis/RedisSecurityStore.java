@@ -15,17 +15,26 @@
  *******************************************************************************/
 package org.eclipse.leshan.server.redis;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
+import org.eclipse.leshan.core.util.Validate;
 import org.eclipse.leshan.server.redis.serialization.SecurityInfoSerDes;
-import org.eclipse.leshan.server.security.EditableSecurityStore;
+import org.eclipse.leshan.server.security.BulkAddResult;
+import org.eclipse.leshan.server.security.BulkSecurityStore;
 import org.eclipse.leshan.server.security.NonUniqueSecurityInfoException;
 import org.eclipse.leshan.server.security.SecurityInfo;
 import org.eclipse.leshan.server.security.SecurityStore;
 import org.eclipse.leshan.server.security.SecurityStoreListener;
 
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.ScanParams;
 import redis.clients.jedis.ScanResult;
 import redis.clients.jedis.util.Pool;
@@ -35,7 +44,7 @@ import redis.clients.jedis.util.Pool;
  * 
  * Security info are stored using the endpoint as primary key and a secondary index is created for psk-identity lookup.
  */
-public class RedisSecurityStore implements EditableSecurityStore {
+public class RedisSecurityStore implements BulkSecurityStore {
 
     private static final String SEC_EP = "SEC#EP#";
 
@@ -119,6 +128,101 @@ public class RedisSecurityStore implements EditableSecurityStore {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each batch costs 3 pipelined round-trips: uniqueness check of the PSK identities, write of the security info and
+     * cleaning of the secondary index.
+     * 
+     * @since 1.4
+     */
+    @Override
+    public BulkAddResult addAll(Iterator<SecurityInfo> infos, int batchSize, ProgressListener progressListener) {
+        Validate.isTrue(batchSize > 0, "batch size must be positive");
+        BulkAddResult.Builder result = new BulkAddResult.Builder();
+        List<SecurityInfo> batch = new ArrayList<>(batchSize);
+        try (Jedis j = pool.getResource()) {
+            while (infos.hasNext()) {
+                batch.add(infos.next());
+                if (batch.size() == batchSize || !infos.hasNext()) {
+                    List<SecurityInfo> replaced = addBatch(j, batch, result);
+                    batch.clear();
+                    if (listener != null && !replaced.isEmpty()) {
+                        listener.securityInfoRemoved(false, replaced.toArray(new SecurityInfo[replaced.size()]));
+                    }
+                    if (progressListener != null) {
+                        progressListener.onProgress(result.build());
+                    }
+                }
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * @return the security information replaced by a different one.
+     */
+    private List<SecurityInfo> addBatch(Jedis j, List<SecurityInfo> batch, BulkAddResult.Builder result) {
+        // check PSK identities uniqueness against the store
+        Pipeline pipeline = j.pipelined();
+        List<Response<String>> owners = new ArrayList<>(batch.size());
+        for (SecurityInfo info : batch) {
+            owners.add(info.getIdentity() == null ? null : pipeline.hget(PSKID_SEC, info.getIdentity()));
+        }
+        pipeline.sync();
+
+        // and inside the batch
+        List<SecurityInfo> accepted = new ArrayList<>(batch.size());
+        Map<String, String> batchOwners = new HashMap<>();
+        // identity of each endpoint once the batch is applied, an endpoint may appear several times
+        Map<String, String> finalIdentities = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            SecurityInfo info = batch.get(i);
+            if (info.getIdentity() != null) {
+                String owner = owners.get(i).get();
+                String batchOwner = batchOwners.get(info.getIdentity());
+                if ((owner != null && !owner.equals(info.getEndpoint()))
+                        || (batchOwner != null && !batchOwner.equals(info.getEndpoint()))) {
+                    result.rejected(info);
+                    continue;
+                }
+                batchOwners.put(info.getIdentity(), info.getEndpoint());
+            }
+            finalIdentities.put(info.getEndpoint(), info.getIdentity());
+            accepted.add(info);
+        }
+
+        // write security info and populate the secondary index
+        pipeline = j.pipelined();
+        List<Response<byte[]>> previousData = new ArrayList<>(accepted.size());
+        for (SecurityInfo info : accepted) {
+            if (info.getIdentity() != null) {
+                pipeline.hset(PSKID_SEC.getBytes(), info.getIdentity().getBytes(), info.getEndpoint().getBytes());
+            }
+            previousData.add(pipeline.getSet((SEC_EP + info.getEndpoint()).getBytes(), serialize(info)));
+        }
+        pipeline.sync();
+
+        // remove previous identities from the secondary index
+        List<SecurityInfo> replaced = new ArrayList<>();
+        pipeline = j.pipelined();
+        for (int i = 0; i < accepted.size(); i++) {
+            SecurityInfo info = accepted.get(i);
+            byte[] data = previousData.get(i).get();
+            SecurityInfo previous = data == null ? null : deserialize(data);
+            String previousIdentity = previous == null ? null : previous.getIdentity();
+            if (previousIdentity != null && !previousIdentity.equals(finalIdentities.get(info.getEndpoint()))) {
+                pipeline.hdel(PSKID_SEC, previousIdentity);
+            }
+            if (previous != null && !previous.equals(info)) {
+                replaced.add(previous);
+            }
+            result.added();
+        }
+        pipeline.sync();
+        return replaced;
+    }
+
     @Override
     public SecurityInfo remove(String endpoint, boolean infosAreCompromised) {
         try (Jedis j = pool.getResource()) {
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.redis;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.leshan.server.security.InMemorySecurityStore;
+import org.eclipse.leshan.server.security.NonUniqueSecurityInfoException;
+import org.eclipse.leshan.server.security.SecurityInfo;
+import org.eclipse.leshan.server.security.SecurityStoreListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import redis.clients.jedis.JedisPool;
+
+public class CachingSecurityStoreTest {
+
+    private InMemorySecurityStore store;
+    private JedisPool pool;
+    private CachingSecurityStore cache;
+
+    @Before
+    public void setUp() throws NonUniqueSecurityInfoException {
+        store = new InMemorySecurityStore();
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[] { 1 }));
+        // no connection is done until invalidation messages are published
+        pool = new JedisPool();
+        cache = new CachingSecurityStore(store, pool, 10, 60000, 60000);
+        cache.setSubscribed(true);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void identity_cached_until_invalidation_message() throws NonUniqueSecurityInfoException {
+        assertEquals("ep1", cache.getByIdentity("id1").getEndpoint());
+        // modified by another node
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep1", "id1", new byte[] { 2 }));
+        assertArrayEquals(new byte[] { 1 }, cache.getByIdentity("id1").getPreSharedKey());
+
+        cache.onInvalidation((byte) 'I', "id1".getBytes(UTF_8));
+
+        assertArrayEquals(new byte[] { 2 }, cache.getByIdentity("id1").getPreSharedKey());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void unknown_identity_negatively_cached() throws NonUniqueSecurityInfoException {
+        assertNull(cache.getByIdentity("id2"));
+        store.add(SecurityInfo.newPreSharedKeyInfo("ep2", "id2", new byte[] { 1 }));
+        assertNull(cache.getByIdentity("id2"));
+        assertEquals(1, cache.getHitCount());
+
+        cache.onInvalidation((byte) 'I', "id2".getBytes(UTF_8));
+        assertNotNull(cache.getByIdentity("id2"));
+    }
+
+    @Test
+    public void entries_expire() throws InterruptedException {
+        cache = new CachingSecurityStore(store, pool, 10, 10, 0);
+        cache.setSubscribed(true);
+
+        assertNull(cache.getByEndpoint("unknown"));
+        assertNotNull(cache.getByEndpoint("ep1"));
+        assertEquals(1, cache.getEndpointCount());
+
+        Thread.sleep(20);
+        assertNotNull(cache.getByEndpoint("ep1"));
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void removed_info_evicted_before_listener_is_notified() {
+        cache.getByEndpoint("ep1");
+        cache.getByIdentity("id1");
+        final AtomicReference<SecurityInfo> seenByListener = new AtomicReference<>();
+        cache.setListener(new SecurityStoreListener() {
+            @Override
+            public void securityInfoRemoved(boolean infosAreCompromised, SecurityInfo... infos) {
+                assertTrue(infosAreCompromised);
+                seenByListener.set(cache.getByIdentity("id1"));
+            }
+        });
+
+        // removed by the underlying store, without publishing
+        store.remove("ep1", true);
+
+        assertNull(seenByListener.get());
+        assertNull(cache.getByEndpoint("ep1"));
+    }
+}
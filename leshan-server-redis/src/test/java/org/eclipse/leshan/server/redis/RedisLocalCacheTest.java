@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.redis;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.server.registration.Registration;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RedisLocalCacheTest {
+
+    private RedisLocalCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new RedisLocalCache(2, 2);
+        cache.setSubscribed(true);
+    }
+
+    @Test
+    public void registration_cached_until_invalidation_message() {
+        Registration registration = givenARegistration("reg1");
+        cache.putRegistration(registration, cache.registrationVersion("reg1"));
+        assertSame(registration, cache.getRegistration("reg1"));
+
+        cache.onInvalidation((byte) 'R', "reg1".getBytes(UTF_8));
+
+        assertNull(cache.getRegistration("reg1"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void value_loaded_before_invalidation_is_not_cached() {
+        long version = cache.registrationVersion("reg1");
+        Registration registration = givenARegistration("reg1");
+        // registration modified by another node while it was loaded
+        cache.evictRegistration("reg1");
+        cache.putRegistration(registration, version);
+
+        assertNull(cache.getRegistration("reg1"));
+    }
+
+    @Test
+    public void value_loaded_during_invalidation_of_another_key_is_cached() {
+        String otherKey = "reg2";
+        int stripe = InvalidationVersions.stripe("reg1".hashCode());
+        for (int i = 3; InvalidationVersions.stripe(otherKey.hashCode()) == stripe; i++) {
+            otherKey = "reg" + i;
+        }
+        long version = cache.registrationVersion("reg1");
+        Registration registration = givenARegistration("reg1");
+        // another registration modified while reg1 was loaded
+        cache.evictRegistration(otherKey);
+        cache.putRegistration(registration, version);
+
+        assertSame(registration, cache.getRegistration("reg1"));
+    }
+
+    @Test
+    public void nothing_cached_when_not_subscribed() {
+        cache.setSubscribed(false);
+        cache.putRegistration(givenARegistration("reg1"), cache.registrationVersion("reg1"));
+
+        cache.setSubscribed(true);
+        assertNull(cache.getRegistration("reg1"));
+    }
+
+    @Test
+    public void least_recently_used_registration_evicted() {
+        cache.putRegistration(givenARegistration("reg1"), cache.registrationVersion("reg1"));
+        cache.putRegistration(givenARegistration("reg2"), cache.registrationVersion("reg2"));
+        cache.getRegistration("reg1");
+        cache.putRegistration(givenARegistration("reg3"), cache.registrationVersion("reg3"));
+
+        assertEquals(2, cache.getRegistrationCount());
+        assertNotNull(cache.getRegistration("reg1"));
+        assertNull(cache.getRegistration("reg2"));
+    }
+
+    private Registration givenARegistration(String registrationId) {
+        return new Registration.Builder(registrationId, registrationId + "_ep",
+                Identity.unsecure(InetAddress.getLoopbackAddress(), 5683)).build();
+    }
+}
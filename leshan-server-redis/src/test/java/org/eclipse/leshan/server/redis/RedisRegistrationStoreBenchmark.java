@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.redis;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.leshan.core.Link;
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.server.registration.Registration;
+import org.eclipse.leshan.server.registration.RegistrationUpdate;
+
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Measure the number of registrations added, updated and removed per second by {@link RedisRegistrationStore}, and
+ * the latency of each operation.
+ * <p>
+ * The <code>contended</code> run re-registers and updates the same few registrations from all threads, as when a
+ * device re-registers while a notification updates its registration.
+ * <p>
+ * This is not a unit test, it needs a running Redis which is <strong>modified</strong> by the benchmark. Launch it
+ * manually with :
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=org.eclipse.leshan.server.redis.RedisRegistrationStoreBenchmark \
+ *   -Dexec.args="[redisUri] [nbRegistrations] [nbThreads] [nbContendedRegistrations]"
+ * </pre>
+ */
+public class RedisRegistrationStoreBenchmark {
+
+    private static final Link[] OBJECT_LINKS = Link.parse("</1/0>,</3/0>,</4/0>,</5/0>,</6/0>".getBytes());
+
+    public static void main(String[] args) throws Exception {
+        URI uri = new URI(args.length > 0 ? args[0] : "redis://localhost:6379");
+        int nbRegistrations = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int nbThreads = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int nbContended = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+
+        JedisPool pool = new JedisPool(uri);
+        RedisRegistrationStore store = new RedisRegistrationStore(pool);
+        try {
+            final Registration[] registrations = new Registration[nbRegistrations];
+            for (int i = 0; i < nbRegistrations; i++) {
+                InetAddress address = InetAddress
+                        .getByAddress(new byte[] { 10, (byte) (i >> 16), (byte) (i >> 8), (byte) i });
+                registrations[i] = new Registration.Builder("bench-reg" + i, "bench-ep" + i,
+                        Identity.unsecure(address, 5683)).objectLinks(OBJECT_LINKS).lifeTimeInSec(86400L).build();
+            }
+
+            // warm up and register scripts
+            run("warm-up", store, registrations, nbThreads, Operation.ADD);
+            run("warm-up", store, registrations, nbThreads, Operation.REMOVE);
+
+            run("add", store, registrations, nbThreads, Operation.ADD);
+            run("update", store, registrations, nbThreads, Operation.UPDATE);
+            run("re-add", store, registrations, nbThreads, Operation.ADD);
+            run("remove", store, registrations, nbThreads, Operation.REMOVE);
+
+            // all threads compete for the same registrations, alternating re-registrations and updates
+            Registration[] contended = new Registration[nbRegistrations];
+            for (int i = 0; i < nbRegistrations; i++) {
+                contended[i] = registrations[i % nbContended];
+            }
+            run("warm-up", store, contended, nbThreads, Operation.ADD_OR_UPDATE);
+            run("contended", store, contended, nbThreads, Operation.ADD_OR_UPDATE);
+            run("remove", store, Arrays.copyOf(registrations, nbContended), nbThreads, Operation.REMOVE);
+        } finally {
+            store.destroy();
+            pool.close();
+        }
+    }
+
+    private enum Operation {
+        ADD, UPDATE, REMOVE, ADD_OR_UPDATE
+    }
+
+    private static void run(String name, final RedisRegistrationStore store, final Registration[] registrations,
+            int nbThreads, final Operation operation) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        // latency of each operation in nanoseconds
+        final long[] latencies = new long[registrations.length];
+        long start = System.nanoTime();
+        for (int i = 0; i < registrations.length; i++) {
+            final int index = i;
+            final Registration registration = registrations[i];
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long begin = System.nanoTime();
+                    Operation op = operation;
+                    if (op == Operation.ADD_OR_UPDATE) {
+                        op = index % 2 == 0 ? Operation.ADD : Operation.UPDATE;
+                    }
+                    switch (op) {
+                    case ADD:
+                        store.addRegistration(registration);
+                        break;
+                    case UPDATE:
+                        store.updateRegistration(new RegistrationUpdate(registration.getId(),
+                                registration.getIdentity(), 86400L, null, null, null, null));
+                        break;
+                    case REMOVE:
+                        store.removeRegistration(registration.getId());
+                        break;
+                    default:
+                        break;
+                    }
+                    latencies[index] = System.nanoTime() - begin;
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+        long duration = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.println(String.format(
+                "%-9s %,8d operations with %d threads : %,8.0f ops/s, latency p50 %,6d us, p99 %,6d us, max %,6d us",
+                name, registrations.length, nbThreads, registrations.length / (duration / 1e9),
+                percentile(latencies, 50) / 1000, percentile(latencies, 99) / 1000,
+                latencies[latencies.length - 1] / 1000));
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(sorted.length * percentile / 100d) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.redis;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.Inet4Address;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.server.californium.serialization.RegistrationBinarySerDes;
+import org.eclipse.leshan.server.redis.RedisRegistrationStore.ClaimedRegistrations;
+import org.eclipse.leshan.server.registration.Registration;
+import org.junit.Test;
+
+public class RedisRegistrationStoreCleanerTest {
+
+    @Test
+    public void claimed_registrations_are_decoded() {
+        ClaimedRegistrations claimed = new ClaimedRegistrations(Arrays.<Object> asList(0L, //
+                bytes("ep1"), RegistrationBinarySerDes.serialize(givenARegistration("reg1", "ep1")), //
+                bytes("ep2"), RegistrationBinarySerDes.serialize(givenARegistration("reg2", "ep2"))));
+
+        assertEquals(2, claimed.size());
+        assertEquals(2, claimed.getRegistrations().size());
+        assertEquals("reg1", claimed.getRegistrations().get(0).getId());
+        assertEquals("reg2", claimed.getRegistrations().get(1).getId());
+    }
+
+    @Test
+    public void removed_endpoints_are_counted() {
+        ClaimedRegistrations claimed = new ClaimedRegistrations(Arrays.<Object> asList(3L, //
+                bytes("ep1"), RegistrationBinarySerDes.serialize(givenARegistration("reg1", "ep1"))));
+
+        assertEquals(4, claimed.size());
+        assertEquals(1, claimed.getRegistrations().size());
+    }
+
+    @Test
+    public void nothing_claimed() {
+        ClaimedRegistrations claimed = new ClaimedRegistrations(Collections.<Object> singletonList(0L));
+
+        assertEquals(0, claimed.size());
+        assertTrue(claimed.getRegistrations().isEmpty());
+    }
+
+    @Test
+    public void corrupted_registration_does_not_drop_the_rest_of_the_batch() {
+        ClaimedRegistrations claimed = new ClaimedRegistrations(Arrays.<Object> asList(0L, //
+                bytes("ep1"), RegistrationBinarySerDes.serialize(givenARegistration("reg1", "ep1")), //
+                bytes("ep2"), bytes("{corrupted"), //
+                bytes("ep3"), new byte[] { 1, 2, 3 }, //
+                bytes("ep4"), RegistrationBinarySerDes.serialize(givenARegistration("reg4", "ep4"))));
+
+        assertEquals(4, claimed.size());
+        assertEquals(2, claimed.getRegistrations().size());
+        assertEquals("reg1", claimed.getRegistrations().get(0).getId());
+        assertEquals("reg4", claimed.getRegistrations().get(1).getId());
+    }
+
+    @Test
+    public void scripts_only_access_declared_keys() throws Exception {
+        int nbScripts = 0;
+        for (Field field : RedisRegistrationStore.class.getDeclaredFields()) {
+            if (field.getType() == RedisScript.class && Modifier.isStatic(field.getModifiers())) {
+                field.setAccessible(true);
+                String source = ((RedisScript) field.get(null)).getSource();
+                // keys built from a prefix are not declared in KEYS, which is not supported by Redis Cluster
+                assertFalse(field.getName() + " concatenates strings", source.contains(".."));
+                nbScripts++;
+            }
+        }
+        assertTrue(nbScripts > 0);
+    }
+
+    private Registration givenARegistration(String registrationId, String endpoint) {
+        return new Registration.Builder(registrationId, endpoint,
+                Identity.unsecure(Inet4Address.getLoopbackAddress(), 5683)).build();
+    }
+
+    private byte[] bytes(String value) {
+        return value.getBytes(UTF_8);
+    }
+}
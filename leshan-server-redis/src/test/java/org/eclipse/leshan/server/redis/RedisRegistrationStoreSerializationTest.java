@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Sierra Wireless and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *     Sierra Wireless - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.leshan.server.redis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.net.Inet4Address;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.observe.Observation;
+import org.eclipse.californium.elements.AddressEndpointContext;
+import org.eclipse.leshan.core.Link;
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.core.request.ObserveRequest;
+import org.eclipse.leshan.server.californium.observation.ObserveUtil;
+import org.eclipse.leshan.server.californium.serialization.ObservationBinarySerDes;
+import org.eclipse.leshan.server.californium.serialization.RegistrationBinarySerDes;
+import org.eclipse.leshan.server.redis.serialization.ObservationSerDes;
+import org.eclipse.leshan.server.redis.serialization.RegistrationSerDes;
+import org.eclipse.leshan.server.registration.Registration;
+import org.junit.Test;
+
+public class RedisRegistrationStoreSerializationTest {
+
+    @Test
+    public void legacy_and_binary_registrations_are_both_decoded() {
+        Registration registration = givenARegistration();
+
+        Registration fromJson = RedisRegistrationStore.deserializeReg(RegistrationSerDes.bSerialize(registration));
+        Registration fromBinary = RedisRegistrationStore
+                .deserializeReg(RegistrationBinarySerDes.serialize(registration));
+
+        assertEquals(registration, fromJson);
+        assertEquals(registration, fromBinary);
+    }
+
+    @Test
+    public void legacy_and_binary_observations_are_both_decoded() {
+        Observation observation = givenAnObservation(givenARegistration(), "/3/0/1");
+
+        Observation fromJson = RedisRegistrationStore.deserializeObs(ObservationSerDes.serialize(observation));
+        Observation fromBinary = RedisRegistrationStore
+                .deserializeObs(ObservationBinarySerDes.serialize(observation));
+
+        assertObservationEquals(observation, fromJson);
+        assertObservationEquals(observation, fromBinary);
+    }
+
+    private void assertObservationEquals(Observation expected, Observation actual) {
+        assertEquals(expected.getRequest().getToken(), actual.getRequest().getToken());
+        assertArrayEquals(expected.getRequest().getBytes(), actual.getRequest().getBytes());
+        assertEquals(expected.getRequest().getUserContext(), actual.getRequest().getUserContext());
+        assertEquals(expected.getContext().getPeerAddress(), actual.getContext().getPeerAddress());
+    }
+
+    private Registration givenARegistration() {
+        Link[] objs = new Link[2];
+        Map<String, Object> att = new HashMap<>();
+        att.put("ts", 12);
+        att.put("rt", "test");
+        objs[0] = new Link("/0/1024/2", att, Object.class);
+        objs[1] = new Link("/0/2");
+
+        Registration.Builder builder = new Registration.Builder("registrationId", "endpoint",
+                Identity.unsecure(Inet4Address.getLoopbackAddress(), 5683)).objectLinks(objs);
+        builder.registrationDate(new Date(100L));
+        builder.lastUpdate(new Date(101L));
+        return builder.build();
+    }
+
+    private Observation givenAnObservation(Registration registration, String path) {
+        Request coapRequest = Request.newGet();
+        coapRequest.setToken(new byte[] { 1, 2, 3, 4 });
+        coapRequest.setMID(1);
+        coapRequest.setURI("coap://localhost:5683" + path);
+        coapRequest.setObserve();
+        Map<String, String> context = ObserveUtil.createCoapObserveRequestContext(registration.getEndpoint(),
+                registration.getId(), new ObserveRequest(path));
+        coapRequest.setUserContext(context);
+        AddressEndpointContext endpointContext = new AddressEndpointContext(registration.getSocketAddress());
+        coapRequest.setDestinationContext(endpointContext);
+        return new Observation(coapRequest, endpointContext);
+    }
+}